@@ -0,0 +1,109 @@
+package ru.practicum.mapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import ru.practicum.dto.response.EventFullDto;
+import ru.practicum.dto.response.EventShortDto;
+import ru.practicum.model.Category;
+import ru.practicum.model.Event;
+import ru.practicum.model.Location;
+import ru.practicum.model.User;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping of a page of events to the dtos of the public and admin listings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventMapperBenchmark {
+    @Param({"10", "1000"})
+    private int size;
+
+    private AnnotationConfigApplicationContext context;
+    private EventMapper eventMapper;
+    private List<Event> events;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext(EventMapperImpl.class, UserMapperImpl.class,
+                                                         CategoryMapperImpl.class);
+        eventMapper = context.getBean(EventMapper.class);
+
+        Random random = new Random(42);
+        List<Category> categories = new ArrayList<>();
+        List<User> users = new ArrayList<>();
+        for (long i = 1; i <= 20; i++) {
+            Category category = new Category();
+            category.setId(i);
+            category.setName("Category " + i);
+            categories.add(category);
+            User user = new User();
+            user.setId(i);
+            user.setName("User " + i);
+            user.setEmail("user" + i + "@example.com");
+            users.add(user);
+        }
+        LocalDateTime now = LocalDateTime.of(2024, 1, 1, 12, 0);
+        events = new ArrayList<>(size);
+        for (long i = 1; i <= size; i++) {
+            Event event = new Event();
+            event.setId(i);
+            event.setTitle("Event " + i);
+            event.setAnnotation("Annotation of event " + i + " that is long enough to pass validation");
+            event.setDescription("Description of event " + i + " that is long enough to pass validation");
+            event.setCategory(categories.get(random.nextInt(categories.size())));
+            event.setInitiator(users.get(random.nextInt(users.size())));
+            event.setLocation(new Location());
+            event.setConfirmedRequests(random.nextInt(100));
+            event.setParticipantLimit(100);
+            event.setPaid(random.nextBoolean());
+            event.setRequestModeration(true);
+            event.setCreatedOn(now.minusDays(random.nextInt(30)));
+            event.setPublishedOn(now.minusDays(random.nextInt(10)));
+            event.setEventDate(now.plusDays(random.nextInt(60) + 1));
+            event.setState(ru.practicum.model.enums.State.PUBLISHED);
+            event.setViews((long) random.nextInt(10_000));
+            events.add(event);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<EventShortDto> mapToShortDto() {
+        return eventMapper.mapToShortDto(events);
+    }
+
+    @Benchmark
+    public List<EventFullDto> mapToFullDto() {
+        List<EventFullDto> result = new ArrayList<>(events.size());
+        for (Event event : events) {
+            result.add(eventMapper.mapToFullDto(event));
+        }
+        return result;
+    }
+}
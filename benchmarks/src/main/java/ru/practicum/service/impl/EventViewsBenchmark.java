@@ -0,0 +1,59 @@
+package ru.practicum.service.impl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.stats.EndpointStatsResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merging of the stats lookups of a page of events into views by event id, as done after the lookups
+ * of {@link EventServiceImpl} complete.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventViewsBenchmark {
+    private static final int LOOKUP_SIZE = 50;
+
+    @Param({"10", "1000"})
+    private int events;
+
+    private List<List<EndpointStatsResponse>> lookups;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        lookups = new ArrayList<>();
+        for (int from = 0; from < events; from += LOOKUP_SIZE) {
+            List<EndpointStatsResponse> lookup = new ArrayList<>();
+            for (long id = from + 1; id <= Math.min(events, from + LOOKUP_SIZE); id++) {
+                lookup.add(new EndpointStatsResponse("ewm-main-service", "/events/" + id,
+                                                     (long) random.nextInt(100_000)));
+            }
+            lookups.add(lookup);
+        }
+    }
+
+    @Benchmark
+    public Map<Long, Long> toEventViews() {
+        return EventServiceImpl.toEventViews(lookups.stream().flatMap(List::stream));
+    }
+}
@@ -0,0 +1,89 @@
+package ru.practicum.stats;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson round trips of the payloads exchanged between the services, with the mapper configured the way
+ * Spring Boot configures it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatsJsonBenchmark {
+    private static final TypeReference<List<EndpointHitRequest>> HITS = new TypeReference<>() {
+    };
+    private static final TypeReference<List<EndpointStatsResponse>> STATS = new TypeReference<>() {
+    };
+
+    @Param({"10", "1000"})
+    private int size;
+
+    private ObjectMapper objectMapper;
+    private List<EndpointHitRequest> hits;
+    private List<EndpointStatsResponse> stats;
+    private byte[] hitsJson;
+    private byte[] statsJson;
+
+    @Setup(Level.Trial)
+    public void setUp() throws JsonProcessingException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        Random random = new Random(42);
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        hits = new ArrayList<>(size);
+        stats = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            hits.add(new EndpointHitRequest("ewm-main-service", "/events/" + random.nextInt(10_000),
+                                            "10.0." + random.nextInt(256) + "." + random.nextInt(256),
+                                            start.plusSeconds(random.nextInt(86_400))));
+            stats.add(new EndpointStatsResponse("ewm-main-service", "/events/" + i,
+                                                (long) random.nextInt(1_000_000)));
+        }
+        hitsJson = objectMapper.writeValueAsBytes(hits);
+        statsJson = objectMapper.writeValueAsBytes(stats);
+    }
+
+    @Benchmark
+    public byte[] writeHits() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(hits);
+    }
+
+    @Benchmark
+    public List<EndpointHitRequest> readHits() throws IOException {
+        return objectMapper.readValue(hitsJson, HITS);
+    }
+
+    @Benchmark
+    public byte[] writeStats() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(stats);
+    }
+
+    @Benchmark
+    public List<EndpointStatsResponse> readStats() throws IOException {
+        return objectMapper.readValue(statsJson, STATS);
+    }
+}
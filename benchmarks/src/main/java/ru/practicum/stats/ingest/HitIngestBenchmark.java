@@ -0,0 +1,118 @@
+package ru.practicum.stats.ingest;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.practicum.stats.EndpointHitRequest;
+import ru.practicum.stats.dictionary.EndpointDictionary;
+import ru.practicum.stats.mapper.EndpointHitMapper;
+import ru.practicum.stats.mapper.EndpointHitMapperImpl;
+import ru.practicum.stats.model.EndpointHit;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing and mapping of a {@code POST /hits} body: the object mapper and MapStruct against the streaming
+ * reader. Run with {@code -prof gc} and divide {@code gc.alloc.rate.norm} by {@code size} for the bytes
+ * allocated per hit. The hits of a batch fall within ten minutes, like a live ingest stream, and the reader
+ * is warmed up by earlier batches, as the pooled readers of the server are.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HitIngestBenchmark {
+    private static final TypeReference<List<EndpointHitRequest>> HITS = new TypeReference<>() {
+    };
+
+    @Param({"100", "1000"})
+    private int size;
+
+    private AnnotationConfigApplicationContext context;
+    private EndpointHitMapper mapper;
+    private ObjectMapper objectMapper;
+    private HitStreamReader reader;
+    private byte[] body;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        context = new AnnotationConfigApplicationContext();
+        context.registerBean(EndpointDictionary.class, WarmDictionary::new);
+        context.register(EndpointHitMapperImpl.class);
+        context.refresh();
+        mapper = context.getBean(EndpointHitMapper.class);
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        reader = new HitStreamReader(context.getBean(EndpointDictionary.class));
+
+        Random random = new Random(42);
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 12, 0);
+        List<EndpointHitRequest> hits = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            hits.add(new EndpointHitRequest("ewm-main-service", "/events/" + random.nextInt(2_000),
+                                            "10.0." + random.nextInt(16) + "." + random.nextInt(256),
+                                            start.plusSeconds(random.nextInt(600))));
+        }
+        body = objectMapper.writeValueAsBytes(hits);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<EndpointHit> objectMapper() throws IOException {
+        return mapper.toEntities(objectMapper.readValue(body, HITS));
+    }
+
+    @Benchmark
+    public void streamReader(Blackhole blackhole) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            reader.read(parser, size, blackhole::consume);
+        }
+    }
+
+    private static class WarmDictionary extends EndpointDictionary {
+        private final Map<String, Integer> apps = new ConcurrentHashMap<>();
+        private final Map<String, Integer> uris = new ConcurrentHashMap<>();
+
+        WarmDictionary() {
+            super(null, null, null);
+        }
+
+        @Override
+        public Integer appId(String app) {
+            return apps.computeIfAbsent(app, value -> apps.size() + 1);
+        }
+
+        @Override
+        public Integer uriId(String uri) {
+            return uris.computeIfAbsent(uri, value -> uris.size() + 1);
+        }
+    }
+}
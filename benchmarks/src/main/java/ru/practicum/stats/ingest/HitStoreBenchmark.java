@@ -0,0 +1,99 @@
+package ru.practicum.stats.ingest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.practicum.stats.EndpointHitRequest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rows per second stored by a running stats server, given by {@code bench.stats-url}: one {@code POST /hits} with
+ * a thousand hits against a hundred {@code POST /hit} calls. Both go through HTTP, JSON, the service and
+ * the database, so the difference is what batching saves per row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class HitStoreBenchmark {
+    private static final int BATCH = 1_000;
+    private static final int SINGLE = 100;
+
+    private HttpClient client;
+    private URI hitUri;
+    private URI hitsUri;
+    private byte[] batchBody;
+    private List<byte[]> singleBodies;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String url = System.getProperty("bench.stats-url", "http://localhost:9090");
+        client = HttpClient.newHttpClient();
+        hitUri = URI.create(url + "/hit");
+        hitsUri = URI.create(url + "/hits");
+
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        Random random = new Random(42);
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        List<EndpointHitRequest> hits = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            hits.add(new EndpointHitRequest("ewm-main-service", "/events/" + random.nextInt(2_000),
+                                            "10.0." + random.nextInt(16) + "." + random.nextInt(256),
+                                            now.minusSeconds(random.nextInt(600))));
+        }
+        batchBody = objectMapper.writeValueAsBytes(hits);
+        singleBodies = new ArrayList<>(SINGLE);
+        for (EndpointHitRequest hit : hits.subList(0, SINGLE)) {
+            singleBodies.add(objectMapper.writeValueAsBytes(hit));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void batch() throws IOException, InterruptedException {
+        post(hitsUri, batchBody);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SINGLE)
+    public void singleHits() throws IOException, InterruptedException {
+        for (byte[] body : singleBodies) {
+            post(hitUri, body);
+        }
+    }
+
+    private void post(URI uri, byte[] body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 201) {
+            throw new IllegalStateException("POST " + uri + " answered " + response.statusCode());
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package ru.practicum.stats.mapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import ru.practicum.stats.EndpointHitRequest;
+import ru.practicum.stats.dictionary.EndpointDictionary;
+import ru.practicum.stats.model.EndpointHit;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping of ingested hits to entities. The dictionary answers from memory, as the real one does once
+ * every app and uri of the batch has been seen.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EndpointHitMapperBenchmark {
+    @Param({"1", "100", "1000"})
+    private int batchSize;
+
+    private AnnotationConfigApplicationContext context;
+    private EndpointHitMapper mapper;
+    private EndpointHitRequest hit;
+    private List<EndpointHitRequest> batch;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new AnnotationConfigApplicationContext();
+        context.registerBean(EndpointDictionary.class, WarmDictionary::new);
+        context.register(EndpointHitMapperImpl.class);
+        context.refresh();
+        mapper = context.getBean(EndpointHitMapper.class);
+
+        Random random = new Random(42);
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(new EndpointHitRequest("ewm-main-service", "/events/" + random.nextInt(10_000),
+                                             "10." + random.nextInt(256) + "." + random.nextInt(256) + "."
+                                                     + random.nextInt(256),
+                                             start.plusSeconds(random.nextInt(86_400))));
+        }
+        hit = batch.get(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public EndpointHit toEntity() {
+        return mapper.toEntity(hit);
+    }
+
+    @Benchmark
+    public List<EndpointHit> toEntities() {
+        return mapper.toEntities(batch);
+    }
+
+    @Benchmark
+    public LocalDateTime parseTimestamp() {
+        return mapper.map("2024-01-01T12:30:45");
+    }
+
+    private static class WarmDictionary extends EndpointDictionary {
+        private final Map<String, Integer> apps = new ConcurrentHashMap<>();
+        private final Map<String, Integer> uris = new ConcurrentHashMap<>();
+
+        WarmDictionary() {
+            super(null, null, null);
+        }
+
+        @Override
+        public Integer appId(String app) {
+            return apps.computeIfAbsent(app, value -> apps.size() + 1);
+        }
+
+        @Override
+        public Integer uriId(String uri) {
+            return uris.computeIfAbsent(uri, value -> uris.size() + 1);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package ru.practicum.stats.sketch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unique visitors per endpoint over a month: the exact {@code count(DISTINCT ip)} over the raw hits against
+ * merging the stored day sketches, as {@code approximate=true} does, plus the sketches that ingest keeps pending
+ * for a batch of hits. The first two need a PostgreSQL database, given by {@code bench.jdbc-url},
+ * {@code bench.jdbc-user} and {@code bench.jdbc-password}; the benchmark creates and drops its own tables.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UniqueCountBenchmark {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final int DAYS = 30;
+    private static final int ENDPOINTS = 200;
+    private static final int PRECISION = 14;
+    private static final String EXACT = "SELECT app_id, uri_id, count(DISTINCT ip) FROM bench_unique_hits " +
+            "WHERE hit_ts >= ? AND hit_ts <= ? GROUP BY app_id, uri_id";
+    private static final String SKETCHES = "SELECT app_id, uri_id, sketch FROM bench_unique_sketches " +
+            "WHERE bucket >= ? AND bucket < ?";
+
+    @Param({"1000000"})
+    private int hits;
+    @Param({"50000"})
+    private int visitors;
+
+    private Connection connection;
+    private byte[][] batchIps;
+    private int[] batchUris;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        Random random = new Random(42);
+        batchIps = new byte[1_000][];
+        batchUris = new int[batchIps.length];
+        for (int i = 0; i < batchIps.length; i++) {
+            batchIps[i] = new byte[]{4, 10, 0, (byte) random.nextInt(256), (byte) random.nextInt(256)};
+            batchUris[i] = random.nextInt(ENDPOINTS);
+        }
+        if (System.getProperty("bench.jdbc-url") == null) {
+            return;
+        }
+        connection = DriverManager.getConnection(System.getProperty("bench.jdbc-url"),
+                                                 System.getProperty("bench.jdbc-user", "postgres"),
+                                                 System.getProperty("bench.jdbc-password", ""));
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS bench_unique_hits, bench_unique_sketches");
+            statement.execute("CREATE UNLOGGED TABLE bench_unique_hits (app_id INT NOT NULL, uri_id INT NOT NULL, " +
+                                      "ip BYTEA NOT NULL, hit_ts TIMESTAMP NOT NULL)");
+            statement.execute("CREATE UNLOGGED TABLE bench_unique_sketches (app_id INT NOT NULL, " +
+                                      "uri_id INT NOT NULL, bucket TIMESTAMP NOT NULL, sketch BYTEA NOT NULL)");
+            statement.execute("SELECT setseed(0.42)");
+            statement.execute("INSERT INTO bench_unique_hits SELECT 1, (random() * " + (ENDPOINTS - 1) + ")::int, " +
+                                      "int4send((random() * " + visitors + ")::int), " +
+                                      "timestamp '" + Timestamp.valueOf(START) + "' + " +
+                                      "(random() * " + (DAYS * 86_400 - 1) + ")::int * interval '1 second' " +
+                                      "FROM generate_series(1, " + hits + ")");
+            statement.execute("CREATE INDEX ON bench_unique_hits (uri_id, hit_ts)");
+            statement.execute("ANALYZE bench_unique_hits");
+        }
+        buildSketches();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        if (connection == null) {
+            return;
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS bench_unique_hits, bench_unique_sketches");
+        }
+        connection.close();
+    }
+
+    @Benchmark
+    public Map<Long, Long> exactQuery() throws SQLException {
+        Map<Long, Long> counts = new HashMap<>();
+        try (PreparedStatement ps = prepare(EXACT, START.plusDays(DAYS).minusSeconds(1));
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                counts.put(key(rs.getInt(1), rs.getInt(2)), rs.getLong(3));
+            }
+        }
+        return counts;
+    }
+
+    @Benchmark
+    public Map<Long, Long> mergedSketches() throws SQLException {
+        Map<Long, HyperLogLog> merged = new HashMap<>();
+        try (PreparedStatement ps = prepare(SKETCHES, START.plusDays(DAYS));
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                merged.merge(key(rs.getInt(1), rs.getInt(2)), HyperLogLog.fromBytes(rs.getBytes(3)),
+                             HyperLogLog::merge);
+            }
+        }
+        Map<Long, Long> counts = new HashMap<>();
+        merged.forEach((key, sketch) -> counts.put(key, sketch.cardinality()));
+        return counts;
+    }
+
+    /**
+     * The pending sketches of one ingest batch, one per endpoint and day. Run with {@code -prof gc} for the bytes
+     * they take.
+     */
+    @Benchmark
+    public Map<Integer, HyperLogLog> pendingSketches() {
+        Map<Integer, HyperLogLog> pending = new HashMap<>();
+        for (int i = 0; i < batchIps.length; i++) {
+            pending.computeIfAbsent(batchUris[i], uri -> new HyperLogLog(PRECISION)).add(batchIps[i]);
+        }
+        return pending;
+    }
+
+    private PreparedStatement prepare(String sql, LocalDateTime end) throws SQLException {
+        if (connection == null) {
+            throw new IllegalStateException("Set bench.jdbc-url to run the database benchmarks");
+        }
+        PreparedStatement ps = connection.prepareStatement(sql);
+        ps.setTimestamp(1, Timestamp.valueOf(START));
+        ps.setTimestamp(2, Timestamp.valueOf(end));
+        return ps;
+    }
+
+    private void buildSketches() throws SQLException {
+        Map<SketchRow, HyperLogLog> sketches = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT app_id, uri_id, date_trunc('day', hit_ts), ip " +
+                                                           "FROM bench_unique_hits")) {
+            while (rs.next()) {
+                sketches.computeIfAbsent(new SketchRow(rs.getInt(1), rs.getInt(2), rs.getTimestamp(3)),
+                                         row -> new HyperLogLog(PRECISION))
+                        .add(rs.getBytes(4));
+            }
+        }
+        try (PreparedStatement ps = connection.prepareStatement("INSERT INTO bench_unique_sketches " +
+                                                                        "VALUES (?, ?, ?, ?)")) {
+            for (Map.Entry<SketchRow, HyperLogLog> entry : sketches.entrySet()) {
+                ps.setInt(1, entry.getKey().appId());
+                ps.setInt(2, entry.getKey().uriId());
+                ps.setTimestamp(3, entry.getKey().bucket());
+                ps.setBytes(4, entry.getValue().toBytes());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE INDEX ON bench_unique_sketches (uri_id, bucket)");
+            statement.execute("ANALYZE bench_unique_sketches");
+        }
+    }
+
+    private static long key(int appId, int uriId) {
+        return (long) appId << 32 | uriId;
+    }
+
+    private record SketchRow(int appId, int uriId, Timestamp bucket) {
+    }
+}
@@ -9,6 +9,8 @@ import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 import ru.practicum.dto.request.*;
 import ru.practicum.dto.response.EventFullDto;
 import ru.practicum.dto.response.EventRequestStatusUpdateResult;
@@ -26,16 +28,23 @@ import ru.practicum.model.enums.StateAction;
 import ru.practicum.repository.*;
 import ru.practicum.repository.specification.EventSpecification;
 import ru.practicum.service.interfaces.EventService;
+import ru.practicum.service.metrics.EventMetrics;
+import ru.practicum.service.views.EventViewsCache;
+import ru.practicum.service.views.LastKnownViews;
 import ru.practicum.stats.EndpointHitRequest;
 import ru.practicum.stats.EndpointStatsResponse;
 import ru.practicum.stats.StatsClient;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
@@ -43,12 +52,17 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class EventServiceImpl implements EventService {
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int VIEWS_LOOKUP_SIZE = 50;
+    private static final String VIEWS_STALE_HEADER = "X-Views-Stale";
     private final EventRepository eventRepository;
     private final EventMapper eventMapper;
     private final UserRepository userRepository;
     private final CategoryRepository categoryRepository;
     private final LocationRepository locationRepository;
     private final StatsClient statsClient;
+    private final LastKnownViews lastKnownViews;
+    private final EventViewsCache eventViewsCache;
+    private final EventMetrics eventMetrics;
     private final RequestRepository requestRepository;
     private final RequestMapper requestMapper;
 
@@ -297,6 +311,32 @@ public class EventServiceImpl implements EventService {
     @Override
     public List<EventShortDto> getEventsPublic(EventSearchParamsPublic params, Integer from,
                                                Integer size, HttpServletRequest httpServletRequest) {
+        long started = System.nanoTime();
+        try {
+            List<EventShortDto> result = searchEventsPublic(params, from, size, httpServletRequest);
+            eventMetrics.recordSuccess(EventMetrics.Operation.SEARCH, started);
+            return result;
+        } catch (RuntimeException e) {
+            eventMetrics.recordFailure(EventMetrics.Operation.SEARCH, started);
+            throw e;
+        }
+    }
+
+    @Override
+    public EventFullDto getEventByIdPublic(Long eventId, HttpServletRequest httpServletRequest) {
+        long started = System.nanoTime();
+        try {
+            EventFullDto result = findEventByIdPublic(eventId, httpServletRequest);
+            eventMetrics.recordSuccess(EventMetrics.Operation.GET, started);
+            return result;
+        } catch (RuntimeException e) {
+            eventMetrics.recordFailure(EventMetrics.Operation.GET, started);
+            throw e;
+        }
+    }
+
+    private List<EventShortDto> searchEventsPublic(EventSearchParamsPublic params, Integer from,
+                                                   Integer size, HttpServletRequest httpServletRequest) {
         log.info("[getEventsPublic] Request received with params {}, from={}, size={}",
                  params, from, size);
 
@@ -314,24 +354,27 @@ public class EventServiceImpl implements EventService {
 
         Sort sorting = sorting(sort);
 
-        hit(httpServletRequest);
-        log.info("[getEventsPublic] Recorded hit for request URI: {}", httpServletRequest.getRequestURI());
+        CompletableFuture<Void> hit = hitAsync(httpServletRequest);
 
         Pageable pageable = PageRequest.of(from > 0 ? from / size : 0, size, sorting);
         List<Event> events = eventRepository.findAll(specification, pageable).getContent();
 
         log.info("[getEventsPublic] Retrieved {} events from repository", events.size());
-        return getEventShortDtoWithVies(events, rangeStart, rangeEnd);
+        List<EventShortDto> result = getEventShortDtoWithVies(events, rangeStart, rangeEnd);
+        join(hit);
+        log.info("[getEventsPublic] Recorded hit for request URI: {}", httpServletRequest.getRequestURI());
+        return result;
     }
 
-    @Override
-    public EventFullDto getEventByIdPublic(Long eventId, HttpServletRequest httpServletRequest) {
+    private EventFullDto findEventByIdPublic(Long eventId, HttpServletRequest httpServletRequest) {
         log.info("[getEventByIdPublic] Fetching event with id {}", eventId);
         Event event = eventRepository.findById(eventId).filter(e -> e.getState().equals(State.PUBLISHED))
                 .orElseThrow(() -> new NotFoundException(Event.class, eventId));
 
         hit(httpServletRequest);
         log.info("[getEventByIdPublic] Recorded hit for request URI: {}", httpServletRequest.getRequestURI());
+        // the cached views predate this hit, which may be the first one of its visitor
+        eventViewsCache.invalidate(eventId);
 
         Long views = getEventViews(event);
         event.setViews(views);
@@ -353,46 +396,108 @@ public class EventServiceImpl implements EventService {
                 .toList();
     }
 
+    /**
+     * Views of the events within the range. Without a range these are lifetime views, served from the cache.
+     */
     private Map<Long, Long> getEventsViews(List<Event> events, LocalDateTime rangeStart, LocalDateTime rangeEnd) {
-        if (rangeStart == null) {
-            rangeStart = LocalDateTime.now().minusYears(5);
+        try {
+            Map<Long, Long> views = rangeStart == null && rangeEnd == null
+                    ? eventViewsCache.getAll(events, this::fetchLifetimeViews)
+                    : fetchViews(events,
+                                 rangeStart == null ? LocalDateTime.now().minusYears(5) : rangeStart,
+                                 rangeEnd == null ? LocalDateTime.now().plusYears(5) : rangeEnd);
+            lastKnownViews.remember(views);
+            return views;
+        } catch (RuntimeException e) {
+            log.warn("[getEventsViews] Stats server unavailable, serving last known views: {}", e.getMessage());
+            markViewsStale();
+            return lastKnownViews.get(events.stream().map(Event::getId).toList());
         }
+    }
 
-        if (rangeEnd == null) {
-            rangeEnd = LocalDateTime.now().plusYears(5);
-        }
+    private Long getEventViews(Event event) {
+        return getEventsViews(List.of(event), null, null).getOrDefault(event.getId(), 0L);
+    }
+
+    /**
+     * Hits of an event are only recorded once it is published, so counting from the earliest publication covers
+     * every event of the batch.
+     */
+    private Map<Long, Long> fetchLifetimeViews(List<Event> events) {
+        LocalDateTime start = events.stream()
+                .map(Event::getPublishedOn)
+                .filter(Objects::nonNull)
+                .min(LocalDateTime::compareTo)
+                .orElse(LocalDateTime.now().minusYears(5));
+        return fetchViews(events, start, LocalDateTime.now());
+    }
+
+    private Map<Long, Long> fetchViews(List<Event> events, LocalDateTime rangeStart, LocalDateTime rangeEnd) {
         List<String> uris = events.stream().map(event -> "/events/" + event.getId()).toList();
 
-        List<EndpointStatsResponse> stats = statsClient.findStats(rangeStart.withNano(0),
-                                                                  rangeEnd.withNano(0), uris, true);
+        List<CompletableFuture<List<EndpointStatsResponse>>> lookups = new ArrayList<>();
+        for (int i = 0; i < uris.size(); i += VIEWS_LOOKUP_SIZE) {
+            lookups.add(statsClient.findStatsAsync(rangeStart.withNano(0), rangeEnd.withNano(0),
+                                                   uris.subList(i, Math.min(uris.size(), i + VIEWS_LOOKUP_SIZE)),
+                                                   true));
+        }
 
-        return stats.stream()
-                .collect(Collectors.toMap(stat -> Long.parseLong(stat.getUri()
-                                                                         .substring(stat.getUri().lastIndexOf("/") + 1)),
-                                          EndpointStatsResponse::getHits));
+        return toEventViews(lookups.stream().flatMap(lookup -> join(lookup).stream()));
     }
 
-    private Long getEventViews(Event event) {
-        LocalDateTime rangeStart = event.getPublishedOn();
+    /**
+     * Maps the stats of "/events/{id}" uris to views by event id.
+     */
+    static Map<Long, Long> toEventViews(Stream<EndpointStatsResponse> stats) {
+        return stats.collect(Collectors.toMap(
+                stat -> Long.parseLong(stat.getUri().substring(stat.getUri().lastIndexOf("/") + 1)),
+                EndpointStatsResponse::getHits));
+    }
 
-        if (rangeStart == null) {
-            rangeStart = LocalDateTime.now().minusYears(5);
+    /**
+     * Tells the client that the view counts in the response come from the fallback.
+     */
+    private void markViewsStale() {
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes
+                && attributes.getResponse() != null) {
+            attributes.getResponse().setHeader(VIEWS_STALE_HEADER, "true");
         }
+    }
 
-        List<EndpointStatsResponse> stats = statsClient.findStats(rangeStart.withNano(0),
-                                                                  LocalDateTime.now().withNano(0),
-                                                                  List.of("/events/" + event.getId()), true);
+    private void hit(HttpServletRequest httpServletRequest) {
+        try {
+            statsClient.hit(toHitRequest(httpServletRequest));
+        } catch (RuntimeException e) {
+            log.warn("[hit] Hit for {} was not recorded: {}", httpServletRequest.getRequestURI(), e.getMessage());
+        }
+    }
 
-        return stats.isEmpty() ? 0L : stats.get(0).getHits();
+    private CompletableFuture<Void> hitAsync(HttpServletRequest httpServletRequest) {
+        return statsClient.hitAsync(toHitRequest(httpServletRequest))
+                .exceptionally(e -> {
+                    log.warn("[hit] Hit for {} was not recorded: {}", httpServletRequest.getRequestURI(),
+                             e.getMessage());
+                    return null;
+                });
     }
 
-    private void hit(HttpServletRequest httpServletRequest) {
-        EndpointHitRequest endpointHitRequest = new EndpointHitRequest(
+    private EndpointHitRequest toHitRequest(HttpServletRequest httpServletRequest) {
+        return new EndpointHitRequest(
                 "main-server",
                 httpServletRequest.getRequestURI(),
                 httpServletRequest.getRemoteAddr(),
                 LocalDateTime.now());
-        statsClient.hit(endpointHitRequest);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
     }
 
     private Sort sorting(String sort) {
@@ -0,0 +1,41 @@
+package ru.practicum.service.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.metrics.OperationTimers;
+
+/**
+ * Latency and outcome of the public event endpoints at the service level, that is without the web layer
+ * measured by {@code http.server.requests}.
+ */
+@Component
+public class EventMetrics implements MeterBinder {
+    private final OperationTimers<Operation> timers = new OperationTimers<>(
+            Operation.class, "ewm.events.requests", "Public event lookups, including the stats calls for their views",
+            operation -> operation.tag);
+
+    public void recordSuccess(Operation operation, long startedNanos) {
+        timers.recordSuccess(operation, startedNanos);
+    }
+
+    public void recordFailure(Operation operation, long startedNanos) {
+        timers.recordFailure(operation, startedNanos);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        timers.bindTo(registry);
+    }
+
+    public enum Operation {
+        SEARCH("search"),
+        GET("get");
+
+        private final String tag;
+
+        Operation(String tag) {
+            this.tag = tag;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package ru.practicum.service.views;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+import ru.practicum.model.Event;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded cache of lifetime unique views per event. Misses of one call are loaded together by a single loader call;
+ * entries read after {@code refresh-after} are reloaded in the background while the cached value is still served,
+ * and entries older than {@code ttl} are loaded again in the foreground. A load never replaces an entry loaded
+ * after it started, so a slow background refresh cannot bring back views from before an {@link #invalidate}.
+ * A hit can reach the stats only after {@code hit-visibility-delay}, when it waits in the client's hit buffer or
+ * in the server's ingest log, so views loaded before that are refreshed once the delay is over.
+ */
+@Slf4j
+@Component
+public class EventViewsCache implements MeterBinder {
+    private final boolean enabled;
+    private final long ttlNanos;
+    private final long refreshAfterNanos;
+    private final long hitVisibilityNanos;
+    private final TaskExecutor refreshExecutor;
+    private final LongSupplier nanoClock;
+    private final Map<Long, Entry> entries;
+    private final Map<Long, Long> hitsVisibleAt;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private Timer loadTimer;
+
+    @Autowired
+    public EventViewsCache(@Qualifier("applicationTaskExecutor") TaskExecutor refreshExecutor,
+                           @Value("${stats-server.views-cache.enabled:true}") boolean enabled,
+                           @Value("${stats-server.views-cache.max-size:10000}") int maxSize,
+                           @Value("${stats-server.views-cache.ttl:PT1M}") Duration ttl,
+                           @Value("${stats-server.views-cache.refresh-after:PT20S}") Duration refreshAfter,
+                           @Value("${stats-server.views-cache.hit-visibility-delay:PT0S}")
+                           Duration hitVisibilityDelay) {
+        this(refreshExecutor, enabled, maxSize, ttl, refreshAfter, hitVisibilityDelay, System::nanoTime);
+    }
+
+    EventViewsCache(TaskExecutor refreshExecutor, boolean enabled, int maxSize, Duration ttl, Duration refreshAfter,
+                    Duration hitVisibilityDelay, LongSupplier nanoClock) {
+        if (refreshAfter.compareTo(ttl) >= 0) {
+            throw new IllegalArgumentException("stats-server.views-cache.refresh-after must be shorter than the ttl");
+        }
+        this.refreshExecutor = refreshExecutor;
+        this.nanoClock = nanoClock;
+        this.enabled = enabled;
+        this.ttlNanos = ttl.toNanos();
+        this.refreshAfterNanos = refreshAfter.toNanos();
+        this.hitVisibilityNanos = hitVisibilityDelay.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                if (size() > maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.hitsVisibleAt = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Views of every given event. The loader gets the events to load and returns views of those that have any.
+     */
+    public Map<Long, Long> getAll(List<Event> events, Function<List<Event>, Map<Long, Long>> loader) {
+        if (!enabled) {
+            return loader.apply(events);
+        }
+        long now = nanoClock.getAsLong();
+        Map<Long, Long> result = new HashMap<>();
+        List<Event> missing = new ArrayList<>();
+        List<Event> refresh = new ArrayList<>();
+        synchronized (entries) {
+            for (Event event : events) {
+                Entry entry = entries.get(event.getId());
+                if (entry == null || now - entry.loadedAt() >= ttlNanos) {
+                    missing.add(event);
+                    continue;
+                }
+                result.put(event.getId(), entry.views());
+                if (now - entry.refreshAt() >= 0 && !entry.refreshing()) {
+                    entries.put(event.getId(), new Entry(entry.views(), entry.loadedAt(), entry.refreshAt(), true));
+                    refresh.add(event);
+                }
+            }
+        }
+        hits.addAndGet(result.size());
+        misses.addAndGet(missing.size());
+
+        if (!refresh.isEmpty()) {
+            refreshes.addAndGet(refresh.size());
+            refreshExecutor.execute(() -> refresh(refresh, loader));
+        }
+        if (!missing.isEmpty()) {
+            result.putAll(load(missing, loader));
+        }
+        return result;
+    }
+
+    /**
+     * Drops the cached views of the event after a hit, so that the next lookup loads them again. Views loaded before
+     * the hit can be visible are refreshed again once it is.
+     */
+    public void invalidate(Long eventId) {
+        synchronized (entries) {
+            entries.remove(eventId);
+            if (hitVisibilityNanos > 0) {
+                hitsVisibleAt.put(eventId, nanoClock.getAsLong() + hitVisibilityNanos);
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("ewm.views.cache.hits", hits, AtomicLong::get)
+                .description("Event view lookups served from the cache")
+                .register(registry);
+        FunctionCounter.builder("ewm.views.cache.misses", misses, AtomicLong::get)
+                .description("Event view lookups that had to be loaded")
+                .register(registry);
+        FunctionCounter.builder("ewm.views.cache.refreshes", refreshes, AtomicLong::get)
+                .description("Event views reloaded ahead of expiry")
+                .register(registry);
+        FunctionCounter.builder("ewm.views.cache.evictions", evictions, AtomicLong::get)
+                .description("Event views evicted to respect the size bound")
+                .register(registry);
+        Gauge.builder("ewm.views.cache.size", this, EventViewsCache::entryCount)
+                .description("Events in the view cache")
+                .register(registry);
+        loadTimer = Timer.builder("ewm.views.cache.load")
+                .description("Time to load a batch of event views from the stats server")
+                .register(registry);
+    }
+
+    private Map<Long, Long> load(List<Event> events, Function<List<Event>, Map<Long, Long>> loader) {
+        long started = nanoClock.getAsLong();
+        Map<Long, Long> loaded = loader.apply(events);
+        long finished = nanoClock.getAsLong();
+        if (loadTimer != null) {
+            loadTimer.record(finished - started, TimeUnit.NANOSECONDS);
+        }
+        Map<Long, Long> result = new HashMap<>();
+        synchronized (entries) {
+            for (Event event : events) {
+                long views = loaded.getOrDefault(event.getId(), 0L);
+                Entry current = entries.get(event.getId());
+                if (current == null || current.loadedAt() < started) {
+                    entries.put(event.getId(), new Entry(views, finished, refreshAt(event.getId(), started, finished),
+                                                         false));
+                }
+                result.put(event.getId(), views);
+            }
+        }
+        return result;
+    }
+
+    private void refresh(List<Event> events, Function<List<Event>, Map<Long, Long>> loader) {
+        try {
+            load(events, loader);
+        } catch (RuntimeException e) {
+            log.debug("[EventViewsCache] Refresh of {} events failed, keeping cached views: {}",
+                      events.size(), e.getMessage());
+            synchronized (entries) {
+                for (Event event : events) {
+                    entries.computeIfPresent(event.getId(), (id, entry) ->
+                            new Entry(entry.views(), entry.loadedAt(), entry.refreshAt(), false));
+                }
+            }
+        }
+    }
+
+    /**
+     * A load that started before the last hit of the event can be visible is refreshed as soon as it is.
+     */
+    private long refreshAt(Long eventId, long started, long finished) {
+        long refreshAt = finished + refreshAfterNanos;
+        Long visibleAt = hitsVisibleAt.get(eventId);
+        if (visibleAt == null) {
+            return refreshAt;
+        }
+        if (started - visibleAt >= 0) {
+            hitsVisibleAt.remove(eventId);
+            return refreshAt;
+        }
+        return refreshAt - visibleAt < 0 ? refreshAt : visibleAt;
+    }
+
+    private int entryCount() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private record Entry(long views, long loadedAt, long refreshAt, boolean refreshing) {
+    }
+}
@@ -0,0 +1,42 @@
+package ru.practicum.service.views;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * View counts last received from the stats server, served when it cannot be reached. Holds the most recently used
+ * {@code stats-server.fallback.max-events} events.
+ */
+@Component
+public class LastKnownViews {
+    private final Map<Long, Long> views;
+
+    public LastKnownViews(@Value("${stats-server.fallback.max-events:100000}") int maxEvents) {
+        this.views = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+                return size() > maxEvents;
+            }
+        };
+    }
+
+    public synchronized void remember(Map<Long, Long> fresh) {
+        views.putAll(fresh);
+    }
+
+    /**
+     * Last known views of the events; events never seen before get 0.
+     */
+    public synchronized Map<Long, Long> get(Collection<Long> eventIds) {
+        Map<Long, Long> result = new HashMap<>();
+        for (Long eventId : eventIds) {
+            result.put(eventId, views.getOrDefault(eventId, 0L));
+        }
+        return result;
+    }
+}
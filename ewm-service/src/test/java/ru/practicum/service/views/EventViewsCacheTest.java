@@ -0,0 +1,211 @@
+package ru.practicum.service.views;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+import ru.practicum.model.Event;
+import ru.practicum.stats.CircuitBreakerProperties;
+import ru.practicum.stats.EndpointStatsResponse;
+import ru.practicum.stats.HitBufferProperties;
+import ru.practicum.stats.HttpTransportProperties;
+import ru.practicum.stats.LookupBatchProperties;
+import ru.practicum.stats.StatsClient;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Drives the cache with a manual clock and a queue of background refreshes, loading views from a stubbed
+ * stats client.
+ */
+class EventViewsCacheTest {
+    private static final Duration TTL = Duration.ofMinutes(1);
+    private static final Duration REFRESH_AFTER = Duration.ofSeconds(20);
+    private static final Duration HIT_DELAY = Duration.ofSeconds(2);
+    private static final Event FIRST = event(1L);
+    private static final Event SECOND = event(2L);
+    private static final Event THIRD = event(3L);
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+    private final Queue<Runnable> refreshes = new ArrayDeque<>();
+    private StubStatsClient statsClient;
+    private EventViewsCache cache;
+
+    @BeforeEach
+    void setUp() {
+        statsClient = new StubStatsClient();
+        cache = new EventViewsCache(refreshes::add, true, 100, TTL, REFRESH_AFTER, HIT_DELAY, clock::get);
+        statsClient.views.put(1L, 10L);
+        statsClient.views.put(2L, 20L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        statsClient.destroy();
+    }
+
+    @Test
+    void loadsTheMissesOfOneLookupWithOneStatsCall() {
+        assertThat(getAll(FIRST, SECOND, THIRD)).containsEntry(1L, 10L).containsEntry(2L, 20L)
+                .containsEntry(3L, 0L);
+        assertThat(statsClient.lookups).containsExactly(List.of("/events/1", "/events/2", "/events/3"));
+
+        assertThat(getAll(FIRST, SECOND, THIRD)).containsEntry(1L, 10L);
+        assertThat(statsClient.lookups).hasSize(1);
+    }
+
+    @Test
+    void refreshesAheadInTheBackgroundWhileServingTheCachedViews() {
+        getAll(FIRST);
+        statsClient.views.put(1L, 11L);
+        advance(REFRESH_AFTER);
+
+        assertThat(getAll(FIRST)).containsEntry(1L, 10L);
+        assertThat(getAll(FIRST)).containsEntry(1L, 10L);
+        assertThat(refreshes).hasSize(1);
+
+        runRefreshes();
+        assertThat(getAll(FIRST)).containsEntry(1L, 11L);
+        assertThat(statsClient.lookups).hasSize(2);
+    }
+
+    @Test
+    void loadsExpiredViewsInTheForeground() {
+        getAll(FIRST);
+        statsClient.views.put(1L, 11L);
+        advance(TTL);
+
+        assertThat(getAll(FIRST)).containsEntry(1L, 11L);
+        assertThat(refreshes).isEmpty();
+    }
+
+    @Test
+    void keepsServingCachedViewsWhileTheStatsServerFails() {
+        getAll(FIRST);
+        statsClient.failure = new ResourceAccessException("stats server is down");
+        advance(REFRESH_AFTER);
+
+        assertThat(getAll(FIRST)).containsEntry(1L, 10L);
+        runRefreshes();
+        assertThat(getAll(FIRST)).containsEntry(1L, 10L);
+        assertThat(refreshes).as("the failed refresh is retried on the next lookup").hasSize(1);
+
+        statsClient.failure = null;
+        statsClient.views.put(1L, 12L);
+        runRefreshes();
+        assertThat(getAll(FIRST)).containsEntry(1L, 12L);
+    }
+
+    @Test
+    void leavesAFailedForegroundLoadToTheCaller() {
+        statsClient.failure = new ResourceAccessException("stats server is down");
+
+        assertThatThrownBy(() -> getAll(FIRST)).isInstanceOf(ResourceAccessException.class);
+
+        statsClient.failure = null;
+        assertThat(getAll(FIRST)).containsEntry(1L, 10L);
+    }
+
+    @Test
+    void reloadsTheViewsOfAnEventAfterItsHit() {
+        getAll(FIRST, SECOND);
+        statsClient.views.put(1L, 11L);
+
+        cache.invalidate(1L);
+
+        assertThat(getAll(FIRST, SECOND)).containsEntry(1L, 11L).containsEntry(2L, 20L);
+        assertThat(statsClient.lookups).containsExactly(List.of("/events/1", "/events/2"), List.of("/events/1"));
+    }
+
+    @Test
+    void refreshesViewsLoadedBeforeTheHitCouldBeCounted() {
+        getAll(FIRST);
+
+        cache.invalidate(1L);
+        assertThat(getAll(FIRST)).containsEntry(1L, 10L);
+        statsClient.views.put(1L, 11L);
+
+        advance(HIT_DELAY.dividedBy(2));
+        assertThat(getAll(FIRST)).containsEntry(1L, 10L);
+        assertThat(refreshes).isEmpty();
+
+        advance(HIT_DELAY);
+        assertThat(getAll(FIRST)).containsEntry(1L, 10L);
+        runRefreshes();
+        assertThat(getAll(FIRST)).containsEntry(1L, 11L);
+
+        advance(HIT_DELAY);
+        getAll(FIRST);
+        assertThat(refreshes).as("the refreshed views already include the hit").isEmpty();
+    }
+
+    private Map<Long, Long> getAll(Event... events) {
+        return cache.getAll(List.of(events), this::load);
+    }
+
+    private Map<Long, Long> load(List<Event> events) {
+        List<String> uris = events.stream().map(event -> "/events/" + event.getId()).toList();
+        return statsClient.findStats(LocalDateTime.now().minusYears(1), LocalDateTime.now(), uris, true).stream()
+                .collect(Collectors.toMap(stat -> eventId(stat.getUri()), EndpointStatsResponse::getHits));
+    }
+
+    private void advance(Duration duration) {
+        clock.addAndGet(duration.toNanos());
+    }
+
+    private void runRefreshes() {
+        while (!refreshes.isEmpty()) {
+            refreshes.poll().run();
+        }
+    }
+
+    private static long eventId(String uri) {
+        return Long.parseLong(uri.substring("/events/".length()));
+    }
+
+    private static Event event(Long id) {
+        Event event = new Event();
+        event.setId(id);
+        return event;
+    }
+
+    private static class StubStatsClient extends StatsClient {
+        private final Map<Long, Long> views = new HashMap<>();
+        private final List<List<String>> lookups = new ArrayList<>();
+        private RuntimeException failure;
+
+        StubStatsClient() {
+            super("http://localhost", new RestTemplate(), Jackson2ObjectMapperBuilder.json().build(),
+                  new HitBufferProperties(), new StandardEnvironment(), new HttpTransportProperties(),
+                  new CircuitBreakerProperties(), new LookupBatchProperties());
+        }
+
+        @Override
+        public List<EndpointStatsResponse> findStats(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                                     Boolean unique) {
+            lookups.add(uris);
+            if (failure != null) {
+                throw failure;
+            }
+            return uris.stream()
+                    .filter(uri -> views.containsKey(eventId(uri)))
+                    .map(uri -> new EndpointStatsResponse("ewm-main-service", uri, views.get(eventId(uri))))
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+#!/usr/bin/env bash
+# Runs the GET /events load twice, first against services on platform threads and then on virtual threads,
+# and writes one report per mode. Extra arguments go to the load generator, e.g. --load.rate=300.
+#
+# By default the services are restarted with docker compose. Set RESTART_SERVICES to a command that restarts
+# them some other way; it sees VIRTUAL_THREADS=true or false in its environment.
+set -euo pipefail
+cd "$(dirname "$0")/.."
+
+JAR=load-generator/target/load-generator-0.0.1-SNAPSHOT.jar
+OUT=${OUT:-load-generator/target}
+
+if [ ! -f "$JAR" ]; then
+  mvn -B -q package -pl load-generator -am -DskipTests
+fi
+
+restart() {
+  if [ -n "${RESTART_SERVICES:-}" ]; then
+    bash -c "$RESTART_SERVICES"
+  else
+    docker compose up -d --build --force-recreate stats-server ewm-service
+  fi
+}
+
+wait_for() {
+  for _ in $(seq 1 120); do
+    if curl -fs "$1" > /dev/null; then
+      return 0
+    fi
+    sleep 1
+  done
+  echo "$1 is not up after two minutes" >&2
+  exit 1
+}
+
+for mode in platform virtual; do
+  if [ "$mode" = virtual ]; then
+    export VIRTUAL_THREADS=true
+  else
+    export VIRTUAL_THREADS=false
+  fi
+  echo "== GET /events on $mode threads"
+  restart
+  wait_for http://localhost:9090/actuator/health
+  wait_for http://localhost:8080/actuator/health
+  java -jar "$JAR" --load.only=public-events --load.report-file="$OUT/events-$mode.json" "$@"
+done
+
+echo "Reports: $OUT/events-platform.json and $OUT/events-virtual.json"
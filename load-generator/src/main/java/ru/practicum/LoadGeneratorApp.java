@@ -0,0 +1,19 @@
+package ru.practicum;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import ru.practicum.load.LoadProperties;
+
+@EnableConfigurationProperties(LoadProperties.class)
+@SpringBootApplication(exclude = {DataSourceAutoConfiguration.class, HibernateJpaAutoConfiguration.class})
+public class LoadGeneratorApp {
+    public static void main(String[] args) {
+        new SpringApplicationBuilder(LoadGeneratorApp.class)
+                .web(WebApplicationType.NONE)
+                .run(args);
+    }
+}
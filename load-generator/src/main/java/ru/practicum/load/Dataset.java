@@ -0,0 +1,16 @@
+package ru.practicum.load;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ids of the entities created by {@link DatasetSeeder}, which the traffic picks its requests from.
+ *
+ * @param initiators initiator of every published event
+ */
+public record Dataset(List<Long> categoryIds,
+                      List<Long> userIds,
+                      List<Long> publishedEventIds,
+                      Map<Long, Long> initiators,
+                      List<Long> commentIds) {
+}
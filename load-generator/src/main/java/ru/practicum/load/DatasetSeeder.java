@@ -0,0 +1,174 @@
+package ru.practicum.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.EndpointHitRequest;
+
+import java.net.http.HttpRequest;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+/**
+ * Creates the synthetic dataset of a run through the public APIs of both services, so that it goes through
+ * the same validation and side effects as real data. Names and emails carry a run id, so that repeated runs
+ * against the same databases do not collide. The content of every entity only depends on the seed and its
+ * index, while the ids are whatever the services assign.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DatasetSeeder {
+    private static final int HIT_BATCH = 1_000;
+    private static final int CONFLICT = 409;
+
+    private final LoadProperties properties;
+    private final ServiceRequests requests;
+
+    public Dataset seed() {
+        LoadProperties.Dataset dataset = properties.getDataset();
+        String runId = Long.toString(System.currentTimeMillis(), 36);
+        long started = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(dataset.getConcurrency());
+        try {
+            List<Long> categoryIds = create(executor, dataset.getCategories(), i -> id(requests.postMain(
+                    "/admin/categories", Map.of("name", "Category " + i + " " + runId))));
+            List<Long> userIds = create(executor, dataset.getUsers(), i -> id(requests.postMain(
+                    "/admin/users", Map.of("name", "User " + i, "email", "user" + i + "." + runId + "@load.test"))));
+            log.info("[DatasetSeeder] Created {} categories and {} users", categoryIds.size(), userIds.size());
+
+            Map<Long, Long> initiators = new ConcurrentHashMap<>();
+            List<Long> publishedEventIds = create(executor, dataset.getEvents(), i -> {
+                Random random = random(3, i);
+                long initiator = pick(userIds, random);
+                long eventId = id(requests.postMain("/users/" + initiator + "/events",
+                                                    newEvent(i, random, categoryIds)));
+                if (random.nextDouble() >= dataset.getPublishedShare()) {
+                    return null;
+                }
+                requests.execute(requests.patchMain("/admin/events/" + eventId,
+                                                    Map.of("stateAction", "PUBLISH_EVENT")));
+                initiators.put(eventId, initiator);
+                return eventId;
+            });
+            log.info("[DatasetSeeder] Created {} events, {} of them published", dataset.getEvents(),
+                     publishedEventIds.size());
+            if (publishedEventIds.isEmpty()) {
+                throw new IllegalStateException("The dataset has no published events, raise load.dataset.events "
+                                                        + "or load.dataset.published-share");
+            }
+
+            List<Long> requestIds = create(executor, dataset.getRequests(), i -> {
+                Random random = random(4, i);
+                long eventId = pick(publishedEventIds, random);
+                long userId = pick(userIds, random);
+                if (userId == initiators.get(eventId)) {
+                    return null;
+                }
+                JsonNode request = requests.execute(requests.postMain(
+                        "/users/" + userId + "/requests?eventId=" + eventId, Map.of()), CONFLICT);
+                return request == null ? null : request.get("id").asLong();
+            });
+            List<Long> commentIds = create(executor, dataset.getComments(), i -> {
+                Random random = random(5, i);
+                long eventId = pick(publishedEventIds, random);
+                long userId = pick(userIds, random);
+                return id(requests.postMain("/users/" + userId + "/events/" + eventId + "/comments",
+                                            Map.of("text", "Comment " + i + " on event " + eventId)));
+            });
+            log.info("[DatasetSeeder] Created {} participation requests and {} comments", requestIds.size(),
+                     commentIds.size());
+
+            int batches = (dataset.getHits() + HIT_BATCH - 1) / HIT_BATCH;
+            create(executor, batches, batch -> {
+                requests.execute(requests.postStats("/hits", hits(batch, publishedEventIds)));
+                return null;
+            });
+            log.info("[DatasetSeeder] Sent {} hits, seeding took {} s", dataset.getHits(),
+                     (System.nanoTime() - started) / 1_000_000_000);
+
+            return new Dataset(categoryIds, userIds, publishedEventIds, Map.copyOf(initiators), commentIds);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Map<String, Object> newEvent(int i, Random random, List<Long> categoryIds) {
+        return Map.of(
+                "title", "Event " + i,
+                "annotation", "Annotation of synthetic event number " + i,
+                "description", "Description of synthetic event number " + i + " created by the load generator",
+                "category", pick(categoryIds, random),
+                "eventDate", LocalDateTime.now().plusDays(1 + random.nextInt(90)).format(ServiceRequests.FORMATTER),
+                "location", Map.of("lat", 55 + random.nextFloat(), "lon", 37 + random.nextFloat()),
+                "paid", random.nextBoolean(),
+                "participantLimit", random.nextInt(4) == 0 ? 0 : 10 + random.nextInt(190),
+                "requestModeration", random.nextBoolean());
+    }
+
+    private List<EndpointHitRequest> hits(int batch, List<Long> eventIds) {
+        LoadProperties.Dataset dataset = properties.getDataset();
+        Random random = random(6, batch);
+        LocalDateTime now = LocalDateTime.now();
+        int size = Math.min(HIT_BATCH, dataset.getHits() - batch * HIT_BATCH);
+        List<EndpointHitRequest> hits = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int visitor = random.nextInt(dataset.getVisitors());
+            hits.add(new EndpointHitRequest("main-server", "/events/" + pick(eventIds, random),
+                                            "10." + (visitor >>> 16) + "." + (visitor >>> 8 & 0xFF) + "."
+                                                    + (visitor & 0xFF),
+                                            now.minusSeconds(random.nextInt(dataset.getHitDays() * 86_400))));
+        }
+        return hits;
+    }
+
+    /**
+     * Creates {@code count} entities in parallel and returns the ids of the created ones, in index order.
+     */
+    private List<Long> create(ExecutorService executor, int count, IntFunction<Long> creator) {
+        List<Future<Long>> futures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int index = i;
+            futures.add(executor.submit(() -> creator.apply(index)));
+        }
+        List<Long> ids = new ArrayList<>(count);
+        try {
+            for (Future<Long> future : futures) {
+                Long id = future.get();
+                if (id != null) {
+                    ids.add(id);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while seeding", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        }
+        return Collections.unmodifiableList(ids);
+    }
+
+    private Long id(HttpRequest request) {
+        return requests.execute(request).get("id").asLong();
+    }
+
+    private Random random(int stream, int index) {
+        return new Random(properties.getSeed() * 31 + stream * 1_000_003L + index);
+    }
+
+    private static long pick(List<Long> ids, Random random) {
+        return ids.get(random.nextInt(ids.size()));
+    }
+}
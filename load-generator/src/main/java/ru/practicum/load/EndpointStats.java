@@ -0,0 +1,68 @@
+package ru.practicum.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Outcomes and latencies of the measured requests of one scenario. Latencies are recorded in microseconds from
+ * the moment the request was due, not from when it was sent, so a stalled service is charged for the requests
+ * queued behind it (coordinated omission).
+ */
+public class EndpointStats {
+    private final Histogram latencies = new ConcurrentHistogram(3);
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder clientErrors = new LongAdder();
+    private final LongAdder serverErrors = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public void recordResponse(int status, long latencyNanos) {
+        latencies.recordValue(Math.max(1, latencyNanos / 1_000));
+        if (status >= 500) {
+            serverErrors.increment();
+        } else if (status >= 400) {
+            clientErrors.increment();
+        } else {
+            successes.increment();
+        }
+    }
+
+    public void recordFailure(long latencyNanos) {
+        latencies.recordValue(Math.max(1, latencyNanos / 1_000));
+        failures.increment();
+    }
+
+    public void recordDropped() {
+        dropped.increment();
+    }
+
+    public Histogram latencies() {
+        return latencies;
+    }
+
+    public long completed() {
+        return successes.sum() + clientErrors.sum() + serverErrors.sum() + failures.sum();
+    }
+
+    public long successes() {
+        return successes.sum();
+    }
+
+    public long clientErrors() {
+        return clientErrors.sum();
+    }
+
+    public long serverErrors() {
+        return serverErrors.sum();
+    }
+
+    public long failures() {
+        return failures.sum();
+    }
+
+    public long dropped() {
+        return dropped.sum();
+    }
+}
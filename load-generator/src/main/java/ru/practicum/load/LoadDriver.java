@@ -0,0 +1,99 @@
+package ru.practicum.load;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model traffic: requests are due at a fixed rate from the start of the run and are sent when due,
+ * whether or not earlier requests have completed. Requests due during the warmup are sent but not measured.
+ * When {@code max-in-flight} requests are outstanding, a due request is dropped and counted instead of being
+ * delayed, so the schedule never slows down to what the services can take.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LoadDriver {
+    private final LoadProperties properties;
+    private final ServiceRequests requests;
+
+    public LoadResult run(Dataset dataset) {
+        Map<Scenario, Integer> weights = new EnumMap<>(properties.getMix());
+        if (!properties.getOnly().isEmpty()) {
+            weights.keySet().retainAll(properties.getOnly());
+            properties.getOnly().forEach(scenario -> weights.putIfAbsent(scenario, 1));
+        }
+        TrafficMix mix = new TrafficMix(requests, dataset, weights, properties.getSeed());
+        Map<Scenario, EndpointStats> stats = new EnumMap<>(Scenario.class);
+        weights.keySet().forEach(scenario -> stats.put(scenario, new EndpointStats()));
+        Semaphore inFlight = new Semaphore(properties.getMaxInFlight());
+
+        long interval = Math.max(1, Math.round(TimeUnit.SECONDS.toNanos(1) / properties.getRate()));
+        long start = System.nanoTime();
+        long measureFrom = start + properties.getWarmup().toNanos();
+        long end = measureFrom + properties.getDuration().toNanos();
+        long maxLag = 0;
+        log.info("[LoadDriver] Sending {} requests/s for {} after a warmup of {}", properties.getRate(),
+                 properties.getDuration(), properties.getWarmup());
+
+        for (long due = start; due < end; due += interval) {
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            } else {
+                maxLag = Math.max(maxLag, -wait);
+            }
+            Scenario scenario = mix.next();
+            HttpRequest request = mix.request(scenario);
+            boolean measured = due >= measureFrom;
+            EndpointStats endpoint = stats.get(scenario);
+            if (!inFlight.tryAcquire()) {
+                if (measured) {
+                    endpoint.recordDropped();
+                }
+                continue;
+            }
+            long dueAt = due;
+            requests.httpClient().sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        long latency = System.nanoTime() - dueAt;
+                        try {
+                            if (measured && error != null) {
+                                endpoint.recordFailure(latency);
+                            } else if (measured) {
+                                endpoint.recordResponse(response.statusCode(), latency);
+                            }
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+        }
+
+        awaitCompletion(inFlight);
+        if (maxLag > TimeUnit.MILLISECONDS.toNanos(100)) {
+            log.warn("[LoadDriver] The generator fell up to {} ms behind its schedule, the rate may be too high "
+                             + "for this machine", TimeUnit.NANOSECONDS.toMillis(maxLag));
+        }
+        return new LoadResult(properties.getRate(), properties.getDuration(), stats);
+    }
+
+    private void awaitCompletion(Semaphore inFlight) {
+        try {
+            long timeout = properties.getTimeout().toMillis() + 1_000;
+            if (!inFlight.tryAcquire(properties.getMaxInFlight(), timeout, TimeUnit.MILLISECONDS)) {
+                log.warn("[LoadDriver] {} requests were still in flight at the end of the run",
+                         properties.getMaxInFlight() - inFlight.availablePermits());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
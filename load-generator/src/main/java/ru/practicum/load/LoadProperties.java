@@ -0,0 +1,54 @@
+package ru.practicum.load;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Target services, seeded dataset and traffic of a load run. Requests are sent at a fixed {@code rate} per second
+ * regardless of how fast the services answer, and the scenario of every request is drawn from {@code mix}
+ * by weight.
+ */
+@Getter
+@Setter
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@ConfigurationProperties(prefix = "load")
+public class LoadProperties {
+    String mainUrl = "http://localhost:8080";
+    String statsUrl = "http://localhost:9090";
+    long seed = 42;
+    double rate = 100;
+    Duration warmup = Duration.ofSeconds(10);
+    Duration duration = Duration.ofSeconds(60);
+    Duration timeout = Duration.ofSeconds(10);
+    int maxInFlight = 1_000;
+    Map<Scenario, Integer> mix = new EnumMap<>(Scenario.class);
+    List<Scenario> only = new ArrayList<>();
+    Path reportFile = Path.of("load-report.json");
+    Dataset dataset = new Dataset();
+
+    @Getter
+    @Setter
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Dataset {
+        int categories = 20;
+        int users = 200;
+        int events = 1_000;
+        double publishedShare = 0.8;
+        int requests = 2_000;
+        int comments = 2_000;
+        int hits = 100_000;
+        int hitDays = 30;
+        int visitors = 10_000;
+        int concurrency = 16;
+    }
+}
@@ -0,0 +1,100 @@
+package ru.practicum.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Throughput, outcomes and latency percentiles per endpoint and over all requests, logged as a table and
+ * written as JSON to {@code load.report-file}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LoadReport {
+    private static final String ROW = "%-40s %9s %9s %7s %7s %7s %7s %9s %9s %9s %9s %9s";
+
+    private final LoadProperties properties;
+    private final ObjectMapper objectMapper;
+
+    public void report(LoadResult result) {
+        List<Row> rows = new ArrayList<>();
+        Histogram all = new Histogram(3);
+        long[] totals = new long[5];
+        for (Map.Entry<Scenario, EndpointStats> entry : result.stats().entrySet()) {
+            EndpointStats stats = entry.getValue();
+            rows.add(row(entry.getKey().endpoint(), stats.latencies(), stats.successes(), stats.clientErrors(),
+                         stats.serverErrors(), stats.failures(), stats.dropped(), result));
+            all.add(stats.latencies());
+            totals[0] += stats.successes();
+            totals[1] += stats.clientErrors();
+            totals[2] += stats.serverErrors();
+            totals[3] += stats.failures();
+            totals[4] += stats.dropped();
+        }
+        rows.add(row("ALL", all, totals[0], totals[1], totals[2], totals[3], totals[4], result));
+
+        StringBuilder table = new StringBuilder(String.format(ROW, "endpoint", "requests", "req/s", "2xx", "4xx",
+                                                              "5xx/err", "dropped", "p50 ms", "p90 ms", "p99 ms",
+                                                              "p99.9 ms", "max ms"));
+        for (Row row : rows) {
+            table.append(System.lineSeparator()).append(String.format(
+                    ROW, row.endpoint(), row.requests(), String.format("%.1f", row.throughput()), row.successes(),
+                    row.clientErrors(), row.serverErrors() + row.failures(), row.dropped(), ms(row.p50Micros()),
+                    ms(row.p90Micros()), ms(row.p99Micros()), ms(row.p999Micros()), ms(row.maxMicros())));
+        }
+        log.info("[LoadReport] {} requests/s for {}:{}{}", result.rate(), result.duration(),
+                 System.lineSeparator(), table);
+        write(new Report(result.rate(), result.duration().toSeconds(), rows));
+    }
+
+    private void write(Report report) {
+        Path file = properties.getReportFile();
+        if (file == null) {
+            return;
+        }
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            objectMapper.writer(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), report);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write the report to " + file, e);
+        }
+        log.info("[LoadReport] Report written to {}", file.toAbsolutePath());
+    }
+
+    private static Row row(String endpoint, Histogram latencies, long successes, long clientErrors,
+                           long serverErrors, long failures, long dropped, LoadResult result) {
+        long requests = successes + clientErrors + serverErrors + failures;
+        return new Row(endpoint, requests, requests / (double) result.duration().toMillis() * 1_000, successes,
+                       clientErrors, serverErrors, failures, dropped,
+                       latencies.getValueAtPercentile(50), latencies.getValueAtPercentile(90),
+                       latencies.getValueAtPercentile(99), latencies.getValueAtPercentile(99.9),
+                       latencies.getMaxValue());
+    }
+
+    private static String ms(long micros) {
+        return String.format("%.2f", micros / 1_000.0);
+    }
+
+    record Row(String endpoint, long requests, double throughput, long successes, long clientErrors,
+               long serverErrors, long failures, long dropped, long p50Micros, long p90Micros, long p99Micros,
+               long p999Micros, long maxMicros) {
+    }
+
+    record Report(double rate, long durationSeconds, List<Row> endpoints) {
+    }
+}
@@ -0,0 +1,7 @@
+package ru.practicum.load;
+
+import java.time.Duration;
+import java.util.Map;
+
+public record LoadResult(double rate, Duration duration, Map<Scenario, EndpointStats> stats) {
+}
@@ -0,0 +1,24 @@
+package ru.practicum.load;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Seeds the dataset, drives the traffic and reports the results once the application has started.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LoadRunner implements CommandLineRunner {
+    private final DatasetSeeder datasetSeeder;
+    private final LoadDriver loadDriver;
+    private final LoadReport loadReport;
+
+    @Override
+    public void run(String... args) {
+        Dataset dataset = datasetSeeder.seed();
+        loadReport.report(loadDriver.run(dataset));
+    }
+}
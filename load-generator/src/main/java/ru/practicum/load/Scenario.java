@@ -0,0 +1,31 @@
+package ru.practicum.load;
+
+/**
+ * Requests of the traffic mix, named after the endpoint they call.
+ */
+public enum Scenario {
+    PUBLIC_EVENTS("GET /events"),
+    PUBLIC_EVENT("GET /events/{id}"),
+    PUBLIC_CATEGORIES("GET /categories"),
+    PUBLIC_COMPILATIONS("GET /compilations"),
+    PUBLIC_COMMENT("GET /comments/{id}"),
+    PRIVATE_EVENTS("GET /users/{id}/events"),
+    PRIVATE_REQUESTS("GET /users/{id}/requests"),
+    PRIVATE_ADD_REQUEST("POST /users/{id}/requests"),
+    PRIVATE_ADD_COMMENT("POST /users/{id}/events/{id}/comments"),
+    ADMIN_EVENTS("GET /admin/events"),
+    ADMIN_USERS("GET /admin/users"),
+    ADMIN_COMMENTS("GET /admin/comments"),
+    STATS("GET /stats"),
+    STATS_HIT("POST /hit");
+
+    private final String endpoint;
+
+    Scenario(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public String endpoint() {
+        return endpoint;
+    }
+}
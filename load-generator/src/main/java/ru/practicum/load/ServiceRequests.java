@@ -0,0 +1,117 @@
+package ru.practicum.load;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Builds the requests to both services and sends the ones of the seeding phase.
+ */
+@Component
+public class ServiceRequests {
+    public static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final LoadProperties properties;
+    private final ObjectMapper objectMapper;
+    private final HttpClient httpClient;
+
+    public ServiceRequests(LoadProperties properties, ObjectMapper objectMapper) {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(properties.getTimeout())
+                .build();
+    }
+
+    public HttpClient httpClient() {
+        return httpClient;
+    }
+
+    public HttpRequest main(String pathAndQuery) {
+        return get(properties.getMainUrl() + pathAndQuery);
+    }
+
+    public HttpRequest stats(String pathAndQuery) {
+        return get(properties.getStatsUrl() + pathAndQuery);
+    }
+
+    public HttpRequest postMain(String path, Object body) {
+        return send("POST", properties.getMainUrl() + path, body);
+    }
+
+    public HttpRequest patchMain(String path, Object body) {
+        return send("PATCH", properties.getMainUrl() + path, body);
+    }
+
+    public HttpRequest postStats(String path, Object body) {
+        return send("POST", properties.getStatsUrl() + path, body);
+    }
+
+    /**
+     * Sends a request of the seeding phase and returns the response body, or null when the service answered with
+     * one of the {@code tolerated} statuses.
+     */
+    public JsonNode execute(HttpRequest request, int... tolerated) {
+        HttpResponse<String> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not call " + request.uri(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while calling " + request.uri(), e);
+        }
+        for (int status : tolerated) {
+            if (response.statusCode() == status) {
+                return null;
+            }
+        }
+        if (response.statusCode() / 100 != 2) {
+            throw new IllegalStateException(request.method() + " " + request.uri() + " answered "
+                                                    + response.statusCode() + ": " + response.body());
+        }
+        try {
+            return response.body().isEmpty() ? null : objectMapper.readTree(response.body());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unexpected response of " + request.uri() + ": " + response.body(), e);
+        }
+    }
+
+    public static String encode(LocalDateTime timestamp) {
+        return URLEncoder.encode(timestamp.format(FORMATTER), StandardCharsets.UTF_8);
+    }
+
+    private HttpRequest get(String uri) {
+        return HttpRequest.newBuilder(URI.create(uri))
+                .timeout(properties.getTimeout())
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+    }
+
+    private HttpRequest send(String method, String uri, Object body) {
+        try {
+            return HttpRequest.newBuilder(URI.create(uri))
+                    .timeout(properties.getTimeout())
+                    .header("Content-Type", "application/json")
+                    .header("Accept", "application/json")
+                    .method(method, HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                    .build();
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Could not serialize request body " + body, e);
+        }
+    }
+}
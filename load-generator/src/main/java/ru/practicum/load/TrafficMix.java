@@ -0,0 +1,121 @@
+package ru.practicum.load;
+
+import java.net.http.HttpRequest;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Draws the scenario of every request by weight and builds its request from random ids of the dataset.
+ * Reads dominate, as they do for an event catalogue: searches and event pages of the public API, followed by
+ * the personal pages of users, admin listings and stats lookups, with a small share of writes.
+ */
+public class TrafficMix {
+    private static final String[] WORDS = {"event", "synthetic", "number", "annotation", "description"};
+
+    private final ServiceRequests requests;
+    private final Dataset dataset;
+    private final Random random;
+    private final Scenario[] scenarios;
+    private final int[] cumulativeWeights;
+
+    public TrafficMix(ServiceRequests requests, Dataset dataset, Map<Scenario, Integer> weights, long seed) {
+        this.requests = requests;
+        this.dataset = dataset;
+        this.random = new Random(seed);
+        List<Scenario> selected = new ArrayList<>();
+        List<Integer> cumulative = new ArrayList<>();
+        int total = 0;
+        for (Map.Entry<Scenario, Integer> weight : weights.entrySet()) {
+            if (weight.getValue() > 0) {
+                total += weight.getValue();
+                selected.add(weight.getKey());
+                cumulative.add(total);
+            }
+        }
+        if (selected.isEmpty()) {
+            throw new IllegalArgumentException("The traffic mix has no scenario with a positive weight");
+        }
+        this.scenarios = selected.toArray(Scenario[]::new);
+        this.cumulativeWeights = cumulative.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public Scenario next() {
+        int point = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (point < cumulativeWeights[i]) {
+                return scenarios[i];
+            }
+        }
+        throw new IllegalStateException("Weight " + point + " is out of range");
+    }
+
+    public HttpRequest request(Scenario scenario) {
+        return switch (scenario) {
+            case PUBLIC_EVENTS -> requests.main("/events?" + publicSearch());
+            case PUBLIC_EVENT -> requests.main("/events/" + pick(dataset.publishedEventIds()));
+            case PUBLIC_CATEGORIES -> requests.main("/categories?from=" + random.nextInt(2) * 10 + "&size=10");
+            case PUBLIC_COMPILATIONS -> requests.main("/compilations?pinned=" + random.nextBoolean());
+            case PUBLIC_COMMENT -> requests.main("/comments/" + pick(dataset.commentIds()));
+            case PRIVATE_EVENTS -> requests.main("/users/" + pick(dataset.userIds()) + "/events?from=0&size=10");
+            case PRIVATE_REQUESTS -> requests.main("/users/" + pick(dataset.userIds()) + "/requests");
+            case PRIVATE_ADD_REQUEST -> requests.postMain("/users/" + pick(dataset.userIds()) + "/requests?eventId="
+                                                                  + pick(dataset.publishedEventIds()), Map.of());
+            case PRIVATE_ADD_COMMENT -> {
+                long eventId = pick(dataset.publishedEventIds());
+                yield requests.postMain("/users/" + pick(dataset.userIds()) + "/events/" + eventId + "/comments",
+                                        Map.of("text", "Load comment on event " + eventId));
+            }
+            case ADMIN_EVENTS -> requests.main("/admin/events?states=PUBLISHED&categories="
+                                                       + pick(dataset.categoryIds()) + "&from=0&size=20");
+            case ADMIN_USERS -> requests.main("/admin/users?from=" + random.nextInt(10) * 10 + "&size=10");
+            case ADMIN_COMMENTS -> requests.main("/admin/comments?userIds=" + pick(dataset.userIds())
+                                                         + "&from=0&size=10");
+            case STATS -> requests.stats("/stats?start=" + ServiceRequests.encode(LocalDateTime.now().minusDays(7))
+                                                 + "&end=" + ServiceRequests.encode(LocalDateTime.now())
+                                                 + eventUris(10) + "&unique=" + random.nextBoolean());
+            case STATS_HIT -> requests.postStats("/hit", Map.of(
+                    "app", "main-server",
+                    "uri", "/events/" + pick(dataset.publishedEventIds()),
+                    "ip", "10.1." + random.nextInt(256) + "." + random.nextInt(256),
+                    "timestamp", LocalDateTime.now().format(ServiceRequests.FORMATTER)));
+        };
+    }
+
+    /**
+     * A page of the public search, filtered by a word, categories or payment in most cases and sorted by date
+     * or views.
+     */
+    private String publicSearch() {
+        StringBuilder query = new StringBuilder("from=").append(random.nextInt(3) * 10).append("&size=10");
+        if (random.nextInt(3) == 0) {
+            query.append("&text=").append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        if (random.nextBoolean()) {
+            query.append("&categories=").append(pick(dataset.categoryIds()))
+                    .append("&categories=").append(pick(dataset.categoryIds()));
+        }
+        if (random.nextInt(4) == 0) {
+            query.append("&paid=").append(random.nextBoolean());
+        }
+        if (random.nextInt(5) == 0) {
+            query.append("&onlyAvailable=true");
+        }
+        query.append("&sortOpt=").append(random.nextBoolean() ? "EVENT_DATE" : "VIEWS");
+        return query.toString();
+    }
+
+    private String eventUris(int count) {
+        StringBuilder uris = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            uris.append("&uris=/events/").append(pick(dataset.publishedEventIds()));
+        }
+        return uris.toString();
+    }
+
+    private long pick(List<Long> ids) {
+        return ids.isEmpty() ? 1 : ids.get(random.nextInt(ids.size()));
+    }
+}
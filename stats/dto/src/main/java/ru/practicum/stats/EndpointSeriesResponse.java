@@ -0,0 +1,19 @@
+package ru.practicum.stats;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class EndpointSeriesResponse {
+    String app;
+    String uri;
+    List<Long> hits;
+}
@@ -0,0 +1,26 @@
+package ru.practicum.stats;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Hits per bucket of {@code interval}: {@code hits[i]} of every series counts the bucket starting at
+ * {@code buckets[i]}, the first and last bucket only within the requested range.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class StatsSeriesResponse {
+    String interval;
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    List<LocalDateTime> buckets;
+    List<EndpointSeriesResponse> series;
+}
@@ -0,0 +1,65 @@
+package ru.practicum.stats.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * One timer per operation and outcome, {@code success} or {@code error}, under a common name. The timers of every
+ * operation are registered when the registry binds them, so recording a call only updates existing meters and
+ * allocates nothing; calls recorded before that are dropped.
+ */
+public final class OperationTimers<O extends Enum<O>> implements MeterBinder {
+    private final Class<O> operations;
+    private final String name;
+    private final String description;
+    private final Function<O, String> tag;
+    private volatile Meters meters;
+
+    public OperationTimers(Class<O> operations, String name, String description, Function<O, String> tag) {
+        this.operations = operations;
+        this.name = name;
+        this.description = description;
+        this.tag = tag;
+    }
+
+    public void recordSuccess(O operation, long startedNanos) {
+        Meters current = meters;
+        if (current != null) {
+            current.successes[operation.ordinal()].record(System.nanoTime() - startedNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void recordFailure(O operation, long startedNanos) {
+        Meters current = meters;
+        if (current != null) {
+            current.failures[operation.ordinal()].record(System.nanoTime() - startedNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        O[] constants = operations.getEnumConstants();
+        Timer[] successes = new Timer[constants.length];
+        Timer[] failures = new Timer[constants.length];
+        for (O operation : constants) {
+            successes[operation.ordinal()] = timer(registry, operation, "success");
+            failures[operation.ordinal()] = timer(registry, operation, "error");
+        }
+        meters = new Meters(successes, failures);
+    }
+
+    private Timer timer(MeterRegistry registry, O operation, String outcome) {
+        return Timer.builder(name)
+                .description(description)
+                .tag("operation", tag.apply(operation))
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    private record Meters(Timer[] successes, Timer[] failures) {
+    }
+}
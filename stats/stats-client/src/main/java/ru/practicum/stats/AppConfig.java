@@ -1,14 +1,125 @@
 package ru.practicum.stats;
 
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+
 @Configuration
+@EnableConfigurationProperties({HitBufferProperties.class, HttpTransportProperties.class,
+        CircuitBreakerProperties.class, LookupBatchProperties.class})
 public class AppConfig {
 
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    @ConditionalOnProperty(prefix = "stats-server.http", name = "http2", havingValue = "false", matchIfMissing = true)
+    public PoolingHttpClientConnectionManager statsConnectionManager(HttpTransportProperties properties) {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(properties.getMaxConnections())
+                .setMaxConnPerRoute(properties.getMaxConnectionsPerRoute())
+                .setDefaultConnectionConfig(connectionConfig(properties))
+                .build();
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "stats-server.http", name = "http2", havingValue = "false", matchIfMissing = true)
+    public CloseableHttpClient statsHttpClient(PoolingHttpClientConnectionManager statsConnectionManager,
+                                               HttpTransportProperties properties) {
+        HttpClientBuilder builder = HttpClientBuilder.create()
+                .setConnectionManager(statsConnectionManager)
+                .setDefaultRequestConfig(requestConfig(properties))
+                .evictExpiredConnections()
+                .evictIdleConnections(timeValue(properties.getIdleTimeout()));
+        if (!properties.isGzip()) {
+            builder.disableContentCompression();
+        }
+        return builder.build();
+    }
+
+    @Bean
+    public RestTemplate restTemplate(ObjectProvider<CloseableHttpClient> statsHttpClient,
+                                     HttpTransportProperties properties) {
+        CloseableHttpClient pooled = statsHttpClient.getIfAvailable();
+        if (pooled != null) {
+            return new RestTemplate(new HttpComponentsClientHttpRequestFactory(pooled));
+        }
+        JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(jdkHttpClient(properties));
+        factory.setReadTimeout(properties.getReadTimeout());
+        return new RestTemplate(factory);
+    }
+
+    @Bean
+    public MeterBinder hitBufferMetrics(StatsClient statsClient) {
+        return registry -> statsClient.getHitBuffer().ifPresent(buffer -> buffer.bindTo(registry));
+    }
+
+    @Bean
+    public MeterBinder circuitBreakerMetrics(StatsClient statsClient) {
+        return statsClient.getCircuitBreaker();
+    }
+
+    @Bean
+    public MeterBinder statsClientMetrics(StatsClient statsClient) {
+        return statsClient.getMetrics();
+    }
+
+    @Bean
+    public MeterBinder statsConnectionPoolMetrics(ObjectProvider<PoolingHttpClientConnectionManager> manager,
+                                                  StatsClient statsClient) {
+        return registry -> {
+            manager.ifAvailable(pool ->
+                    new PoolingHttpClientConnectionManagerMetricsBinder(pool, "stats-server").bindTo(registry));
+            statsClient.getAsyncConnectionPool().ifPresent(pool ->
+                    new PoolingHttpClientConnectionManagerMetricsBinder(pool, "stats-server-async").bindTo(registry));
+        };
+    }
+
+    static HttpClient jdkHttpClient(HttpTransportProperties properties) {
+        return HttpClient.newBuilder()
+                .version(properties.isHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(properties.getConnectTimeout())
+                .build();
+    }
+
+    /**
+     * Connection settings shared by the blocking and the async pool.
+     */
+    static ConnectionConfig connectionConfig(HttpTransportProperties properties) {
+        return ConnectionConfig.custom()
+                .setConnectTimeout(timeout(properties.getConnectTimeout()))
+                .setSocketTimeout(timeout(properties.getReadTimeout()))
+                .setTimeToLive(timeValue(properties.getTimeToLive()))
+                .build();
+    }
+
+    static RequestConfig requestConfig(HttpTransportProperties properties) {
+        return RequestConfig.custom()
+                .setConnectionRequestTimeout(timeout(properties.getPoolTimeout()))
+                .setResponseTimeout(timeout(properties.getReadTimeout()))
+                .build();
+    }
+
+    static TimeValue timeValue(Duration duration) {
+        return TimeValue.ofMilliseconds(duration.toMillis());
+    }
+
+    private static Timeout timeout(Duration duration) {
+        return Timeout.ofMilliseconds(duration.toMillis());
     }
 }
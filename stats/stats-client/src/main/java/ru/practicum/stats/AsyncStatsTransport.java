@@ -0,0 +1,189 @@
+package ru.practicum.stats;
+
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.io.CloseMode;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Non-blocking transport of {@link StatsClient#hitAsync} and {@link StatsClient#findStatsAsync}. Over HTTP/1.1 the
+ * calls go through an Apache async client with its own pool, bounded, timed and compressed by the same
+ * {@link HttpTransportProperties} as the blocking one. With http2 enabled they use the JDK client, which multiplexes
+ * all calls over one connection and has no pool to bound.
+ */
+abstract class AsyncStatsTransport implements AutoCloseable {
+
+    static AsyncStatsTransport create(HttpTransportProperties properties) {
+        return properties.isHttp2() ? new Jdk(properties) : new Pooled(properties);
+    }
+
+    abstract CompletableFuture<Response> get(URI uri);
+
+    abstract CompletableFuture<Response> post(URI uri, byte[] json);
+
+    Optional<PoolingAsyncClientConnectionManager> pool() {
+        return Optional.empty();
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Status and decoded body of a response.
+     */
+    record Response(int status, byte[] body) {
+    }
+
+    private static final class Pooled extends AsyncStatsTransport {
+        private final PoolingAsyncClientConnectionManager pool;
+        private final CloseableHttpAsyncClient client;
+        private final boolean gzip;
+
+        private Pooled(HttpTransportProperties properties) {
+            this.pool = PoolingAsyncClientConnectionManagerBuilder.create()
+                    .setMaxConnTotal(properties.getMaxConnections())
+                    .setMaxConnPerRoute(properties.getMaxConnectionsPerRoute())
+                    .setDefaultConnectionConfig(AppConfig.connectionConfig(properties))
+                    .build();
+            this.client = HttpAsyncClients.custom()
+                    .setConnectionManager(pool)
+                    .setDefaultRequestConfig(AppConfig.requestConfig(properties))
+                    .evictExpiredConnections()
+                    .evictIdleConnections(AppConfig.timeValue(properties.getIdleTimeout()))
+                    .build();
+            this.gzip = properties.isGzip();
+            client.start();
+        }
+
+        @Override
+        CompletableFuture<Response> get(URI uri) {
+            return execute(SimpleRequestBuilder.get(uri)
+                                   .addHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
+                                   .build());
+        }
+
+        @Override
+        CompletableFuture<Response> post(URI uri, byte[] json) {
+            return execute(SimpleRequestBuilder.post(uri)
+                                   .setBody(json, ContentType.APPLICATION_JSON)
+                                   .build());
+        }
+
+        @Override
+        Optional<PoolingAsyncClientConnectionManager> pool() {
+            return Optional.of(pool);
+        }
+
+        @Override
+        public void close() {
+            client.close(CloseMode.GRACEFUL);
+        }
+
+        /**
+         * A call that fails on the caller's side, for example by running out of its latency budget, is cancelled
+         * so that its connection goes back to the pool at once.
+         */
+        private CompletableFuture<Response> execute(SimpleHttpRequest request) {
+            if (gzip) {
+                request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
+            }
+            CompletableFuture<Response> result = new CompletableFuture<>();
+            Future<SimpleHttpResponse> call = client.execute(request, new FutureCallback<>() {
+                @Override
+                public void completed(SimpleHttpResponse response) {
+                    try {
+                        result.complete(new Response(response.getCode(), body(response)));
+                    } catch (IOException e) {
+                        result.completeExceptionally(e);
+                    }
+                }
+
+                @Override
+                public void failed(Exception e) {
+                    result.completeExceptionally(e);
+                }
+
+                @Override
+                public void cancelled() {
+                    result.cancel(false);
+                }
+            });
+            result.whenComplete((response, error) -> {
+                if (error != null) {
+                    call.cancel(true);
+                }
+            });
+            return result;
+        }
+
+        private static byte[] body(SimpleHttpResponse response) throws IOException {
+            byte[] body = response.getBodyBytes();
+            if (body == null) {
+                return new byte[0];
+            }
+            Header encoding = response.getFirstHeader(HttpHeaders.CONTENT_ENCODING);
+            if (encoding == null || !"gzip".equalsIgnoreCase(encoding.getValue())) {
+                return body;
+            }
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                return in.readAllBytes();
+            }
+        }
+    }
+
+    private static final class Jdk extends AsyncStatsTransport {
+        private final HttpClient client;
+        private final Duration timeout;
+
+        private Jdk(HttpTransportProperties properties) {
+            this.client = AppConfig.jdkHttpClient(properties);
+            this.timeout = properties.getReadTimeout();
+        }
+
+        @Override
+        CompletableFuture<Response> get(URI uri) {
+            return send(HttpRequest.newBuilder(uri)
+                                .timeout(timeout)
+                                .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
+                                .GET()
+                                .build());
+        }
+
+        @Override
+        CompletableFuture<Response> post(URI uri, byte[] json) {
+            return send(HttpRequest.newBuilder(uri)
+                                .timeout(timeout)
+                                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                .POST(HttpRequest.BodyPublishers.ofByteArray(json))
+                                .build());
+        }
+
+        private CompletableFuture<Response> send(HttpRequest request) {
+            return client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                    .thenApply(response -> new Response(response.statusCode(), response.body()));
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package ru.practicum.stats;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Count-based circuit breaker for stats calls. A call fails if it throws or takes longer than the latency budget.
+ * Once the failure rate over the last {@code windowSize} calls reaches the threshold the circuit opens and calls are
+ * rejected for {@code openDuration}; then {@code halfOpenCalls} trial calls decide whether it closes again.
+ */
+@Slf4j
+public class CircuitBreaker implements MeterBinder {
+    private final CircuitBreakerProperties properties;
+    private final LongSupplier nanoClock;
+    private final boolean[] outcomes;
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong slow = new AtomicLong();
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int calls;
+    private int failures;
+    private int next;
+    private int trials;
+    private int trialSuccesses;
+
+    public CircuitBreaker(CircuitBreakerProperties properties) {
+        this(properties, System::nanoTime);
+    }
+
+    CircuitBreaker(CircuitBreakerProperties properties, LongSupplier nanoClock) {
+        this.properties = properties;
+        this.nanoClock = nanoClock;
+        this.outcomes = new boolean[properties.getWindowSize()];
+    }
+
+    public long getLatencyBudgetNanos() {
+        return properties.getLatencyBudget().toNanos();
+    }
+
+    /**
+     * Reserves a call. Every permitted call must be reported through {@link #onSuccess} or {@link #onFailure}.
+     */
+    public synchronized boolean tryAcquire() {
+        if (!properties.isEnabled()) {
+            return true;
+        }
+        if (state == State.OPEN) {
+            if (nanoClock.getAsLong() - openedAt < properties.getOpenDuration().toNanos()) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (trials >= properties.getHalfOpenCalls()) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            trials++;
+        }
+        return true;
+    }
+
+    public void onSuccess(long elapsedNanos) {
+        if (elapsedNanos > getLatencyBudgetNanos()) {
+            slow.incrementAndGet();
+            record(false);
+        } else {
+            record(true);
+        }
+    }
+
+    public void onFailure() {
+        failed.incrementAndGet();
+        record(false);
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("stats.client.circuit.state", this, breaker -> breaker.getState().ordinal())
+                .description("Stats server circuit state: 0 closed, 1 open, 2 half-open")
+                .register(registry);
+        FunctionCounter.builder("stats.client.circuit.rejected", rejected, AtomicLong::get)
+                .description("Stats calls rejected while the circuit was open")
+                .register(registry);
+        FunctionCounter.builder("stats.client.circuit.failed", failed, AtomicLong::get)
+                .description("Stats calls that failed")
+                .register(registry);
+        FunctionCounter.builder("stats.client.circuit.slow", slow, AtomicLong::get)
+                .description("Stats calls that exceeded the latency budget")
+                .register(registry);
+    }
+
+    private synchronized void record(boolean success) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            if (!success) {
+                transition(State.OPEN);
+            } else if (++trialSuccesses >= properties.getHalfOpenCalls()) {
+                transition(State.CLOSED);
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            return;
+        }
+        if (calls == outcomes.length) {
+            if (!outcomes[next]) {
+                failures--;
+            }
+        } else {
+            calls++;
+        }
+        outcomes[next] = success;
+        if (!success) {
+            failures++;
+        }
+        next = (next + 1) % outcomes.length;
+        if (calls >= properties.getMinimumCalls()
+                && failures * 100 >= properties.getFailureRateThreshold() * calls) {
+            transition(State.OPEN);
+        }
+    }
+
+    private void transition(State target) {
+        if (target == State.OPEN) {
+            log.warn("[CircuitBreaker] Stats server circuit {} -> {}", state, target);
+        } else {
+            log.info("[CircuitBreaker] Stats server circuit {} -> {}", state, target);
+        }
+        state = target;
+        trials = 0;
+        trialSuccesses = 0;
+        if (target == State.OPEN) {
+            openedAt = nanoClock.getAsLong();
+        }
+        if (target == State.CLOSED) {
+            calls = 0;
+            failures = 0;
+            next = 0;
+        }
+    }
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+}
@@ -0,0 +1,23 @@
+package ru.practicum.stats;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@ConfigurationProperties(prefix = "stats-server.circuit-breaker")
+public class CircuitBreakerProperties {
+    boolean enabled = true;
+    int windowSize = 20;
+    int minimumCalls = 10;
+    int failureRateThreshold = 50;
+    Duration latencyBudget = Duration.ofMillis(500);
+    Duration openDuration = Duration.ofSeconds(10);
+    int halfOpenCalls = 3;
+}
@@ -0,0 +1,9 @@
+package ru.practicum.stats;
+
+import org.springframework.web.client.RestClientException;
+
+public class CircuitOpenException extends RestClientException {
+    public CircuitOpenException() {
+        super("Stats server circuit is open");
+    }
+}
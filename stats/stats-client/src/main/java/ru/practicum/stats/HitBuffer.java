@@ -0,0 +1,279 @@
+package ru.practicum.stats;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Queues hits and sends them in batches from a single flusher thread. A batch that fails for any reason but
+ * a client error, including an open circuit, is kept and sent again before the next one; the kept hits are
+ * bounded by the capacity and the oldest batches are given up first.
+ *
+ * <p>Producers are admitted under the read lock of {@code admission}. {@link #close} stops admission and then
+ * takes the write lock, so once it holds it no producer can still add a hit behind the final drain.
+ */
+@Slf4j
+public class HitBuffer implements MeterBinder, AutoCloseable {
+    private static final long RECHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final BlockingQueue<EndpointHitRequest> queue;
+    private final Consumer<List<EndpointHitRequest>> sender;
+    private final HitBufferProperties properties;
+    private final Thread flusher;
+    private final ReadWriteLock admission = new ReentrantReadWriteLock();
+    // owned by the flusher thread, and by the closing thread once the flusher has ended
+    private final Deque<List<EndpointHitRequest>> retained = new ArrayDeque<>();
+    private final AtomicInteger retainedHits = new AtomicInteger();
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile boolean running = true;
+
+    public HitBuffer(HitBufferProperties properties, Consumer<List<EndpointHitRequest>> sender,
+                     ThreadFactory threadFactory) {
+        this.properties = properties;
+        this.sender = sender;
+        this.queue = new ArrayBlockingQueue<>(properties.getCapacity());
+        this.flusher = threadFactory.newThread(this::runFlusher);
+    }
+
+    public void start() {
+        flusher.start();
+        log.info("[HitBuffer] Started with capacity={}, batchSize={}, flushInterval={}, overflowPolicy={}",
+                 properties.getCapacity(), properties.getBatchSize(), properties.getFlushInterval(),
+                 properties.getOverflowPolicy());
+    }
+
+    public boolean offer(EndpointHitRequest hit) {
+        admission.readLock().lock();
+        try {
+            if (!running || !enqueue(hit)) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            queued.incrementAndGet();
+            return true;
+        } finally {
+            admission.readLock().unlock();
+        }
+    }
+
+    public long getQueued() {
+        return queued.get();
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public int getPending() {
+        return queue.size();
+    }
+
+    public int getRetained() {
+        return retainedHits.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("stats.client.hits.queued", queued, AtomicLong::get)
+                .description("Hits accepted into the async buffer")
+                .register(registry);
+        FunctionCounter.builder("stats.client.hits.sent", sent, AtomicLong::get)
+                .description("Hits delivered to the stats server")
+                .register(registry);
+        FunctionCounter.builder("stats.client.hits.dropped", dropped, AtomicLong::get)
+                .description("Hits discarded because the buffer was full or closed")
+                .register(registry);
+        FunctionCounter.builder("stats.client.hits.failed", failed, AtomicLong::get)
+                .description("Hits lost because the stats server rejected them or could not be reached in time")
+                .register(registry);
+        Gauge.builder("stats.client.hits.pending", queue, BlockingQueue::size)
+                .description("Hits waiting in the async buffer")
+                .register(registry);
+        Gauge.builder("stats.client.hits.retained", retainedHits, AtomicInteger::get)
+                .description("Hits of failed batches waiting to be sent again")
+                .register(registry);
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        admission.writeLock().lock();
+        admission.writeLock().unlock();
+        try {
+            flusher.join(properties.getShutdownTimeout().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (flusher.isAlive()) {
+            log.warn("[HitBuffer] Shutdown timed out, {} hits were not delivered", queue.size() + retainedHits.get());
+            return;
+        }
+        // a producer admitted just before close() may have queued its hit after the flusher's last drain
+        drain();
+        log.info("[HitBuffer] Drained, queued={}, sent={}, dropped={}, failed={}",
+                 queued.get(), sent.get(), dropped.get(), failed.get());
+    }
+
+    /**
+     * Adds the hit by the overflow policy. A blocked producer wakes up regularly to give up once the buffer
+     * is closing, so that it never waits on a queue that nobody drains any more.
+     */
+    private boolean enqueue(EndpointHitRequest hit) {
+        if (properties.getOverflowPolicy() == OverflowPolicy.BLOCK) {
+            try {
+                while (!queue.offer(hit, RECHECK_NANOS, TimeUnit.NANOSECONDS)) {
+                    if (!running) {
+                        return false;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        } else {
+            while (!queue.offer(hit)) {
+                if (queue.poll() != null) {
+                    dropped.incrementAndGet();
+                }
+            }
+        }
+        return true;
+    }
+
+    private void runFlusher() {
+        int batchSize = properties.getBatchSize();
+        long flushIntervalNanos = properties.getFlushInterval().toNanos();
+        List<EndpointHitRequest> batch = new ArrayList<>(batchSize);
+
+        while (running) {
+            long deadline = System.nanoTime() + flushIntervalNanos;
+            try {
+                while (running && batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    // wait in slices so that a close() is noticed without waiting for the whole interval
+                    EndpointHitRequest hit = queue.poll(Math.min(remaining, RECHECK_NANOS),
+                                                        TimeUnit.NANOSECONDS);
+                    if (hit == null) {
+                        continue;
+                    }
+                    batch.add(hit);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                log.warn("[HitBuffer] Flusher interrupted, draining remaining hits");
+                running = false;
+            }
+            boolean caughtUp = resendRetained();
+            if (!batch.isEmpty()) {
+                List<EndpointHitRequest> next = List.copyOf(batch);
+                if (!caughtUp || !deliver(next)) {
+                    retain(next);
+                }
+                batch.clear();
+            }
+        }
+        drain();
+    }
+
+    /**
+     * Sends the retained batches and then everything queued, once: what fails now is lost.
+     */
+    private void drain() {
+        resendRetained();
+        while (!retained.isEmpty()) {
+            List<EndpointHitRequest> batch = retained.pollFirst();
+            retainedHits.addAndGet(-batch.size());
+            giveUp(batch);
+        }
+        List<EndpointHitRequest> rest = new ArrayList<>(properties.getBatchSize());
+        while (queue.drainTo(rest, properties.getBatchSize()) > 0) {
+            if (!deliver(List.copyOf(rest))) {
+                giveUp(rest);
+            }
+            rest.clear();
+        }
+    }
+
+    /**
+     * Sends the retained batches oldest first and stops at the first one that fails again. Returns whether none
+     * is left.
+     */
+    private boolean resendRetained() {
+        while (!retained.isEmpty()) {
+            if (!deliver(retained.peekFirst())) {
+                return false;
+            }
+            retainedHits.addAndGet(-retained.pollFirst().size());
+        }
+        return true;
+    }
+
+    /**
+     * Returns false if the batch should be sent again. A client error will not go away with a retry, so such
+     * a batch counts as failed right away.
+     */
+    private boolean deliver(List<EndpointHitRequest> batch) {
+        try {
+            sender.accept(batch);
+            sent.addAndGet(batch.size());
+            return true;
+        } catch (RestClientResponseException e) {
+            if (e.getStatusCode().is4xxClientError()) {
+                failed.addAndGet(batch.size());
+                log.warn("[HitBuffer] Stats server rejected {} hits: {}", batch.size(), e.getMessage());
+                return true;
+            }
+            log.debug("[HitBuffer] Failed to send {} hits, keeping them: {}", batch.size(), e.getMessage());
+            return false;
+        } catch (RuntimeException e) {
+            log.debug("[HitBuffer] Failed to send {} hits, keeping them: {}", batch.size(), e.getMessage());
+            return false;
+        }
+    }
+
+    private void retain(List<EndpointHitRequest> batch) {
+        retained.addLast(batch);
+        retainedHits.addAndGet(batch.size());
+        while (retainedHits.get() > properties.getCapacity()) {
+            List<EndpointHitRequest> oldest = retained.pollFirst();
+            retainedHits.addAndGet(-oldest.size());
+            giveUp(oldest);
+        }
+    }
+
+    private void giveUp(List<EndpointHitRequest> batch) {
+        failed.addAndGet(batch.size());
+        log.warn("[HitBuffer] Gave up on {} hits the stats server did not accept", batch.size());
+    }
+}
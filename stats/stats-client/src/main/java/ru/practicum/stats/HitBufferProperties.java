@@ -0,0 +1,22 @@
+package ru.practicum.stats;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@ConfigurationProperties(prefix = "stats-server.async")
+public class HitBufferProperties {
+    boolean enabled = false;
+    int capacity = 10_000;
+    int batchSize = 100;
+    Duration flushInterval = Duration.ofSeconds(1);
+    Duration shutdownTimeout = Duration.ofSeconds(10);
+    OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+}
@@ -0,0 +1,30 @@
+package ru.practicum.stats;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Transport of the stats calls. Over HTTP/1.1 the blocking and the async calls go through two Apache pools, each
+ * bounded and timed by these settings; with http2 enabled both use the JDK client, which multiplexes requests over
+ * its own connections.
+ */
+@Getter
+@Setter
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@ConfigurationProperties(prefix = "stats-server.http")
+public class HttpTransportProperties {
+    int maxConnections = 50;
+    int maxConnectionsPerRoute = 50;
+    Duration connectTimeout = Duration.ofSeconds(2);
+    Duration readTimeout = Duration.ofSeconds(5);
+    Duration poolTimeout = Duration.ofSeconds(1);
+    Duration idleTimeout = Duration.ofSeconds(30);
+    Duration timeToLive = Duration.ofMinutes(5);
+    boolean gzip = true;
+    boolean http2 = false;
+}
@@ -0,0 +1,19 @@
+package ru.practicum.stats;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@ConfigurationProperties(prefix = "stats-server.batching")
+public class LookupBatchProperties {
+    boolean enabled = true;
+    Duration window = Duration.ofMillis(5);
+    int maxUris = 100;
+}
@@ -0,0 +1,109 @@
+package ru.practicum.stats;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Merges single-uri lookups with the same range that arrive within the batching window into one multi-uri /stats
+ * request and hands every caller the entries of its own uri.
+ */
+public class LookupBatcher implements AutoCloseable {
+    private final LookupBatchProperties properties;
+    private final Function<StatsQuery, CompletableFuture<List<EndpointStatsResponse>>> sender;
+    private final ScheduledExecutorService timer;
+    private final Map<StatsQuery, Batch> open = new HashMap<>();
+
+    public LookupBatcher(LookupBatchProperties properties,
+                         Function<StatsQuery, CompletableFuture<List<EndpointStatsResponse>>> sender,
+                         ThreadFactory threadFactory) {
+        this.properties = properties;
+        this.sender = sender;
+        this.timer = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    }
+
+    public CompletableFuture<List<EndpointStatsResponse>> submit(StatsQuery query) {
+        StatsQuery range = new StatsQuery(query.start(), query.end(), null, query.unique());
+        CompletableFuture<List<EndpointStatsResponse>> result = new CompletableFuture<>();
+        Batch full = null;
+        synchronized (open) {
+            Batch batch = open.get(range);
+            if (batch == null) {
+                Batch created = new Batch(range);
+                open.put(range, created);
+                timer.schedule(() -> flush(created), properties.getWindow().toNanos(), TimeUnit.NANOSECONDS);
+                batch = created;
+            }
+            batch.callers.computeIfAbsent(query.uris().get(0), uri -> new ArrayList<>()).add(result);
+            if (batch.callers.size() >= properties.getMaxUris()) {
+                open.remove(range);
+                full = batch;
+            }
+        }
+        if (full != null) {
+            send(full);
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+
+    private void flush(Batch batch) {
+        boolean due;
+        synchronized (open) {
+            due = open.remove(batch.range, batch);
+        }
+        if (due) {
+            send(batch);
+        }
+    }
+
+    private void send(Batch batch) {
+        StatsQuery query = new StatsQuery(batch.range.start(), batch.range.end(),
+                                          batch.callers.keySet().stream().sorted().toList(), batch.range.unique());
+        CompletableFuture<List<EndpointStatsResponse>> response;
+        try {
+            response = sender.apply(query);
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        response.whenComplete((stats, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause()
+                        : error;
+                batch.callers.values().forEach(futures -> futures.forEach(f -> f.completeExceptionally(cause)));
+                return;
+            }
+            Map<String, List<EndpointStatsResponse>> byUri = new HashMap<>();
+            for (EndpointStatsResponse entry : stats) {
+                byUri.computeIfAbsent(entry.getUri(), uri -> new ArrayList<>()).add(entry);
+            }
+            batch.callers.forEach((uri, futures) -> {
+                List<EndpointStatsResponse> own = List.copyOf(byUri.getOrDefault(uri, List.of()));
+                futures.forEach(future -> future.complete(own));
+            });
+        });
+    }
+
+    private static final class Batch {
+        private final StatsQuery range;
+        private final Map<String, List<CompletableFuture<List<EndpointStatsResponse>>>> callers = new LinkedHashMap<>();
+
+        private Batch(StatsQuery range) {
+            this.range = range;
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package ru.practicum.stats;
+
+public enum OverflowPolicy {
+    DROP_OLDEST,
+    BLOCK
+}
@@ -1,52 +1,369 @@
 package ru.practicum.stats;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
 import org.springframework.http.*;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientResponseException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
+import ru.practicum.stats.StatsClientMetrics.Operation;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @Component
-public class StatsClient {
+public class StatsClient implements DisposableBean {
+    private static final TypeReference<List<EndpointStatsResponse>> STATS_LIST = new TypeReference<>() {
+    };
+
     private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
     private final String serverUrl;
+    private final HitBuffer hitBuffer;
+    private final AsyncStatsTransport asyncTransport;
+    private final CircuitBreaker circuitBreaker;
+    private final StatsClientMetrics metrics = new StatsClientMetrics();
+    private final LookupBatcher lookupBatcher;
+    private final Map<StatsQuery, CompletableFuture<List<EndpointStatsResponse>>> inFlight =
+            new ConcurrentHashMap<>();
 
-    public StatsClient(@Value("${stats-server.url}") String serverUrl, RestTemplate restTemplate) {
+    public StatsClient(@Value("${stats-server.url}") String serverUrl, RestTemplate restTemplate,
+                       ObjectMapper objectMapper, HitBufferProperties hitBufferProperties, Environment environment,
+                       HttpTransportProperties httpTransportProperties,
+                       CircuitBreakerProperties circuitBreakerProperties,
+                       LookupBatchProperties lookupBatchProperties) {
         this.restTemplate = restTemplate;
+        this.objectMapper = objectMapper;
         this.serverUrl = serverUrl;
+        this.asyncTransport = AsyncStatsTransport.create(httpTransportProperties);
+        this.circuitBreaker = new CircuitBreaker(circuitBreakerProperties);
+        if (hitBufferProperties.isEnabled()) {
+            this.hitBuffer = new HitBuffer(hitBufferProperties, this::hits,
+                                           workerThreads(environment, "stats-hit-flusher"));
+            this.hitBuffer.start();
+        } else {
+            this.hitBuffer = null;
+        }
+        this.lookupBatcher = lookupBatchProperties.isEnabled()
+                ? new LookupBatcher(lookupBatchProperties, this::sendStatsAsync,
+                                    workerThreads(environment, "stats-lookup-batcher"))
+                : null;
     }
 
     public void hit(EndpointHitRequest dto) {
+        if (hitBuffer != null) {
+            hitBuffer.offer(dto);
+            return;
+        }
+        sendHit(dto);
+    }
+
+    public void hits(List<EndpointHitRequest> dtos) {
         String uri = UriComponentsBuilder
                 .fromHttpUrl(serverUrl)
-                .path("/hit")
+                .path("/hits")
                 .toUriString();
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        HttpEntity<EndpointHitRequest> entity = new HttpEntity<>(dto, headers);
-
-        ResponseEntity<Void> response = restTemplate.exchange(uri, HttpMethod.POST, entity, Void.class);
+        guarded(Operation.HITS, () -> restTemplate.exchange(uri, HttpMethod.POST, jsonBody(Operation.HITS, dtos),
+                                                             Void.class));
     }
 
+    /**
+     * Concurrent identical lookups share one request: the first caller sends it and the others wait for its result.
+     */
     public List<EndpointStatsResponse> findStats(LocalDateTime start, LocalDateTime end,
                                                  List<String> uris, Boolean unique) {
-        String uri = UriComponentsBuilder.fromHttpUrl(serverUrl)
+        StatsQuery query = StatsQuery.of(start, end, uris, unique);
+        CompletableFuture<List<EndpointStatsResponse>> shared = new CompletableFuture<>();
+        CompletableFuture<List<EndpointStatsResponse>> existing = inFlight.putIfAbsent(query, shared);
+        if (existing != null) {
+            return join(existing);
+        }
+        try {
+            String uri = statsUri(query.start(), query.end(), query.uris(), query.unique());
+            ResponseEntity<byte[]> response = guarded(Operation.FIND_STATS, () -> restTemplate.exchange(
+                    uri, HttpMethod.GET, null, byte[].class));
+            List<EndpointStatsResponse> stats = readStats(response.getBody());
+            shared.complete(stats);
+            return stats;
+        } catch (RuntimeException e) {
+            shared.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(query, shared);
+        }
+    }
+
+    /**
+     * Reads the stats as an NDJSON stream and hands every entry to the consumer as soon as it is parsed,
+     * without collecting the whole result.
+     */
+    public void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique,
+                            Consumer<EndpointStatsResponse> consumer) {
+        String uri = statsUri(start, end, uris, unique);
+
+        restTemplate.execute(uri, HttpMethod.GET,
+                request -> request.getHeaders().setAccept(List.of(MediaType.APPLICATION_NDJSON)),
+                response -> {
+                    try (MappingIterator<EndpointStatsResponse> stats = objectMapper
+                            .readerFor(EndpointStatsResponse.class)
+                            .readValues(response.getBody())) {
+                        while (stats.hasNextValue()) {
+                            consumer.accept(stats.nextValue());
+                        }
+                    }
+                    return null;
+                });
+    }
+
+    /**
+     * Records the hit without holding the calling thread: the hit goes to the buffer when it is enabled, otherwise
+     * it is sent over the non-blocking client. The future fails if the server rejects the hit.
+     */
+    public CompletableFuture<Void> hitAsync(EndpointHitRequest dto) {
+        if (hitBuffer != null) {
+            hitBuffer.offer(dto);
+            return CompletableFuture.completedFuture(null);
+        }
+        return guardedAsync(Operation.HIT, () -> {
+            byte[] body = toJson(dto);
+            metrics.recordPayload(Operation.HIT, body.length);
+            return asyncTransport.post(URI.create(serverUrl + "/hit"), body)
+                    .thenAccept(StatsClient::checkStatus);
+        });
+    }
+
+    /**
+     * Like {@link #findStats}, identical lookups in flight share one request. Single-uri lookups with the same range
+     * are also merged over the batching window into one multi-uri request.
+     */
+    public CompletableFuture<List<EndpointStatsResponse>> findStatsAsync(LocalDateTime start, LocalDateTime end,
+                                                                         List<String> uris, Boolean unique) {
+        StatsQuery query = StatsQuery.of(start, end, uris, unique);
+        CompletableFuture<List<EndpointStatsResponse>> shared = new CompletableFuture<>();
+        CompletableFuture<List<EndpointStatsResponse>> existing = inFlight.putIfAbsent(query, shared);
+        if (existing != null) {
+            return existing.copy();
+        }
+        CompletableFuture<List<EndpointStatsResponse>> response;
+        try {
+            response = lookupBatcher != null && query.isSingleUri()
+                    ? lookupBatcher.submit(query)
+                    : sendStatsAsync(query);
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        response.whenComplete((stats, error) -> {
+            inFlight.remove(query, shared);
+            if (error != null) {
+                shared.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                                                     ? error.getCause()
+                                                     : error);
+            } else {
+                shared.complete(stats);
+            }
+        });
+        return shared.copy();
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public StatsClientMetrics getMetrics() {
+        return metrics;
+    }
+
+    public Optional<HitBuffer> getHitBuffer() {
+        return Optional.ofNullable(hitBuffer);
+    }
+
+    /**
+     * The pool of the async calls, absent with http2, where they are multiplexed by the JDK client.
+     */
+    public Optional<PoolingAsyncClientConnectionManager> getAsyncConnectionPool() {
+        return asyncTransport.pool();
+    }
+
+    @Override
+    public void destroy() {
+        if (hitBuffer != null) {
+            hitBuffer.close();
+        }
+        if (lookupBatcher != null) {
+            lookupBatcher.close();
+        }
+        asyncTransport.close();
+    }
+
+    private CompletableFuture<List<EndpointStatsResponse>> sendStatsAsync(StatsQuery query) {
+        return guardedAsync(Operation.FIND_STATS, () -> {
+            URI uri = URI.create(statsUri(query.start(), query.end(), query.uris(), query.unique()));
+            return asyncTransport.get(uri)
+                    .thenApply(response -> {
+                        checkStatus(response);
+                        return readStats(response.body());
+                    });
+        });
+    }
+
+    private <T> T guarded(Operation operation, Supplier<T> call) {
+        if (!circuitBreaker.tryAcquire()) {
+            throw new CircuitOpenException();
+        }
+        long started = System.nanoTime();
+        try {
+            T result = call.get();
+            circuitBreaker.onSuccess(System.nanoTime() - started);
+            metrics.recordSuccess(operation, started);
+            return result;
+        } catch (RuntimeException e) {
+            report(e, started);
+            metrics.recordFailure(operation, started);
+            throw e;
+        }
+    }
+
+    /**
+     * Like {@link #guarded}, but the latency budget is also a hard limit: the future fails with a timeout once it
+     * is spent.
+     */
+    private <T> CompletableFuture<T> guardedAsync(Operation operation, Supplier<CompletableFuture<T>> call) {
+        if (!circuitBreaker.tryAcquire()) {
+            return CompletableFuture.failedFuture(new CircuitOpenException());
+        }
+        long started = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            report(e, started);
+            metrics.recordFailure(operation, started);
+            throw e;
+        }
+        return future.orTimeout(circuitBreaker.getLatencyBudgetNanos(), TimeUnit.NANOSECONDS)
+                .whenComplete((result, error) -> {
+                    if (error == null) {
+                        circuitBreaker.onSuccess(System.nanoTime() - started);
+                        metrics.recordSuccess(operation, started);
+                    } else {
+                        report(error instanceof CompletionException ? error.getCause() : error, started);
+                        metrics.recordFailure(operation, started);
+                    }
+                });
+    }
+
+    /**
+     * A rejected request means the server is up, so client errors do not count against the circuit.
+     */
+    private void report(Throwable error, long started) {
+        if (error instanceof RestClientResponseException response && response.getStatusCode().is4xxClientError()) {
+            circuitBreaker.onSuccess(System.nanoTime() - started);
+        } else {
+            circuitBreaker.onFailure();
+        }
+    }
+
+    private String statsUri(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique) {
+        return UriComponentsBuilder.fromHttpUrl(serverUrl)
                 .path("/stats")
                 .queryParam("start", start)
                 .queryParam("end", end)
                 .queryParam("uris", uris)
                 .queryParam("unique", unique)
                 .toUriString();
+    }
 
-        ResponseEntity<List<EndpointStatsResponse>> response = restTemplate.exchange(uri, HttpMethod.GET, null,
-                new ParameterizedTypeReference<List<EndpointStatsResponse>>() {
-                });
+    /**
+     * Serializes the body up front rather than in the message converter, so that its size can be recorded.
+     */
+    private HttpEntity<byte[]> jsonBody(Operation operation, Object body) {
+        byte[] json = toJson(body);
+        metrics.recordPayload(operation, json.length);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return new HttpEntity<>(json, headers);
+    }
+
+    private List<EndpointStatsResponse> readStats(byte[] body) {
+        if (body == null) {
+            return List.of();
+        }
+        metrics.recordPayload(Operation.FIND_STATS, body.length);
+        try {
+            return List.copyOf(objectMapper.readValue(body, STATS_LIST));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private byte[] toJson(Object body) {
+        try {
+            return objectMapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Could not serialize " + body, e);
+        }
+    }
+
+    private static void checkStatus(AsyncStatsTransport.Response response) {
+        HttpStatusCode status = HttpStatusCode.valueOf(response.status());
+        if (status.isError()) {
+            throw new RestClientResponseException("Stats server responded with " + status, status,
+                                                  status.toString(), null, response.body(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static ThreadFactory workerThreads(Environment environment, String name) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            return new VirtualThreadTaskExecutor(name + "-").getVirtualThreadFactory();
+        }
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private void sendHit(EndpointHitRequest dto) {
+        String uri = UriComponentsBuilder
+                .fromHttpUrl(serverUrl)
+                .path("/hit")
+                .toUriString();
 
-        return response.getBody();
+        guarded(Operation.HIT, () -> restTemplate.exchange(uri, HttpMethod.POST, jsonBody(Operation.HIT, dto),
+                                                            Void.class));
     }
 }
@@ -0,0 +1,62 @@
+package ru.practicum.stats;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import ru.practicum.stats.metrics.OperationTimers;
+
+/**
+ * Latency, outcome and payload size of the calls to the stats server. The meters of every operation are registered
+ * when the registry binds them, so recording a call only updates existing meters and allocates nothing.
+ */
+public class StatsClientMetrics implements MeterBinder {
+    private final OperationTimers<Operation> timers = new OperationTimers<>(
+            Operation.class, "stats.client.requests",
+            "Calls to the stats server, without the ones rejected by the open circuit", operation -> operation.tag);
+    private volatile Payloads payloads;
+
+    public void recordSuccess(Operation operation, long startedNanos) {
+        timers.recordSuccess(operation, startedNanos);
+    }
+
+    public void recordFailure(Operation operation, long startedNanos) {
+        timers.recordFailure(operation, startedNanos);
+    }
+
+    public void recordPayload(Operation operation, int bytes) {
+        Payloads current = payloads;
+        if (current != null) {
+            current.summaries[operation.ordinal()].record(bytes);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        timers.bindTo(registry);
+        Operation[] operations = Operation.values();
+        DistributionSummary[] summaries = new DistributionSummary[operations.length];
+        for (Operation operation : operations) {
+            summaries[operation.ordinal()] = DistributionSummary.builder("stats.client.payload")
+                    .description("Body size of hits sent and of stats received")
+                    .baseUnit("bytes")
+                    .tag("operation", operation.tag)
+                    .register(registry);
+        }
+        payloads = new Payloads(summaries);
+    }
+
+    public enum Operation {
+        HIT("hit"),
+        HITS("hits"),
+        FIND_STATS("find-stats");
+
+        private final String tag;
+
+        Operation(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private record Payloads(DistributionSummary[] summaries) {
+    }
+}
@@ -0,0 +1,22 @@
+package ru.practicum.stats;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * A /stats lookup normalized the way the server reads it: times at second precision, uris sorted and distinct.
+ * Equal queries always get equal answers, so they can share one request.
+ */
+public record StatsQuery(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique) {
+
+    public static StatsQuery of(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique) {
+        return new StatsQuery(start.truncatedTo(ChronoUnit.SECONDS), end.truncatedTo(ChronoUnit.SECONDS),
+                              uris == null || uris.isEmpty() ? null : uris.stream().distinct().sorted().toList(),
+                              Boolean.TRUE.equals(unique));
+    }
+
+    public boolean isSingleUri() {
+        return uris != null && uris.size() == 1;
+    }
+}
@@ -0,0 +1,125 @@
+package ru.practicum.stats;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTest {
+    private static final Duration OPEN_DURATION = Duration.ofSeconds(10);
+
+    private final AtomicLong now = new AtomicLong();
+    private final CircuitBreaker breaker = new CircuitBreaker(properties(), now::get);
+
+    @Test
+    void staysClosedBelowTheMinimumNumberOfCalls() {
+        fail(3);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void opensOnceTheFailureRateReachesTheThreshold() {
+        succeed(2);
+        fail(1);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        fail(1);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void countsACallOverTheLatencyBudgetAsFailed() {
+        succeed(2);
+        breaker.tryAcquire();
+        breaker.onSuccess(breaker.getLatencyBudgetNanos() + 1);
+        breaker.tryAcquire();
+        breaker.onSuccess(breaker.getLatencyBudgetNanos() + 1);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void letsASingleProbeThroughAfterTheCoolDown() {
+        fail(4);
+
+        now.addAndGet(OPEN_DURATION.toNanos() - 1);
+        assertThat(breaker.tryAcquire()).isFalse();
+
+        now.addAndGet(1);
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void closesWhenTheProbeSucceeds() {
+        fail(4);
+        now.addAndGet(OPEN_DURATION.toNanos());
+
+        assertThat(breaker.tryAcquire()).isTrue();
+        breaker.onSuccess(0);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        fail(3);
+        assertThat(breaker.getState()).as("the window starts over").isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void reopensForAnotherCoolDownWhenTheProbeFails() {
+        fail(4);
+        now.addAndGet(OPEN_DURATION.toNanos());
+
+        assertThat(breaker.tryAcquire()).isTrue();
+        breaker.onFailure();
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        now.addAndGet(OPEN_DURATION.toNanos() - 1);
+        assertThat(breaker.tryAcquire()).isFalse();
+        now.addAndGet(1);
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void permitsEverythingWhenDisabled() {
+        CircuitBreakerProperties properties = properties();
+        properties.setEnabled(false);
+        CircuitBreaker disabled = new CircuitBreaker(properties, now::get);
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(disabled.tryAcquire()).isTrue();
+            disabled.onFailure();
+        }
+
+        assertThat(disabled.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    private void succeed(int calls) {
+        for (int i = 0; i < calls; i++) {
+            assertThat(breaker.tryAcquire()).isTrue();
+            breaker.onSuccess(0);
+        }
+    }
+
+    private void fail(int calls) {
+        for (int i = 0; i < calls; i++) {
+            assertThat(breaker.tryAcquire()).isTrue();
+            breaker.onFailure();
+        }
+    }
+
+    private static CircuitBreakerProperties properties() {
+        CircuitBreakerProperties properties = new CircuitBreakerProperties();
+        properties.setWindowSize(4);
+        properties.setMinimumCalls(4);
+        properties.setFailureRateThreshold(50);
+        properties.setOpenDuration(OPEN_DURATION);
+        properties.setHalfOpenCalls(1);
+        return properties;
+    }
+}
@@ -0,0 +1,215 @@
+package ru.practicum.stats;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HitBufferTest {
+    private static final ThreadFactory DAEMONS = runnable -> {
+        Thread thread = new Thread(runnable, "hit-buffer-test");
+        thread.setDaemon(true);
+        return thread;
+    };
+
+    private final List<List<EndpointHitRequest>> batches = new CopyOnWriteArrayList<>();
+    private final List<HitBuffer> buffers = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        buffers.forEach(HitBuffer::close);
+    }
+
+    @Test
+    void sendsAFullBatchWithoutWaitingForTheInterval() {
+        HitBuffer buffer = buffer(properties(100, 3, Duration.ofMinutes(1), OverflowPolicy.BLOCK), batches::add);
+        buffer.start();
+
+        offer(buffer, 7);
+
+        await(() -> batches.size() == 2);
+        assertThat(batches).allSatisfy(batch -> assertThat(batch).hasSize(3));
+        buffer.close();
+        assertThat(sizes()).containsExactly(3, 3, 1);
+    }
+
+    @Test
+    void sendsAPartialBatchOnceTheIntervalHasPassed() {
+        HitBuffer buffer = buffer(properties(100, 100, Duration.ofMillis(50), OverflowPolicy.BLOCK), batches::add);
+        buffer.start();
+
+        offer(buffer, 2);
+
+        await(() -> !batches.isEmpty());
+        assertThat(sizes()).containsExactly(2);
+    }
+
+    @Test
+    void dropsTheOldestHitsWhenFull() {
+        HitBuffer buffer = buffer(properties(3, 100, Duration.ofMinutes(1), OverflowPolicy.DROP_OLDEST), batches::add);
+
+        offer(buffer, 5);
+        buffer.close();
+
+        assertThat(buffer.getDropped()).isEqualTo(2);
+        assertThat(uris()).containsExactly("/events/2", "/events/3", "/events/4");
+    }
+
+    @Test
+    void blocksTheProducerUntilThereIsRoom() throws InterruptedException {
+        HitBuffer buffer = buffer(properties(1, 100, Duration.ofMillis(20), OverflowPolicy.BLOCK), batches::add);
+        offer(buffer, 1);
+
+        CompletableFuture<Boolean> blocked = CompletableFuture.supplyAsync(() -> buffer.offer(hit(1)));
+        TimeUnit.MILLISECONDS.sleep(200);
+        assertThat(blocked).isNotDone();
+        buffer.start();
+
+        assertThat(blocked).succeedsWithin(Duration.ofSeconds(5)).isEqualTo(true);
+        buffer.close();
+        assertThat(uris()).containsExactly("/events/0", "/events/1");
+        assertThat(buffer.getDropped()).isZero();
+    }
+
+    @Test
+    void releasesABlockedProducerOnClose() throws Exception {
+        HitBuffer buffer = buffer(properties(1, 100, Duration.ofMinutes(1), OverflowPolicy.BLOCK), batches::add);
+        offer(buffer, 1);
+        CompletableFuture<Boolean> blocked = CompletableFuture.supplyAsync(() -> buffer.offer(hit(1)));
+        TimeUnit.MILLISECONDS.sleep(50);
+
+        buffer.close();
+
+        assertThat(blocked).succeedsWithin(Duration.ofSeconds(5)).isEqualTo(false);
+        assertThat(uris()).containsExactly("/events/0");
+        assertThat(buffer.getDropped()).isEqualTo(1);
+        assertThat(buffer.offer(hit(2))).isFalse();
+    }
+
+    @Test
+    void deliversEverythingQueuedBeforeClose() {
+        HitBuffer buffer = buffer(properties(1_000, 100, Duration.ofMinutes(1), OverflowPolicy.BLOCK), batches::add);
+        buffer.start();
+
+        offer(buffer, 250);
+        buffer.close();
+
+        assertThat(buffer.getSent()).isEqualTo(250);
+        assertThat(uris()).hasSize(250).doesNotHaveDuplicates();
+        assertThat(buffer.getPending()).isZero();
+    }
+
+    @Test
+    void resendsABatchRejectedByTheOpenCircuit() {
+        AtomicInteger calls = new AtomicInteger();
+        HitBuffer buffer = buffer(properties(100, 100, Duration.ofMillis(20), OverflowPolicy.BLOCK), batch -> {
+            if (calls.incrementAndGet() <= 2) {
+                throw new CircuitOpenException();
+            }
+            batches.add(batch);
+        });
+        buffer.start();
+
+        offer(buffer, 5);
+
+        await(() -> buffer.getSent() == 5);
+        assertThat(uris()).hasSize(5);
+        assertThat(buffer.getFailed()).isZero();
+        assertThat(buffer.getRetained()).isZero();
+    }
+
+    @Test
+    void doesNotResendABatchTheServerRejected() {
+        HitBuffer buffer = buffer(properties(100, 100, Duration.ofMillis(20), OverflowPolicy.BLOCK), batch -> {
+            throw new HttpClientErrorException(HttpStatus.BAD_REQUEST);
+        });
+        buffer.start();
+
+        offer(buffer, 5);
+
+        await(() -> buffer.getFailed() == 5);
+        assertThat(buffer.getRetained()).isZero();
+    }
+
+    @Test
+    void givesUpOnTheOldestRetainedHitsBeyondTheCapacity() {
+        HitBuffer buffer = buffer(properties(4, 2, Duration.ofMinutes(1), OverflowPolicy.BLOCK), batch -> {
+            throw new CircuitOpenException();
+        });
+        buffer.start();
+
+        for (int i = 0; i < 4; i++) {
+            offer(buffer, 2);
+            int sent = i + 1;
+            await(() -> buffer.getRetained() + buffer.getFailed() == 2L * sent);
+        }
+
+        assertThat(buffer.getRetained()).isEqualTo(4);
+        assertThat(buffer.getFailed()).isEqualTo(4);
+        buffer.close();
+        assertThat(buffer.getFailed()).isEqualTo(8);
+    }
+
+    private HitBuffer buffer(HitBufferProperties properties, Consumer<List<EndpointHitRequest>> sender) {
+        HitBuffer buffer = new HitBuffer(properties, sender, DAEMONS);
+        buffers.add(buffer);
+        return buffer;
+    }
+
+    private static HitBufferProperties properties(int capacity, int batchSize, Duration flushInterval,
+                                                  OverflowPolicy overflowPolicy) {
+        HitBufferProperties properties = new HitBufferProperties();
+        properties.setEnabled(true);
+        properties.setCapacity(capacity);
+        properties.setBatchSize(batchSize);
+        properties.setFlushInterval(flushInterval);
+        properties.setShutdownTimeout(Duration.ofSeconds(5));
+        properties.setOverflowPolicy(overflowPolicy);
+        return properties;
+    }
+
+    private List<Integer> sizes() {
+        return batches.stream().map(List::size).toList();
+    }
+
+    private List<String> uris() {
+        return batches.stream().flatMap(List::stream).map(EndpointHitRequest::getUri).toList();
+    }
+
+    private static void offer(HitBuffer buffer, int count) {
+        for (int i = 0; i < count; i++) {
+            assertThat(buffer.offer(hit(i))).isTrue();
+        }
+    }
+
+    private static EndpointHitRequest hit(int event) {
+        return new EndpointHitRequest("ewm", "/events/" + event, "10.0.0.1", LocalDateTime.of(2024, 3, 1, 12, 0));
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition within 5s").isLessThan(deadline);
+            try {
+                TimeUnit.MILLISECONDS.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
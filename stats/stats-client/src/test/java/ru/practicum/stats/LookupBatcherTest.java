@@ -0,0 +1,132 @@
+package ru.practicum.stats;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LookupBatcherTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 3, 1, 0, 0);
+    private static final LocalDateTime END = LocalDateTime.of(2024, 3, 2, 0, 0);
+    private static final ThreadFactory DAEMONS = runnable -> {
+        Thread thread = new Thread(runnable, "lookup-batcher-test");
+        thread.setDaemon(true);
+        return thread;
+    };
+
+    private final List<StatsQuery> sent = new CopyOnWriteArrayList<>();
+    private final CompletableFuture<List<EndpointStatsResponse>> response = new CompletableFuture<>();
+    private LookupBatcher batcher;
+
+    @AfterEach
+    void tearDown() {
+        batcher.close();
+    }
+
+    @Test
+    void mergesLookupsOfOneRangeIntoOneRequest() {
+        batcher = batcher(Duration.ofMillis(50), 100);
+
+        CompletableFuture<List<EndpointStatsResponse>> first = batcher.submit(query("/events/2"));
+        CompletableFuture<List<EndpointStatsResponse>> second = batcher.submit(query("/events/1"));
+        CompletableFuture<List<EndpointStatsResponse>> third = batcher.submit(query("/events/2"));
+        CompletableFuture<List<EndpointStatsResponse>> otherRange = batcher.submit(
+                StatsQuery.of(START, END, List.of("/events/1"), true));
+        awaitSent(2);
+        response.complete(List.of(stats("/events/1", 5), stats("/events/2", 7)));
+
+        assertThat(sent).contains(StatsQuery.of(START, END, List.of("/events/1", "/events/2"), false));
+        assertThat(first.join()).extracting(EndpointStatsResponse::getHits).containsExactly(7L);
+        assertThat(second.join()).extracting(EndpointStatsResponse::getHits).containsExactly(5L);
+        assertThat(third.join()).extracting(EndpointStatsResponse::getHits).containsExactly(7L);
+        assertThat(otherRange.join()).extracting(EndpointStatsResponse::getHits).containsExactly(5L);
+    }
+
+    @Test
+    void sendsAFullBatchWithoutWaitingForTheWindow() {
+        batcher = batcher(Duration.ofMinutes(1), 2);
+
+        batcher.submit(query("/events/1"));
+        batcher.submit(query("/events/2"));
+
+        assertThat(sent).containsExactly(StatsQuery.of(START, END, List.of("/events/1", "/events/2"), false));
+    }
+
+    @Test
+    void answersAUriMissingFromTheResponseWithAnEmptyList() {
+        batcher = batcher(Duration.ofMinutes(1), 2);
+
+        CompletableFuture<List<EndpointStatsResponse>> missing = batcher.submit(query("/events/1"));
+        batcher.submit(query("/events/2"));
+        response.complete(List.of(stats("/events/2", 7)));
+
+        assertThat(missing.join()).isEmpty();
+    }
+
+    @Test
+    void failsEveryWaiterOfAFailedBatch() {
+        batcher = batcher(Duration.ofMinutes(1), 2);
+        IllegalStateException failure = new IllegalStateException("stats server is down");
+
+        CompletableFuture<List<EndpointStatsResponse>> first = batcher.submit(query("/events/1"));
+        CompletableFuture<List<EndpointStatsResponse>> second = batcher.submit(query("/events/2"));
+        response.completeExceptionally(failure);
+
+        assertThat(first).failsWithin(Duration.ZERO).withThrowableOfType(Exception.class).havingCause()
+                .isSameAs(failure);
+        assertThat(second).failsWithin(Duration.ZERO).withThrowableOfType(Exception.class).havingCause()
+                .isSameAs(failure);
+    }
+
+    @Test
+    void failsEveryWaiterWhenTheSenderThrows() {
+        IllegalStateException failure = new IllegalStateException("circuit open");
+        batcher = new LookupBatcher(properties(Duration.ofMinutes(1), 2), query -> {
+            throw failure;
+        }, DAEMONS);
+
+        CompletableFuture<List<EndpointStatsResponse>> first = batcher.submit(query("/events/1"));
+        CompletableFuture<List<EndpointStatsResponse>> second = batcher.submit(query("/events/2"));
+
+        assertThat(first).isCompletedExceptionally();
+        assertThat(second).failsWithin(Duration.ZERO).withThrowableOfType(Exception.class).havingCause()
+                .isSameAs(failure);
+    }
+
+    private LookupBatcher batcher(Duration window, int maxUris) {
+        return new LookupBatcher(properties(window, maxUris), query -> {
+            sent.add(query);
+            return response;
+        }, DAEMONS);
+    }
+
+    private void awaitSent(int count) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (sent.size() < count) {
+            assertThat(System.nanoTime()).as("requests sent within 5s").isLessThan(deadline);
+            Thread.onSpinWait();
+        }
+    }
+
+    private static LookupBatchProperties properties(Duration window, int maxUris) {
+        LookupBatchProperties properties = new LookupBatchProperties();
+        properties.setWindow(window);
+        properties.setMaxUris(maxUris);
+        return properties;
+    }
+
+    private static StatsQuery query(String uri) {
+        return StatsQuery.of(START, END, List.of(uri), false);
+    }
+
+    private static EndpointStatsResponse stats(String uri, long hits) {
+        return new EndpointStatsResponse("ewm", uri, hits);
+    }
+}
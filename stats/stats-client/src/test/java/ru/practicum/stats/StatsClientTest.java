@@ -0,0 +1,247 @@
+package ru.practicum.stats;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs the client against a local HTTP server that counts the /stats requests it gets and holds every answer until
+ * the test releases it, so that the callers are known to overlap.
+ */
+class StatsClientTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 3, 1, 0, 0);
+    private static final LocalDateTime END = LocalDateTime.of(2024, 3, 2, 0, 0);
+    private static final String STATS = "[{\"app\":\"ewm\",\"uri\":\"/events/1\",\"hits\":3},"
+            + "{\"app\":\"ewm\",\"uri\":\"/events/2\",\"hits\":4}]";
+    private static final int CALLERS = 5;
+
+    private final List<String> queries = new CopyOnWriteArrayList<>();
+    private final List<String> encodings = new CopyOnWriteArrayList<>();
+    private final AtomicInteger failures = new AtomicInteger();
+    private volatile CountDownLatch release = new CountDownLatch(1);
+    private ExecutorService serverThreads;
+    private HttpServer server;
+    private StatsClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        serverThreads = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/stats", this::answer);
+        server.setExecutor(serverThreads);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (client != null) {
+            client.destroy();
+        }
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Test
+    void concurrentAsyncLookupsShareOneRequest() {
+        client = client(false);
+
+        List<CompletableFuture<List<EndpointStatsResponse>>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(client.findStatsAsync(START, END, List.of("/events/1"), false));
+        }
+        await(() -> queries.size() == 1);
+        release.countDown();
+
+        for (CompletableFuture<List<EndpointStatsResponse>> result : results) {
+            assertThat(result.join()).extracting(EndpointStatsResponse::getHits).containsExactly(3L, 4L);
+        }
+        assertThat(queries).hasSize(1);
+    }
+
+    @Test
+    void concurrentBlockingLookupsShareOneRequest() throws InterruptedException {
+        client = client(false);
+        List<List<EndpointStatsResponse>> results = new CopyOnWriteArrayList<>();
+        List<Thread> callers = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            Thread caller = new Thread(() -> results.add(client.findStats(START, END, List.of("/events/1"), false)));
+            callers.add(caller);
+            caller.start();
+        }
+
+        await(() -> queries.size() == 1
+                && callers.stream().filter(t -> t.getState() == Thread.State.WAITING).count() == CALLERS - 1);
+        release.countDown();
+        for (Thread caller : callers) {
+            caller.join(TimeUnit.SECONDS.toMillis(5));
+        }
+
+        assertThat(results).hasSize(CALLERS)
+                .allSatisfy(stats -> assertThat(stats).extracting(EndpointStatsResponse::getHits)
+                        .containsExactly(3L, 4L));
+        assertThat(queries).hasSize(1);
+    }
+
+    @Test
+    void failedLookupFailsEveryWaiterAndIsSentAgainLater() {
+        client = client(false);
+        failures.set(1);
+
+        List<CompletableFuture<List<EndpointStatsResponse>>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(client.findStatsAsync(START, END, List.of("/events/1"), false));
+        }
+        await(() -> queries.size() == 1);
+        release.countDown();
+
+        for (CompletableFuture<List<EndpointStatsResponse>> result : results) {
+            assertThatThrownBy(result::join).hasCauseInstanceOf(RestClientResponseException.class);
+        }
+        assertThat(client.findStatsAsync(START, END, List.of("/events/1"), false).join()).hasSize(2);
+        assertThat(queries).hasSize(2);
+    }
+
+    @Test
+    void failedBlockingLookupIsSentAgainLater() {
+        client = client(false);
+        failures.set(1);
+        release.countDown();
+
+        assertThatThrownBy(() -> client.findStats(START, END, List.of("/events/1"), false))
+                .isInstanceOf(RestClientResponseException.class);
+        assertThat(client.findStats(START, END, List.of("/events/1"), false)).hasSize(2);
+        assertThat(queries).hasSize(2);
+    }
+
+    @Test
+    void batchesSingleUriLookupsOfOneRange() {
+        client = client(true);
+        release.countDown();
+
+        CompletableFuture<List<EndpointStatsResponse>> first = client.findStatsAsync(START, END,
+                                                                                     List.of("/events/1"), false);
+        CompletableFuture<List<EndpointStatsResponse>> second = client.findStatsAsync(START, END,
+                                                                                      List.of("/events/2"), false);
+
+        assertThat(first.join()).extracting(EndpointStatsResponse::getHits).containsExactly(3L);
+        assertThat(second.join()).extracting(EndpointStatsResponse::getHits).containsExactly(4L);
+        assertThat(queries).singleElement().asString()
+                .contains("uris=/events/1").contains("uris=/events/2");
+    }
+
+    @Test
+    void asyncLookupsWaitForAConnectionOfTheBoundedPool() {
+        HttpTransportProperties transport = new HttpTransportProperties();
+        transport.setMaxConnections(1);
+        transport.setMaxConnectionsPerRoute(1);
+        client = client(false, transport);
+
+        CompletableFuture<List<EndpointStatsResponse>> first = client.findStatsAsync(START, END,
+                                                                                     List.of("/events/1"), false);
+        CompletableFuture<List<EndpointStatsResponse>> second = client.findStatsAsync(START, END,
+                                                                                      List.of("/events/2"), false);
+        await(() -> queries.size() == 1
+                && client.getAsyncConnectionPool().orElseThrow().getTotalStats().getPending() == 1);
+        release.countDown();
+
+        assertThat(first.join()).hasSize(2);
+        assertThat(second.join()).hasSize(2);
+        assertThat(queries).hasSize(2);
+    }
+
+    @Test
+    void asyncLookupsAcceptCompressedAnswers() {
+        client = client(false);
+        release.countDown();
+
+        assertThat(client.findStatsAsync(START, END, List.of("/events/1"), false).join())
+                .extracting(EndpointStatsResponse::getHits).containsExactly(3L, 4L);
+        assertThat(encodings).containsExactly("gzip");
+    }
+
+    private StatsClient client(boolean batching) {
+        return client(batching, new HttpTransportProperties());
+    }
+
+    private StatsClient client(boolean batching, HttpTransportProperties transport) {
+        LookupBatchProperties lookupBatch = new LookupBatchProperties();
+        lookupBatch.setEnabled(batching);
+        lookupBatch.setWindow(Duration.ofMillis(50));
+        CircuitBreakerProperties circuitBreaker = new CircuitBreakerProperties();
+        circuitBreaker.setLatencyBudget(Duration.ofSeconds(5));
+        return new StatsClient("http://localhost:" + server.getAddress().getPort(), new RestTemplate(),
+                               Jackson2ObjectMapperBuilder.json().build(), new HitBufferProperties(),
+                               new StandardEnvironment(), transport,
+                               circuitBreaker, lookupBatch);
+    }
+
+    private void answer(HttpExchange exchange) throws IOException {
+        queries.add(exchange.getRequestURI().getQuery());
+        String encoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (encoding != null) {
+            encodings.add(encoding);
+        }
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        boolean fail = failures.getAndUpdate(left -> Math.max(0, left - 1)) > 0;
+        byte[] body = fail ? new byte[0] : STATS.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        if (encoding != null && encoding.contains("gzip") && !fail) {
+            body = gzip(body);
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(fail ? 500 : 200, fail ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(body);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition met within 5s").isLessThan(deadline);
+            Thread.onSpinWait();
+        }
+    }
+}
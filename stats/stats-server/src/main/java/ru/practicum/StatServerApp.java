@@ -2,7 +2,13 @@ package ru.practicum;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import ru.practicum.stats.archive.HitArchiveProperties;
+import ru.practicum.stats.ingest.IngestLogProperties;
 
+@EnableScheduling
+@EnableConfigurationProperties({IngestLogProperties.class, HitArchiveProperties.class})
 @SpringBootApplication
 public class StatServerApp {
     public static void main(String[] args) {
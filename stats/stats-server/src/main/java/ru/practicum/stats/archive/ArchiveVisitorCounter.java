@@ -0,0 +1,113 @@
+package ru.practicum.stats.archive;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.bitmap.VisitorBitmap;
+import ru.practicum.stats.bitmap.VisitorBitmapStore;
+import ru.practicum.stats.model.EndpointHitCount;
+import ru.practicum.stats.model.EndpointKey;
+import ru.practicum.stats.repository.HitArchiveRepository;
+import ru.practicum.stats.repository.SketchRepository.EndpointRowHandler;
+import ru.practicum.stats.rollup.RollupPlan;
+import ru.practicum.stats.sketch.HyperLogLog;
+import ru.practicum.stats.sketch.SketchStore;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Unique visitors of a range that reaches below the archive horizon. Visitors cannot be added up across
+ * the horizon, so one distinct-visitor summary per endpoint is built from three parts and counted once:
+ * the visitor bitmaps of the archived segments, the late hits still stored for archived days, and the live
+ * range above the horizon.
+ *
+ * <p>Approximate counts merge one {@link HyperLogLog} per endpoint with the live sketches; exact counts OR one
+ * {@link VisitorBitmap} per endpoint with the live visitor bitmaps, or collect ip sets when those are disabled.
+ * The result cache is not used: its unique entries are built from endpoint_hits and miss the archived hits.
+ * Must run under {@link HitArchive#read}.
+ */
+@Component
+@RequiredArgsConstructor
+public class ArchiveVisitorCounter {
+    private final HitArchive hitArchive;
+    private final HitArchiveRepository hitArchiveRepository;
+    private final SketchStore sketchStore;
+    private final VisitorBitmapStore visitorBitmapStore;
+
+    public List<EndpointHitCount> count(LocalDateTime start, LocalDateTime end, List<Integer> uriIds,
+                                        boolean approximate, LocalDateTime horizon) {
+        LocalDateTime lateEnd = end.isBefore(horizon) ? end : horizon.minus(1, ChronoUnit.MICROS);
+        boolean live = !end.isBefore(horizon);
+        if (approximate && sketchStore.isEnabled()) {
+            return estimate(start, end, uriIds, horizon, lateEnd, live);
+        }
+        if (visitorBitmapStore.isEnabled()) {
+            return countBitmaps(start, end, uriIds, horizon, lateEnd, live);
+        }
+        return countIps(start, end, uriIds);
+    }
+
+    private List<EndpointHitCount> estimate(LocalDateTime start, LocalDateTime end, List<Integer> uriIds,
+                                            LocalDateTime horizon, LocalDateTime lateEnd, boolean live) {
+        Map<EndpointKey, HyperLogLog> sketches = live
+                ? sketchStore.collect(RollupPlan.of(horizon, end), uriIds)
+                : new HashMap<>();
+        hitArchive.scanVisitorHashes(start, end, uriIds, (appId, uriId, hash) -> sketch(sketches, appId, uriId)
+                .addHash(hash));
+        hitArchiveRepository.scanHits(start, lateEnd, uriIds, true, (appId, uriId, ip) ->
+                sketch(sketches, appId, uriId).add(ip));
+        List<EndpointHitCount> result = new ArrayList<>(sketches.size());
+        sketches.forEach((key, sketch) -> result.add(new EndpointHitCount(key.appId(), key.uriId(),
+                                                                          sketch.cardinality())));
+        return sorted(result);
+    }
+
+    private List<EndpointHitCount> countBitmaps(LocalDateTime start, LocalDateTime end, List<Integer> uriIds,
+                                                LocalDateTime horizon, LocalDateTime lateEnd, boolean live) {
+        Map<EndpointKey, VisitorBitmap> bitmaps = live
+                ? visitorBitmapStore.collect(RollupPlan.of(horizon, end), uriIds)
+                : new HashMap<>();
+        hitArchive.scanVisitorIds(start, end, uriIds, (appId, uriId, visitorId) ->
+                bitmap(bitmaps, appId, uriId).add(visitorId));
+        hitArchiveRepository.scanVisitorIds(start, lateEnd, uriIds, (appId, uriId, visitorId) ->
+                bitmap(bitmaps, appId, uriId).add(visitorId));
+        List<EndpointHitCount> result = new ArrayList<>(bitmaps.size());
+        bitmaps.forEach((key, bitmap) -> result.add(new EndpointHitCount(key.appId(), key.uriId(),
+                                                                         bitmap.cardinality())));
+        return sorted(result);
+    }
+
+    private List<EndpointHitCount> countIps(LocalDateTime start, LocalDateTime end, List<Integer> uriIds) {
+        Map<EndpointKey, Set<ByteBuffer>> visitors = new HashMap<>();
+        EndpointRowHandler collect = (appId, uriId, ip) -> visitors
+                .computeIfAbsent(new EndpointKey(appId, uriId), key -> new HashSet<>())
+                .add(ByteBuffer.wrap(ip));
+        hitArchive.scanVisitorIps(start, end, uriIds, collect);
+        hitArchiveRepository.scanHits(start, end, uriIds, true, collect);
+        List<EndpointHitCount> result = new ArrayList<>(visitors.size());
+        visitors.forEach((key, ips) -> result.add(new EndpointHitCount(key.appId(), key.uriId(), (long) ips.size())));
+        return sorted(result);
+    }
+
+    private HyperLogLog sketch(Map<EndpointKey, HyperLogLog> sketches, int appId, int uriId) {
+        return sketches.computeIfAbsent(new EndpointKey(appId, uriId),
+                                        key -> new HyperLogLog(sketchStore.getPrecision()));
+    }
+
+    private static VisitorBitmap bitmap(Map<EndpointKey, VisitorBitmap> bitmaps, int appId, int uriId) {
+        return bitmaps.computeIfAbsent(new EndpointKey(appId, uriId), key -> new VisitorBitmap());
+    }
+
+    private static List<EndpointHitCount> sorted(List<EndpointHitCount> counts) {
+        counts.sort(Comparator.comparing(EndpointHitCount::hits).reversed());
+        return counts;
+    }
+}
@@ -0,0 +1,334 @@
+package ru.practicum.stats.archive;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.stats.repository.HitArchiveRepository;
+import ru.practicum.stats.repository.HitArchiveRepository.TimedRowHandler;
+import ru.practicum.stats.repository.HitArchiveRepository.VisitorIdRowHandler;
+import ru.practicum.stats.repository.SketchRepository.EndpointRowHandler;
+import ru.practicum.stats.repository.VisitorBitmapRepository;
+import ru.practicum.stats.shard.ShardRouter;
+import ru.practicum.stats.sketch.HyperLogLog;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Moves whole days of hits older than {@code stats.archive.age} out of endpoint_hits into {@link HitSegment} files,
+ * one directory per shard. A day is deleted from endpoint_hits and recorded in hit_archive_segments in the same
+ * transaction that writes its segment, and the segment becomes visible to queries under the write lock of its
+ * shard at commit, so a query holding the read lock sees every hit either in endpoint_hits or in a segment.
+ * Hits that arrive later for an archived day stay in endpoint_hits until the next run archives them into another
+ * segment of that day.
+ */
+@Slf4j
+@Component
+@DependsOn("storageInitializer")
+@RequiredArgsConstructor
+public class HitArchive implements InitializingBean {
+    private static final String SUFFIX = ".seg";
+
+    private final HitArchiveProperties properties;
+    private final HitArchiveRepository hitArchiveRepository;
+    private final VisitorBitmapRepository visitorBitmapRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
+    private final Map<Integer, NavigableMap<LocalDate, List<HitSegment>>> segments = new ConcurrentHashMap<>();
+    private final Map<Integer, ReentrantReadWriteLock> locks = new ConcurrentHashMap<>();
+
+    @Value("${stats.partition.retention-days:0}")
+    private int retentionDays;
+
+    @Override
+    public void afterPropertiesSet() {
+        shardRouter.forEachShard(this::openShard);
+    }
+
+    /**
+     * Runs the query under the read lock of the current shard with the start of the time that is not archived
+     * yet, or with an empty horizon when the shard has no segments.
+     */
+    public <T> T read(Function<Optional<LocalDateTime>, T> query) {
+        ReentrantReadWriteLock lock = locks.get(ShardRouter.currentShard());
+        if (lock == null) {
+            return query.apply(Optional.empty());
+        }
+        lock.readLock().lock();
+        try {
+            NavigableMap<LocalDate, List<HitSegment>> days = segments.get(ShardRouter.currentShard());
+            return query.apply(days.isEmpty()
+                                       ? Optional.empty()
+                                       : Optional.of(days.lastKey().plusDays(1).atStartOfDay()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Passes every archived hit of the current shard in [start, end] to the handler.
+     */
+    public void scan(LocalDateTime start, LocalDateTime end, List<Integer> uriIds, EndpointRowHandler handler) {
+        scanSegments(start, end, uriIds, (appId, uriId, ip, micros) -> handler.accept(appId, uriId, ip));
+    }
+
+    public void scanTimed(LocalDateTime start, LocalDateTime end, List<Integer> uriIds, TimedRowHandler handler) {
+        scanSegments(start, end, uriIds, (appId, uriId, ip, micros) ->
+                handler.accept(appId, uriId, ip, HitSegment.timestamp(micros)));
+    }
+
+    /**
+     * Passes the {@link HyperLogLog#hash} of the ip of every archived (app, uri, ip) visit of the current shard
+     * in [start, end] to the handler, at least once each.
+     */
+    public void scanVisitorHashes(LocalDateTime start, LocalDateTime end, List<Integer> uriIds,
+                                  HashRowHandler handler) {
+        Set<Integer> uriFilter = filter(uriIds);
+        forEachSegment(start, end, segment -> {
+            long[] hashes = segment.ipHashes();
+            segment.scanVisitors(start, end, uriFilter, (appId, uriId, ip) ->
+                    handler.accept(appId, uriId, hashes[ip]));
+        });
+    }
+
+    /**
+     * Passes the visitor id of the ip of every archived (app, uri, ip) visit of the current shard in [start, end]
+     * to the handler, at least once each. The ips of a segment are resolved to ids on its first such scan,
+     * registering those that have none yet.
+     */
+    public void scanVisitorIds(LocalDateTime start, LocalDateTime end, List<Integer> uriIds,
+                               VisitorIdRowHandler handler) {
+        Set<Integer> uriFilter = filter(uriIds);
+        forEachSegment(start, end, segment -> {
+            int[] ids = segment.visitorIds(this::resolveVisitors);
+            segment.scanVisitors(start, end, uriFilter, (appId, uriId, ip) ->
+                    handler.accept(appId, uriId, ids[ip]));
+        });
+    }
+
+    /**
+     * Passes every archived (app, uri, ip) visit of the current shard in [start, end] to the handler, at least
+     * once each.
+     */
+    public void scanVisitorIps(LocalDateTime start, LocalDateTime end, List<Integer> uriIds,
+                               EndpointRowHandler handler) {
+        Set<Integer> uriFilter = filter(uriIds);
+        forEachSegment(start, end, segment -> {
+            byte[][] ips = segment.ips();
+            segment.scanVisitors(start, end, uriFilter, (appId, uriId, ip) ->
+                    handler.accept(appId, uriId, ips[ip]));
+        });
+    }
+
+    @Scheduled(cron = "${stats.archive.cron:0 30 3 * * *}")
+    public void archive() {
+        if (properties.isEnabled()) {
+            shardRouter.forEachShard(this::archiveShard);
+        }
+    }
+
+    private void scanSegments(LocalDateTime start, LocalDateTime end, List<Integer> uriIds,
+                              HitSegment.SegmentRowHandler handler) {
+        Set<Integer> uriFilter = filter(uriIds);
+        forEachSegment(start, end, segment -> segment.scan(start, end, uriFilter, handler));
+    }
+
+    private void forEachSegment(LocalDateTime start, LocalDateTime end, Consumer<HitSegment> action) {
+        NavigableMap<LocalDate, List<HitSegment>> days = segments.get(ShardRouter.currentShard());
+        if (days == null) {
+            return;
+        }
+        for (List<HitSegment> daySegments : days.subMap(start.toLocalDate(), true, end.toLocalDate(), true)
+                .values()) {
+            for (HitSegment segment : daySegments) {
+                if (segment.overlaps(start, end)) {
+                    action.accept(segment);
+                }
+            }
+        }
+    }
+
+    private int[] resolveVisitors(byte[][] ips) {
+        Map<ByteBuffer, Integer> ids = visitorBitmapRepository.findVisitorIds(Arrays.asList(ips));
+        if (ids.size() < ips.length) {
+            Set<byte[]> missing = new TreeSet<>(Arrays::compareUnsigned);
+            for (byte[] ip : ips) {
+                if (!ids.containsKey(ByteBuffer.wrap(ip))) {
+                    missing.add(ip);
+                }
+            }
+            transactionTemplate.executeWithoutResult(status -> visitorBitmapRepository.registerVisitors(missing));
+            ids.putAll(visitorBitmapRepository.findVisitorIds(new ArrayList<>(missing)));
+        }
+        int[] result = new int[ips.length];
+        for (int i = 0; i < ips.length; i++) {
+            result[i] = ids.get(ByteBuffer.wrap(ips[i]));
+        }
+        return result;
+    }
+
+    private static Set<Integer> filter(List<Integer> uriIds) {
+        return uriIds == null ? null : new HashSet<>(uriIds);
+    }
+
+    private void openShard() {
+        int shard = ShardRouter.currentShard();
+        Map<String, LocalDate> manifest = hitArchiveRepository.findSegments();
+        if (!properties.isEnabled() && manifest.isEmpty()) {
+            return;
+        }
+        Path directory = directory(shard);
+        NavigableMap<LocalDate, List<HitSegment>> days = new ConcurrentSkipListMap<>();
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.toList()) {
+                    LocalDate day = manifest.remove(file.getFileName().toString());
+                    if (day != null) {
+                        days.computeIfAbsent(day, d -> new CopyOnWriteArrayList<>()).add(HitSegment.open(file));
+                    } else if (file.getFileName().toString().contains(SUFFIX)) {
+                        Files.delete(file);
+                        log.warn("[HitArchive] Deleted {}, which was never committed", file);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (!manifest.isEmpty()) {
+            log.error("[HitArchive] Segments {} of shard {} are missing from {}, their hits are not counted",
+                      manifest.keySet(), shard, directory.toAbsolutePath());
+        }
+        segments.put(shard, days);
+        locks.put(shard, new ReentrantReadWriteLock());
+        log.info("[HitArchive] Opened {} segments of shard {}", days.values().stream().mapToInt(List::size).sum(),
+                 shard);
+    }
+
+    private void archiveShard() {
+        LocalDate cutoff = LocalDate.now().minusDays(properties.getAge().toDays());
+        Optional<LocalDateTime> first = hitArchiveRepository.findFirstHitBefore(cutoff.atStartOfDay());
+        if (first.isPresent()) {
+            for (LocalDate day = first.get().toLocalDate(); day.isBefore(cutoff); day = day.plusDays(1)) {
+                archiveDay(day);
+            }
+        }
+        if (retentionDays > 0) {
+            dropBefore(LocalDate.now().minusDays(retentionDays));
+        }
+    }
+
+    private void archiveDay(LocalDate day) {
+        int shard = ShardRouter.currentShard();
+        Path file = directory(shard).resolve("hits-" + day + "-" + System.currentTimeMillis() + SUFFIX);
+        ReentrantReadWriteLock lock = locks.get(shard);
+        Integer archived = transactionTemplate.execute(status -> {
+            HitSegment.Writer writer = new HitSegment.Writer();
+            hitArchiveRepository.takeHits(day.atStartOfDay(), day.plusDays(1).atStartOfDay(), writer::add);
+            if (writer.rows() == 0) {
+                return 0;
+            }
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    lock.writeLock().lock();
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    try {
+                        if (status == STATUS_COMMITTED) {
+                            register(shard, day, file);
+                        } else {
+                            deleteSegmentFile(file);
+                        }
+                    } finally {
+                        if (lock.isWriteLockedByCurrentThread()) {
+                            lock.writeLock().unlock();
+                        }
+                    }
+                }
+            });
+            try {
+                writer.write(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            hitArchiveRepository.saveSegment(file.getFileName().toString(), day, writer.rows());
+            return writer.rows();
+        });
+        if (archived != null && archived > 0) {
+            log.info("[HitArchive] Archived {} hits of {} on shard {} into {}", archived, day, shard,
+                     file.getFileName());
+        }
+    }
+
+    private void register(int shard, LocalDate day, Path file) {
+        try {
+            segments.get(shard).computeIfAbsent(day, d -> new CopyOnWriteArrayList<>()).add(HitSegment.open(file));
+        } catch (IOException e) {
+            log.error("[HitArchive] Could not open committed segment {}, its hits are not counted until restart",
+                      file, e);
+        }
+    }
+
+    private void dropBefore(LocalDate day) {
+        int shard = ShardRouter.currentShard();
+        List<String> files = transactionTemplate.execute(status -> hitArchiveRepository.deleteSegmentsBefore(day));
+        ReentrantReadWriteLock lock = locks.get(shard);
+        lock.writeLock().lock();
+        try {
+            segments.get(shard).headMap(day).clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (files != null) {
+            files.forEach(name -> deleteSegmentFile(directory(shard).resolve(name)));
+        }
+    }
+
+    private Path directory(int shard) {
+        return properties.getDirectory().resolve("shard-" + shard);
+    }
+
+    private static void deleteSegmentFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("[HitArchive] Could not delete {}: {}", file, e.getMessage());
+        }
+    }
+
+    @FunctionalInterface
+    public interface HashRowHandler {
+        void accept(int appId, int uriId, long hash);
+    }
+}
@@ -0,0 +1,20 @@
+package ru.practicum.stats.archive;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Getter
+@Setter
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@ConfigurationProperties(prefix = "stats.archive")
+public class HitArchiveProperties {
+    boolean enabled = false;
+    Path directory = Path.of("hit-archive");
+    Duration age = Duration.ofDays(90);
+}
@@ -0,0 +1,408 @@
+package ru.practicum.stats.archive;
+
+import ru.practicum.stats.bitmap.VisitorBitmap;
+import ru.practicum.stats.sketch.HyperLogLog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Immutable, memory-mapped file of archived hits sorted by time.
+ *
+ * <p>After a fixed header the file holds deflated blocks: the app, uri and ip dictionaries of the segment,
+ * then the columns of the hits: timestamps as varint deltas in microseconds and the app, uri and ip of every hit
+ * as varint indexes into the dictionaries. Since version 2 a last block keeps, for every endpoint, the bitmap of
+ * the ip indexes that visited it, so unique visitors of the whole segment are read without touching the columns.
+ * A scan reads the uri dictionary first and skips the segment when none of the requested uris occur in it.
+ */
+final class HitSegment {
+    private static final int MAGIC = 0x45574D48;
+    private static final byte VERSION = 2;
+    private static final int HEADER_SIZE = 4 + 1 + 4 + 8 + 8;
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final int rows;
+    private final long minMicros;
+    private final long maxMicros;
+    private final int[] blockOffsets = new int[Block.values().length];
+    private volatile long[] ipHashes;
+    private volatile int[] visitorIds;
+
+    private HitSegment(Path path, MappedByteBuffer buffer) {
+        this.path = path;
+        this.buffer = buffer;
+        ByteBuffer view = buffer.duplicate();
+        if (view.getInt() != MAGIC) {
+            throw new IllegalStateException("Not a hit archive segment: " + path);
+        }
+        int version = view.get();
+        if (version < 1 || version > VERSION) {
+            throw new IllegalStateException("Unsupported version " + version + " of hit archive segment " + path);
+        }
+        this.rows = view.getInt();
+        this.minMicros = view.getLong();
+        this.maxMicros = view.getLong();
+        for (Block block : Block.values()) {
+            if (block.since > version) {
+                blockOffsets[block.ordinal()] = -1;
+                continue;
+            }
+            blockOffsets[block.ordinal()] = view.position();
+            view.getInt();
+            int length = view.getInt();
+            view.position(view.position() + length);
+        }
+    }
+
+    static HitSegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new HitSegment(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Passes every hit in [start, end] of the given uris, or of all uris when {@code uriIds} is null,
+     * to the handler.
+     */
+    void scan(LocalDateTime start, LocalDateTime end, Set<Integer> uriIds, SegmentRowHandler handler) {
+        if (overlaps(start, end)) {
+            byte[][] ips = readIps();
+            scanRows(micros(start), micros(end), uriIds, (appId, uriId, ip, micros) ->
+                    handler.accept(appId, uriId, ips[ip], micros));
+        }
+    }
+
+    /**
+     * Passes every (app, uri, ip index) visit of the given uris in [start, end] to the handler, at least once.
+     * A segment that lies wholly inside the range is answered from its visitor bitmaps, once per visitor; one
+     * that is cut by the range, or that predates the bitmaps, is scanned row by row.
+     */
+    void scanVisitors(LocalDateTime start, LocalDateTime end, Set<Integer> uriIds, VisitorHandler handler) {
+        long from = micros(start);
+        long to = micros(end);
+        if (maxMicros < from || minMicros > to) {
+            return;
+        }
+        if (blockOffsets[Block.VISITORS.ordinal()] < 0 || minMicros < from || maxMicros > to) {
+            scanRows(from, to, uriIds, (appId, uriId, ip, micros) -> handler.accept(appId, uriId, ip));
+            return;
+        }
+        int[] apps = readInts(Block.APPS);
+        int[] uris = readInts(Block.URIS);
+        ByteBuffer visitors = ByteBuffer.wrap(inflate(Block.VISITORS));
+        int endpoints = visitors.getInt();
+        for (int i = 0; i < endpoints; i++) {
+            int appId = apps[visitors.getInt()];
+            int uriId = uris[visitors.getInt()];
+            byte[] bitmap = new byte[visitors.getInt()];
+            visitors.get(bitmap);
+            if (uriIds == null || uriIds.contains(uriId)) {
+                VisitorBitmap.fromBytes(bitmap).forEach(ip -> handler.accept(appId, uriId, ip));
+            }
+        }
+    }
+
+    byte[][] ips() {
+        return readIps();
+    }
+
+    /**
+     * Returns the {@link HyperLogLog#hash} of every ip of the dictionary, computed once per segment.
+     */
+    long[] ipHashes() {
+        long[] hashes = ipHashes;
+        if (hashes == null) {
+            byte[][] ips = readIps();
+            hashes = new long[ips.length];
+            for (int i = 0; i < ips.length; i++) {
+                hashes[i] = HyperLogLog.hash(ips[i]);
+            }
+            ipHashes = hashes;
+        }
+        return hashes;
+    }
+
+    /**
+     * Returns the visitor id of every ip of the dictionary, resolved once per segment. Visitor ids never change,
+     * so the result stays valid for the life of the segment.
+     */
+    int[] visitorIds(Function<byte[][], int[]> resolver) {
+        int[] ids = visitorIds;
+        if (ids == null) {
+            ids = resolver.apply(readIps());
+            visitorIds = ids;
+        }
+        return ids;
+    }
+
+    boolean overlaps(LocalDateTime start, LocalDateTime end) {
+        return maxMicros >= micros(start) && minMicros <= micros(end);
+    }
+
+    private void scanRows(long from, long to, Set<Integer> uriIds, IndexRowHandler handler) {
+        if (maxMicros < from || minMicros > to) {
+            return;
+        }
+        int[] uris = readInts(Block.URIS);
+        boolean[] selected = new boolean[uris.length];
+        boolean any = false;
+        for (int i = 0; i < uris.length; i++) {
+            selected[i] = uriIds == null || uriIds.contains(uris[i]);
+            any |= selected[i];
+        }
+        if (!any) {
+            return;
+        }
+        int[] apps = readInts(Block.APPS);
+        ByteBuffer timestamps = ByteBuffer.wrap(inflate(Block.TIMESTAMPS));
+        ByteBuffer appColumn = ByteBuffer.wrap(inflate(Block.APP_COLUMN));
+        ByteBuffer uriColumn = ByteBuffer.wrap(inflate(Block.URI_COLUMN));
+        ByteBuffer ipColumn = ByteBuffer.wrap(inflate(Block.IP_COLUMN));
+
+        long micros = minMicros;
+        for (int row = 0; row < rows; row++) {
+            micros += readVarLong(timestamps);
+            int app = (int) readVarLong(appColumn);
+            int uri = (int) readVarLong(uriColumn);
+            int ip = (int) readVarLong(ipColumn);
+            if (micros > to) {
+                return;
+            }
+            if (micros >= from && selected[uri]) {
+                handler.accept(apps[app], uris[uri], ip, micros);
+            }
+        }
+    }
+
+    private int[] readInts(Block block) {
+        ByteBuffer values = ByteBuffer.wrap(inflate(block));
+        int[] result = new int[values.getInt()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.getInt();
+        }
+        return result;
+    }
+
+    private byte[][] readIps() {
+        ByteBuffer values = ByteBuffer.wrap(inflate(Block.IPS));
+        byte[][] result = new byte[values.getInt()][];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = new byte[values.get()];
+            values.get(result[i]);
+        }
+        return result;
+    }
+
+    private byte[] inflate(Block block) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(blockOffsets[block.ordinal()]);
+        byte[] result = new byte[view.getInt()];
+        int length = view.getInt();
+        view.limit(view.position() + length);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(view);
+            int read = 0;
+            while (read < result.length && !inflater.finished()) {
+                read += inflater.inflate(result, read, result.length - read);
+            }
+            return result;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt " + block + " block in " + path, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] intDictionary(Collection<Integer> values) {
+        ByteBuffer buffer = ByteBuffer.allocate(4 + values.size() * 4).putInt(values.size());
+        values.forEach(buffer::putInt);
+        return buffer.array();
+    }
+
+    private static byte[] ipDictionary(Collection<ByteBuffer> values) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(ByteBuffer.allocate(4).putInt(values.size()).array());
+        for (ByteBuffer ip : values) {
+            out.write(ip.array().length);
+            out.writeBytes(ip.array());
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeBlock(ByteArrayOutputStream out, byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                compressed.write(chunk, 0, deflater.deflate(chunk));
+            }
+        } finally {
+            deflater.end();
+        }
+        out.writeBytes(ByteBuffer.allocate(8).putInt(raw.length).putInt(compressed.size()).array());
+        out.writeBytes(compressed.toByteArray());
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    static LocalDateTime timestamp(long micros) {
+        return EPOCH.plus(micros, ChronoUnit.MICROS);
+    }
+
+    private static long micros(LocalDateTime timestamp) {
+        return ChronoUnit.MICROS.between(EPOCH, timestamp);
+    }
+
+    /**
+     * Builds a segment from hits added in time order. Only the compact columns and dictionaries are kept in
+     * memory, so a day of hits can be streamed into it.
+     */
+    static final class Writer {
+        private final Map<Integer, Integer> apps = new LinkedHashMap<>();
+        private final Map<Integer, Integer> uris = new LinkedHashMap<>();
+        private final Map<ByteBuffer, Integer> ips = new LinkedHashMap<>();
+        private final Map<Long, VisitorBitmap> visitors = new LinkedHashMap<>();
+        private final ByteArrayOutputStream timestamps = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream appColumn = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream uriColumn = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream ipColumn = new ByteArrayOutputStream();
+        private long minMicros;
+        private long previous;
+        private int rows;
+
+        void add(int appId, int uriId, byte[] ip, LocalDateTime timestamp) {
+            long micros = micros(timestamp);
+            if (rows == 0) {
+                minMicros = micros;
+                previous = micros;
+            } else if (micros < previous) {
+                throw new IllegalStateException("Hits must be added in time order");
+            }
+            writeVarLong(timestamps, micros - previous);
+            previous = micros;
+            int app = apps.computeIfAbsent(appId, k -> apps.size());
+            int uri = uris.computeIfAbsent(uriId, k -> uris.size());
+            int ipIndex = ips.computeIfAbsent(ByteBuffer.wrap(ip), k -> ips.size());
+            writeVarLong(appColumn, app);
+            writeVarLong(uriColumn, uri);
+            writeVarLong(ipColumn, ipIndex);
+            visitors.computeIfAbsent((long) app << 32 | uri, k -> new VisitorBitmap()).add(ipIndex);
+            rows++;
+        }
+
+        int rows() {
+            return rows;
+        }
+
+        /**
+         * Writes the segment to a temporary file, forces it to disk and moves it into place, so that a segment
+         * file is either complete or absent.
+         */
+        void write(Path path) throws IOException {
+            if (rows == 0) {
+                throw new IllegalStateException("A segment must hold at least one hit");
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.writeBytes(ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).put(VERSION).putInt(rows)
+                                   .putLong(minMicros).putLong(previous).array());
+            writeBlock(out, intDictionary(apps.keySet()));
+            writeBlock(out, intDictionary(uris.keySet()));
+            writeBlock(out, ipDictionary(ips.keySet()));
+            writeBlock(out, timestamps.toByteArray());
+            writeBlock(out, appColumn.toByteArray());
+            writeBlock(out, uriColumn.toByteArray());
+            writeBlock(out, ipColumn.toByteArray());
+            writeBlock(out, visitorBlock());
+
+            Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                                                        StandardOpenOption.TRUNCATE_EXISTING,
+                                                        StandardOpenOption.WRITE)) {
+                ByteBuffer content = ByteBuffer.wrap(out.toByteArray());
+                while (content.hasRemaining()) {
+                    channel.write(content);
+                }
+                channel.force(true);
+            }
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        private byte[] visitorBlock() {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.writeBytes(ByteBuffer.allocate(4).putInt(visitors.size()).array());
+            visitors.forEach((endpoint, bitmap) -> {
+                byte[] bytes = bitmap.toBytes();
+                out.writeBytes(ByteBuffer.allocate(12).putInt((int) (endpoint >>> 32)).putInt(endpoint.intValue())
+                                       .putInt(bytes.length).array());
+                out.writeBytes(bytes);
+            });
+            return out.toByteArray();
+        }
+    }
+
+    @FunctionalInterface
+    interface SegmentRowHandler {
+        void accept(int appId, int uriId, byte[] ip, long micros);
+    }
+
+    @FunctionalInterface
+    interface VisitorHandler {
+        void accept(int appId, int uriId, int ip);
+    }
+
+    @FunctionalInterface
+    private interface IndexRowHandler {
+        void accept(int appId, int uriId, int ip, long micros);
+    }
+
+    private enum Block {
+        APPS(1), URIS(1), IPS(1), TIMESTAMPS(1), APP_COLUMN(1), URI_COLUMN(1), IP_COLUMN(1), VISITORS(2);
+
+        private final int since;
+
+        Block(int since) {
+            this.since = since;
+        }
+    }
+}
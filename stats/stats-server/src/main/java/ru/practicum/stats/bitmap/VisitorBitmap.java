@@ -0,0 +1,242 @@
+package ru.practicum.stats.bitmap;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed set of non-negative visitor ids laid out like a Roaring bitmap.
+ *
+ * <p>Ids are split by their high 16 bits into containers of up to 65536 values. A container keeps its low
+ * 16 bits as a sorted {@code char} array while it holds at most 4096 of them and switches to a 8 KB bitset
+ * once it grows past that, so every container costs at most two bytes per value or 8 KB, whichever is less.
+ * Unions and cardinality are computed container by container without decompressing the set.
+ */
+public class VisitorBitmap {
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITSET_WORDS = 1024;
+
+    private char[] keys = new char[0];
+    private Container[] containers = new Container[0];
+    private int size;
+
+    public void add(int id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Visitor id must not be negative: " + id);
+        }
+        container((char) (id >>> 16)).add((char) id);
+    }
+
+    public VisitorBitmap or(VisitorBitmap other) {
+        for (int i = 0; i < other.size; i++) {
+            container(other.keys[i]).or(other.containers[i]);
+        }
+        return this;
+    }
+
+    public long cardinality() {
+        long cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality;
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Passes every id to the action in ascending order.
+     */
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            int high = keys[i] << 16;
+            Container container = containers[i];
+            if (container.isBitset()) {
+                for (int word = 0; word < BITSET_WORDS; word++) {
+                    long bits = container.words[word];
+                    while (bits != 0) {
+                        action.accept(high | word << 6 | Long.numberOfTrailingZeros(bits));
+                        bits &= bits - 1;
+                    }
+                }
+            } else {
+                for (int j = 0; j < container.cardinality; j++) {
+                    action.accept(high | container.values[j]);
+                }
+            }
+        }
+    }
+
+    public byte[] toBytes() {
+        int length = 4;
+        for (int i = 0; i < size; i++) {
+            length += 2 + 2 + (containers[i].isBitset() ? BITSET_WORDS * 8 : containers[i].cardinality * 2);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.putInt(size);
+        for (int i = 0; i < size; i++) {
+            Container container = containers[i];
+            buffer.putChar(keys[i]).putChar((char) (container.cardinality - 1));
+            if (container.isBitset()) {
+                buffer.asLongBuffer().put(container.words);
+                buffer.position(buffer.position() + BITSET_WORDS * 8);
+            } else {
+                buffer.asCharBuffer().put(container.values, 0, container.cardinality);
+                buffer.position(buffer.position() + container.cardinality * 2);
+            }
+        }
+        return buffer.array();
+    }
+
+    public static VisitorBitmap fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        VisitorBitmap bitmap = new VisitorBitmap();
+        int count = buffer.getInt();
+        bitmap.keys = new char[count];
+        bitmap.containers = new Container[count];
+        for (int i = 0; i < count; i++) {
+            bitmap.keys[i] = buffer.getChar();
+            Container container = new Container();
+            container.cardinality = buffer.getChar() + 1;
+            if (container.cardinality > ARRAY_MAX) {
+                container.words = new long[BITSET_WORDS];
+                buffer.asLongBuffer().get(container.words);
+                buffer.position(buffer.position() + BITSET_WORDS * 8);
+            } else {
+                container.values = new char[container.cardinality];
+                buffer.asCharBuffer().get(container.values);
+                buffer.position(buffer.position() + container.cardinality * 2);
+            }
+            bitmap.containers[i] = container;
+        }
+        bitmap.size = count;
+        return bitmap;
+    }
+
+    private Container container(char key) {
+        int index = Arrays.binarySearch(keys, 0, size, key);
+        if (index >= 0) {
+            return containers[index];
+        }
+        index = -index - 1;
+        if (size == keys.length) {
+            int capacity = Math.max(4, size * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        Container container = new Container();
+        keys[index] = key;
+        containers[index] = container;
+        size++;
+        return container;
+    }
+
+    /**
+     * Low 16 bits of the ids sharing one high half: a sorted array up to {@link #ARRAY_MAX} values, a bitset
+     * above that. Containers only ever grow, so a bitset never has to turn back into an array.
+     */
+    private static final class Container {
+        private char[] values = new char[4];
+        private long[] words;
+        private int cardinality;
+
+        private boolean isBitset() {
+            return words != null;
+        }
+
+        private void add(char value) {
+            if (isBitset()) {
+                set(value);
+                return;
+            }
+            int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) {
+                return;
+            }
+            if (cardinality == ARRAY_MAX) {
+                toBitset();
+                set(value);
+                return;
+            }
+            index = -index - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, cardinality * 2));
+            }
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = value;
+            cardinality++;
+        }
+
+        private void or(Container other) {
+            if (other.isBitset()) {
+                if (!isBitset()) {
+                    toBitset();
+                }
+                int merged = 0;
+                for (int i = 0; i < BITSET_WORDS; i++) {
+                    words[i] |= other.words[i];
+                    merged += Long.bitCount(words[i]);
+                }
+                cardinality = merged;
+            } else if (isBitset()) {
+                for (int i = 0; i < other.cardinality; i++) {
+                    set(other.values[i]);
+                }
+            } else {
+                mergeArrays(other);
+            }
+        }
+
+        private void mergeArrays(Container other) {
+            char[] merged = new char[cardinality + other.cardinality];
+            int i = 0;
+            int j = 0;
+            int n = 0;
+            while (i < cardinality && j < other.cardinality) {
+                char a = values[i];
+                char b = other.values[j];
+                if (a == b) {
+                    i++;
+                    j++;
+                } else if (a < b) {
+                    i++;
+                } else {
+                    j++;
+                }
+                merged[n++] = a <= b ? a : b;
+            }
+            while (i < cardinality) {
+                merged[n++] = values[i++];
+            }
+            while (j < other.cardinality) {
+                merged[n++] = other.values[j++];
+            }
+            values = merged;
+            cardinality = n;
+            if (cardinality > ARRAY_MAX) {
+                toBitset();
+            }
+        }
+
+        private void toBitset() {
+            words = new long[BITSET_WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+            values = null;
+        }
+
+        private void set(char value) {
+            long mask = 1L << value;
+            int word = value >>> 6;
+            if ((words[word] & mask) == 0) {
+                words[word] |= mask;
+                cardinality++;
+            }
+        }
+    }
+}
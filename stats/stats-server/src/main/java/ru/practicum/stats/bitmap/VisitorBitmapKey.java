@@ -0,0 +1,6 @@
+package ru.practicum.stats.bitmap;
+
+import java.time.LocalDateTime;
+
+public record VisitorBitmapKey(int appId, int uriId, LocalDateTime bucket) {
+}
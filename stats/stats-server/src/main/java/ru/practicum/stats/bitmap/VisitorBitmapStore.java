@@ -0,0 +1,159 @@
+package ru.practicum.stats.bitmap;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.model.EndpointHitCount;
+import ru.practicum.stats.model.EndpointKey;
+import ru.practicum.stats.repository.VisitorBitmapRepository;
+import ru.practicum.stats.rollup.RollupGranularity;
+import ru.practicum.stats.rollup.RollupPlan;
+import ru.practicum.stats.shard.ShardRouter;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Exact unique visitor counts kept as one {@link VisitorBitmap} per endpoint and day.
+ *
+ * <p>Every ip gets a dense int id from the {@code visitors} table of its shard. Ingest only appends
+ * (endpoint, day, visitor) deltas in the transaction of the hits, and a scheduled compaction folds them
+ * into the day bitmaps, so the write path never rewrites a bitmap. Queries OR the bitmaps and pending deltas
+ * of the whole days with the visitor ids of the raw hits around them.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class VisitorBitmapStore {
+    private static final Comparator<VisitorBitmapKey> KEY_ORDER = Comparator.comparing(VisitorBitmapKey::uriId)
+            .thenComparing(VisitorBitmapKey::bucket)
+            .thenComparing(VisitorBitmapKey::appId);
+    private static final Comparator<Map.Entry<VisitorBitmapKey, byte[]>> DELTA_ORDER =
+            Map.Entry.<VisitorBitmapKey, byte[]>comparingByKey(KEY_ORDER)
+                    .thenComparing(Map.Entry::getValue, Arrays::compareUnsigned);
+
+    private final VisitorBitmapRepository visitorBitmapRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
+
+    @Value("${stats.bitmap.enabled:false}")
+    private boolean enabled;
+    @Value("${stats.bitmap.compact-batch:500}")
+    private int compactBatch;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Registers the visitors of the hits and queues their deltas. Must run in the transaction that stores
+     * the hits, so that a committed hit is always visible to {@link #countUnique}.
+     */
+    public void record(List<EndpointHit> hits) {
+        Set<byte[]> ips = new TreeSet<>(Arrays::compareUnsigned);
+        Set<Map.Entry<VisitorBitmapKey, byte[]>> deltas = new TreeSet<>(DELTA_ORDER);
+        for (EndpointHit hit : hits) {
+            ips.add(hit.getIp());
+            VisitorBitmapKey key = new VisitorBitmapKey(hit.getAppId(), hit.getUriId(),
+                                                        RollupGranularity.DAY.floor(hit.getTimestamp()));
+            deltas.add(new AbstractMap.SimpleImmutableEntry<>(key, hit.getIp()));
+        }
+        visitorBitmapRepository.registerVisitors(ips);
+        visitorBitmapRepository.insertDeltas(deltas);
+    }
+
+    public List<EndpointHitCount> countUnique(RollupPlan plan, List<Integer> uriIds) {
+        Map<EndpointKey, VisitorBitmap> merged = collect(plan, uriIds);
+        List<EndpointHitCount> result = new ArrayList<>(merged.size());
+        merged.forEach((key, bitmap) -> result.add(new EndpointHitCount(key.appId(), key.uriId(),
+                                                                        bitmap.cardinality())));
+        result.sort(Comparator.comparing(EndpointHitCount::hits).reversed());
+        return result;
+    }
+
+    /**
+     * ORs the bitmaps, pending deltas and raw visitor ids of the plan into one bitmap per endpoint.
+     */
+    public Map<EndpointKey, VisitorBitmap> collect(RollupPlan plan, List<Integer> uriIds) {
+        Map<EndpointKey, VisitorBitmap> merged = new HashMap<>();
+        visitorBitmapRepository.findVisitors(plan, uriIds, (appId, uriId, bitmap, visitorId) -> {
+            VisitorBitmap target = merged.computeIfAbsent(new EndpointKey(appId, uriId), k -> new VisitorBitmap());
+            if (bitmap != null) {
+                target.or(VisitorBitmap.fromBytes(bitmap));
+            } else {
+                target.add(visitorId);
+            }
+        });
+        return merged;
+    }
+
+    @Scheduled(fixedDelayString = "${stats.bitmap.compact-interval:PT10S}")
+    public void compact() {
+        if (enabled) {
+            shardRouter.forEachShard(this::compactShard);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        if (enabled) {
+            shardRouter.forEachShard(this::backfillShard);
+        }
+    }
+
+    private void compactShard() {
+        int folded = 0;
+        List<VisitorBitmapKey> keys;
+        do {
+            keys = visitorBitmapRepository.findDeltaKeys(compactBatch);
+            for (VisitorBitmapKey key : keys) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> fold(key));
+                    folded++;
+                } catch (RuntimeException e) {
+                    log.warn("[VisitorBitmapStore] Failed to fold deltas of {}: {}", key, e.getMessage());
+                    return;
+                }
+            }
+        } while (keys.size() == compactBatch);
+        if (folded > 0) {
+            log.debug("[VisitorBitmapStore] Folded deltas into {} bitmaps", folded);
+        }
+    }
+
+    private void fold(VisitorBitmapKey key) {
+        List<Integer> visitorIds = visitorBitmapRepository.takeDeltas(key);
+        if (visitorIds.isEmpty()) {
+            return;
+        }
+        VisitorBitmap delta = new VisitorBitmap();
+        visitorIds.forEach(delta::add);
+        if (!visitorBitmapRepository.insertIfAbsent(key, delta.toBytes())) {
+            VisitorBitmap current = VisitorBitmap.fromBytes(visitorBitmapRepository.findForUpdate(key));
+            visitorBitmapRepository.update(key, current.or(delta).toBytes());
+        }
+    }
+
+    private void backfillShard() {
+        if (visitorBitmapRepository.hasVisitors()) {
+            return;
+        }
+        log.info("[VisitorBitmapStore] Visitor table is empty, building visitor bitmaps from endpoint_hits");
+        Integer queued = transactionTemplate.execute(status -> visitorBitmapRepository.backfill());
+        log.info("[VisitorBitmapStore] Queued {} visitor deltas for compaction", queued);
+        compactShard();
+    }
+}
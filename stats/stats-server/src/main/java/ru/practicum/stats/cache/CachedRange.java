@@ -0,0 +1,67 @@
+package ru.practicum.stats.cache;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Aggregated hits of one uri over the completed buckets [from, upTo), per app: a hit count, or for unique
+ * queries the sorted 64-bit hashes of the distinct IPs.
+ */
+record CachedRange(LocalDateTime upTo, Map<Integer, Long> hits, Map<Integer, long[]> ipHashes) {
+    private static final long ENTRY_OVERHEAD = 128;
+
+    static CachedRange empty(LocalDateTime upTo) {
+        return new CachedRange(upTo, Map.of(), Map.of());
+    }
+
+    CachedRange extend(LocalDateTime newUpTo, Map<Integer, Long> moreHits, Map<Integer, long[]> moreIpHashes) {
+        Map<Integer, Long> mergedHits = new HashMap<>(hits);
+        moreHits.forEach((appId, count) -> mergedHits.merge(appId, count, Long::sum));
+        Map<Integer, long[]> mergedIps = new HashMap<>(ipHashes);
+        moreIpHashes.forEach((appId, hashes) -> mergedIps.merge(appId, hashes, CachedRange::union));
+        return new CachedRange(newUpTo, mergedHits, mergedIps);
+    }
+
+    long weight() {
+        long weight = ENTRY_OVERHEAD + hits.size() * 32L;
+        for (long[] hashes : ipHashes.values()) {
+            weight += 32L + hashes.length * (long) Long.BYTES;
+        }
+        return weight;
+    }
+
+    /**
+     * Counts the distinct hashes of the app in this range together with the given sorted hashes.
+     */
+    long countUnique(int appId, long[] extra) {
+        long[] cached = ipHashes.getOrDefault(appId, new long[0]);
+        long count = cached.length;
+        for (int i = 0; i < extra.length; i++) {
+            if ((i == 0 || extra[i] != extra[i - 1]) && Arrays.binarySearch(cached, extra[i]) < 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    static long[] union(long[] left, long[] right) {
+        long[] result = new long[left.length + right.length];
+        int i = 0;
+        int j = 0;
+        int size = 0;
+        while (i < left.length || j < right.length) {
+            long next;
+            if (j == right.length || i < left.length && left[i] <= right[j]) {
+                next = left[i++];
+            } else {
+                next = right[j++];
+            }
+            if (size == 0 || result[size - 1] != next) {
+                result[size++] = next;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+}
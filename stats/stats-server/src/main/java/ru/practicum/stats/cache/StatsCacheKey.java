@@ -0,0 +1,6 @@
+package ru.practicum.stats.cache;
+
+import java.time.LocalDateTime;
+
+public record StatsCacheKey(int uriId, boolean unique, LocalDateTime from) {
+}
@@ -0,0 +1,269 @@
+package ru.practicum.stats.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.model.EndpointHitCount;
+import ru.practicum.stats.model.EndpointKey;
+import ru.practicum.stats.repository.RollupRepository;
+import ru.practicum.stats.repository.SketchRepository;
+import ru.practicum.stats.rollup.RollupGranularity;
+import ru.practicum.stats.rollup.RollupPlan;
+import ru.practicum.stats.sketch.HyperLogLog;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+import java.util.stream.LongStream;
+
+/**
+ * Per-uri results of filtered /stats queries over completed buckets. A query [start, end] is split into the raw
+ * head [start, from), the cached whole buckets [from, upTo) and the raw open tail [upTo, end], where {@code from}
+ * is the first bucket boundary after start and {@code upTo} the last one that is at least {@code settle} old.
+ * An entry is keyed by its {@code from} and grows as more buckets complete. Unique entries keep 64-bit IP hashes
+ * so that they can be merged with the edges; a hash collision can undercount by one.
+ */
+@Slf4j
+@Component
+public class StatsResultCache implements MeterBinder {
+    private final RollupRepository rollupRepository;
+    private final SketchRepository sketchRepository;
+    private final boolean enabled;
+    private final RollupGranularity bucket;
+    private final Duration settle;
+    private final long maxWeight;
+    private final LinkedHashMap<StatsCacheKey, CachedRange> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private long weight;
+
+    @Value("${stats.rollup.enabled:true}")
+    private boolean rollupEnabled;
+
+    public StatsResultCache(RollupRepository rollupRepository, SketchRepository sketchRepository,
+                            @Value("${stats.cache.enabled:true}") boolean enabled,
+                            @Value("${stats.cache.bucket:DAY}") RollupGranularity bucket,
+                            @Value("${stats.cache.settle:PT1M}") Duration settle,
+                            @Value("${stats.cache.max-size:64MB}") DataSize maxSize) {
+        this.rollupRepository = rollupRepository;
+        this.sketchRepository = sketchRepository;
+        this.enabled = enabled;
+        this.bucket = bucket;
+        this.settle = settle;
+        this.maxWeight = maxSize.toBytes();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Counts hits of the given uris in [start, end], or returns empty if the range holds no completed bucket.
+     */
+    public Optional<List<EndpointHitCount>> count(LocalDateTime start, LocalDateTime end, List<Integer> uriIds,
+                                                  boolean unique) {
+        LocalDateTime from = bucket.ceil(start);
+        LocalDateTime completed = LocalDateTime.now().minus(settle);
+        LocalDateTime upTo = bucket.floor(end.isBefore(completed) ? end.plus(1, ChronoUnit.MICROS) : completed);
+        if (!enabled || !from.isBefore(upTo)) {
+            return Optional.empty();
+        }
+
+        long version = invalidations.get();
+        Map<Integer, CachedRange> ranges = new HashMap<>();
+        Map<LocalDateTime, List<Integer>> loads = new HashMap<>();
+        Set<Integer> cacheable = new HashSet<>();
+        for (Integer uriId : new LinkedHashSet<>(uriIds)) {
+            CachedRange cached = get(new StatsCacheKey(uriId, unique, from));
+            if (cached != null && cached.upTo().equals(upTo)) {
+                hits.incrementAndGet();
+                ranges.put(uriId, cached);
+                continue;
+            }
+            misses.incrementAndGet();
+            if (cached != null && cached.upTo().isBefore(upTo)) {
+                ranges.put(uriId, cached);
+                cacheable.add(uriId);
+            } else {
+                ranges.put(uriId, CachedRange.empty(from));
+                if (cached == null) {
+                    cacheable.add(uriId);
+                }
+            }
+            loads.computeIfAbsent(ranges.get(uriId).upTo(), loadFrom -> new ArrayList<>()).add(uriId);
+        }
+
+        loads.forEach((loadFrom, ids) -> {
+            Map<Integer, Map<Integer, Long>> loadedHits = new HashMap<>();
+            Map<Integer, Map<Integer, long[]>> loadedIps = new HashMap<>();
+            if (unique) {
+                RollupPlan plan = RollupPlan.edges(loadFrom, upTo, upTo, upTo.minus(1, ChronoUnit.MICROS));
+                collectIpHashes(plan, ids).forEach((key, hashes) -> loadedIps
+                        .computeIfAbsent(key.uriId(), id -> new HashMap<>())
+                        .put(key.appId(), hashes));
+            } else {
+                RollupPlan plan = rollupEnabled
+                        ? RollupPlan.before(loadFrom, upTo)
+                        : RollupPlan.edges(loadFrom, upTo, upTo, upTo.minus(1, ChronoUnit.MICROS));
+                for (EndpointHitCount count : rollupRepository.findStats(plan, ids)) {
+                    loadedHits.computeIfAbsent(count.uriId(), id -> new HashMap<>()).put(count.appId(), count.hits());
+                }
+            }
+            for (Integer uriId : ids) {
+                CachedRange extended = ranges.get(uriId).extend(upTo, loadedHits.getOrDefault(uriId, Map.of()),
+                                                                loadedIps.getOrDefault(uriId, Map.of()));
+                ranges.put(uriId, extended);
+                if (cacheable.contains(uriId)) {
+                    put(new StatsCacheKey(uriId, unique, from), extended, version);
+                }
+            }
+        });
+
+        return Optional.of(withEdges(RollupPlan.edges(start, from, upTo, end), uriIds, unique, ranges));
+    }
+
+    /**
+     * Drops the entries that the given committed hits fall into. Only hits older than the settle period can do so.
+     */
+    public void invalidate(List<EndpointHit> committed) {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime settled = bucket.floor(LocalDateTime.now().minus(settle));
+        Map<Integer, List<LocalDateTime>> late = new HashMap<>();
+        for (EndpointHit hit : committed) {
+            if (hit.getTimestamp().isBefore(settled)) {
+                late.computeIfAbsent(hit.getUriId(), id -> new ArrayList<>()).add(hit.getTimestamp());
+            }
+        }
+        if (late.isEmpty()) {
+            return;
+        }
+        invalidations.incrementAndGet();
+        removeIf((key, range) -> late.getOrDefault(key.uriId(), List.of()).stream()
+                .anyMatch(timestamp -> !timestamp.isBefore(key.from()) && timestamp.isBefore(range.upTo())));
+    }
+
+    /**
+     * Drops the entries that include hits older than the cutoff, after those hits were deleted.
+     */
+    public void evictBefore(LocalDateTime cutoff) {
+        invalidations.incrementAndGet();
+        removeIf((key, range) -> key.from().isBefore(cutoff));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("stats.server.cache.hits", hits, AtomicLong::get)
+                .description("Filtered /stats lookups answered from cached buckets")
+                .register(registry);
+        FunctionCounter.builder("stats.server.cache.misses", misses, AtomicLong::get)
+                .description("Filtered /stats lookups that had to load buckets from the database")
+                .register(registry);
+        FunctionCounter.builder("stats.server.cache.evictions", evictions, AtomicLong::get)
+                .description("Cache entries evicted to stay within the size limit")
+                .register(registry);
+        Gauge.builder("stats.server.cache.entries", this, cache -> cache.size())
+                .description("Cached per-uri ranges")
+                .register(registry);
+        Gauge.builder("stats.server.cache.weight", this, cache -> cache.weight())
+                .description("Estimated heap used by cached ranges")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    private List<EndpointHitCount> withEdges(RollupPlan edges, List<Integer> uriIds, boolean unique,
+                                             Map<Integer, CachedRange> ranges) {
+        List<EndpointHitCount> result = new ArrayList<>();
+        if (unique) {
+            Map<EndpointKey, long[]> edgeIps = collectIpHashes(edges, uriIds);
+            ranges.forEach((uriId, range) -> {
+                Set<Integer> apps = new HashSet<>(range.ipHashes().keySet());
+                edgeIps.keySet().stream().filter(key -> key.uriId() == uriId).forEach(key -> apps.add(key.appId()));
+                for (Integer appId : apps) {
+                    long[] extra = edgeIps.getOrDefault(new EndpointKey(appId, uriId), new long[0]);
+                    result.add(new EndpointHitCount(appId, uriId, range.countUnique(appId, extra)));
+                }
+            });
+        } else {
+            Map<EndpointKey, Long> totals = new HashMap<>();
+            ranges.forEach((uriId, range) -> range.hits().forEach((appId, count) ->
+                    totals.merge(new EndpointKey(appId, uriId), count, Long::sum)));
+            for (EndpointHitCount count : rollupRepository.findStats(edges, uriIds)) {
+                totals.merge(new EndpointKey(count.appId(), count.uriId()), count.hits(), Long::sum);
+            }
+            totals.forEach((key, total) -> result.add(new EndpointHitCount(key.appId(), key.uriId(), total)));
+        }
+        result.removeIf(count -> count.hits() == 0);
+        result.sort(Comparator.comparing(EndpointHitCount::hits).reversed());
+        return result;
+    }
+
+    private Map<EndpointKey, long[]> collectIpHashes(RollupPlan plan, List<Integer> uriIds) {
+        Map<EndpointKey, LongStream.Builder> builders = new HashMap<>();
+        sketchRepository.findEdgeIps(plan, uriIds, (appId, uriId, ip) ->
+                builders.computeIfAbsent(new EndpointKey(appId, uriId), key -> LongStream.builder())
+                        .add(HyperLogLog.hash(ip)));
+        Map<EndpointKey, long[]> result = new HashMap<>();
+        builders.forEach((key, builder) -> result.put(key, builder.build().sorted().distinct().toArray()));
+        return result;
+    }
+
+    private synchronized CachedRange get(StatsCacheKey key) {
+        return entries.get(key);
+    }
+
+    private synchronized void put(StatsCacheKey key, CachedRange range, long version) {
+        if (version != invalidations.get()) {
+            return;
+        }
+        CachedRange previous = entries.put(key, range);
+        weight += range.weight() - (previous == null ? 0 : previous.weight());
+        Iterator<CachedRange> eldest = entries.values().iterator();
+        while (weight > maxWeight && eldest.hasNext()) {
+            weight -= eldest.next().weight();
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private synchronized void removeIf(BiPredicate<StatsCacheKey, CachedRange> predicate) {
+        Iterator<Map.Entry<StatsCacheKey, CachedRange>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<StatsCacheKey, CachedRange> entry = iterator.next();
+            if (predicate.test(entry.getKey(), entry.getValue())) {
+                weight -= entry.getValue().weight();
+                iterator.remove();
+            }
+        }
+    }
+
+    private synchronized int size() {
+        return entries.size();
+    }
+
+    private synchronized long weight() {
+        return weight;
+    }
+}
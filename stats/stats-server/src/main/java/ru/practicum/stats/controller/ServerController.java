@@ -1,13 +1,24 @@
 package ru.practicum.stats.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import ru.practicum.stats.EndpointHitRequest;
 import ru.practicum.stats.EndpointStatsResponse;
+import ru.practicum.stats.StatsSeriesResponse;
+import ru.practicum.stats.ingest.HitIngestor;
+import ru.practicum.stats.ingest.IngestLog;
 import ru.practicum.stats.service.StatsService;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -15,19 +26,75 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ServerController {
     private final StatsService statsService;
+    private final IngestLog ingestLog;
+    private final HitIngestor hitIngestor;
+    private final ObjectMapper objectMapper;
 
     @GetMapping("/stats")
     public List<EndpointStatsResponse> findStats(
             @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
             @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
             @RequestParam(required = false) List<String> uris,
-            @RequestParam(defaultValue = "false") Boolean unique) {
-        return statsService.findStats(start, end, uris, unique);
+            @RequestParam(defaultValue = "false") Boolean unique,
+            @RequestParam(defaultValue = "false") Boolean approximate) {
+        return statsService.findStats(start, end, uris, unique, approximate);
+    }
+
+    @GetMapping(value = "/stats", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void streamStats(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
+            @RequestParam(required = false) List<String> uris,
+            @RequestParam(defaultValue = "false") Boolean unique,
+            @RequestParam(defaultValue = "false") Boolean approximate,
+            HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        ObjectWriter writer = objectMapper.writerFor(EndpointStatsResponse.class);
+        OutputStream out = response.getOutputStream();
+        statsService.streamStats(start, end, uris, unique, approximate, stats -> {
+            try {
+                out.write(writer.writeValueAsBytes(stats));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        out.flush();
+    }
+
+    @GetMapping("/stats/series")
+    public StatsSeriesResponse findSeries(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
+            @RequestParam(required = false) List<String> uris,
+            @RequestParam(defaultValue = "false") Boolean unique,
+            @RequestParam(defaultValue = "hour") String interval) {
+        return statsService.findSeries(start, end, uris, unique, interval);
+    }
+
+    @GetMapping("/stats/top")
+    public List<EndpointStatsResponse> findTop(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime start,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime end,
+            @RequestParam(defaultValue = "10") int n,
+            @RequestParam(defaultValue = "false") Boolean unique,
+            @RequestParam(required = false) String prefix) {
+        return statsService.findTop(start, end, n, unique, prefix);
     }
 
     @PostMapping("/hit")
     @ResponseStatus(HttpStatus.CREATED)
     public void saveHit(@RequestBody EndpointHitRequest dto) {
-        statsService.saveHit(dto);
+        if (ingestLog.isEnabled()) {
+            ingestLog.append(dto);
+        } else {
+            statsService.saveHit(dto);
+        }
+    }
+
+    @PostMapping(value = "/hits", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    @ResponseStatus(HttpStatus.CREATED)
+    public void saveHits(InputStream body) {
+        hitIngestor.ingest(body);
     }
 }
@@ -0,0 +1,238 @@
+package ru.practicum.stats.dictionary;
+
+import lombok.extern.slf4j.Slf4j;
+import org.mapstruct.Named;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.stats.EndpointSeriesResponse;
+import ru.practicum.stats.EndpointStatsResponse;
+import ru.practicum.stats.model.EndpointHitCount;
+import ru.practicum.stats.model.EndpointKey;
+import ru.practicum.stats.repository.DictionaryRepository;
+import ru.practicum.stats.repository.DictionaryTable;
+import ru.practicum.stats.shard.ShardRouter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Cached mapping between app and uri strings and their dictionary ids.
+ *
+ * <p>New ids are inserted in a transaction of their own on the dictionary shard, so they must be resolved
+ * before the transaction that stores the hits is opened: the mapper and the hit stream reader both run outside
+ * it. Resolving inside a transaction fails rather than nest a second one that holds another connection.
+ */
+@Slf4j
+@Component
+public class EndpointDictionary {
+    private static final int LOOKUP_CHUNK = 5_000;
+    private static final int RESOLVE_ATTEMPTS = 3;
+
+    private final DictionaryRepository dictionaryRepository;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate requiresNew;
+    private final Map<DictionaryTable, Map<String, Integer>> ids = new ConcurrentHashMap<>();
+    private final Map<DictionaryTable, Map<Integer, String>> values = new ConcurrentHashMap<>();
+    private final Map<DictionaryTable, AtomicInteger> preloadedUpTo = new ConcurrentHashMap<>();
+
+    public EndpointDictionary(DictionaryRepository dictionaryRepository, ShardRouter shardRouter,
+                              PlatformTransactionManager transactionManager) {
+        this.dictionaryRepository = dictionaryRepository;
+        this.shardRouter = shardRouter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        for (DictionaryTable table : DictionaryTable.values()) {
+            ids.put(table, new ConcurrentHashMap<>());
+            values.put(table, new ConcurrentHashMap<>());
+            preloadedUpTo.put(table, new AtomicInteger());
+        }
+    }
+
+    @Named("appId")
+    public Integer appId(String app) {
+        return resolve(DictionaryTable.APPS, app);
+    }
+
+    @Named("uriId")
+    public Integer uriId(String uri) {
+        return resolve(DictionaryTable.URIS, uri);
+    }
+
+    public List<Integer> findUriIds(Collection<String> uris) {
+        Map<String, Integer> cache = ids.get(DictionaryTable.URIS);
+        Set<String> missing = new HashSet<>();
+        for (String uri : uris) {
+            if (!cache.containsKey(uri)) {
+                missing.add(uri);
+            }
+        }
+        if (!missing.isEmpty()) {
+            onDictionaryShard(() -> forEachChunk(new ArrayList<>(missing), chunk ->
+                    dictionaryRepository.findIds(DictionaryTable.URIS, chunk, this::cacheUri)));
+        }
+        List<Integer> result = new ArrayList<>(uris.size());
+        for (String uri : uris) {
+            Integer id = cache.get(uri);
+            if (id != null) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    public Map<Integer, String> findUris(Collection<Integer> uriIds) {
+        Map<Integer, String> cache = values.get(DictionaryTable.URIS);
+        Set<Integer> missing = new HashSet<>();
+        for (Integer id : uriIds) {
+            if (!cache.containsKey(id)) {
+                missing.add(id);
+            }
+        }
+        load(DictionaryTable.URIS, missing);
+        Map<Integer, String> result = new HashMap<>();
+        for (Integer id : uriIds) {
+            String uri = cache.get(id);
+            if (uri != null) {
+                result.put(id, uri);
+            }
+        }
+        return result;
+    }
+
+    public List<EndpointStatsResponse> toResponses(List<EndpointHitCount> counts) {
+        loadNames(counts.stream().map(count -> new EndpointKey(count.appId(), count.uriId())).toList());
+
+        List<EndpointStatsResponse> result = new ArrayList<>(counts.size());
+        for (EndpointHitCount count : counts) {
+            result.add(new EndpointStatsResponse(values.get(DictionaryTable.APPS).get(count.appId()),
+                                                 values.get(DictionaryTable.URIS).get(count.uriId()),
+                                                 count.hits()));
+        }
+        return result;
+    }
+
+    /**
+     * Maps the counts whose names are already cached and adds the rest to {@code unresolved}, without touching
+     * the database: it runs under an open cursor, where a lookup would need a second connection.
+     */
+    public List<EndpointStatsResponse> toCachedResponses(List<EndpointHitCount> counts,
+                                                         List<EndpointHitCount> unresolved) {
+        List<EndpointStatsResponse> result = new ArrayList<>(counts.size());
+        for (EndpointHitCount count : counts) {
+            String app = values.get(DictionaryTable.APPS).get(count.appId());
+            String uri = values.get(DictionaryTable.URIS).get(count.uriId());
+            if (app == null || uri == null) {
+                unresolved.add(count);
+            } else {
+                result.add(new EndpointStatsResponse(app, uri, count.hits()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Caches every app and uri added since the previous preload, so that a following
+     * {@link #toCachedResponses} rarely misses. Ids committed out of order can still be skipped.
+     */
+    public void preloadNames() {
+        onDictionaryShard(() -> {
+            for (DictionaryTable table : DictionaryTable.values()) {
+                dictionaryRepository.findValuesAfter(table, preloadedUpTo.get(table).get(), (value, id) -> {
+                    cache(table, value, id);
+                    preloadedUpTo.get(table).accumulateAndGet(id, Math::max);
+                });
+            }
+        });
+    }
+
+    public List<EndpointSeriesResponse> toSeriesResponses(Map<EndpointKey, long[]> series) {
+        loadNames(series.keySet());
+
+        List<EndpointSeriesResponse> result = new ArrayList<>(series.size());
+        series.forEach((key, hits) -> result.add(new EndpointSeriesResponse(
+                values.get(DictionaryTable.APPS).get(key.appId()),
+                values.get(DictionaryTable.URIS).get(key.uriId()),
+                Arrays.stream(hits).boxed().toList())));
+        return result;
+    }
+
+    private void loadNames(Collection<EndpointKey> keys) {
+        Set<Integer> missingApps = new HashSet<>();
+        Set<Integer> missingUris = new HashSet<>();
+        for (EndpointKey key : keys) {
+            if (!values.get(DictionaryTable.APPS).containsKey(key.appId())) {
+                missingApps.add(key.appId());
+            }
+            if (!values.get(DictionaryTable.URIS).containsKey(key.uriId())) {
+                missingUris.add(key.uriId());
+            }
+        }
+        load(DictionaryTable.APPS, missingApps);
+        load(DictionaryTable.URIS, missingUris);
+    }
+
+    private Integer resolve(DictionaryTable table, String value) {
+        Integer id = ids.get(table).get(value);
+        if (id != null) {
+            return id;
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("New " + table + " dictionary id for " + value
+                                                    + " must be resolved before a transaction is opened");
+        }
+        for (int attempt = 0; id == null && attempt < RESOLVE_ATTEMPTS; attempt++) {
+            id = shardRouter.call(ShardRouter.DICTIONARY_SHARD, () -> transactionTemplate.execute(status ->
+                    dictionaryRepository.insertOrFind(table, value).orElse(null)));
+        }
+        if (id == null) {
+            throw new IllegalStateException("Could not resolve " + table + " dictionary id for " + value);
+        }
+        cache(table, value, id);
+        log.debug("[EndpointDictionary] Resolved {} '{}' to id {}", table, value, id);
+        return id;
+    }
+
+    private void load(DictionaryTable table, Set<Integer> missing) {
+        if (!missing.isEmpty()) {
+            onDictionaryShard(() -> forEachChunk(new ArrayList<>(missing), chunk ->
+                    dictionaryRepository.findValues(table, chunk, (value, id) -> cache(table, value, id))));
+        }
+    }
+
+    /**
+     * Runs the lookup in its own transaction on the dictionary shard, so that it never reuses the connection
+     * of a surrounding transaction on another shard.
+     */
+    private void onDictionaryShard(Runnable lookup) {
+        shardRouter.run(ShardRouter.DICTIONARY_SHARD, () -> requiresNew.executeWithoutResult(status -> lookup.run()));
+    }
+
+    private void cacheUri(String uri, Integer id) {
+        cache(DictionaryTable.URIS, uri, id);
+    }
+
+    private void cache(DictionaryTable table, String value, Integer id) {
+        ids.get(table).put(value, id);
+        values.get(table).put(id, value);
+    }
+
+    private static <T> void forEachChunk(List<T> items, Consumer<List<T>> action) {
+        for (int from = 0; from < items.size(); from += LOOKUP_CHUNK) {
+            action.accept(items.subList(from, Math.min(items.size(), from + LOOKUP_CHUNK)));
+        }
+    }
+}
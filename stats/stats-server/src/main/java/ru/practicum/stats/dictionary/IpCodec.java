@@ -0,0 +1,103 @@
+package ru.practicum.stats.dictionary;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact binary form of a client IP: a tag byte followed by 4 bytes for IPv4, 16 bytes for IPv6
+ * or the UTF-8 text for anything that is not an IP literal.
+ */
+public final class IpCodec {
+    private static final byte TEXT = 0;
+    private static final byte IPV4 = 4;
+    private static final byte IPV6 = 6;
+
+    private IpCodec() {
+    }
+
+    public static byte[] encode(String ip) {
+        long ipv4 = parseIpv4(ip.toCharArray(), 0, ip.length());
+        if (ipv4 >= 0) {
+            return encodeIpv4((int) ipv4);
+        }
+        if (isIpv6Literal(ip)) {
+            try {
+                byte[] address = InetAddress.getByName(ip).getAddress();
+                return tagged(address.length == 4 ? IPV4 : IPV6, address);
+            } catch (UnknownHostException e) {
+                // stored as text
+            }
+        }
+        return tagged(TEXT, ip.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static byte[] encodeIpv4(int address) {
+        return new byte[] {IPV4, (byte) (address >>> 24), (byte) (address >>> 16), (byte) (address >>> 8),
+                (byte) address};
+    }
+
+    public static String decode(byte[] encoded) {
+        byte[] payload = new byte[encoded.length - 1];
+        System.arraycopy(encoded, 1, payload, 0, payload.length);
+        if (encoded[0] == TEXT) {
+            return new String(payload, StandardCharsets.UTF_8);
+        }
+        try {
+            return InetAddress.getByAddress(payload).getHostAddress();
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Invalid encoded IP address", e);
+        }
+    }
+
+    private static byte[] tagged(byte tag, byte[] payload) {
+        byte[] result = new byte[payload.length + 1];
+        result[0] = tag;
+        System.arraycopy(payload, 0, result, 1, payload.length);
+        return result;
+    }
+
+    /**
+     * Returns the dotted IPv4 literal in the given characters as an unsigned 32-bit value, or -1 if they
+     * are not one.
+     */
+    public static long parseIpv4(char[] chars, int offset, int length) {
+        long address = 0;
+        int octet = 0;
+        int value = 0;
+        int digits = 0;
+        for (int i = offset; i < offset + length; i++) {
+            char c = chars[i];
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                if (++digits > 3 || value > 255) {
+                    return -1;
+                }
+            } else if (c == '.' && digits > 0 && octet < 3) {
+                address = address << 8 | value;
+                octet++;
+                value = 0;
+                digits = 0;
+            } else {
+                return -1;
+            }
+        }
+        if (octet != 3 || digits == 0) {
+            return -1;
+        }
+        return address << 8 | value;
+    }
+
+    private static boolean isIpv6Literal(String ip) {
+        if (ip.indexOf(':') < 0) {
+            return false;
+        }
+        for (int i = 0; i < ip.length(); i++) {
+            char c = ip.charAt(i);
+            if (Character.digit(c, 16) < 0 && c != ':' && c != '.') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,7 @@
+package ru.practicum.stats.ingest;
+
+public enum FsyncPolicy {
+    ALWAYS,
+    INTERVAL,
+    NEVER
+}
@@ -0,0 +1,54 @@
+package ru.practicum.stats.ingest;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.dictionary.EndpointDictionary;
+import ru.practicum.stats.exception.ValidationException;
+import ru.practicum.stats.service.StatsService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Fast path of {@code POST /hits}: streams the request body through a pooled {@link HitStreamReader}, so that
+ * the reader's caches and hit instances survive from one request to the next.
+ */
+@Component
+@RequiredArgsConstructor
+public class HitIngestor {
+    private static final int IDLE_READERS = 64;
+
+    private final StatsService statsService;
+    private final EndpointDictionary endpointDictionary;
+    private final ObjectMapper objectMapper;
+    private final BlockingQueue<HitStreamReader> idle = new ArrayBlockingQueue<>(IDLE_READERS);
+
+    @Value("${stats.hits.batch-size:1000}")
+    private int batchSize;
+
+    /**
+     * Stores a JSON array of hits at once, or newline-delimited hits every {@code stats.hits.batch-size} hits.
+     */
+    public void ingest(InputStream body) {
+        HitStreamReader reader = idle.poll();
+        if (reader == null) {
+            reader = new HitStreamReader(endpointDictionary);
+        }
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            reader.read(parser, batchSize, statsService::storeHits);
+        } catch (JsonProcessingException e) {
+            throw new ValidationException("Malformed hits: " + e.getOriginalMessage());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            idle.offer(reader);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package ru.practicum.stats.ingest;
+
+import ru.practicum.stats.EndpointHitRequest;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary layout of one log record: payload length, CRC32C of the payload, then the payload itself
+ * (epoch second and nanos of the timestamp followed by length-prefixed UTF-8 app, uri and ip).
+ * A zero length marks the end of the written part of a segment.
+ */
+final class HitRecordCodec {
+    static final int HEADER_SIZE = Integer.BYTES * 2;
+
+    private HitRecordCodec() {
+    }
+
+    static byte[] encode(EndpointHitRequest hit) {
+        byte[] app = hit.getApp().getBytes(StandardCharsets.UTF_8);
+        byte[] uri = hit.getUri().getBytes(StandardCharsets.UTF_8);
+        byte[] ip = hit.getIp().getBytes(StandardCharsets.UTF_8);
+        int payloadSize = Long.BYTES + Integer.BYTES * 4 + app.length + uri.length + ip.length;
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payloadSize);
+        buffer.position(HEADER_SIZE);
+        buffer.putLong(hit.getTimestamp().toEpochSecond(ZoneOffset.UTC));
+        buffer.putInt(hit.getTimestamp().getNano());
+        putBytes(buffer, app);
+        putBytes(buffer, uri);
+        putBytes(buffer, ip);
+
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), HEADER_SIZE, payloadSize);
+        buffer.putInt(0, payloadSize);
+        buffer.putInt(Integer.BYTES, (int) crc.getValue());
+        return buffer.array();
+    }
+
+    /**
+     * Decodes the record at the buffer position and moves past it. Returns null, leaving the position
+     * unchanged, if there is no complete valid record up to the buffer limit.
+     */
+    static EndpointHitRequest decode(ByteBuffer buffer) {
+        int start = buffer.position();
+        if (buffer.remaining() < HEADER_SIZE) {
+            return null;
+        }
+        int payloadSize = buffer.getInt(start);
+        int checksum = buffer.getInt(start + Integer.BYTES);
+        if (payloadSize <= 0 || payloadSize > buffer.remaining() - HEADER_SIZE) {
+            return null;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(start + HEADER_SIZE, payloadSize));
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+
+        buffer.position(start + HEADER_SIZE);
+        long epochSecond = buffer.getLong();
+        int nanos = buffer.getInt();
+        String app = getString(buffer);
+        String uri = getString(buffer);
+        String ip = getString(buffer);
+        buffer.position(start + HEADER_SIZE + payloadSize);
+        return new EndpointHitRequest(app, uri, ip, LocalDateTime.ofEpochSecond(epochSecond, nanos, ZoneOffset.UTC));
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
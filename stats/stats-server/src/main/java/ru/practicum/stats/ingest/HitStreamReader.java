@@ -0,0 +1,208 @@
+package ru.practicum.stats.ingest;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import ru.practicum.stats.dictionary.EndpointDictionary;
+import ru.practicum.stats.dictionary.IpCodec;
+import ru.practicum.stats.exception.ValidationException;
+import ru.practicum.stats.model.EndpointHit;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reads hits from a JSON token stream straight into reused {@link EndpointHit} instances, without building
+ * request objects or strings. Field values are read from the parser's own character buffer; app and uri ids,
+ * encoded IPv4 addresses and timestamps come from small direct-mapped caches, so once the caches are warm
+ * a hit allocates nothing. The entries of a cache are immutable and may be shared by any number of hits.
+ *
+ * <p>Not thread-safe: a reader serves one request at a time and is reused by the next one.
+ */
+final class HitStreamReader {
+    private static final int APP_SLOTS = 64;
+    private static final int URI_SLOTS = 8_192;
+    private static final int IP_SLOTS = 8_192;
+    private static final int TIMESTAMP_SLOTS = 1_024;
+
+    private final EndpointDictionary endpointDictionary;
+    private final TextIds apps = new TextIds(APP_SLOTS);
+    private final TextIds uris = new TextIds(URI_SLOTS);
+    private final int[] ipAddresses = new int[IP_SLOTS];
+    private final byte[][] ipEncoded = new byte[IP_SLOTS][];
+    private final long[] timestampSeconds = new long[TIMESTAMP_SLOTS];
+    private final LocalDateTime[] timestamps = new LocalDateTime[TIMESTAMP_SLOTS];
+    private EndpointHit[] hits = new EndpointHit[0];
+    private int size;
+
+    HitStreamReader(EndpointDictionary endpointDictionary) {
+        this.endpointDictionary = endpointDictionary;
+    }
+
+    /**
+     * Reads a JSON array of hits, passed to the sink together once the array is complete, or a sequence of
+     * top-level hit objects, passed on every {@code batchSize} hits. The list and its hits are only valid
+     * until the sink returns.
+     */
+    void read(JsonParser parser, int batchSize, Consumer<List<EndpointHit>> sink) throws IOException {
+        size = 0;
+        boolean inArray = false;
+        for (JsonToken token = parser.nextToken(); token != null; token = parser.nextToken()) {
+            if (token == JsonToken.START_ARRAY && !inArray) {
+                inArray = true;
+            } else if (token == JsonToken.END_ARRAY && inArray) {
+                inArray = false;
+                flush(sink);
+            } else if (token == JsonToken.START_OBJECT) {
+                readHit(parser);
+                if (!inArray && size == batchSize) {
+                    flush(sink);
+                }
+            } else {
+                throw new ValidationException("Expected a hit object but found " + token);
+            }
+        }
+        if (inArray) {
+            throw new ValidationException("Unterminated array of hits");
+        }
+        flush(sink);
+    }
+
+    private void flush(Consumer<List<EndpointHit>> sink) {
+        if (size > 0) {
+            sink.accept(Arrays.asList(hits).subList(0, size));
+            size = 0;
+        }
+    }
+
+    private void readHit(JsonParser parser) throws IOException {
+        Integer appId = null;
+        Integer uriId = null;
+        byte[] ip = null;
+        LocalDateTime timestamp = null;
+        for (String field = parser.nextFieldName(); field != null; field = parser.nextFieldName()) {
+            JsonToken value = parser.nextToken();
+            if (value != JsonToken.VALUE_STRING) {
+                parser.skipChildren();
+                continue;
+            }
+            char[] chars = parser.getTextCharacters();
+            int offset = parser.getTextOffset();
+            int length = parser.getTextLength();
+            switch (field) {
+                case "app" -> appId = isBlank(chars, offset, length) ? null : appId(chars, offset, length);
+                case "uri" -> uriId = isBlank(chars, offset, length) ? null : uriId(chars, offset, length);
+                case "ip" -> ip = isBlank(chars, offset, length) ? null : ip(chars, offset, length);
+                case "timestamp" -> timestamp = timestamp(chars, offset, length);
+                default -> {
+                    // unknown fields are ignored, as by the object mapper
+                }
+            }
+        }
+        if (appId == null || uriId == null || ip == null || timestamp == null) {
+            throw new ValidationException("Every hit must have app, uri, ip and timestamp");
+        }
+        EndpointHit hit = next();
+        hit.setAppId(appId);
+        hit.setUriId(uriId);
+        hit.setIp(ip);
+        hit.setTimestamp(timestamp);
+    }
+
+    private EndpointHit next() {
+        if (size == hits.length) {
+            hits = Arrays.copyOf(hits, Math.max(16, size * 2));
+        }
+        if (hits[size] == null) {
+            hits[size] = new EndpointHit();
+        }
+        return hits[size++];
+    }
+
+    private Integer appId(char[] chars, int offset, int length) {
+        Integer id = apps.get(chars, offset, length);
+        if (id == null) {
+            id = endpointDictionary.appId(new String(chars, offset, length));
+            apps.put(chars, offset, length, id);
+        }
+        return id;
+    }
+
+    private Integer uriId(char[] chars, int offset, int length) {
+        Integer id = uris.get(chars, offset, length);
+        if (id == null) {
+            id = endpointDictionary.uriId(new String(chars, offset, length));
+            uris.put(chars, offset, length, id);
+        }
+        return id;
+    }
+
+    private byte[] ip(char[] chars, int offset, int length) {
+        long ipv4 = IpCodec.parseIpv4(chars, offset, length);
+        if (ipv4 < 0) {
+            return IpCodec.encode(new String(chars, offset, length));
+        }
+        int address = (int) ipv4;
+        int slot = (address * 0x9E3779B9) >>> (Integer.SIZE - Integer.numberOfTrailingZeros(IP_SLOTS));
+        if (ipEncoded[slot] == null || ipAddresses[slot] != address) {
+            ipAddresses[slot] = address;
+            ipEncoded[slot] = IpCodec.encodeIpv4(address);
+        }
+        return ipEncoded[slot];
+    }
+
+    private LocalDateTime timestamp(char[] chars, int offset, int length) {
+        long epochSecond = HitTimestamps.parseEpochSecond(chars, offset, length);
+        int slot = (int) (epochSecond & (TIMESTAMP_SLOTS - 1));
+        if (timestamps[slot] == null || timestampSeconds[slot] != epochSecond) {
+            timestampSeconds[slot] = epochSecond;
+            timestamps[slot] = HitTimestamps.toLocalDateTime(epochSecond);
+        }
+        return timestamps[slot];
+    }
+
+    private static boolean isBlank(char[] chars, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (!Character.isWhitespace(chars[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Direct-mapped cache from text to dictionary id, looked up by a range of characters. A colliding entry
+     * replaces the previous one, which only costs a dictionary lookup the next time it is seen.
+     */
+    private static final class TextIds {
+        private final char[][] keys;
+        private final Integer[] ids;
+
+        private TextIds(int slots) {
+            keys = new char[slots][];
+            ids = new Integer[slots];
+        }
+
+        private Integer get(char[] chars, int offset, int length) {
+            int slot = slot(chars, offset, length);
+            char[] key = keys[slot];
+            return key != null && Arrays.equals(key, 0, key.length, chars, offset, offset + length) ? ids[slot] : null;
+        }
+
+        private void put(char[] chars, int offset, int length, Integer id) {
+            int slot = slot(chars, offset, length);
+            keys[slot] = Arrays.copyOfRange(chars, offset, offset + length);
+            ids[slot] = id;
+        }
+
+        private int slot(char[] chars, int offset, int length) {
+            int hash = 0;
+            for (int i = offset; i < offset + length; i++) {
+                hash = 31 * hash + chars[i];
+            }
+            return (hash ^ hash >>> 16) & (keys.length - 1);
+        }
+    }
+}
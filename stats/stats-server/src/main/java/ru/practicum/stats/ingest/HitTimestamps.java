@@ -0,0 +1,89 @@
+package ru.practicum.stats.ingest;
+
+import ru.practicum.stats.exception.ValidationException;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Parser of hit timestamps in the {@code yyyy-MM-dd HH:mm:ss} format of the API, also accepting {@code T}
+ * as the date and time separator. Works on the characters in place and allocates nothing.
+ */
+public final class HitTimestamps {
+    private static final int LENGTH = 19;
+    private static final long DAYS_0000_TO_1970 = 719_528;
+    private static final int SECONDS_PER_DAY = 86_400;
+
+    private HitTimestamps() {
+    }
+
+    public static LocalDateTime parse(String value) {
+        return toLocalDateTime(parseEpochSecond(value.toCharArray(), 0, value.length()));
+    }
+
+    /**
+     * Returns the timestamp as seconds since 1970-01-01T00:00:00 of the same local time line.
+     */
+    public static long parseEpochSecond(char[] chars, int offset, int length) {
+        if (length != LENGTH || chars[offset + 4] != '-' || chars[offset + 7] != '-'
+                || chars[offset + 10] != ' ' && chars[offset + 10] != 'T'
+                || chars[offset + 13] != ':' || chars[offset + 16] != ':') {
+            throw invalid();
+        }
+        int year = digits(chars, offset, 4);
+        int month = digits(chars, offset + 5, 2);
+        int day = digits(chars, offset + 8, 2);
+        int hour = digits(chars, offset + 11, 2);
+        int minute = digits(chars, offset + 14, 2);
+        int second = digits(chars, offset + 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            throw invalid();
+        }
+        return epochDay(year, month, day) * SECONDS_PER_DAY + hour * 3_600L + minute * 60L + second;
+    }
+
+    static LocalDateTime toLocalDateTime(long epochSecond) {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
+
+    private static int digits(char[] chars, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            int digit = chars[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Same arithmetic as {@link java.time.LocalDate#toEpochDay()} for years 0 to 9999.
+     */
+    private static long epochDay(int year, int month, int day) {
+        long total = 365L * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        total += (367 * month - 362) / 12 + day - 1;
+        if (month > 2) {
+            total -= isLeap(year) ? 1 : 2;
+        }
+        return total - DAYS_0000_TO_1970;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> isLeap(year) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    private static boolean isLeap(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    private static ValidationException invalid() {
+        return new ValidationException("timestamp must be in the format yyyy-MM-dd HH:mm:ss");
+    }
+}
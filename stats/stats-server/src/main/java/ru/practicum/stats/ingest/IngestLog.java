@@ -0,0 +1,285 @@
+package ru.practicum.stats.ingest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.stats.EndpointHitRequest;
+import ru.practicum.stats.exception.ValidationException;
+import ru.practicum.stats.mapper.EndpointHitMapper;
+import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.repository.IngestCheckpointRepository;
+import ru.practicum.stats.service.StatsService;
+import ru.practicum.stats.shard.ShardRouter;
+import ru.practicum.stats.thread.WorkerThreads;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log of accepted hits in memory-mapped segment files. {@link #append} returns as soon as the record
+ * is in the mapped segment (and forced to disk under {@link FsyncPolicy#ALWAYS}); a loader thread drains the log
+ * into endpoint_hits. Every shard saves the loader position in its own ingest_checkpoints in the same transaction
+ * as its part of the loaded hits, so after a restart each shard resumes exactly where its database left off.
+ */
+@Slf4j
+@Component
+public class IngestLog implements InitializingBean, DisposableBean {
+    private final IngestLogProperties properties;
+    private final StatsService statsService;
+    private final IngestCheckpointRepository checkpointRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final EndpointHitMapper endpointHitMapper;
+    private final ShardRouter shardRouter;
+    private final WorkerThreads workerThreads;
+    private final Map<Integer, LogPosition> checkpoints = new ConcurrentHashMap<>();
+    private final NavigableMap<Long, LogSegment> segments = new ConcurrentSkipListMap<>();
+    // a lock rather than a monitor: appends force and create files while holding it, which would pin virtual threads
+    private final Lock appendLock = new ReentrantLock();
+    private LogSegment active;
+    private LogPosition loadFrom;
+    private ScheduledExecutorService fsyncExecutor;
+    private Thread loader;
+    private volatile boolean running;
+
+    public IngestLog(IngestLogProperties properties, StatsService statsService,
+                     IngestCheckpointRepository checkpointRepository, TransactionTemplate transactionTemplate,
+                     EndpointHitMapper endpointHitMapper, ShardRouter shardRouter, WorkerThreads workerThreads) {
+        this.properties = properties;
+        this.statsService = statsService;
+        this.checkpointRepository = checkpointRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.endpointHitMapper = endpointHitMapper;
+        this.shardRouter = shardRouter;
+        this.workerThreads = workerThreads;
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        Path directory = properties.getDirectory();
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(LogSegment::isSegment).toList()) {
+                LogSegment segment = LogSegment.recover(file);
+                segments.put(segment.id(), segment);
+            }
+        }
+        Map<Integer, Optional<LogPosition>> saved = new HashMap<>();
+        shardRouter.forEachShard(() ->
+                saved.put(ShardRouter.currentShard(), checkpointRepository.find(properties.getLogId())));
+        long nextId = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+        for (Optional<LogPosition> checkpoint : saved.values()) {
+            nextId = Math.max(nextId, checkpoint.map(position -> position.segment() + 1).orElse(0L));
+        }
+        active = LogSegment.create(directory, nextId, segmentSize());
+        segments.put(active.id(), active);
+        LogPosition start = new LogPosition(segments.firstKey(), 0);
+        saved.forEach((shard, checkpoint) -> checkpoints.put(shard, checkpoint.orElse(start)));
+        loadFrom = Collections.min(checkpoints.values());
+        log.info("[IngestLog] Opened {} with {} existing segments", directory.toAbsolutePath(), segments.size() - 1);
+
+        if (properties.getFsync() == FsyncPolicy.INTERVAL) {
+            fsyncExecutor = Executors.newSingleThreadScheduledExecutor(workerThreads.factory("stats-ingest-fsync"));
+            long interval = properties.getFsyncInterval().toMillis();
+            fsyncExecutor.scheduleWithFixedDelay(this::forceActive, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void append(EndpointHitRequest hit) {
+        if (hit.getApp() == null || hit.getUri() == null || hit.getIp() == null || hit.getTimestamp() == null) {
+            throw new ValidationException("Hit must have app, uri, ip and timestamp");
+        }
+        byte[] record = HitRecordCodec.encode(hit);
+        if (record.length > segmentSize()) {
+            throw new ValidationException("Hit does not fit into an ingest log segment");
+        }
+        appendLock.lock();
+        try {
+            if (!active.fits(record.length)) {
+                roll();
+            }
+            active.append(record);
+            if (properties.getFsync() == FsyncPolicy.ALWAYS) {
+                active.force();
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startLoader() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        running = true;
+        loader = workerThreads.factory("stats-ingest-loader").newThread(this::load);
+        loader.start();
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        running = false;
+        if (loader != null) {
+            loader.interrupt();
+            loader.join(properties.getRetryDelay().toMillis());
+        }
+        if (fsyncExecutor != null) {
+            fsyncExecutor.shutdownNow();
+        }
+        appendLock.lock();
+        try {
+            for (LogSegment segment : segments.values()) {
+                segment.force();
+                segment.close();
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void load() {
+        LogPosition position = loadFrom;
+        log.info("[IngestLog] Loading from segment {} offset {}", position.segment(), position.offset());
+        while (running) {
+            try {
+                position = releaseConsumed(position);
+                List<EndpointHitRequest> batch = new ArrayList<>(properties.getBatchSize());
+                List<LogPosition> ends = new ArrayList<>(properties.getBatchSize());
+                LogPosition next = readBatch(position, batch, ends);
+                if (batch.isEmpty()) {
+                    LockSupport.parkNanos(properties.getLoadInterval().toNanos());
+                    continue;
+                }
+                List<EndpointHit> hits = endpointHitMapper.toEntities(batch);
+                for (Integer shard : shardRouter.allShards()) {
+                    loadShard(shard, hits, ends, next);
+                }
+                position = next;
+                log.debug("[IngestLog] Loaded {} hits up to segment {} offset {}",
+                          batch.size(), next.segment(), next.offset());
+            } catch (RuntimeException e) {
+                log.warn("[IngestLog] Failed to load hits from segment {} offset {}, retrying in {}: {}",
+                         position.segment(), position.offset(), properties.getRetryDelay(), e.getMessage());
+                LockSupport.parkNanos(properties.getRetryDelay().toNanos());
+            }
+        }
+    }
+
+    /**
+     * Stores the shard's hits of the batch that lie past its checkpoint and moves the checkpoint to the end of the
+     * batch in the same transaction. A shard that committed further before a restart skips what it already has.
+     */
+    private void loadShard(int shard, List<EndpointHit> hits, List<LogPosition> ends, LogPosition next) {
+        LogPosition done = checkpoints.get(shard);
+        if (done.compareTo(next) >= 0) {
+            return;
+        }
+        List<EndpointHit> part = new ArrayList<>();
+        for (int i = 0; i < hits.size(); i++) {
+            if (shardRouter.shardOf(hits.get(i).getUriId()) == shard && ends.get(i).compareTo(done) > 0) {
+                part.add(hits.get(i));
+            }
+        }
+        shardRouter.run(shard, () -> transactionTemplate.executeWithoutResult(status -> {
+            if (!part.isEmpty()) {
+                statsService.saveAll(part);
+            }
+            checkpointRepository.save(properties.getLogId(), next);
+        }));
+        checkpoints.put(shard, next);
+    }
+
+    private LogPosition readBatch(LogPosition position, List<EndpointHitRequest> batch, List<LogPosition> ends) {
+        LogSegment segment = segments.get(position.segment());
+        ByteBuffer view = segment.read(position.offset());
+        while (batch.size() < properties.getBatchSize()) {
+            EndpointHitRequest hit = HitRecordCodec.decode(view);
+            if (hit == null) {
+                break;
+            }
+            batch.add(hit);
+            ends.add(new LogPosition(segment.id(), view.position()));
+        }
+        return new LogPosition(segment.id(), view.position());
+    }
+
+    /**
+     * Moves the position past fully loaded sealed segments and deletes them.
+     */
+    private LogPosition releaseConsumed(LogPosition position) {
+        LogPosition current = position;
+        while (true) {
+            Map.Entry<Long, LogSegment> entry = segments.ceilingEntry(current.segment());
+            if (entry.getKey() != current.segment()) {
+                current = new LogPosition(entry.getKey(), 0);
+            }
+            LogSegment segment = entry.getValue();
+            if (!segment.isSealed() || current.offset() < segment.end()) {
+                return current;
+            }
+            current = new LogPosition(segments.higherKey(segment.id()), 0);
+            segments.remove(segment.id());
+            try {
+                segment.delete();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            log.debug("[IngestLog] Deleted loaded segment {}", segment.id());
+        }
+    }
+
+    private void roll() {
+        LogSegment next;
+        try {
+            next = LogSegment.create(properties.getDirectory(), active.id() + 1, segmentSize());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        segments.put(next.id(), next);
+        active.force();
+        active.seal();
+        active = next;
+    }
+
+    private void forceActive() {
+        try {
+            active.force();
+        } catch (RuntimeException e) {
+            log.warn("[IngestLog] Failed to force the active segment: {}", e.getMessage());
+        }
+    }
+
+    private int segmentSize() {
+        return Math.toIntExact(properties.getSegmentSize().toBytes());
+    }
+}
@@ -0,0 +1,27 @@
+package ru.practicum.stats.ingest;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Getter
+@Setter
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@ConfigurationProperties(prefix = "stats.ingest")
+public class IngestLogProperties {
+    boolean enabled = false;
+    Path directory = Path.of("ingest-log");
+    String logId = "default";
+    DataSize segmentSize = DataSize.ofMegabytes(64);
+    FsyncPolicy fsync = FsyncPolicy.INTERVAL;
+    Duration fsyncInterval = Duration.ofMillis(100);
+    int batchSize = 5_000;
+    Duration loadInterval = Duration.ofMillis(200);
+    Duration retryDelay = Duration.ofSeconds(5);
+}
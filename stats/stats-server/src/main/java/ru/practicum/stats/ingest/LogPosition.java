@@ -0,0 +1,13 @@
+package ru.practicum.stats.ingest;
+
+import java.util.Comparator;
+
+public record LogPosition(long segment, int offset) implements Comparable<LogPosition> {
+    private static final Comparator<LogPosition> ORDER = Comparator.comparingLong(LogPosition::segment)
+            .thenComparingInt(LogPosition::offset);
+
+    @Override
+    public int compareTo(LogPosition other) {
+        return ORDER.compare(this, other);
+    }
+}
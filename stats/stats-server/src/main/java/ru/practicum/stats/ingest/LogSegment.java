@@ -0,0 +1,111 @@
+package ru.practicum.stats.ingest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One memory-mapped file of the ingest log. Only the appending thread writes to it; readers see records up to
+ * {@link #end()}, which is published after the record bytes.
+ */
+final class LogSegment implements AutoCloseable {
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".log";
+
+    private final long id;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private volatile int end;
+    private volatile boolean sealed;
+
+    private LogSegment(long id, Path path, int size) throws IOException {
+        this.id = id;
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                        StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, channel.size()));
+    }
+
+    static LogSegment create(Path directory, long id, int size) throws IOException {
+        return new LogSegment(id, directory.resolve(fileName(id)), size);
+    }
+
+    /**
+     * Maps an existing segment and finds the end of its last intact record. The segment is sealed:
+     * records are never appended after a possibly torn write.
+     */
+    static LogSegment recover(Path path) throws IOException {
+        LogSegment segment = new LogSegment(parseId(path), path, 0);
+        ByteBuffer view = segment.buffer.duplicate();
+        while (HitRecordCodec.decode(view) != null) {
+            segment.end = view.position();
+        }
+        segment.seal();
+        return segment;
+    }
+
+    static boolean isSegment(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+    }
+
+    long id() {
+        return id;
+    }
+
+    int end() {
+        return end;
+    }
+
+    boolean isSealed() {
+        return sealed;
+    }
+
+    boolean fits(int length) {
+        return buffer.capacity() - end >= length;
+    }
+
+    void append(byte[] record) {
+        buffer.put(end, record);
+        end += record.length;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void seal() {
+        sealed = true;
+    }
+
+    /**
+     * Returns a read-only view over [offset, end) positioned at the offset.
+     */
+    ByteBuffer read(int offset) {
+        return buffer.asReadOnlyBuffer().limit(end).position(offset);
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static String fileName(long id) {
+        return PREFIX + String.format("%020d", id) + SUFFIX;
+    }
+
+    private static long parseId(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+}
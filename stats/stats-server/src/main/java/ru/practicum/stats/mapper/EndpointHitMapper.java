@@ -2,20 +2,33 @@ package ru.practicum.stats.mapper;
 
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
+import org.mapstruct.Named;
 import ru.practicum.stats.EndpointHitRequest;
+import ru.practicum.stats.dictionary.EndpointDictionary;
+import ru.practicum.stats.dictionary.IpCodec;
+import ru.practicum.stats.ingest.HitTimestamps;
 import ru.practicum.stats.model.EndpointHit;
 
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.List;
 
-@Mapper
+@Mapper(uses = EndpointDictionary.class)
 public interface EndpointHitMapper {
     @Mapping(source = "timestamp", target = "timestamp")
+    @Mapping(source = "app", target = "appId", qualifiedByName = "appId")
+    @Mapping(source = "uri", target = "uriId", qualifiedByName = "uriId")
+    @Mapping(source = "ip", target = "ip", qualifiedByName = "encodeIp")
     @Mapping(target = "id", ignore = true)
     EndpointHit toEntity(EndpointHitRequest dto);
 
+    List<EndpointHit> toEntities(List<EndpointHitRequest> dtos);
+
+    @Named("encodeIp")
+    default byte[] encodeIp(String ip) {
+        return IpCodec.encode(ip);
+    }
+
     default LocalDateTime map(String value) {
-        String string = value.replace('T', ' ');
-        return LocalDateTime.parse(string, DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        return HitTimestamps.parse(value);
     }
 }
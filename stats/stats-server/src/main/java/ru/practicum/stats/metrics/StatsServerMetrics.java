@@ -0,0 +1,40 @@
+package ru.practicum.stats.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Latency and outcome of ingest and lookups at the service level.
+ */
+@Component
+public class StatsServerMetrics implements MeterBinder {
+    private final OperationTimers<Operation> timers = new OperationTimers<>(
+            Operation.class, "stats.server.requests", "Hits stored and stats looked up by the stats service",
+            operation -> operation.tag);
+
+    public void recordSuccess(Operation operation, long startedNanos) {
+        timers.recordSuccess(operation, startedNanos);
+    }
+
+    public void recordFailure(Operation operation, long startedNanos) {
+        timers.recordFailure(operation, startedNanos);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        timers.bindTo(registry);
+    }
+
+    public enum Operation {
+        SAVE_HIT("save-hit"),
+        SAVE_HITS("save-hits"),
+        FIND_STATS("find-stats");
+
+        private final String tag;
+
+        Operation(String tag) {
+            this.tag = tag;
+        }
+    }
+}
@@ -18,12 +18,12 @@ public class EndpointHit {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     Long id;
-    @Column(name = "app", nullable = false)
-    String app;
-    @Column(name = "uri", nullable = false)
-    String uri;
+    @Column(name = "app_id", nullable = false)
+    Integer appId;
+    @Column(name = "uri_id", nullable = false)
+    Integer uriId;
     @Column(name = "ip", nullable = false)
-    String ip;
+    byte[] ip;
     @Column(name = "hit_ts", nullable = false)
     LocalDateTime timestamp;
 }
@@ -0,0 +1,4 @@
+package ru.practicum.stats.model;
+
+public record EndpointHitCount(Integer appId, Integer uriId, Long hits) {
+}
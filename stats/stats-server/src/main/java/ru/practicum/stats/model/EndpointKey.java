@@ -0,0 +1,4 @@
+package ru.practicum.stats.model;
+
+public record EndpointKey(int appId, int uriId) {
+}
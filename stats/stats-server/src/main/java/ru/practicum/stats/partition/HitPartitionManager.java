@@ -0,0 +1,98 @@
+package ru.practicum.stats.partition;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.stats.cache.StatsResultCache;
+import ru.practicum.stats.repository.PartitionRepository;
+import ru.practicum.stats.shard.ShardRouter;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HitPartitionManager {
+    private final PartitionRepository partitionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final StatsResultCache statsResultCache;
+    private final ShardRouter shardRouter;
+
+    @Value("${stats.partition.interval:MONTH}")
+    private PartitionInterval interval;
+    @Value("${stats.partition.ahead:3}")
+    private int ahead;
+    @Value("${stats.partition.retention-days:0}")
+    private int retentionDays;
+
+    public void prepare() {
+        if (!partitionRepository.isPartitioned()) {
+            migrateLegacyTable();
+        } else {
+            partitionRepository.createParent();
+        }
+        maintainShard();
+    }
+
+    @Scheduled(cron = "${stats.partition.maintenance-cron:0 0 * * * *}")
+    public void maintain() {
+        shardRouter.forEachShard(this::maintainShard);
+    }
+
+    private void maintainShard() {
+        LocalDate today = LocalDate.now();
+        LocalDate start = interval.floor(retentionDays > 0 ? today.minusDays(retentionDays) : today);
+        LocalDate last = interval.floor(today).plus(ahead, interval.getUnit());
+        createPartitions(start, last);
+        if (retentionDays > 0) {
+            dropExpired(today.minusDays(retentionDays).atStartOfDay());
+        }
+    }
+
+    private void migrateLegacyTable() {
+        log.info("[HitPartitionManager] Converting endpoint_hits into a partitioned table");
+        transactionTemplate.executeWithoutResult(status -> {
+            partitionRepository.renameLegacyTable();
+            partitionRepository.createParent();
+            partitionRepository.findLegacyRange().ifPresent(range ->
+                    createPartitions(interval.floor(range.min().toLocalDate()),
+                                     interval.floor(range.max().toLocalDate())));
+            int copied = partitionRepository.copyLegacyHits();
+            partitionRepository.dropLegacyTable();
+            log.info("[HitPartitionManager] Moved {} hits into partitions", copied);
+        });
+    }
+
+    private void createPartitions(LocalDate from, LocalDate to) {
+        for (LocalDate start = from; !start.isAfter(to); start = interval.next(start)) {
+            String name = interval.partitionName(start);
+            if (partitionRepository.exists(name)) {
+                continue;
+            }
+            LocalDate partitionStart = start;
+            transactionTemplate.executeWithoutResult(status -> partitionRepository.createPartition(
+                    name, partitionStart.atStartOfDay(), interval.next(partitionStart).atStartOfDay()));
+            log.info("[HitPartitionManager] Created partition {}", name);
+        }
+    }
+
+    private void dropExpired(LocalDateTime cutoff) {
+        for (String name : partitionRepository.findPartitions()) {
+            LocalDate start = PartitionInterval.parseStart(name);
+            LocalDate end = PartitionInterval.ofPartition(name).next(start);
+            if (!end.atStartOfDay().isAfter(cutoff)) {
+                partitionRepository.dropPartition(name);
+                log.info("[HitPartitionManager] Dropped expired partition {}", name);
+            }
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            partitionRepository.deleteDefaultBefore(cutoff);
+            partitionRepository.deleteAggregatesBefore(cutoff);
+        });
+        statsResultCache.evictBefore(cutoff);
+    }
+}
@@ -0,0 +1,42 @@
+package ru.practicum.stats.partition;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+
+@Getter
+@RequiredArgsConstructor
+public enum PartitionInterval {
+    DAY(ChronoUnit.DAYS, DateTimeFormatter.ofPattern("yyyyMMdd")),
+    MONTH(ChronoUnit.MONTHS, DateTimeFormatter.ofPattern("yyyyMM"));
+
+    public static final String PREFIX = "endpoint_hits_p";
+
+    private final ChronoUnit unit;
+    private final DateTimeFormatter suffixFormat;
+
+    public LocalDate floor(LocalDate date) {
+        return this == DAY ? date : date.with(TemporalAdjusters.firstDayOfMonth());
+    }
+
+    public LocalDate next(LocalDate start) {
+        return start.plus(1, unit);
+    }
+
+    public String partitionName(LocalDate start) {
+        return PREFIX + suffixFormat.format(start);
+    }
+
+    public static PartitionInterval ofPartition(String partitionName) {
+        return partitionName.length() - PREFIX.length() == 6 ? MONTH : DAY;
+    }
+
+    public static LocalDate parseStart(String partitionName) {
+        String suffix = partitionName.substring(PREFIX.length());
+        return LocalDate.parse(ofPartition(partitionName) == MONTH ? suffix + "01" : suffix, DAY.suffixFormat);
+    }
+}
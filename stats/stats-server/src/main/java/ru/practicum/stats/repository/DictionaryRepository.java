@@ -0,0 +1,47 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+
+@Repository
+@RequiredArgsConstructor
+public class DictionaryRepository {
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public Optional<Integer> insertOrFind(DictionaryTable table, String value) {
+        String sql = "WITH inserted AS (INSERT INTO " + table.getName() + " (" + table.getColumn() + ") " +
+                "VALUES (:value) ON CONFLICT (" + table.getColumn() + ") DO NOTHING RETURNING id) " +
+                "SELECT id FROM inserted UNION ALL " +
+                "SELECT id FROM " + table.getName() + " WHERE " + table.getColumn() + " = :value LIMIT 1";
+        List<Integer> ids = jdbcTemplate.queryForList(sql, new MapSqlParameterSource("value", value), Integer.class);
+        return ids.stream().findFirst();
+    }
+
+    public void findIds(DictionaryTable table, Collection<String> values, BiConsumer<String, Integer> consumer) {
+        String sql = "SELECT id, " + table.getColumn() + " AS value FROM " + table.getName() +
+                " WHERE " + table.getColumn() + " IN (:values)";
+        jdbcTemplate.query(sql, new MapSqlParameterSource("values", values), (RowCallbackHandler) rs ->
+                consumer.accept(rs.getString("value"), rs.getInt("id")));
+    }
+
+    public void findValues(DictionaryTable table, Collection<Integer> ids, BiConsumer<String, Integer> consumer) {
+        String sql = "SELECT id, " + table.getColumn() + " AS value FROM " + table.getName() + " WHERE id IN (:ids)";
+        jdbcTemplate.query(sql, new MapSqlParameterSource("ids", ids), (RowCallbackHandler) rs ->
+                consumer.accept(rs.getString("value"), rs.getInt("id")));
+    }
+
+    public void findValuesAfter(DictionaryTable table, int afterId, BiConsumer<String, Integer> consumer) {
+        String sql = "SELECT id, " + table.getColumn() + " AS value FROM " + table.getName() +
+                " WHERE id > :afterId ORDER BY id";
+        jdbcTemplate.query(sql, new MapSqlParameterSource("afterId", afterId), (RowCallbackHandler) rs ->
+                consumer.accept(rs.getString("value"), rs.getInt("id")));
+    }
+}
@@ -0,0 +1,14 @@
+package ru.practicum.stats.repository;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public enum DictionaryTable {
+    APPS("apps", "name"),
+    URIS("uris", "uri");
+
+    private final String name;
+    private final String column;
+}
@@ -0,0 +1,30 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.stats.model.EndpointHit;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class EndpointHitBatchRepository {
+    private static final String INSERT_HIT = "INSERT INTO endpoint_hits (app_id, uri_id, ip, hit_ts) " +
+            "VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void saveAll(List<EndpointHit> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_HIT, hits, hits.size(), (ps, hit) -> {
+            ps.setInt(1, hit.getAppId());
+            ps.setInt(2, hit.getUriId());
+            ps.setBytes(3, hit.getIp());
+            ps.setTimestamp(4, Timestamp.valueOf(hit.getTimestamp()));
+        });
+    }
+}
@@ -0,0 +1,121 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.stats.repository.SketchRepository.EndpointRowHandler;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static ru.practicum.stats.repository.SketchRepository.uriFilter;
+
+@Repository
+@RequiredArgsConstructor
+public class HitArchiveRepository {
+    private static final String TAKE_HITS = "WITH moved AS (DELETE FROM endpoint_hits " +
+            "WHERE hit_ts >= ? AND hit_ts < ? RETURNING app_id, uri_id, ip, hit_ts) " +
+            "SELECT app_id, uri_id, ip, hit_ts FROM moved ORDER BY hit_ts";
+    private static final int TAKE_FETCH_SIZE = 10_000;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public Optional<LocalDateTime> findFirstHitBefore(LocalDateTime cutoff) {
+        Timestamp first = jdbcTemplate.getJdbcTemplate()
+                .queryForObject("SELECT min(hit_ts) FROM endpoint_hits WHERE hit_ts < ?", Timestamp.class,
+                                Timestamp.valueOf(cutoff));
+        return Optional.ofNullable(first).map(Timestamp::toLocalDateTime);
+    }
+
+    /**
+     * Removes the hits of [from, to) from endpoint_hits and passes them to the handler in time order, fetched
+     * in pages so that a whole day never has to fit in memory. Must run in a transaction.
+     */
+    public void takeHits(LocalDateTime from, LocalDateTime to, TimedRowHandler handler) {
+        jdbcTemplate.getJdbcTemplate().query(con -> {
+            PreparedStatement ps = con.prepareStatement(TAKE_HITS);
+            ps.setTimestamp(1, Timestamp.valueOf(from));
+            ps.setTimestamp(2, Timestamp.valueOf(to));
+            ps.setFetchSize(TAKE_FETCH_SIZE);
+            return ps;
+        }, (RowCallbackHandler) rs -> handler.accept(rs.getInt("app_id"), rs.getInt("uri_id"), rs.getBytes("ip"),
+                                                     rs.getTimestamp("hit_ts").toLocalDateTime()));
+    }
+
+    public void saveSegment(String file, LocalDate day, int hits) {
+        jdbcTemplate.getJdbcTemplate().update("INSERT INTO hit_archive_segments (file, day, hits, archived_at) " +
+                                                      "VALUES (?, ?, ?, now())", file, Date.valueOf(day), hits);
+    }
+
+    public Map<String, LocalDate> findSegments() {
+        Map<String, LocalDate> segments = new HashMap<>();
+        jdbcTemplate.getJdbcTemplate().query("SELECT file, day FROM hit_archive_segments", (RowCallbackHandler) rs ->
+                segments.put(rs.getString("file"), rs.getDate("day").toLocalDate()));
+        return segments;
+    }
+
+    public List<String> deleteSegmentsBefore(LocalDate day) {
+        return jdbcTemplate.getJdbcTemplate().queryForList("DELETE FROM hit_archive_segments WHERE day < ? " +
+                                                                   "RETURNING file", String.class, Date.valueOf(day));
+    }
+
+    /**
+     * Scans the hits of [start, end] that are still stored in endpoint_hits, each (app, uri, ip) only once
+     * when {@code distinct} is set.
+     */
+    public void scanHits(LocalDateTime start, LocalDateTime end, List<Integer> uriIds, boolean distinct,
+                         EndpointRowHandler handler) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", start)
+                .addValue("end", end);
+        String sql = "SELECT " + (distinct ? "DISTINCT " : "") + "app_id, uri_id, ip FROM endpoint_hits " +
+                "WHERE hit_ts >= :start AND hit_ts <= :end" + uriFilter(uriIds, params);
+        jdbcTemplate.query(sql, params, (RowCallbackHandler) rs ->
+                handler.accept(rs.getInt("app_id"), rs.getInt("uri_id"), rs.getBytes("ip")));
+    }
+
+    public void scanTimedHits(LocalDateTime start, LocalDateTime end, List<Integer> uriIds, TimedRowHandler handler) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", start)
+                .addValue("end", end);
+        String sql = "SELECT app_id, uri_id, ip, hit_ts FROM endpoint_hits WHERE hit_ts >= :start AND hit_ts <= :end" +
+                uriFilter(uriIds, params);
+        jdbcTemplate.query(sql, params, (RowCallbackHandler) rs -> handler.accept(
+                rs.getInt("app_id"), rs.getInt("uri_id"), rs.getBytes("ip"),
+                rs.getTimestamp("hit_ts").toLocalDateTime()));
+    }
+
+    /**
+     * Scans the visitor id of every distinct (app, uri, ip) of the hits of [start, end] that are still stored
+     * in endpoint_hits. Only ips registered in the visitors table are seen.
+     */
+    public void scanVisitorIds(LocalDateTime start, LocalDateTime end, List<Integer> uriIds,
+                               VisitorIdRowHandler handler) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", start)
+                .addValue("end", end);
+        String sql = "SELECT DISTINCT h.app_id, h.uri_id, v.id AS visitor_id FROM endpoint_hits h " +
+                "JOIN visitors v ON v.ip = h.ip WHERE hit_ts >= :start AND hit_ts <= :end" + uriFilter(uriIds, params);
+        jdbcTemplate.query(sql, params, (RowCallbackHandler) rs ->
+                handler.accept(rs.getInt("app_id"), rs.getInt("uri_id"), rs.getInt("visitor_id")));
+    }
+
+    @FunctionalInterface
+    public interface TimedRowHandler {
+        void accept(int appId, int uriId, byte[] ip, LocalDateTime timestamp);
+    }
+
+    @FunctionalInterface
+    public interface VisitorIdRowHandler {
+        void accept(int appId, int uriId, int visitorId);
+    }
+}
@@ -0,0 +1,29 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.stats.ingest.LogPosition;
+
+import java.util.Optional;
+
+@Repository
+@RequiredArgsConstructor
+public class IngestCheckpointRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    public Optional<LogPosition> find(String logId) {
+        return jdbcTemplate.query("SELECT segment_id, segment_offset FROM ingest_checkpoints WHERE log_id = ?",
+                                  (rs, rowNum) -> new LogPosition(rs.getLong("segment_id"),
+                                                                  rs.getInt("segment_offset")), logId)
+                .stream()
+                .findFirst();
+    }
+
+    public void save(String logId, LogPosition position) {
+        jdbcTemplate.update("INSERT INTO ingest_checkpoints (log_id, segment_id, segment_offset) VALUES (?, ?, ?) " +
+                                    "ON CONFLICT (log_id) DO UPDATE SET segment_id = EXCLUDED.segment_id, " +
+                                    "segment_offset = EXCLUDED.segment_offset",
+                            logId, position.segment(), position.offset());
+    }
+}
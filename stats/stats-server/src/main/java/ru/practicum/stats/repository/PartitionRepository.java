@@ -0,0 +1,103 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.stats.partition.PartitionInterval;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+@RequiredArgsConstructor
+public class PartitionRepository {
+    public static final String DEFAULT_PARTITION = "endpoint_hits_default";
+    private static final String CREATE_PARENT = "CREATE TABLE IF NOT EXISTS endpoint_hits " +
+            "(id BIGINT NOT NULL DEFAULT nextval('endpoint_hits_seq'), app_id INT NOT NULL, " +
+            "uri_id INT NOT NULL, ip BYTEA NOT NULL, hit_ts TIMESTAMP NOT NULL, PRIMARY KEY (id, hit_ts)) " +
+            "PARTITION BY RANGE (hit_ts)";
+    private static final List<String> AGGREGATE_TABLES = List.of("hit_rollups_minute", "hit_rollups_hour",
+                                                                 "hit_rollups_day", "hit_sketches_hour",
+                                                                 "hit_sketches_day", "hit_sketch_deltas",
+                                                                 "visitor_bitmaps_day", "visitor_bitmap_deltas");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public boolean isPartitioned() {
+        String relkind = jdbcTemplate.queryForObject(
+                "SELECT c.relkind::text FROM pg_class c WHERE c.oid = to_regclass('endpoint_hits')", String.class);
+        return "p".equals(relkind);
+    }
+
+    public void renameLegacyTable() {
+        jdbcTemplate.execute("ALTER TABLE endpoint_hits RENAME TO endpoint_hits_legacy");
+    }
+
+    public void createParent() {
+        jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS endpoint_hits_seq");
+        jdbcTemplate.execute(CREATE_PARENT);
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + DEFAULT_PARTITION + " PARTITION OF endpoint_hits DEFAULT");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS endpoint_hits_uri_hit_ts_idx " +
+                                     "ON endpoint_hits (uri_id, hit_ts)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS endpoint_hits_hit_ts_idx ON endpoint_hits (hit_ts)");
+    }
+
+    public Optional<HitRange> findLegacyRange() {
+        HitRange range = jdbcTemplate.queryForObject("SELECT MIN(hit_ts), MAX(hit_ts) FROM endpoint_hits_legacy",
+                                                     (rs, rowNum) -> rs.getTimestamp(1) == null ? null :
+                                                             new HitRange(rs.getTimestamp(1).toLocalDateTime(),
+                                                                          rs.getTimestamp(2).toLocalDateTime()));
+        return Optional.ofNullable(range);
+    }
+
+    public int copyLegacyHits() {
+        return jdbcTemplate.update("INSERT INTO endpoint_hits (app_id, uri_id, ip, hit_ts) " +
+                                           "SELECT app_id, uri_id, ip, hit_ts FROM endpoint_hits_legacy");
+    }
+
+    public void dropLegacyTable() {
+        jdbcTemplate.execute("DROP TABLE endpoint_hits_legacy");
+    }
+
+    public List<String> findPartitions() {
+        return jdbcTemplate.queryForList("SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                                                 "WHERE i.inhparent = 'endpoint_hits'::regclass AND c.relname LIKE ?",
+                                         String.class, PartitionInterval.PREFIX + "%");
+    }
+
+    public boolean exists(String table) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL",
+                                                               Boolean.class, table));
+    }
+
+    public void createPartition(String name, LocalDateTime from, LocalDateTime to) {
+        jdbcTemplate.execute("CREATE TABLE " + name + " (LIKE endpoint_hits INCLUDING DEFAULTS)");
+        jdbcTemplate.update("WITH moved AS (DELETE FROM " + DEFAULT_PARTITION +
+                                    " WHERE hit_ts >= ? AND hit_ts < ? RETURNING *) " +
+                                    "INSERT INTO " + name + " SELECT * FROM moved",
+                            Timestamp.valueOf(from), Timestamp.valueOf(to));
+        jdbcTemplate.execute("ALTER TABLE endpoint_hits ATTACH PARTITION " + name +
+                                     " FOR VALUES FROM ('" + Timestamp.valueOf(from) + "') TO ('" +
+                                     Timestamp.valueOf(to) + "')");
+    }
+
+    public void dropPartition(String name) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + name);
+    }
+
+    public int deleteDefaultBefore(LocalDateTime cutoff) {
+        return jdbcTemplate.update("DELETE FROM " + DEFAULT_PARTITION + " WHERE hit_ts < ?",
+                                   Timestamp.valueOf(cutoff));
+    }
+
+    public void deleteAggregatesBefore(LocalDateTime cutoff) {
+        for (String table : AGGREGATE_TABLES) {
+            jdbcTemplate.update("DELETE FROM " + table + " WHERE bucket < ?", Timestamp.valueOf(cutoff));
+        }
+    }
+
+    public record HitRange(LocalDateTime min, LocalDateTime max) {
+    }
+}
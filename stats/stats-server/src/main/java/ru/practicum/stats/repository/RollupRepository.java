@@ -0,0 +1,169 @@
+package ru.practicum.stats.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.model.EndpointHitCount;
+import ru.practicum.stats.rollup.BucketRange;
+import ru.practicum.stats.rollup.RollupGranularity;
+import ru.practicum.stats.rollup.RollupPlan;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+@Repository
+public class RollupRepository {
+    private static final int STREAM_FETCH_SIZE = 1_000;
+    private static final String UPSERT = "INSERT INTO %s AS r (app_id, uri_id, bucket, hits) VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (uri_id, bucket, app_id) DO UPDATE SET hits = r.hits + EXCLUDED.hits";
+    private static final String BACKFILL = "INSERT INTO %1$s AS r (app_id, uri_id, bucket, hits) " +
+            "SELECT app_id, uri_id, date_trunc('%2$s', hit_ts), COUNT(*) FROM endpoint_hits WHERE id > ? " +
+            "GROUP BY app_id, uri_id, date_trunc('%2$s', hit_ts) " +
+            "ON CONFLICT (uri_id, bucket, app_id) DO UPDATE SET hits = r.hits + EXCLUDED.hits";
+    private static final Comparator<RollupKey> KEY_ORDER = Comparator.comparing(RollupKey::uriId)
+            .thenComparing(RollupKey::bucket)
+            .thenComparing(RollupKey::appId);
+    private static final RowMapper<EndpointHitCount> COUNT_MAPPER = (rs, rowNum) ->
+            new EndpointHitCount(rs.getInt("app_id"), rs.getInt("uri_id"), rs.getLong("total"));
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate cursorTemplate;
+
+    public RollupRepository(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        JdbcTemplate cursor = new JdbcTemplate(jdbcTemplate.getJdbcTemplate().getDataSource());
+        cursor.setFetchSize(STREAM_FETCH_SIZE);
+        this.cursorTemplate = new NamedParameterJdbcTemplate(cursor);
+    }
+
+    public void increment(List<EndpointHit> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            Map<RollupKey, Long> counts = new TreeMap<>(KEY_ORDER);
+            for (EndpointHit hit : hits) {
+                RollupKey key = new RollupKey(hit.getAppId(), hit.getUriId(), granularity.floor(hit.getTimestamp()));
+                counts.merge(key, 1L, Long::sum);
+            }
+            List<Map.Entry<RollupKey, Long>> rows = new ArrayList<>(counts.entrySet());
+            jdbcTemplate.getJdbcTemplate().batchUpdate(UPSERT.formatted(granularity.getTable()), rows, rows.size(),
+                    (ps, row) -> {
+                        ps.setInt(1, row.getKey().appId());
+                        ps.setInt(2, row.getKey().uriId());
+                        ps.setTimestamp(3, Timestamp.valueOf(row.getKey().bucket()));
+                        ps.setLong(4, row.getValue());
+                    });
+        }
+    }
+
+    /**
+     * Remembers the last hit stored while the rollups are kept up to date. Called when they are disabled; a mark
+     * left by an earlier run is kept, since the hits after it have not been rolled up either.
+     */
+    public void recordHighWaterMark() {
+        jdbcTemplate.getJdbcTemplate().update("INSERT INTO rollup_high_water (hit_id) " +
+                                                      "SELECT COALESCE(MAX(id), 0) FROM endpoint_hits " +
+                                                      "WHERE NOT EXISTS (SELECT 1 FROM rollup_high_water)");
+    }
+
+    /**
+     * Adds the hits the rollups are missing and drops the mark: every hit for an empty rollup table, otherwise
+     * the hits after the high-water mark recorded while the rollups were disabled. Has to run in a transaction,
+     * before any hit is stored.
+     */
+    public void backfill() {
+        JdbcTemplate jdbc = jdbcTemplate.getJdbcTemplate();
+        Long mark = jdbc.query("SELECT hit_id FROM rollup_high_water", rs -> rs.next() ? rs.getLong(1) : null);
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            String table = granularity.getTable();
+            boolean empty = !Boolean.TRUE.equals(jdbc.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM " + table + ")", Boolean.class));
+            if (empty || mark != null) {
+                jdbc.update(BACKFILL.formatted(table, granularity.name().toLowerCase()), empty ? 0L : mark);
+            }
+        }
+        jdbc.update("DELETE FROM rollup_high_water");
+    }
+
+    /**
+     * Streams the {@code limit} endpoints with the most hits of every hour bucket starting from {@code from},
+     * each bucket in descending order of hits.
+     */
+    public void findTopPerHour(LocalDateTime from, int limit, BucketCountHandler handler) {
+        String sql = "SELECT bucket, app_id, uri_id, hits FROM (SELECT bucket, app_id, uri_id, hits, " +
+                "row_number() OVER (PARTITION BY bucket ORDER BY hits DESC) AS rank " +
+                "FROM hit_rollups_hour WHERE bucket >= :from) r WHERE rank <= :limit ORDER BY bucket, rank";
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("limit", limit);
+        cursorTemplate.query(sql, params, (RowCallbackHandler) rs ->
+                handler.accept(rs.getTimestamp("bucket").toLocalDateTime(), rs.getInt("app_id"),
+                               rs.getInt("uri_id"), rs.getLong("hits")));
+    }
+
+    public List<EndpointHitCount> findStats(RollupPlan plan, List<Integer> uriIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        return jdbcTemplate.query(statsQuery(plan, uriIds, params), params, COUNT_MAPPER);
+    }
+
+    /**
+     * Same as {@link #findStats} but reads the result through a cursor; the stream has to be consumed
+     * inside a transaction and closed.
+     */
+    public Stream<EndpointHitCount> streamStats(RollupPlan plan, List<Integer> uriIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        return cursorTemplate.queryForStream(statsQuery(plan, uriIds, params), params, COUNT_MAPPER);
+    }
+
+    private static String statsQuery(RollupPlan plan, List<Integer> uriIds, MapSqlParameterSource params) {
+        params.addValue("start", plan.start())
+                .addValue("headEnd", plan.headEnd())
+                .addValue("tailStart", plan.tailStart())
+                .addValue("end", plan.end());
+        boolean filterUris = uriIds != null;
+        if (filterUris) {
+            params.addValue("uriIds", uriIds);
+        }
+        String uriFilter = filterUris ? " AND uri_id IN (:uriIds)" : "";
+
+        StringJoiner parts = new StringJoiner(" UNION ALL ");
+        parts.add("SELECT app_id, uri_id, COUNT(*) AS hits FROM endpoint_hits " +
+                          "WHERE ((hit_ts >= :start AND hit_ts < :headEnd) " +
+                          "OR (hit_ts >= :tailStart AND hit_ts <= :end))" + uriFilter + " GROUP BY app_id, uri_id");
+        plan.buckets().forEach((granularity, ranges) -> {
+            StringJoiner bucketFilter = new StringJoiner(" OR ", "(", ")");
+            for (int i = 0; i < ranges.size(); i++) {
+                BucketRange range = ranges.get(i);
+                String from = granularity.name().toLowerCase() + "From" + i;
+                String to = granularity.name().toLowerCase() + "To" + i;
+                params.addValue(from, range.from()).addValue(to, range.to());
+                bucketFilter.add("(bucket >= :" + from + " AND bucket < :" + to + ")");
+            }
+            parts.add("SELECT app_id, uri_id, hits FROM " + granularity.getTable() +
+                              " WHERE " + bucketFilter + uriFilter);
+        });
+
+        return "SELECT app_id, uri_id, SUM(hits) AS total FROM (" + parts + ") s " +
+                "GROUP BY app_id, uri_id ORDER BY total DESC";
+    }
+
+    @FunctionalInterface
+    public interface BucketCountHandler {
+        void accept(LocalDateTime bucket, int appId, int uriId, long hits);
+    }
+
+    private record RollupKey(int appId, int uriId, LocalDateTime bucket) {
+    }
+}
@@ -0,0 +1,70 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.stats.repository.RollupRepository.BucketCountHandler;
+import ru.practicum.stats.rollup.RollupGranularity;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static ru.practicum.stats.repository.SketchRepository.uriFilter;
+
+@Repository
+@RequiredArgsConstructor
+public class SeriesRepository {
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Counts the hits of [start, end] per {@code interval} bucket in one query. Whole buckets are read from the
+     * rollup table of the interval and only the partial first and last bucket are grouped from endpoint_hits.
+     */
+    public void findRollupSeries(RollupGranularity interval, LocalDateTime start, LocalDateTime end,
+                                 List<Integer> uriIds, BucketCountHandler handler) {
+        LocalDateTime wholeFrom = interval.ceil(start);
+        LocalDateTime wholeTo = interval.floor(end);
+        if (!wholeFrom.isBefore(wholeTo)) {
+            findRawSeries(interval, start, end, uriIds, false, handler);
+            return;
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", start)
+                .addValue("wholeFrom", wholeFrom)
+                .addValue("wholeTo", wholeTo)
+                .addValue("end", end);
+        String uriFilter = uriFilter(uriIds, params);
+        String sql = "SELECT bucket, app_id, uri_id, hits FROM " + interval.getTable() +
+                " WHERE bucket >= :wholeFrom AND bucket < :wholeTo" + uriFilter +
+                " UNION ALL SELECT " + truncate(interval) + " AS bucket, app_id, uri_id, COUNT(*) AS hits " +
+                "FROM endpoint_hits WHERE ((hit_ts >= :start AND hit_ts < :wholeFrom) " +
+                "OR (hit_ts >= :wholeTo AND hit_ts <= :end))" + uriFilter + " GROUP BY 1, 2, 3";
+        jdbcTemplate.query(sql, params, rowHandler(handler));
+    }
+
+    /**
+     * Groups the hits, or the distinct ips when {@code unique} is set, of [start, end] per {@code interval}
+     * bucket from endpoint_hits in one pass.
+     */
+    public void findRawSeries(RollupGranularity interval, LocalDateTime start, LocalDateTime end,
+                              List<Integer> uriIds, boolean unique, BucketCountHandler handler) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", start)
+                .addValue("end", end);
+        String sql = "SELECT " + truncate(interval) + " AS bucket, app_id, uri_id, " +
+                (unique ? "COUNT(DISTINCT ip)" : "COUNT(*)") + " AS hits FROM endpoint_hits " +
+                "WHERE hit_ts >= :start AND hit_ts <= :end" + uriFilter(uriIds, params) + " GROUP BY 1, 2, 3";
+        jdbcTemplate.query(sql, params, rowHandler(handler));
+    }
+
+    private static String truncate(RollupGranularity interval) {
+        return "date_trunc('" + interval.name().toLowerCase() + "', hit_ts)";
+    }
+
+    private static RowCallbackHandler rowHandler(BucketCountHandler handler) {
+        return rs -> handler.accept(rs.getTimestamp("bucket").toLocalDateTime(), rs.getInt("app_id"),
+                                    rs.getInt("uri_id"), rs.getLong("hits"));
+    }
+}
@@ -0,0 +1,176 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.stats.rollup.BucketRange;
+import ru.practicum.stats.rollup.RollupGranularity;
+import ru.practicum.stats.rollup.RollupPlan;
+import ru.practicum.stats.sketch.SketchKey;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+@Repository
+@RequiredArgsConstructor
+public class SketchRepository {
+    public static final List<RollupGranularity> SKETCH_GRANULARITIES =
+            List.of(RollupGranularity.HOUR, RollupGranularity.DAY);
+    private static final String INSERT_DELTA = "INSERT INTO hit_sketch_deltas (app_id, uri_id, bucket, hash) " +
+            "VALUES (?, ?, ?, ?) ON CONFLICT DO NOTHING";
+    private static final int SCAN_FETCH_SIZE = 10_000;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public boolean insertIfAbsent(SketchKey key, byte[] sketch) {
+        String sql = "INSERT INTO " + table(key.granularity()) + " (app_id, uri_id, bucket, sketch) " +
+                "VALUES (?, ?, ?, ?) ON CONFLICT (uri_id, bucket, app_id) DO NOTHING";
+        return jdbcTemplate.getJdbcTemplate().update(sql, key.appId(), key.uriId(),
+                                                     Timestamp.valueOf(key.bucket()), sketch) > 0;
+    }
+
+    public byte[] findForUpdate(SketchKey key) {
+        String sql = "SELECT sketch FROM " + table(key.granularity()) +
+                " WHERE app_id = ? AND uri_id = ? AND bucket = ? FOR UPDATE";
+        return jdbcTemplate.getJdbcTemplate().queryForObject(sql, byte[].class, key.appId(), key.uriId(),
+                                                             Timestamp.valueOf(key.bucket()));
+    }
+
+    public void update(SketchKey key, byte[] sketch) {
+        String sql = "UPDATE " + table(key.granularity()) + " SET sketch = ? " +
+                "WHERE app_id = ? AND uri_id = ? AND bucket = ?";
+        jdbcTemplate.getJdbcTemplate().update(sql, sketch, key.appId(), key.uriId(), Timestamp.valueOf(key.bucket()));
+    }
+
+    public void insertDeltas(Collection<Map.Entry<SketchKey, Long>> deltas) {
+        List<Map.Entry<SketchKey, Long>> rows = new ArrayList<>(deltas);
+        jdbcTemplate.getJdbcTemplate().batchUpdate(INSERT_DELTA, rows, rows.size(), (ps, row) -> {
+            ps.setInt(1, row.getKey().appId());
+            ps.setInt(2, row.getKey().uriId());
+            ps.setTimestamp(3, Timestamp.valueOf(row.getKey().bucket()));
+            ps.setLong(4, row.getValue());
+        });
+    }
+
+    /**
+     * Returns the hour keys with pending deltas. The deltas are always keyed by hour, the day sketch of
+     * a delta is the one of the day of its hour.
+     */
+    public List<SketchKey> findDeltaKeys(int limit) {
+        String sql = "SELECT DISTINCT app_id, uri_id, bucket FROM hit_sketch_deltas " +
+                "ORDER BY uri_id, bucket, app_id LIMIT ?";
+        return jdbcTemplate.getJdbcTemplate().query(sql, (rs, rowNum) -> new SketchKey(
+                rs.getInt("app_id"), rs.getInt("uri_id"), RollupGranularity.HOUR,
+                rs.getTimestamp("bucket").toLocalDateTime()), limit);
+    }
+
+    public List<Long> takeDeltas(SketchKey key) {
+        String sql = "DELETE FROM hit_sketch_deltas WHERE app_id = ? AND uri_id = ? AND bucket = ? RETURNING hash";
+        return jdbcTemplate.getJdbcTemplate().queryForList(sql, Long.class, key.appId(), key.uriId(),
+                                                           Timestamp.valueOf(key.bucket()));
+    }
+
+    public boolean isEmpty() {
+        Boolean exists = jdbcTemplate.getJdbcTemplate()
+                .queryForObject("SELECT EXISTS (SELECT 1 FROM hit_sketches_day)", Boolean.class);
+        return !Boolean.TRUE.equals(exists);
+    }
+
+    /**
+     * Reads, in a single statement and so from a single snapshot, the stored sketches of the hour and day buckets
+     * of the plan and the hashes of the deltas not yet folded into them. A sketch row carries the serialized
+     * sketch, a delta row a single hash.
+     */
+    public void findSketches(RollupPlan plan, List<Integer> uriIds, SketchRowHandler handler) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String uriFilter = uriFilter(uriIds, params);
+        StringJoiner parts = new StringJoiner(" UNION ALL ");
+        plan.buckets().forEach((granularity, ranges) -> {
+            if (SKETCH_GRANULARITIES.contains(granularity)) {
+                String bucketFilter = bucketFilter("bucket", granularity, ranges, params);
+                parts.add("SELECT app_id, uri_id, sketch, NULL::bigint AS hash FROM " + table(granularity) +
+                                  " WHERE " + bucketFilter + uriFilter);
+                parts.add("SELECT app_id, uri_id, NULL::bytea, hash FROM hit_sketch_deltas " +
+                                  "WHERE " + bucketFilter + uriFilter);
+            }
+        });
+        if (parts.length() == 0) {
+            return;
+        }
+        jdbcTemplate.query(parts.toString(), params, (RowCallbackHandler) rs ->
+                handler.accept(rs.getInt("app_id"), rs.getInt("uri_id"), rs.getBytes("sketch"), rs.getLong("hash")));
+    }
+
+    public void findEdgeIps(RollupPlan plan, List<Integer> uriIds, EndpointRowHandler handler) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", plan.start())
+                .addValue("headEnd", plan.headEnd())
+                .addValue("tailStart", plan.tailStart())
+                .addValue("end", plan.end());
+        String uriFilter = uriFilter(uriIds, params);
+        StringJoiner timeFilter = new StringJoiner(" OR ", "(", ")");
+        timeFilter.add("(hit_ts >= :start AND hit_ts < :headEnd)");
+        timeFilter.add("(hit_ts >= :tailStart AND hit_ts <= :end)");
+        plan.buckets().forEach((granularity, ranges) -> {
+            if (!SKETCH_GRANULARITIES.contains(granularity)) {
+                timeFilter.add(bucketFilter("hit_ts", granularity, ranges, params));
+            }
+        });
+        String sql = "SELECT DISTINCT app_id, uri_id, ip AS value FROM endpoint_hits WHERE " + timeFilter + uriFilter;
+        jdbcTemplate.query(sql, params, rowHandler(handler));
+    }
+
+    public void scanHits(RowCallbackHandler handler) {
+        jdbcTemplate.getJdbcTemplate().query(con -> {
+            PreparedStatement ps = con.prepareStatement("SELECT app_id, uri_id, ip, hit_ts FROM endpoint_hits " +
+                                                                "ORDER BY app_id, uri_id, hit_ts");
+            ps.setFetchSize(SCAN_FETCH_SIZE);
+            return ps;
+        }, handler);
+    }
+
+    private static RowCallbackHandler rowHandler(EndpointRowHandler handler) {
+        return rs -> handler.accept(rs.getInt("app_id"), rs.getInt("uri_id"), rs.getBytes("value"));
+    }
+
+    static String uriFilter(List<Integer> uriIds, MapSqlParameterSource params) {
+        if (uriIds == null) {
+            return "";
+        }
+        params.addValue("uriIds", uriIds);
+        return " AND uri_id IN (:uriIds)";
+    }
+
+    static String bucketFilter(String column, RollupGranularity granularity, List<BucketRange> ranges,
+                                       MapSqlParameterSource params) {
+        StringJoiner filter = new StringJoiner(" OR ", "(", ")");
+        for (int i = 0; i < ranges.size(); i++) {
+            String from = granularity.name().toLowerCase() + "From" + i;
+            String to = granularity.name().toLowerCase() + "To" + i;
+            params.addValues(Map.of(from, ranges.get(i).from(), to, ranges.get(i).to()));
+            filter.add("(" + column + " >= :" + from + " AND " + column + " < :" + to + ")");
+        }
+        return filter.toString();
+    }
+
+    private static String table(RollupGranularity granularity) {
+        return "hit_sketches_" + granularity.name().toLowerCase();
+    }
+
+    @FunctionalInterface
+    public interface EndpointRowHandler {
+        void accept(int appId, int uriId, byte[] value);
+    }
+
+    @FunctionalInterface
+    public interface SketchRowHandler {
+        void accept(int appId, int uriId, byte[] sketch, long hash);
+    }
+}
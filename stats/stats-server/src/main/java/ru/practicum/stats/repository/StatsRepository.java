@@ -1,41 +1,61 @@
 package ru.practicum.stats.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
-import ru.practicum.stats.EndpointStatsResponse;
 import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.model.EndpointHitCount;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface StatsRepository extends JpaRepository<EndpointHit, Long> {
-    @Query("select  new ru.practicum.stats.EndpointStatsResponse(eh.app, eh.uri , COUNT(eh)) " +
+    String STREAM_FETCH_SIZE = "1000";
+
+    @Query("select  new ru.practicum.stats.model.EndpointHitCount(eh.appId, eh.uriId, COUNT(eh)) " +
+            "from EndpointHit eh \n" +
+            "where (eh.timestamp between :start and :end)\n" +
+            "group by eh.appId, eh.uriId")
+    List<EndpointHitCount> findStats(LocalDateTime start, LocalDateTime end);
+
+    @Query("select  new ru.practicum.stats.model.EndpointHitCount(eh.appId, eh.uriId, COUNT(DISTINCT eh.ip)) " +
+            "from EndpointHit eh \n" +
+            "where eh.timestamp between :start and :end\n" +
+            "group by eh.appId, eh.uriId")
+    List<EndpointHitCount> findUniqueStats(LocalDateTime start, LocalDateTime end);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query("select  new ru.practicum.stats.model.EndpointHitCount(eh.appId, eh.uriId, COUNT(eh)) " +
             "from EndpointHit eh \n" +
             "where (eh.timestamp between :start and :end)\n" +
-            "group by eh.app, eh.uri")
-    List<EndpointStatsResponse> findStats(LocalDateTime start, LocalDateTime end);
+            "group by eh.appId, eh.uriId")
+    Stream<EndpointHitCount> streamStats(LocalDateTime start, LocalDateTime end);
 
-    @Query("select  new ru.practicum.stats.EndpointStatsResponse(eh.app, eh.uri , COUNT(DISTINCT eh.ip)) " +
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query("select  new ru.practicum.stats.model.EndpointHitCount(eh.appId, eh.uriId, COUNT(DISTINCT eh.ip)) " +
             "from EndpointHit eh \n" +
             "where eh.timestamp between :start and :end\n" +
-            "group by eh.app, eh.uri")
-    List<EndpointStatsResponse> findUniqueStats(LocalDateTime start, LocalDateTime end);
+            "group by eh.appId, eh.uriId")
+    Stream<EndpointHitCount> streamUniqueStats(LocalDateTime start, LocalDateTime end);
 
-    @Query("select  new ru.practicum.stats.EndpointStatsResponse(eh.app, eh.uri , COUNT(eh)) " +
+    @Query("select  new ru.practicum.stats.model.EndpointHitCount(eh.appId, eh.uriId, COUNT(eh)) " +
             "from EndpointHit eh \n" +
             "where eh.timestamp between :start and :end\n" +
-            "and eh.uri in :uris\n" +
-            "group by eh.app, eh.uri " +
+            "and eh.uriId in :uriIds\n" +
+            "group by eh.appId, eh.uriId " +
             "order by COUNT(eh) DESC")
-    List<EndpointStatsResponse> findAllStatsWithUris(LocalDateTime start, LocalDateTime end, List<String> uris);
+    List<EndpointHitCount> findAllStatsWithUris(LocalDateTime start, LocalDateTime end, List<Integer> uriIds);
 
-    @Query("select  new ru.practicum.stats.EndpointStatsResponse(eh.app, eh.uri , COUNT(DISTINCT eh.ip)) " +
+    @Query("select  new ru.practicum.stats.model.EndpointHitCount(eh.appId, eh.uriId, COUNT(DISTINCT eh.ip)) " +
             "from EndpointHit eh \n" +
             "where eh.timestamp between :start and :end\n" +
-            "and eh.uri in :uris\n" +
-            "group by eh.app, eh.uri " +
+            "and eh.uriId in :uriIds\n" +
+            "group by eh.appId, eh.uriId " +
             "order by COUNT(DISTINCT eh.ip) DESC")
-    List<EndpointStatsResponse> findAllUniqueStatsWithUris(LocalDateTime start, LocalDateTime end, List<String> uris);
+    List<EndpointHitCount> findAllUniqueStatsWithUris(LocalDateTime start, LocalDateTime end, List<Integer> uriIds);
 }
@@ -0,0 +1,79 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+@RequiredArgsConstructor
+public class StorageMigrationRepository {
+    private static final int SCAN_FETCH_SIZE = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public boolean hasColumn(String table, String column) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM information_schema.columns " +
+                        "WHERE table_schema = current_schema() AND table_name = ? AND column_name = ?)",
+                Boolean.class, table, column));
+    }
+
+    public void addEncodedColumns() {
+        jdbcTemplate.execute("ALTER TABLE endpoint_hits ADD COLUMN app_id INT, ADD COLUMN uri_id INT, " +
+                                     "ADD COLUMN ip_code BYTEA");
+    }
+
+    public void fillDictionaries() {
+        jdbcTemplate.update("INSERT INTO apps (name) SELECT DISTINCT app FROM endpoint_hits " +
+                                    "ON CONFLICT (name) DO NOTHING");
+        jdbcTemplate.update("INSERT INTO uris (uri) SELECT DISTINCT uri FROM endpoint_hits " +
+                                    "ON CONFLICT (uri) DO NOTHING");
+        jdbcTemplate.execute("CREATE TEMPORARY TABLE ip_codes (ip VARCHAR PRIMARY KEY, code BYTEA NOT NULL) " +
+                                     "ON COMMIT DROP");
+    }
+
+    public void scanDistinctIps(RowCallbackHandler handler) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement("SELECT DISTINCT ip FROM endpoint_hits");
+            ps.setFetchSize(SCAN_FETCH_SIZE);
+            return ps;
+        }, handler);
+    }
+
+    public void saveIpCodes(List<Map.Entry<String, byte[]>> codes) {
+        jdbcTemplate.batchUpdate("INSERT INTO ip_codes (ip, code) VALUES (?, ?)", codes, codes.size(),
+                                 (ps, code) -> {
+                                     ps.setString(1, code.getKey());
+                                     ps.setBytes(2, code.getValue());
+                                 });
+    }
+
+    public int encodeHits() {
+        return jdbcTemplate.update("UPDATE endpoint_hits h SET app_id = a.id, uri_id = u.id, ip_code = c.code " +
+                                           "FROM apps a, uris u, ip_codes c " +
+                                           "WHERE a.name = h.app AND u.uri = h.uri AND c.ip = h.ip");
+    }
+
+    public void dropTextColumns() {
+        jdbcTemplate.execute("ALTER TABLE endpoint_hits DROP COLUMN app, DROP COLUMN uri, DROP COLUMN ip");
+        jdbcTemplate.execute("ALTER TABLE endpoint_hits RENAME COLUMN ip_code TO ip");
+        jdbcTemplate.execute("ALTER TABLE endpoint_hits ALTER COLUMN app_id SET NOT NULL, " +
+                                     "ALTER COLUMN uri_id SET NOT NULL, ALTER COLUMN ip SET NOT NULL");
+    }
+
+    public void dropAggregates() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS hit_rollups_minute, hit_rollups_hour, hit_rollups_day, " +
+                                     "hit_sketches_hour, hit_sketches_day, hit_sketch_deltas");
+    }
+
+    public void applySchema() {
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(jdbcTemplate.getDataSource());
+    }
+}
@@ -0,0 +1,160 @@
+package ru.practicum.stats.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.stats.bitmap.VisitorBitmapKey;
+import ru.practicum.stats.rollup.RollupGranularity;
+import ru.practicum.stats.rollup.RollupPlan;
+
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+import static ru.practicum.stats.repository.SketchRepository.bucketFilter;
+import static ru.practicum.stats.repository.SketchRepository.uriFilter;
+
+@Repository
+@RequiredArgsConstructor
+public class VisitorBitmapRepository {
+    private static final String REGISTER = "INSERT INTO visitors (ip) VALUES (?) ON CONFLICT (ip) DO NOTHING";
+    private static final String INSERT_DELTA = "INSERT INTO visitor_bitmap_deltas " +
+            "(app_id, uri_id, bucket, visitor_id) SELECT ?, ?, ?, id FROM visitors WHERE ip = ? ON CONFLICT DO NOTHING";
+    private static final String BACKFILL_VISITORS = "INSERT INTO visitors (ip) " +
+            "SELECT DISTINCT ip FROM endpoint_hits ORDER BY ip ON CONFLICT (ip) DO NOTHING";
+    private static final String BACKFILL_DELTAS = "INSERT INTO visitor_bitmap_deltas " +
+            "(app_id, uri_id, bucket, visitor_id) " +
+            "SELECT DISTINCT h.app_id, h.uri_id, date_trunc('day', h.hit_ts), v.id " +
+            "FROM endpoint_hits h JOIN visitors v ON v.ip = h.ip ON CONFLICT DO NOTHING";
+
+    private static final int LOOKUP_CHUNK = 5_000;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Assigns ids to the ips that have none yet. The ips must be sorted, so that concurrent batches lock
+     * the unique index in the same order.
+     */
+    public void registerVisitors(Collection<byte[]> ips) {
+        List<byte[]> rows = new ArrayList<>(ips);
+        jdbcTemplate.getJdbcTemplate().batchUpdate(REGISTER, rows, rows.size(), (ps, ip) -> ps.setBytes(1, ip));
+    }
+
+    /**
+     * Looks up the ids of the given ips, a chunk at a time. Ips without an id are missing from the result.
+     */
+    public Map<ByteBuffer, Integer> findVisitorIds(List<byte[]> ips) {
+        Map<ByteBuffer, Integer> ids = new HashMap<>();
+        for (int from = 0; from < ips.size(); from += LOOKUP_CHUNK) {
+            MapSqlParameterSource params = new MapSqlParameterSource("ips",
+                    ips.subList(from, Math.min(ips.size(), from + LOOKUP_CHUNK)));
+            jdbcTemplate.query("SELECT id, ip FROM visitors WHERE ip IN (:ips)", params, (RowCallbackHandler) rs ->
+                    ids.put(ByteBuffer.wrap(rs.getBytes("ip")), rs.getInt("id")));
+        }
+        return ids;
+    }
+
+    public void insertDeltas(Collection<Map.Entry<VisitorBitmapKey, byte[]>> deltas) {
+        List<Map.Entry<VisitorBitmapKey, byte[]>> rows = new ArrayList<>(deltas);
+        jdbcTemplate.getJdbcTemplate().batchUpdate(INSERT_DELTA, rows, rows.size(), (ps, row) -> {
+            ps.setInt(1, row.getKey().appId());
+            ps.setInt(2, row.getKey().uriId());
+            ps.setTimestamp(3, Timestamp.valueOf(row.getKey().bucket()));
+            ps.setBytes(4, row.getValue());
+        });
+    }
+
+    public List<VisitorBitmapKey> findDeltaKeys(int limit) {
+        String sql = "SELECT DISTINCT app_id, uri_id, bucket FROM visitor_bitmap_deltas " +
+                "ORDER BY uri_id, bucket, app_id LIMIT ?";
+        return jdbcTemplate.getJdbcTemplate().query(sql, (rs, rowNum) -> new VisitorBitmapKey(
+                rs.getInt("app_id"), rs.getInt("uri_id"), rs.getTimestamp("bucket").toLocalDateTime()), limit);
+    }
+
+    public List<Integer> takeDeltas(VisitorBitmapKey key) {
+        String sql = "DELETE FROM visitor_bitmap_deltas WHERE app_id = ? AND uri_id = ? AND bucket = ? " +
+                "RETURNING visitor_id";
+        return jdbcTemplate.getJdbcTemplate().queryForList(sql, Integer.class, key.appId(), key.uriId(),
+                                                           Timestamp.valueOf(key.bucket()));
+    }
+
+    public boolean insertIfAbsent(VisitorBitmapKey key, byte[] bitmap) {
+        String sql = "INSERT INTO visitor_bitmaps_day (app_id, uri_id, bucket, bitmap) VALUES (?, ?, ?, ?) " +
+                "ON CONFLICT (uri_id, bucket, app_id) DO NOTHING";
+        return jdbcTemplate.getJdbcTemplate().update(sql, key.appId(), key.uriId(),
+                                                     Timestamp.valueOf(key.bucket()), bitmap) > 0;
+    }
+
+    public byte[] findForUpdate(VisitorBitmapKey key) {
+        String sql = "SELECT bitmap FROM visitor_bitmaps_day " +
+                "WHERE app_id = ? AND uri_id = ? AND bucket = ? FOR UPDATE";
+        return jdbcTemplate.getJdbcTemplate().queryForObject(sql, byte[].class, key.appId(), key.uriId(),
+                                                             Timestamp.valueOf(key.bucket()));
+    }
+
+    public void update(VisitorBitmapKey key, byte[] bitmap) {
+        String sql = "UPDATE visitor_bitmaps_day SET bitmap = ? WHERE app_id = ? AND uri_id = ? AND bucket = ?";
+        jdbcTemplate.getJdbcTemplate().update(sql, bitmap, key.appId(), key.uriId(), Timestamp.valueOf(key.bucket()));
+    }
+
+    public boolean hasVisitors() {
+        Boolean exists = jdbcTemplate.getJdbcTemplate()
+                .queryForObject("SELECT EXISTS (SELECT 1 FROM visitors)", Boolean.class);
+        return Boolean.TRUE.equals(exists);
+    }
+
+    /**
+     * Registers every stored ip and queues a delta for every visitor of every day, to be folded into
+     * the bitmaps by the regular compaction.
+     */
+    public int backfill() {
+        jdbcTemplate.getJdbcTemplate().update(BACKFILL_VISITORS);
+        return jdbcTemplate.getJdbcTemplate().update(BACKFILL_DELTAS);
+    }
+
+    /**
+     * Reads, in a single statement and so from a single snapshot, the bitmaps and pending deltas of the whole
+     * days of the plan and the visitor ids of the raw hits in the rest of the range. A bitmap row carries
+     * the serialized bitmap, every other row a single visitor id.
+     */
+    public void findVisitors(RollupPlan plan, List<Integer> uriIds, VisitorRowHandler handler) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", plan.start())
+                .addValue("headEnd", plan.headEnd())
+                .addValue("tailStart", plan.tailStart())
+                .addValue("end", plan.end());
+        String uriFilter = uriFilter(uriIds, params);
+        StringJoiner parts = new StringJoiner(" UNION ALL ");
+        StringJoiner timeFilter = new StringJoiner(" OR ", "(", ")");
+        timeFilter.add("(hit_ts >= :start AND hit_ts < :headEnd)");
+        timeFilter.add("(hit_ts >= :tailStart AND hit_ts <= :end)");
+        plan.buckets().forEach((granularity, ranges) -> {
+            if (granularity == RollupGranularity.DAY) {
+                String dayFilter = bucketFilter("bucket", granularity, ranges, params);
+                parts.add("SELECT app_id, uri_id, bitmap, NULL::int AS visitor_id FROM visitor_bitmaps_day " +
+                                  "WHERE " + dayFilter + uriFilter);
+                parts.add("SELECT app_id, uri_id, NULL::bytea, visitor_id FROM visitor_bitmap_deltas " +
+                                  "WHERE " + dayFilter + uriFilter);
+            } else {
+                timeFilter.add(bucketFilter("hit_ts", granularity, ranges, params));
+            }
+        });
+        parts.add("SELECT DISTINCT app_id, uri_id, NULL::bytea AS bitmap, v.id AS visitor_id " +
+                          "FROM endpoint_hits h JOIN visitors v ON v.ip = h.ip WHERE " + timeFilter + uriFilter);
+        RowCallbackHandler rowHandler = rs -> handler.accept(rs.getInt("app_id"), rs.getInt("uri_id"),
+                                                             rs.getBytes("bitmap"), rs.getInt("visitor_id"));
+        jdbcTemplate.query(parts.toString(), params, rowHandler);
+    }
+
+    @FunctionalInterface
+    public interface VisitorRowHandler {
+        void accept(int appId, int uriId, byte[] bitmap, int visitorId);
+    }
+}
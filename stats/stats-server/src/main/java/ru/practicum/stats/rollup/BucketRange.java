@@ -0,0 +1,6 @@
+package ru.practicum.stats.rollup;
+
+import java.time.LocalDateTime;
+
+public record BucketRange(LocalDateTime from, LocalDateTime to) {
+}
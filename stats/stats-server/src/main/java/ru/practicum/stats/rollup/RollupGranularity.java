@@ -0,0 +1,27 @@
+package ru.practicum.stats.rollup;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+@Getter
+@RequiredArgsConstructor
+public enum RollupGranularity {
+    MINUTE("hit_rollups_minute", ChronoUnit.MINUTES),
+    HOUR("hit_rollups_hour", ChronoUnit.HOURS),
+    DAY("hit_rollups_day", ChronoUnit.DAYS);
+
+    private final String table;
+    private final ChronoUnit unit;
+
+    public LocalDateTime floor(LocalDateTime time) {
+        return time.truncatedTo(unit);
+    }
+
+    public LocalDateTime ceil(LocalDateTime time) {
+        LocalDateTime floor = floor(time);
+        return floor.equals(time) ? time : floor.plus(1, unit);
+    }
+}
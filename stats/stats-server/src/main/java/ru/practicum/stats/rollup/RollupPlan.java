@@ -0,0 +1,77 @@
+package ru.practicum.stats.rollup;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static ru.practicum.stats.rollup.RollupGranularity.DAY;
+import static ru.practicum.stats.rollup.RollupGranularity.HOUR;
+import static ru.practicum.stats.rollup.RollupGranularity.MINUTE;
+
+/**
+ * Splits an inclusive [start, end] range into whole rollup buckets and two raw edges.
+ * The head edge [start, headEnd) and the tail edge [tailStart, end] are counted from endpoint_hits,
+ * every bucket range is half-open and summed from the rollup table of its granularity.
+ */
+public record RollupPlan(LocalDateTime start, LocalDateTime headEnd, LocalDateTime tailStart, LocalDateTime end,
+                         Map<RollupGranularity, List<BucketRange>> buckets) {
+
+    public static RollupPlan of(LocalDateTime start, LocalDateTime end) {
+        return of(start, MINUTE.floor(end), end);
+    }
+
+    /**
+     * Plans the half-open range [start, end) for a minute-aligned {@code end}, leaving the tail edge empty.
+     * The tail is closed a microsecond early since that is the timestamp precision of the database.
+     */
+    public static RollupPlan before(LocalDateTime start, LocalDateTime end) {
+        return of(start, MINUTE.floor(end), MINUTE.floor(end).minus(1, ChronoUnit.MICROS));
+    }
+
+    /**
+     * Plans only the raw edges [start, headEnd) and [tailStart, end], without any rollup buckets.
+     */
+    public static RollupPlan edges(LocalDateTime start, LocalDateTime headEnd, LocalDateTime tailStart,
+                                   LocalDateTime end) {
+        return new RollupPlan(start, headEnd, tailStart, end, Map.of());
+    }
+
+    private static RollupPlan of(LocalDateTime start, LocalDateTime minuteEnd, LocalDateTime end) {
+        Map<RollupGranularity, List<BucketRange>> buckets = new EnumMap<>(RollupGranularity.class);
+        LocalDateTime minuteStart = MINUTE.ceil(start);
+
+        if (!minuteStart.isBefore(minuteEnd)) {
+            return new RollupPlan(start, start, start, end, buckets);
+        }
+
+        LocalDateTime hourStart = HOUR.ceil(minuteStart);
+        LocalDateTime hourEnd = HOUR.floor(minuteEnd);
+
+        if (hourStart.isBefore(hourEnd)) {
+            add(buckets, MINUTE, minuteStart, hourStart);
+            LocalDateTime dayStart = DAY.ceil(hourStart);
+            LocalDateTime dayEnd = DAY.floor(hourEnd);
+            if (dayStart.isBefore(dayEnd)) {
+                add(buckets, HOUR, hourStart, dayStart);
+                add(buckets, DAY, dayStart, dayEnd);
+                add(buckets, HOUR, dayEnd, hourEnd);
+            } else {
+                add(buckets, HOUR, hourStart, hourEnd);
+            }
+            add(buckets, MINUTE, hourEnd, minuteEnd);
+        } else {
+            add(buckets, MINUTE, minuteStart, minuteEnd);
+        }
+        return new RollupPlan(start, minuteStart, minuteEnd, end, buckets);
+    }
+
+    private static void add(Map<RollupGranularity, List<BucketRange>> buckets, RollupGranularity granularity,
+                            LocalDateTime from, LocalDateTime to) {
+        if (from.isBefore(to)) {
+            buckets.computeIfAbsent(granularity, g -> new ArrayList<>()).add(new BucketRange(from, to));
+        }
+    }
+}
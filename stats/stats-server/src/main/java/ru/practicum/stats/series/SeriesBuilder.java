@@ -0,0 +1,92 @@
+package ru.practicum.stats.series;
+
+import ru.practicum.stats.exception.ValidationException;
+import ru.practicum.stats.model.EndpointKey;
+import ru.practicum.stats.rollup.RollupGranularity;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Dense per-endpoint counts over the {@code interval} buckets from the one holding start to the one holding end.
+ * Counts can be added per bucket or per single hit; unique visitors added hit by hit are kept as ip sets per
+ * bucket until {@link #build()}, so
+ * a visitor seen in several buckets counts in each of them. At most {@code maxEndpoints} endpoints are kept, which
+ * bounds the memory of a series requested without uris.
+ */
+public class SeriesBuilder {
+    private final RollupGranularity interval;
+    private final LocalDateTime first;
+    private final int size;
+    private final int maxEndpoints;
+    private final Map<EndpointKey, long[]> counts = new HashMap<>();
+    private final Map<EndpointKey, Map<Integer, Set<ByteBuffer>>> visitors = new HashMap<>();
+
+    public SeriesBuilder(RollupGranularity interval, LocalDateTime start, LocalDateTime end, int maxEndpoints) {
+        this.interval = interval;
+        this.first = interval.floor(start);
+        this.size = bucketCount(interval, start, end);
+        this.maxEndpoints = maxEndpoints;
+    }
+
+    public static int bucketCount(RollupGranularity interval, LocalDateTime start, LocalDateTime end) {
+        return (int) Math.min(Integer.MAX_VALUE,
+                              interval.getUnit().between(interval.floor(start), interval.floor(end)) + 1);
+    }
+
+    public List<LocalDateTime> buckets() {
+        List<LocalDateTime> buckets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            buckets.add(first.plus(i, interval.getUnit()));
+        }
+        return buckets;
+    }
+
+    public void add(LocalDateTime bucket, int appId, int uriId, long hits) {
+        series(new EndpointKey(appId, uriId))[index(bucket)] += hits;
+    }
+
+    public void addHit(int appId, int uriId, byte[] ip, LocalDateTime timestamp) {
+        add(interval.floor(timestamp), appId, uriId, 1);
+    }
+
+    public void addVisitor(int appId, int uriId, byte[] ip, LocalDateTime timestamp) {
+        EndpointKey endpoint = new EndpointKey(appId, uriId);
+        series(endpoint);
+        visitors.computeIfAbsent(endpoint, key -> new HashMap<>())
+                .computeIfAbsent(index(interval.floor(timestamp)), index -> new HashSet<>())
+                .add(ByteBuffer.wrap(ip));
+    }
+
+    public Map<EndpointKey, long[]> build() {
+        visitors.forEach((key, buckets) -> {
+            long[] series = counts.get(key);
+            buckets.forEach((index, ips) -> series[index] += ips.size());
+        });
+        visitors.clear();
+        return counts;
+    }
+
+    private long[] series(EndpointKey key) {
+        long[] series = counts.get(key);
+        if (series == null) {
+            if (counts.size() == maxEndpoints) {
+                throw new ValidationException("The series cover more than " + maxEndpoints +
+                                                      " endpoints, narrow them down with uris");
+            }
+            series = new long[size];
+            counts.put(key, series);
+        }
+        return series;
+    }
+
+    private int index(LocalDateTime bucket) {
+        return (int) interval.getUnit().between(first, bucket);
+    }
+}
@@ -2,13 +2,37 @@ package ru.practicum.stats.service;
 
 import ru.practicum.stats.EndpointHitRequest;
 import ru.practicum.stats.EndpointStatsResponse;
+import ru.practicum.stats.StatsSeriesResponse;
+import ru.practicum.stats.model.EndpointHit;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface StatsService {
     void saveHit(EndpointHitRequest dto);
 
+    void saveHits(List<EndpointHitRequest> dtos);
+
+    /**
+     * Stores already mapped hits like {@link #saveHits}. The hits are only read, never handed to JPA or kept
+     * once it returns, so the caller may reuse them.
+     */
+    void storeHits(List<EndpointHit> hits);
+
+    /**
+     * Stores already mapped hits in the surrounding transaction, which must be open on the hits' shard.
+     */
+    void saveAll(List<EndpointHit> hits);
+
     List<EndpointStatsResponse> findStats(LocalDateTime start, LocalDateTime end,
-                                          List<String> uris, Boolean unique);
+                                          List<String> uris, Boolean unique, Boolean approximate);
+
+    void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique, Boolean approximate,
+                     Consumer<EndpointStatsResponse> consumer);
+
+    StatsSeriesResponse findSeries(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique,
+                                   String interval);
+
+    List<EndpointStatsResponse> findTop(LocalDateTime start, LocalDateTime end, int n, Boolean unique, String prefix);
 }
@@ -1,38 +1,459 @@
 package ru.practicum.stats.service;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.practicum.stats.EndpointHitRequest;
+import ru.practicum.stats.EndpointSeriesResponse;
 import ru.practicum.stats.EndpointStatsResponse;
+import ru.practicum.stats.StatsSeriesResponse;
+import ru.practicum.stats.archive.ArchiveVisitorCounter;
+import ru.practicum.stats.archive.HitArchive;
+import ru.practicum.stats.bitmap.VisitorBitmapStore;
+import ru.practicum.stats.cache.StatsResultCache;
+import ru.practicum.stats.dictionary.EndpointDictionary;
 import ru.practicum.stats.exception.ValidationException;
 import ru.practicum.stats.mapper.EndpointHitMapper;
 import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.model.EndpointHitCount;
+import ru.practicum.stats.model.EndpointKey;
+import ru.practicum.stats.metrics.StatsServerMetrics;
+import ru.practicum.stats.metrics.StatsServerMetrics.Operation;
+import ru.practicum.stats.repository.EndpointHitBatchRepository;
+import ru.practicum.stats.repository.HitArchiveRepository;
+import ru.practicum.stats.repository.HitArchiveRepository.TimedRowHandler;
+import ru.practicum.stats.repository.RollupRepository;
+import ru.practicum.stats.repository.SeriesRepository;
+import ru.practicum.stats.repository.SketchRepository.EndpointRowHandler;
 import ru.practicum.stats.repository.StatsRepository;
+import ru.practicum.stats.rollup.RollupGranularity;
+import ru.practicum.stats.rollup.RollupPlan;
+import ru.practicum.stats.series.SeriesBuilder;
+import ru.practicum.stats.shard.ShardRouter;
+import ru.practicum.stats.sketch.SketchStore;
+import ru.practicum.stats.topk.HeavyHitters;
+import ru.practicum.stats.window.HotCounters;
+import ru.practicum.stats.window.WindowCounts;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class StatsServiceImpl implements StatsService {
+    private static final int STREAM_CHUNK = 1_000;
+
     private final StatsRepository statsRepository;
+    private final EndpointHitBatchRepository endpointHitBatchRepository;
+    private final RollupRepository rollupRepository;
+    private final SeriesRepository seriesRepository;
+    private final SketchStore sketchStore;
+    private final VisitorBitmapStore visitorBitmapStore;
+    private final HotCounters hotCounters;
+    private final HeavyHitters heavyHitters;
+    private final StatsResultCache statsResultCache;
+    private final HitArchive hitArchive;
+    private final ArchiveVisitorCounter archiveVisitorCounter;
+    private final HitArchiveRepository hitArchiveRepository;
     private final EndpointHitMapper endpointHitMapper;
+    private final EndpointDictionary endpointDictionary;
+    private final ShardRouter shardRouter;
+    private final TransactionTemplate transactionTemplate;
+    private final StatsServerMetrics statsServerMetrics;
+
+    @Value("${stats.rollup.enabled:true}")
+    private boolean rollupEnabled;
+    @Value("${stats.series.max-buckets:10000}")
+    private int maxSeriesBuckets;
+    @Value("${stats.series.max-endpoints:1000}")
+    private int maxSeriesEndpoints;
 
     @Override
     public void saveHit(EndpointHitRequest dto) {
-        EndpointHit save = statsRepository.save(endpointHitMapper.toEntity(dto));
+        long started = System.nanoTime();
+        try {
+            store(List.of(endpointHitMapper.toEntity(dto)));
+            statsServerMetrics.recordSuccess(Operation.SAVE_HIT, started);
+        } catch (RuntimeException e) {
+            statsServerMetrics.recordFailure(Operation.SAVE_HIT, started);
+            throw e;
+        }
+    }
+
+    @Override
+    public void saveHits(List<EndpointHitRequest> dtos) {
+        long started = System.nanoTime();
+        try {
+            store(endpointHitMapper.toEntities(dtos));
+            statsServerMetrics.recordSuccess(Operation.SAVE_HITS, started);
+        } catch (RuntimeException e) {
+            statsServerMetrics.recordFailure(Operation.SAVE_HITS, started);
+            throw e;
+        }
+    }
+
+    @Override
+    public void storeHits(List<EndpointHit> hits) {
+        long started = System.nanoTime();
+        try {
+            store(hits);
+            statsServerMetrics.recordSuccess(Operation.SAVE_HITS, started);
+        } catch (RuntimeException e) {
+            statsServerMetrics.recordFailure(Operation.SAVE_HITS, started);
+            throw e;
+        }
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void saveAll(List<EndpointHit> hits) {
+        persist(hits);
     }
 
     @Override
     public List<EndpointStatsResponse> findStats(LocalDateTime start, LocalDateTime end,
-                                                 List<String> uris, Boolean unique) {
+                                                 List<String> uris, Boolean unique, Boolean approximate) {
+        long started = System.nanoTime();
+        try {
+            List<EndpointStatsResponse> stats = lookupStats(start, end, uris, unique, approximate);
+            statsServerMetrics.recordSuccess(Operation.FIND_STATS, started);
+            return stats;
+        } catch (RuntimeException e) {
+            statsServerMetrics.recordFailure(Operation.FIND_STATS, started);
+            throw e;
+        }
+    }
+
+    private List<EndpointStatsResponse> lookupStats(LocalDateTime start, LocalDateTime end,
+                                                    List<String> uris, Boolean unique, Boolean approximate) {
+        validateRange(start, end);
+
+        List<Integer> uriIds = null;
+        if (uris != null && !uris.isEmpty()) {
+            uriIds = endpointDictionary.findUriIds(uris);
+            if (uriIds.isEmpty()) {
+                return List.of();
+            }
+        }
+
+        return endpointDictionary.toResponses(countSharded(start, end, uriIds, unique, approximate));
+    }
+
+    @Override
+    public void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique,
+                            Boolean approximate, Consumer<EndpointStatsResponse> consumer) {
+        validateRange(start, end);
+
+        if (uris != null && !uris.isEmpty()) {
+            List<Integer> uriIds = endpointDictionary.findUriIds(uris);
+            if (!uriIds.isEmpty()) {
+                endpointDictionary.toResponses(countSharded(start, end, uriIds, unique, approximate))
+                        .forEach(consumer);
+            }
+            return;
+        }
+
+        endpointDictionary.preloadNames();
+        for (Integer shard : shardRouter.allShards()) {
+            List<EndpointHitCount> unresolved = new ArrayList<>();
+            shardRouter.run(shard, () -> transactionTemplate.executeWithoutResult(status ->
+                    streamShard(start, end, unique, approximate, consumer, unresolved)));
+            endpointDictionary.toResponses(unresolved).forEach(consumer);
+        }
+    }
+
+    @Override
+    public StatsSeriesResponse findSeries(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique,
+                                          String interval) {
+        validateRange(start, end);
+        RollupGranularity granularity = parseInterval(interval);
+        int buckets = SeriesBuilder.bucketCount(granularity, start, end);
+        if (buckets > maxSeriesBuckets) {
+            throw new ValidationException("The range spans " + buckets + " " + interval + " buckets, at most " +
+                                                  maxSeriesBuckets + " are allowed");
+        }
+
+        List<Integer> uriIds = null;
+        if (uris != null && !uris.isEmpty()) {
+            uriIds = endpointDictionary.findUriIds(uris);
+        }
+        Map<EndpointKey, long[]> series = new HashMap<>();
+        if (uriIds == null || !uriIds.isEmpty()) {
+            Map<Integer, List<Integer>> groups = uriIds == null ? null : shardRouter.groupUris(uriIds);
+            Collection<Integer> shards = groups == null ? shardRouter.allShards() : groups.keySet();
+            shardRouter.fanOut(shards, shard -> hitArchive.read(horizon -> countSeries(
+                            start, end, groups == null ? null : groups.get(shard), unique, granularity,
+                            horizon.orElse(null))))
+                    .forEach(series::putAll);
+            if (series.size() > maxSeriesEndpoints) {
+                throw new ValidationException("The series cover more than " + maxSeriesEndpoints +
+                                                      " endpoints, narrow them down with uris");
+            }
+        }
+
+        List<EndpointSeriesResponse> responses = new ArrayList<>(endpointDictionary.toSeriesResponses(series));
+        responses.sort(Comparator.comparing((EndpointSeriesResponse response) -> response.getHits().stream()
+                .mapToLong(Long::longValue).sum()).reversed());
+        SeriesBuilder empty = new SeriesBuilder(granularity, start, end, maxSeriesEndpoints);
+        return new StatsSeriesResponse(granularity.name().toLowerCase(), empty.buckets(), responses);
+    }
+
+    @Override
+    public List<EndpointStatsResponse> findTop(LocalDateTime start, LocalDateTime end, int n, Boolean unique,
+                                               String prefix) {
+        validateRange(start, end);
+        if (n < 1 || n > heavyHitters.getCapacity()) {
+            throw new ValidationException("n must be between 1 and " + heavyHitters.getCapacity());
+        }
+        String uriPrefix = prefix == null || prefix.isEmpty() ? null : prefix;
+
+        List<EndpointHitCount> counts;
+        if (heavyHitters.isEnabled()) {
+            List<EndpointKey> candidates = heavyHitters.candidates(start, end, n, uriPrefix)
+                    .orElseThrow(this::topRangeTooLong);
+            counts = countCandidates(start, end, candidates, unique);
+            if (Boolean.TRUE.equals(unique)) {
+                counts = addUniqueCandidates(start, end, n, uriPrefix, candidates, counts);
+            }
+        } else {
+            counts = countSharded(start, end, null, unique, false);
+        }
+
+        return endpointDictionary.toResponses(counts).stream()
+                .filter(stats -> uriPrefix == null || stats.getUri().startsWith(uriPrefix))
+                .sorted(Comparator.comparing(EndpointStatsResponse::getHits).reversed())
+                .limit(n)
+                .toList();
+    }
+
+    private List<EndpointHitCount> countCandidates(LocalDateTime start, LocalDateTime end,
+                                                   Collection<EndpointKey> candidates, Boolean unique) {
+        if (candidates.isEmpty()) {
+            return List.of();
+        }
+        Set<EndpointKey> keys = new HashSet<>(candidates);
+        List<Integer> uriIds = keys.stream().map(EndpointKey::uriId).distinct().toList();
+        return countSharded(start, end, uriIds, unique, false).stream()
+                .filter(count -> keys.contains(new EndpointKey(count.appId(), count.uriId())))
+                .toList();
+    }
+
+    /**
+     * The candidates by hits give the n-th unique count that the top must beat. An endpoint with fewer hits
+     * than that cannot have more visitors, so only the endpoints whose hits may reach it are counted as well.
+     */
+    private List<EndpointHitCount> addUniqueCandidates(LocalDateTime start, LocalDateTime end, int n, String prefix,
+                                                       List<EndpointKey> counted, List<EndpointHitCount> counts) {
+        List<Long> uniques = counts.stream().map(EndpointHitCount::hits).sorted(Comparator.reverseOrder()).toList();
+        long threshold = uniques.size() < n ? 0 : uniques.get(n - 1);
+        Set<EndpointKey> seen = new HashSet<>(counted);
+        List<EndpointKey> more = heavyHitters.candidatesReaching(start, end, threshold, prefix)
+                .orElseThrow(this::topRangeTooLong).stream()
+                .filter(key -> !seen.contains(key))
+                .toList();
+        List<EndpointHitCount> result = new ArrayList<>(counts);
+        result.addAll(countCandidates(start, end, more, true));
+        return result;
+    }
+
+    private ValidationException topRangeTooLong() {
+        return new ValidationException("The top is kept for the last " + heavyHitters.getRetention() +
+                                               " only, the range must start within it");
+    }
+
+    /**
+     * Writes every shard's part of the hits in a transaction of its own, so a batch spanning several shards is
+     * not atomic across them. The hits come with their dictionary ids already resolved, outside the transaction.
+     */
+    private void store(List<EndpointHit> hits) {
+        shardRouter.groupHits(hits).forEach((shard, part) ->
+                shardRouter.run(shard, () -> transactionTemplate.executeWithoutResult(status -> persist(part))));
+    }
+
+    /**
+     * Inserts the hits with plain JDBC whatever their number: the hits of {@link #storeHits} are reused by the
+     * caller, and a JPA save would write the generated id back and turn the next insert into an update.
+     */
+    private void persist(List<EndpointHit> hits) {
+        endpointHitBatchRepository.saveAll(hits);
+        if (rollupEnabled) {
+            rollupRepository.increment(hits);
+        }
+        if (sketchStore.isEnabled()) {
+            sketchStore.record(hits);
+        }
+        if (visitorBitmapStore.isEnabled()) {
+            visitorBitmapStore.record(hits);
+        }
+        recordRecent(hits);
+    }
+
+    /**
+     * Streams the counts of the current shard inside its transaction. Names come from the dictionary cache only,
+     * since a lookup under the open cursor would take a second connection of the pool; the counts with a name
+     * missing from it are left in {@code unresolved} for the caller to map once the transaction is over.
+     */
+    private void streamShard(LocalDateTime start, LocalDateTime end, boolean unique, boolean approximate,
+                             Consumer<EndpointStatsResponse> consumer, List<EndpointHitCount> unresolved) {
+        hitArchive.read(horizon -> {
+            if (horizon.isPresent() && start.isBefore(horizon.get())) {
+                endpointDictionary.toCachedResponses(countWithArchive(start, end, null, unique, approximate,
+                                                                      horizon.get()), unresolved)
+                        .forEach(consumer);
+                return null;
+            }
+            try (Stream<EndpointHitCount> counts = streamHits(start, end, unique, approximate)) {
+                List<EndpointHitCount> chunk = new ArrayList<>(STREAM_CHUNK);
+                counts.forEachOrdered(count -> {
+                    chunk.add(count);
+                    if (chunk.size() == STREAM_CHUNK) {
+                        endpointDictionary.toCachedResponses(chunk, unresolved).forEach(consumer);
+                        chunk.clear();
+                    }
+                });
+                endpointDictionary.toCachedResponses(chunk, unresolved).forEach(consumer);
+            }
+            return null;
+        });
+    }
+
+    private Stream<EndpointHitCount> streamHits(LocalDateTime start, LocalDateTime end,
+                                                boolean unique, boolean approximate) {
+        if (!unique && rollupEnabled) {
+            return rollupRepository.streamStats(RollupPlan.of(start, end), null);
+        }
+        if (unique && approximate && sketchStore.isEnabled()) {
+            return sketchStore.estimateUnique(RollupPlan.of(start, end), null).stream();
+        }
+        if (unique && visitorBitmapStore.isEnabled()) {
+            return visitorBitmapStore.countUnique(RollupPlan.of(start, end), null).stream();
+        }
+        return unique ? statsRepository.streamUniqueStats(start, end) : statsRepository.streamStats(start, end);
+    }
+
+    private void recordRecent(List<EndpointHit> hits) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            hotCounters.record(hits);
+            heavyHitters.record(hits);
+            statsResultCache.invalidate(hits);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                hotCounters.record(hits);
+                heavyHitters.record(hits);
+                statsResultCache.invalidate(hits);
+            }
+        });
+    }
+
+    private static void validateRange(LocalDateTime start, LocalDateTime end) {
         if (start.isAfter(end)) {
             throw new ValidationException("Start date cannot be after end date");
         }
+    }
+
+    /**
+     * Counts every shard's uris on that shard, in parallel, and merges the results. Each uri lives on exactly one
+     * shard, so the partial results never overlap.
+     */
+    private List<EndpointHitCount> countSharded(LocalDateTime start, LocalDateTime end, List<Integer> uriIds,
+                                                boolean unique, boolean approximate) {
+        if (shardRouter.count() == 1) {
+            return countHits(start, end, uriIds, unique, approximate);
+        }
+        Map<Integer, List<Integer>> groups = uriIds == null ? null : shardRouter.groupUris(uriIds);
+        Collection<Integer> shards = groups == null ? shardRouter.allShards() : groups.keySet();
+        List<EndpointHitCount> result = new ArrayList<>();
+        shardRouter.fanOut(shards, shard -> countHits(start, end, groups == null ? null : groups.get(shard),
+                                                      unique, approximate))
+                .forEach(result::addAll);
+        result.sort(Comparator.comparing(EndpointHitCount::hits).reversed());
+        return result;
+    }
+
+    private List<EndpointHitCount> countHits(LocalDateTime start, LocalDateTime end, List<Integer> uriIds,
+                                             boolean unique, boolean approximate) {
+        return hitArchive.read(horizon -> horizon.isPresent() && start.isBefore(horizon.get())
+                ? countWithArchive(start, end, uriIds, unique, approximate, horizon.get())
+                : countLive(start, end, uriIds, unique, approximate));
+    }
+
+    /**
+     * Counts a range that reaches below the archive horizon: the archived hits and the late hits still stored
+     * for archived days below it, and the usual way above it. Unique visitors cannot be added up across the
+     * horizon, so they are counted by the {@link ArchiveVisitorCounter}.
+     */
+    private List<EndpointHitCount> countWithArchive(LocalDateTime start, LocalDateTime end, List<Integer> uriIds,
+                                                    boolean unique, boolean approximate, LocalDateTime horizon) {
+        if (unique) {
+            return archiveVisitorCounter.count(start, end, uriIds, approximate, horizon);
+        }
+
+        Map<EndpointKey, Long> archived = new HashMap<>();
+        EndpointRowHandler count = (appId, uriId, ip) -> archived.merge(new EndpointKey(appId, uriId), 1L, Long::sum);
+        hitArchive.scan(start, end, uriIds, count);
+        LocalDateTime lateEnd = end.isBefore(horizon) ? end : horizon.minus(1, ChronoUnit.MICROS);
+        hitArchiveRepository.scanHits(start, lateEnd, uriIds, false, count);
+        List<EndpointHitCount> live = end.isBefore(horizon)
+                ? List.of()
+                : countLive(horizon, end, uriIds, false, false);
+        return merge(live, archived);
+    }
+
+    private List<EndpointHitCount> countLive(LocalDateTime start, LocalDateTime end, List<Integer> uriIds,
+                                             boolean unique, boolean approximate) {
+        if (uriIds != null && !approximate) {
+            Optional<List<EndpointHitCount>> cached = statsResultCache.count(start, end, uriIds, unique);
+            if (cached.isPresent()) {
+                return cached.get();
+            }
+        }
 
-        List<EndpointStatsResponse> result;
+        if (!unique) {
+            Optional<WindowCounts> window = hotCounters.count(start, end, uriIds);
+            if (window.isPresent()) {
+                LocalDateTime from = window.get().from();
+                List<EndpointHitCount> persisted = from.isAfter(start)
+                        ? countPersisted(start, from, uriIds)
+                        : List.of();
+                return merge(persisted, window.get().hits());
+            }
+        }
+
+        if (!unique && rollupEnabled) {
+            return rollupRepository.findStats(RollupPlan.of(start, end), uriIds);
+        }
 
-        if (uris == null || uris.isEmpty()) {
+        if (unique && approximate && sketchStore.isEnabled()) {
+            return sketchStore.estimateUnique(RollupPlan.of(start, end), uriIds);
+        }
+
+        if (unique && visitorBitmapStore.isEnabled()) {
+            return visitorBitmapStore.countUnique(RollupPlan.of(start, end), uriIds);
+        }
+
+        List<EndpointHitCount> result;
+
+        if (uriIds == null) {
             if (!unique) {
                 result = statsRepository.findStats(start, end);
             } else {
@@ -40,11 +461,66 @@ public class StatsServiceImpl implements StatsService {
             }
         } else {
             if (!unique) {
-                result = statsRepository.findAllStatsWithUris(start, end, uris);
+                result = statsRepository.findAllStatsWithUris(start, end, uriIds);
             } else {
-                result = statsRepository.findAllUniqueStatsWithUris(start, end, uris);
+                result = statsRepository.findAllUniqueStatsWithUris(start, end, uriIds);
             }
         }
         return result;
     }
+
+    /**
+     * Fills the series of the current shard in one pass per source: archived segments and late hits below the
+     * archive horizon, rollups with raw edge buckets or a single grouped scan of endpoint_hits above it. The
+     * horizon is a day boundary, so no bucket is split between the two.
+     */
+    private Map<EndpointKey, long[]> countSeries(LocalDateTime start, LocalDateTime end, List<Integer> uriIds,
+                                                 boolean unique, RollupGranularity interval, LocalDateTime horizon) {
+        SeriesBuilder series = new SeriesBuilder(interval, start, end, maxSeriesEndpoints);
+        LocalDateTime liveStart = start;
+        if (horizon != null && start.isBefore(horizon)) {
+            LocalDateTime archivedEnd = end.isBefore(horizon) ? end : horizon.minus(1, ChronoUnit.MICROS);
+            TimedRowHandler handler = unique ? series::addVisitor : series::addHit;
+            hitArchive.scanTimed(start, archivedEnd, uriIds, handler);
+            hitArchiveRepository.scanTimedHits(start, archivedEnd, uriIds, handler);
+            liveStart = horizon;
+        }
+        if (!end.isBefore(liveStart)) {
+            if (!unique && rollupEnabled) {
+                seriesRepository.findRollupSeries(interval, liveStart, end, uriIds, series::add);
+            } else {
+                seriesRepository.findRawSeries(interval, liveStart, end, uriIds, unique, series::add);
+            }
+        }
+        return series.build();
+    }
+
+    private static RollupGranularity parseInterval(String interval) {
+        try {
+            return RollupGranularity.valueOf(interval.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("interval must be one of minute, hour, day");
+        }
+    }
+
+    private List<EndpointHitCount> countPersisted(LocalDateTime start, LocalDateTime before, List<Integer> uriIds) {
+        if (rollupEnabled) {
+            return rollupRepository.findStats(RollupPlan.before(start, before), uriIds);
+        }
+        LocalDateTime end = before.minus(1, ChronoUnit.MICROS);
+        return uriIds == null
+                ? statsRepository.findStats(start, end)
+                : statsRepository.findAllStatsWithUris(start, end, uriIds);
+    }
+
+    private static List<EndpointHitCount> merge(List<EndpointHitCount> persisted, Map<EndpointKey, Long> recent) {
+        Map<EndpointKey, Long> totals = new HashMap<>(recent);
+        for (EndpointHitCount count : persisted) {
+            totals.merge(new EndpointKey(count.appId(), count.uriId()), count.hits(), Long::sum);
+        }
+        List<EndpointHitCount> result = new ArrayList<>(totals.size());
+        totals.forEach((key, hits) -> result.add(new EndpointHitCount(key.appId(), key.uriId(), hits)));
+        result.sort(Comparator.comparing(EndpointHitCount::hits).reversed());
+        return result;
+    }
 }
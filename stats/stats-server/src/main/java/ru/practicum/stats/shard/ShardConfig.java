@@ -0,0 +1,73 @@
+package ru.practicum.stats.shard;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Configuration
+@EnableConfigurationProperties({DataSourceProperties.class, ShardProperties.class})
+public class ShardConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryShardDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    /**
+     * Connections of every shard, picked by the shard of the current thread when a connection is fetched.
+     */
+    @Bean
+    public ShardRoutingDataSource shardRoutingDataSource(HikariDataSource primaryShardDataSource,
+                                                         ShardProperties properties,
+                                                         ObjectProvider<MeterRegistry> meterRegistry) {
+        Map<Object, Object> targets = new HashMap<>();
+        List<AutoCloseable> owned = new ArrayList<>();
+        targets.put(0, primaryShardDataSource);
+        for (int i = 0; i < properties.getShards().size(); i++) {
+            ShardProperties.Shard shard = properties.getShards().get(i);
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setPoolName("stats-shard-" + (i + 1));
+            dataSource.setJdbcUrl(shard.getUrl());
+            dataSource.setUsername(shard.getUsername());
+            dataSource.setPassword(shard.getPassword());
+            dataSource.setMaximumPoolSize(shard.getMaximumPoolSize());
+            // only pools that are beans get Boot's hikaricp.* metrics
+            meterRegistry.ifAvailable(dataSource::setMetricRegistry);
+            if (shard.getSchema() != null) {
+                dataSource.setConnectionInitSql("CREATE SCHEMA IF NOT EXISTS " + shard.getSchema() +
+                                                        "; SET search_path TO " + shard.getSchema());
+            }
+            targets.put(i + 1, dataSource);
+            owned.add(dataSource);
+        }
+        ShardRoutingDataSource routing = new ShardRoutingDataSource(owned);
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(primaryShardDataSource);
+        routing.setLenientFallback(false);
+        return routing;
+    }
+
+    /**
+     * Fetches the shard connection on the first statement rather than when a transaction or an entity manager
+     * opens, so that neither can hold on to a connection of a shard chosen earlier on the same thread.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+}
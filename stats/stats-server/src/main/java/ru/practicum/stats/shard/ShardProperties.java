@@ -0,0 +1,33 @@
+package ru.practicum.stats.shard;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Additional stats databases. Shard 0 is always spring.datasource; every entry here adds the next shard.
+ * Several shards can share one database by using different schemas.
+ */
+@Getter
+@Setter
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@ConfigurationProperties(prefix = "stats.sharding")
+public class ShardProperties {
+    List<Shard> shards = new ArrayList<>();
+
+    @Getter
+    @Setter
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    public static class Shard {
+        String url;
+        String username;
+        String password;
+        String schema;
+        int maximumPoolSize = 10;
+    }
+}
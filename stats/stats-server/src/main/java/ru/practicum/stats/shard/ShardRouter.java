@@ -0,0 +1,143 @@
+package ru.practicum.stats.shard;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.thread.WorkerThreads;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Maps uris to shards by a hash of their dictionary id and runs work against a shard. The shard is kept in a
+ * thread-local that {@link ShardRoutingDataSource} reads when a connection is requested.
+ */
+@Slf4j
+@Component
+public class ShardRouter implements DisposableBean {
+    public static final int DICTIONARY_SHARD = 0;
+    private static final ThreadLocal<Integer> CURRENT = ThreadLocal.withInitial(() -> DICTIONARY_SHARD);
+
+    private final int count;
+    private final Executor executor;
+
+    public ShardRouter(ShardProperties properties, WorkerThreads workerThreads) {
+        this.count = properties.getShards().size() + 1;
+        if (count > 1) {
+            this.executor = workerThreads.executor("stats-shard", count);
+            log.info("[ShardRouter] Spreading endpoint hits over {} shards", count);
+        } else {
+            this.executor = null;
+        }
+    }
+
+    public static int currentShard() {
+        return CURRENT.get();
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public int shardOf(int uriId) {
+        int hash = uriId * 0x9E3779B9;
+        return Math.floorMod(hash ^ (hash >>> 16), count);
+    }
+
+    /**
+     * Whether the uri is stored on the shard the current thread works with.
+     */
+    public boolean isLocal(int uriId) {
+        return shardOf(uriId) == currentShard();
+    }
+
+    public <T> T call(int shard, Supplier<T> action) {
+        Integer previous = CURRENT.get();
+        CURRENT.set(shard);
+        try {
+            return action.get();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    public void run(int shard, Runnable action) {
+        call(shard, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public void forEachShard(Runnable action) {
+        for (int shard = 0; shard < count; shard++) {
+            run(shard, action);
+        }
+    }
+
+    /**
+     * Runs the action on every given shard, in parallel when there is more than one, and collects the results
+     * in shard order.
+     */
+    public <T> List<T> fanOut(Collection<Integer> shards, IntFunction<T> action) {
+        if (shards.size() <= 1 || executor == null) {
+            List<T> results = new ArrayList<>(shards.size());
+            for (Integer shard : shards) {
+                results.add(call(shard, () -> action.apply(shard)));
+            }
+            return results;
+        }
+        List<CompletableFuture<T>> futures = new ArrayList<>(shards.size());
+        for (Integer shard : shards) {
+            futures.add(CompletableFuture.supplyAsync(() -> call(shard, () -> action.apply(shard)), executor));
+        }
+        try {
+            return futures.stream().map(CompletableFuture::join).toList();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    public List<Integer> allShards() {
+        List<Integer> shards = new ArrayList<>(count);
+        for (int shard = 0; shard < count; shard++) {
+            shards.add(shard);
+        }
+        return shards;
+    }
+
+    public Map<Integer, List<Integer>> groupUris(Collection<Integer> uriIds) {
+        Map<Integer, List<Integer>> groups = new TreeMap<>();
+        for (Integer uriId : uriIds) {
+            groups.computeIfAbsent(shardOf(uriId), shard -> new ArrayList<>()).add(uriId);
+        }
+        return groups;
+    }
+
+    public Map<Integer, List<EndpointHit>> groupHits(Collection<EndpointHit> hits) {
+        Map<Integer, List<EndpointHit>> groups = new TreeMap<>();
+        for (EndpointHit hit : hits) {
+            groups.computeIfAbsent(shardOf(hit.getUriId()), shard -> new ArrayList<>()).add(hit);
+        }
+        return groups;
+    }
+
+    @Override
+    public void destroy() {
+        if (executor instanceof ExecutorService pool) {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package ru.practicum.stats.shard;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.util.List;
+
+/**
+ * Hands out connections of the shard selected for the current thread by {@link ShardRouter}.
+ * Transactions bind the connection when they begin, so the shard has to be chosen before that.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+    private final List<AutoCloseable> ownedTargets;
+
+    public ShardRoutingDataSource(List<AutoCloseable> ownedTargets) {
+        this.ownedTargets = ownedTargets;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardRouter.currentShard();
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        for (AutoCloseable target : ownedTargets) {
+            target.close();
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package ru.practicum.stats.sketch;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Mergeable HyperLogLog sketch of distinct byte strings.
+ *
+ * <p>With precision {@code p} the sketch keeps {@code m = 2^p} one-byte registers and its relative
+ * standard error is {@code 1.04 / sqrt(m)}: 1.63% for p = 12, 0.81% for p = 14 and 0.41% for p = 16.
+ * About 95% of estimates fall within twice that error. Small cardinalities use linear counting,
+ * so sets of a few hundred elements are counted almost exactly.
+ *
+ * <p>A new sketch is sparse: it keeps only its non-zero registers, as sorted {@code index << 8 | rank} entries,
+ * and turns dense once they would take more than an eighth of the dense registers. A sketch of a handful
+ * of visitors therefore costs a few dozen bytes instead of {@code m}.
+ */
+public class HyperLogLog {
+    private static final byte DENSE = 0;
+    private static final byte SPARSE = 1;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final int INITIAL_SPARSE_CAPACITY = 4;
+
+    private final int precision;
+    private byte[] registers;
+    private int[] sparse = new int[INITIAL_SPARSE_CAPACITY];
+    private int sparseSize;
+
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("HyperLogLog precision must be between 4 and 18");
+        }
+        this.precision = precision;
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public boolean isSparse() {
+        return registers == null;
+    }
+
+    public void add(byte[] value) {
+        addHash(hash(value));
+    }
+
+    public void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        long rest = (hash << precision) | (1L << (precision - 1));
+        set(index, (byte) (Long.numberOfLeadingZeros(rest) + 1));
+    }
+
+    public HyperLogLog merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge sketches with different precision");
+        }
+        if (other.registers == null) {
+            for (int i = 0; i < other.sparseSize; i++) {
+                set(other.sparse[i] >>> 8, (byte) other.sparse[i]);
+            }
+            return this;
+        }
+        densify();
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+        return this;
+    }
+
+    public long cardinality() {
+        int m = 1 << precision;
+        double sum = 0;
+        int zeros = 0;
+        if (registers == null) {
+            zeros = m - sparseSize;
+            sum = zeros;
+            for (int i = 0; i < sparseSize; i++) {
+                sum += 1.0 / (1L << (sparse[i] & 0xFF));
+            }
+        } else {
+            for (byte register : registers) {
+                sum += 1.0 / (1L << register);
+                if (register == 0) {
+                    zeros++;
+                }
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public byte[] toBytes() {
+        if (registers == null) {
+            return sparseBytes(sparse, sparseSize);
+        }
+        int nonZero = 0;
+        for (byte register : registers) {
+            if (register != 0) {
+                nonZero++;
+            }
+        }
+        if (nonZero * 4 + 4 < registers.length) {
+            int[] entries = new int[nonZero];
+            int count = 0;
+            for (int i = 0; i < registers.length; i++) {
+                if (registers[i] != 0) {
+                    entries[count++] = i << 8 | registers[i];
+                }
+            }
+            return sparseBytes(entries, count);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(2 + registers.length);
+        buffer.put((byte) precision).put(DENSE).put(registers);
+        return buffer.array();
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        HyperLogLog sketch = new HyperLogLog(buffer.get());
+        if (buffer.get() == SPARSE) {
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                int entry = buffer.getInt();
+                sketch.set(entry >>> 8, (byte) entry);
+            }
+        } else {
+            sketch.densify();
+            buffer.get(sketch.registers);
+        }
+        return sketch;
+    }
+
+    private void set(int index, byte rank) {
+        if (registers != null) {
+            if (rank > registers[index]) {
+                registers[index] = rank;
+            }
+            return;
+        }
+        int position = search(index);
+        if (position >= 0) {
+            if (rank > (byte) sparse[position]) {
+                sparse[position] = index << 8 | rank;
+            }
+            return;
+        }
+        if (sparseSize + 1 > (1 << precision) / 32) {
+            densify();
+            registers[index] = rank;
+            return;
+        }
+        int insert = -position - 1;
+        if (sparseSize == sparse.length) {
+            sparse = Arrays.copyOf(sparse, sparse.length * 2);
+        }
+        System.arraycopy(sparse, insert, sparse, insert + 1, sparseSize - insert);
+        sparse[insert] = index << 8 | rank;
+        sparseSize++;
+    }
+
+    private int search(int index) {
+        int low = 0;
+        int high = sparseSize - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int current = sparse[middle] >>> 8;
+            if (current < index) {
+                low = middle + 1;
+            } else if (current > index) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void densify() {
+        if (registers != null) {
+            return;
+        }
+        registers = new byte[1 << precision];
+        for (int i = 0; i < sparseSize; i++) {
+            registers[sparse[i] >>> 8] = (byte) sparse[i];
+        }
+        sparse = null;
+        sparseSize = 0;
+    }
+
+    private byte[] sparseBytes(int[] entries, int count) {
+        ByteBuffer buffer = ByteBuffer.allocate(2 + 4 + count * 4);
+        buffer.put((byte) precision).put(SPARSE).putInt(count);
+        for (int i = 0; i < count; i++) {
+            buffer.putInt(entries[i]);
+        }
+        return buffer.array();
+    }
+
+    public static long hash(byte[] value) {
+        long hash = FNV_OFFSET;
+        for (byte b : value) {
+            hash ^= b & 0xFF;
+            hash *= FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static double alpha(int m) {
+        return switch (m) {
+            case 16 -> 0.673;
+            case 32 -> 0.697;
+            case 64 -> 0.709;
+            default -> 0.7213 / (1 + 1.079 / m);
+        };
+    }
+}
@@ -0,0 +1,8 @@
+package ru.practicum.stats.sketch;
+
+import ru.practicum.stats.rollup.RollupGranularity;
+
+import java.time.LocalDateTime;
+
+public record SketchKey(int appId, int uriId, RollupGranularity granularity, LocalDateTime bucket) {
+}
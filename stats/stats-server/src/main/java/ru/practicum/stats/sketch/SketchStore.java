@@ -0,0 +1,196 @@
+package ru.practicum.stats.sketch;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.model.EndpointHitCount;
+import ru.practicum.stats.model.EndpointKey;
+import ru.practicum.stats.repository.SketchRepository;
+import ru.practicum.stats.rollup.RollupGranularity;
+import ru.practicum.stats.rollup.RollupPlan;
+import ru.practicum.stats.shard.ShardRouter;
+
+import java.time.LocalDateTime;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static ru.practicum.stats.repository.SketchRepository.SKETCH_GRANULARITIES;
+
+/**
+ * Approximate unique visitor counts kept as one {@link HyperLogLog} per endpoint and hour or day.
+ *
+ * <p>Ingest only appends the (endpoint, hour, ip hash) deltas of the hits in their transaction, and a scheduled
+ * compaction folds them into the hour and day sketches, so a committed hit is never lost with the process and
+ * the write path never rewrites a sketch. Queries merge the sketches and pending deltas of the whole hours and
+ * days with the ips of the raw hits around them.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SketchStore {
+    private static final Comparator<SketchKey> KEY_ORDER = Comparator.comparing(SketchKey::uriId)
+            .thenComparing(SketchKey::bucket)
+            .thenComparing(SketchKey::appId);
+    private static final Comparator<Map.Entry<SketchKey, Long>> DELTA_ORDER =
+            Map.Entry.<SketchKey, Long>comparingByKey(KEY_ORDER).thenComparing(Map.Entry::getValue);
+
+    private final SketchRepository sketchRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
+
+    @Value("${stats.sketch.enabled:true}")
+    private boolean enabled;
+    @Value("${stats.sketch.precision:14}")
+    private int precision;
+    @Value("${stats.sketch.compact-batch:500}")
+    private int compactBatch;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues the ip hashes of the hits by hour. Must run in the transaction that stores the hits, so that
+     * a committed hit is always visible to {@link #collect}.
+     */
+    public void record(List<EndpointHit> hits) {
+        Set<Map.Entry<SketchKey, Long>> deltas = new TreeSet<>(DELTA_ORDER);
+        for (EndpointHit hit : hits) {
+            SketchKey key = new SketchKey(hit.getAppId(), hit.getUriId(), RollupGranularity.HOUR,
+                                          RollupGranularity.HOUR.floor(hit.getTimestamp()));
+            deltas.add(new AbstractMap.SimpleImmutableEntry<>(key, HyperLogLog.hash(hit.getIp())));
+        }
+        sketchRepository.insertDeltas(deltas);
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public List<EndpointHitCount> estimateUnique(RollupPlan plan, List<Integer> uriIds) {
+        Map<EndpointKey, HyperLogLog> merged = collect(plan, uriIds);
+        List<EndpointHitCount> result = new ArrayList<>(merged.size());
+        merged.forEach((key, sketch) -> result.add(new EndpointHitCount(key.appId(), key.uriId(),
+                                                                        sketch.cardinality())));
+        result.sort(Comparator.comparing(EndpointHitCount::hits).reversed());
+        return result;
+    }
+
+    /**
+     * Merges the stored sketches, the pending deltas and the ips of the edges of the plan into one sketch
+     * per endpoint, to be estimated or merged further by the caller.
+     */
+    public Map<EndpointKey, HyperLogLog> collect(RollupPlan plan, List<Integer> uriIds) {
+        Map<EndpointKey, HyperLogLog> merged = new HashMap<>();
+        sketchRepository.findSketches(plan, uriIds, (appId, uriId, sketch, hash) -> {
+            EndpointKey key = new EndpointKey(appId, uriId);
+            if (sketch != null) {
+                merged.merge(key, HyperLogLog.fromBytes(sketch), HyperLogLog::merge);
+            } else {
+                merged.computeIfAbsent(key, k -> new HyperLogLog(precision)).addHash(hash);
+            }
+        });
+        sketchRepository.findEdgeIps(plan, uriIds, (appId, uriId, ip) ->
+                merged.computeIfAbsent(new EndpointKey(appId, uriId), k -> new HyperLogLog(precision)).add(ip));
+        return merged;
+    }
+
+    @Scheduled(fixedDelayString = "${stats.sketch.compact-interval:PT10S}")
+    public void compact() {
+        if (enabled) {
+            shardRouter.forEachShard(this::compactShard);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        if (enabled) {
+            shardRouter.forEachShard(this::backfillShard);
+        }
+    }
+
+    private void compactShard() {
+        int folded = 0;
+        List<SketchKey> keys;
+        do {
+            keys = sketchRepository.findDeltaKeys(compactBatch);
+            for (SketchKey key : keys) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> fold(key));
+                    folded++;
+                } catch (RuntimeException e) {
+                    log.warn("[SketchStore] Failed to fold deltas of {}: {}", key, e.getMessage());
+                    return;
+                }
+            }
+        } while (keys.size() == compactBatch);
+        if (folded > 0) {
+            log.debug("[SketchStore] Folded deltas into {} hourly sketches", folded);
+        }
+    }
+
+    /**
+     * Moves the deltas of an hour into its hour sketch and the sketch of its day in one transaction, so
+     * a query sees every hash either as a delta or in both sketches.
+     */
+    private void fold(SketchKey key) {
+        List<Long> hashes = sketchRepository.takeDeltas(key);
+        if (hashes.isEmpty()) {
+            return;
+        }
+        HyperLogLog delta = new HyperLogLog(precision);
+        hashes.forEach(delta::addHash);
+        for (RollupGranularity granularity : SKETCH_GRANULARITIES) {
+            persist(new SketchKey(key.appId(), key.uriId(), granularity, granularity.floor(key.bucket())), delta);
+        }
+    }
+
+    private void backfillShard() {
+        if (!sketchRepository.isEmpty()) {
+            return;
+        }
+        log.info("[SketchStore] Sketch tables are empty, building sketches from endpoint_hits");
+        Map<RollupGranularity, SketchKey> currentKeys = new HashMap<>();
+        Map<RollupGranularity, HyperLogLog> currentSketches = new HashMap<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            sketchRepository.scanHits(rs -> {
+                int appId = rs.getInt("app_id");
+                int uriId = rs.getInt("uri_id");
+                long hash = HyperLogLog.hash(rs.getBytes("ip"));
+                LocalDateTime timestamp = rs.getTimestamp("hit_ts").toLocalDateTime();
+                for (RollupGranularity granularity : SKETCH_GRANULARITIES) {
+                    SketchKey key = new SketchKey(appId, uriId, granularity, granularity.floor(timestamp));
+                    if (!key.equals(currentKeys.get(granularity))) {
+                        SketchKey previous = currentKeys.put(granularity, key);
+                        if (previous != null) {
+                            persist(previous, currentSketches.get(granularity));
+                        }
+                        currentSketches.put(granularity, new HyperLogLog(precision));
+                    }
+                    currentSketches.get(granularity).addHash(hash);
+                }
+            });
+            currentKeys.forEach((granularity, key) -> persist(key, currentSketches.get(granularity)));
+        });
+        log.info("[SketchStore] Sketch backfill finished");
+    }
+
+    private void persist(SketchKey key, HyperLogLog sketch) {
+        if (!sketchRepository.insertIfAbsent(key, sketch.toBytes())) {
+            HyperLogLog current = HyperLogLog.fromBytes(sketchRepository.findForUpdate(key));
+            sketchRepository.update(key, current.merge(sketch).toBytes());
+        }
+    }
+}
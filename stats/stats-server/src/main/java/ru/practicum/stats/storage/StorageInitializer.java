@@ -0,0 +1,81 @@
+package ru.practicum.stats.storage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.stats.dictionary.IpCodec;
+import ru.practicum.stats.partition.HitPartitionManager;
+import ru.practicum.stats.repository.RollupRepository;
+import ru.practicum.stats.repository.StorageMigrationRepository;
+import ru.practicum.stats.shard.ShardRouter;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StorageInitializer implements InitializingBean {
+    private static final int IP_BATCH_SIZE = 10_000;
+
+    private final StorageMigrationRepository migrationRepository;
+    private final HitPartitionManager hitPartitionManager;
+    private final RollupRepository rollupRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardRouter shardRouter;
+
+    @Value("${stats.rollup.enabled:true}")
+    private boolean rollupEnabled;
+
+    @Override
+    public void afterPropertiesSet() {
+        shardRouter.forEachShard(this::prepareShard);
+    }
+
+    private void prepareShard() {
+        if (ShardRouter.currentShard() != ShardRouter.DICTIONARY_SHARD) {
+            migrationRepository.applySchema();
+        }
+        if (migrationRepository.hasColumn("endpoint_hits", "app")) {
+            encodeLegacyHits();
+        }
+        hitPartitionManager.prepare();
+        if (rollupEnabled) {
+            transactionTemplate.executeWithoutResult(status -> rollupRepository.backfill());
+        } else {
+            rollupRepository.recordHighWaterMark();
+        }
+    }
+
+    private void encodeLegacyHits() {
+        log.info("[StorageInitializer] Converting endpoint_hits to dictionary-encoded columns");
+        transactionTemplate.executeWithoutResult(status -> {
+            migrationRepository.addEncodedColumns();
+            migrationRepository.fillDictionaries();
+
+            List<Map.Entry<String, byte[]>> codes = new ArrayList<>(IP_BATCH_SIZE);
+            migrationRepository.scanDistinctIps(rs -> {
+                String ip = rs.getString("ip");
+                codes.add(new AbstractMap.SimpleImmutableEntry<>(ip, IpCodec.encode(ip)));
+                if (codes.size() == IP_BATCH_SIZE) {
+                    migrationRepository.saveIpCodes(codes);
+                    codes.clear();
+                }
+            });
+            if (!codes.isEmpty()) {
+                migrationRepository.saveIpCodes(codes);
+            }
+
+            int encoded = migrationRepository.encodeHits();
+            migrationRepository.dropTextColumns();
+            migrationRepository.dropAggregates();
+            migrationRepository.applySchema();
+            log.info("[StorageInitializer] Encoded {} hits, rollups and sketches will be rebuilt", encoded);
+        });
+    }
+}
@@ -0,0 +1,54 @@
+package ru.practicum.stats.thread;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the threads of the server's own background workers. With spring.threads.virtual.enabled on a Java 21+
+ * runtime they are virtual, like the request and scheduler threads Spring Boot configures; otherwise they are
+ * daemon platform threads.
+ */
+@Slf4j
+@Component
+public class WorkerThreads {
+    private final boolean virtual;
+
+    public WorkerThreads(Environment environment) {
+        this.virtual = Threading.VIRTUAL.isActive(environment);
+        log.info("[WorkerThreads] Background workers use {} threads", virtual ? "virtual" : "platform");
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    public ThreadFactory factory(String name) {
+        if (virtual) {
+            return new VirtualThreadTaskExecutor(name + "-").getVirtualThreadFactory();
+        }
+        AtomicInteger threads = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * A virtual thread per task, or a fixed pool of platform threads. The caller shuts the pool down.
+     */
+    public Executor executor(String name, int platformThreads) {
+        if (virtual) {
+            return new VirtualThreadTaskExecutor(name + "-");
+        }
+        return Executors.newFixedThreadPool(platformThreads, factory(name));
+    }
+}
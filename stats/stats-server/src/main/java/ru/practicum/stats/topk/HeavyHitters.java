@@ -0,0 +1,194 @@
+package ru.practicum.stats.topk;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.dictionary.EndpointDictionary;
+import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.model.EndpointKey;
+import ru.practicum.stats.repository.RollupRepository;
+import ru.practicum.stats.shard.ShardRouter;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import static ru.practicum.stats.rollup.RollupGranularity.HOUR;
+
+/**
+ * Hourly Space-Saving summaries of hits per endpoint for the last {@code stats.top.retention}. They only
+ * nominate candidates for a top-N query by hits; the final counts are always computed exactly for the
+ * candidates. Hit counts say nothing about the order by unique visitors, so unique queries do not use them.
+ */
+@Slf4j
+@Component
+@DependsOn("storageInitializer")
+public class HeavyHitters implements InitializingBean {
+    private final RollupRepository rollupRepository;
+    private final EndpointDictionary endpointDictionary;
+    private final ShardRouter shardRouter;
+    private final boolean enabled;
+    private final int capacity;
+    private final Duration retention;
+    private final NavigableMap<LocalDateTime, SpaceSaving<EndpointKey>> buckets = new ConcurrentSkipListMap<>();
+
+    @Value("${stats.rollup.enabled:true}")
+    private boolean rollupEnabled;
+
+    public HeavyHitters(RollupRepository rollupRepository, EndpointDictionary endpointDictionary,
+                        ShardRouter shardRouter,
+                        @Value("${stats.top.enabled:true}") boolean enabled,
+                        @Value("${stats.top.capacity:1000}") int capacity,
+                        @Value("${stats.top.retention:P7D}") Duration retention) {
+        this.rollupRepository = rollupRepository;
+        this.endpointDictionary = endpointDictionary;
+        this.shardRouter = shardRouter;
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.retention = retention;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!enabled || !rollupEnabled) {
+            return;
+        }
+        int[] rows = {0};
+        shardRouter.forEachShard(() ->
+                rollupRepository.findTopPerHour(oldestBucket(), capacity, (bucket, appId, uriId, hits) -> {
+                    summary(bucket).offer(new EndpointKey(appId, uriId), hits);
+                    rows[0]++;
+                }));
+        log.info("[HeavyHitters] Seeded {} hourly summaries from {} rollup rows", buckets.size(), rows[0]);
+    }
+
+    public void record(List<EndpointHit> hits) {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime oldest = oldestBucket();
+        for (EndpointHit hit : hits) {
+            LocalDateTime bucket = HOUR.floor(hit.getTimestamp());
+            if (!bucket.isBefore(oldest)) {
+                summary(bucket).offer(new EndpointKey(hit.getAppId(), hit.getUriId()), 1);
+            }
+        }
+    }
+
+    /**
+     * Returns the endpoints that can be among the top {@code n} of [start, end] by hits, or empty if the range
+     * reaches past the retained summaries. Only endpoints whose uri starts with {@code prefix} are considered
+     * when it is set. An hour that is only partly inside the range may hold any part of its hits outside it,
+     * so it raises the upper bounds but not the lower ones. If every summary is saturated and the counts are
+     * very flat, an endpoint that none of them monitors can still be missed.
+     */
+    public Optional<List<EndpointKey>> candidates(LocalDateTime start, LocalDateTime end, int n, String prefix) {
+        return bounds(start, end, prefix).map(bounds -> {
+            List<long[]> ranked = new ArrayList<>(bounds.byKey().values());
+            ranked.sort(Comparator.comparingLong((long[] bound) -> bound[0]).reversed());
+            return bounds.reaching(ranked.size() < n ? 0 : ranked.get(n - 1)[0], capacity);
+        });
+    }
+
+    /**
+     * Returns the endpoints whose hits in [start, end] may reach {@code minHits}, or empty if the range reaches
+     * past the retained summaries. Unique visitors never outnumber hits, so this bounds a top by unique visitors
+     * once the n-th unique count of some endpoints is known.
+     */
+    public Optional<List<EndpointKey>> candidatesReaching(LocalDateTime start, LocalDateTime end, long minHits,
+                                                          String prefix) {
+        return bounds(start, end, prefix).map(bounds -> bounds.reaching(minHits, capacity));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Duration getRetention() {
+        return retention;
+    }
+
+    private Optional<Bounds> bounds(LocalDateTime start, LocalDateTime end, String prefix) {
+        if (!enabled || HOUR.floor(start).isBefore(oldestBucket())) {
+            return Optional.empty();
+        }
+        Map<LocalDateTime, SpaceSaving.Summary<EndpointKey>> summaries = new HashMap<>();
+        Set<Integer> uriIds = new HashSet<>();
+        buckets.subMap(HOUR.floor(start), true, end, true).forEach((bucket, counters) -> {
+            SpaceSaving.Summary<EndpointKey> summary = counters.summary();
+            summaries.put(bucket, summary);
+            summary.counters().forEach(counter -> uriIds.add(counter.key().uriId()));
+        });
+        Map<Integer, String> uris = prefix == null ? Map.of() : endpointDictionary.findUris(uriIds);
+
+        Map<EndpointKey, long[]> bounds = new HashMap<>();
+        long floors = 0;
+        for (Map.Entry<LocalDateTime, SpaceSaving.Summary<EndpointKey>> entry : summaries.entrySet()) {
+            SpaceSaving.Summary<EndpointKey> summary = entry.getValue();
+            boolean inside = isInside(entry.getKey(), start, end);
+            floors += summary.floor();
+            for (SpaceSaving.Counter<EndpointKey> counter : summary.counters()) {
+                if (prefix == null || uris.getOrDefault(counter.key().uriId(), "").startsWith(prefix)) {
+                    long[] bound = bounds.computeIfAbsent(counter.key(), key -> new long[2]);
+                    if (inside) {
+                        bound[0] += counter.count() - counter.error();
+                    }
+                    bound[1] += counter.count() - summary.floor();
+                }
+            }
+        }
+        return Optional.of(new Bounds(bounds, floors));
+    }
+
+    @Scheduled(cron = "${stats.top.cleanup-cron:0 5 * * * *}")
+    public void evictExpired() {
+        buckets.headMap(oldestBucket()).clear();
+    }
+
+    /**
+     * Hits are timestamped to the second, so an hour ends with its last second.
+     */
+    private static boolean isInside(LocalDateTime bucket, LocalDateTime start, LocalDateTime end) {
+        return !bucket.isBefore(start) && !bucket.plusHours(1).minusSeconds(1).isAfter(end);
+    }
+
+    private SpaceSaving<EndpointKey> summary(LocalDateTime bucket) {
+        return buckets.computeIfAbsent(bucket, b -> new SpaceSaving<>(capacity));
+    }
+
+    private LocalDateTime oldestBucket() {
+        return HOUR.floor(LocalDateTime.now().minus(retention));
+    }
+
+    /**
+     * Lower and upper bounds of the hits of every monitored endpoint, the upper ones without {@code upperBase},
+     * the most hits that an hour could hide below its floor.
+     */
+    private record Bounds(Map<EndpointKey, long[]> byKey, long upperBase) {
+        List<EndpointKey> reaching(long threshold, int limit) {
+            return byKey.entrySet().stream()
+                    .filter(entry -> entry.getValue()[1] + upperBase >= threshold)
+                    .sorted(Comparator.comparingLong(
+                            (Map.Entry<EndpointKey, long[]> entry) -> entry.getValue()[1]).reversed())
+                    .limit(limit)
+                    .map(Map.Entry::getKey)
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package ru.practicum.stats.topk;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving heavy-hitters summary with a fixed number of counters kept in an indexed min-heap.
+ * Every monitored key has an overestimated count and an error bound: its true count lies in
+ * [count - error, count]. A key that is not monitored has a true count of at most {@link Summary#floor()}.
+ */
+public final class SpaceSaving<K> {
+    private final int capacity;
+    private final Object[] keys;
+    private final long[] counts;
+    private final long[] errors;
+    private final Map<K, Integer> positions;
+    private int size;
+
+    public SpaceSaving(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.keys = new Object[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.positions = new HashMap<>(capacity * 2);
+    }
+
+    public synchronized void offer(K key, long weight) {
+        Integer position = positions.get(key);
+        if (position != null) {
+            counts[position] += weight;
+            siftDown(position);
+        } else if (size < capacity) {
+            keys[size] = key;
+            counts[size] = weight;
+            errors[size] = 0;
+            positions.put(key, size);
+            siftUp(size++);
+        } else {
+            positions.remove(key(0));
+            keys[0] = key;
+            errors[0] = counts[0];
+            counts[0] += weight;
+            positions.put(key, 0);
+            siftDown(0);
+        }
+    }
+
+    public synchronized Summary<K> summary() {
+        List<Counter<K>> counters = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            counters.add(new Counter<>(key(i), counts[i], errors[i]));
+        }
+        return new Summary<>(counters, size == capacity ? counts[0] : 0);
+    }
+
+    private void siftUp(int position) {
+        int child = position;
+        while (child > 0) {
+            int parent = (child - 1) / 2;
+            if (counts[parent] <= counts[child]) {
+                return;
+            }
+            swap(parent, child);
+            child = parent;
+        }
+    }
+
+    private void siftDown(int position) {
+        int parent = position;
+        while (true) {
+            int smallest = parent;
+            int left = parent * 2 + 1;
+            int right = left + 1;
+            if (left < size && counts[left] < counts[smallest]) {
+                smallest = left;
+            }
+            if (right < size && counts[right] < counts[smallest]) {
+                smallest = right;
+            }
+            if (smallest == parent) {
+                return;
+            }
+            swap(parent, smallest);
+            parent = smallest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        Object key = keys[i];
+        keys[i] = keys[j];
+        keys[j] = key;
+        long count = counts[i];
+        counts[i] = counts[j];
+        counts[j] = count;
+        long error = errors[i];
+        errors[i] = errors[j];
+        errors[j] = error;
+        positions.put(key(i), i);
+        positions.put(key(j), j);
+    }
+
+    @SuppressWarnings("unchecked")
+    private K key(int position) {
+        return (K) keys[position];
+    }
+
+    public record Counter<K>(K key, long count, long error) {
+    }
+
+    public record Summary<K>(List<Counter<K>> counters, long floor) {
+    }
+}
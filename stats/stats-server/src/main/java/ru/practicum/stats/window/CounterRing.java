@@ -0,0 +1,54 @@
+package ru.practicum.stats.window;
+
+/**
+ * Fixed-size ring of per-slot hit counters. The ring always holds the slots (head - size, head];
+ * writing a slot past the head advances it and clears the slots that fall out.
+ */
+final class CounterRing {
+    private final int[] counts;
+    private long head = Long.MIN_VALUE;
+
+    CounterRing(int size) {
+        this.counts = new int[size];
+    }
+
+    /**
+     * Counts a hit in the given slot and returns the oldest slot the ring still holds.
+     * A slot older than that is ignored: it was already evicted.
+     */
+    synchronized long add(long slot) {
+        if (head == Long.MIN_VALUE) {
+            head = slot;
+        } else if (slot > head) {
+            long cleared = Math.min(slot - head, counts.length);
+            for (long i = 1; i <= cleared; i++) {
+                counts[index(head + i)] = 0;
+            }
+            head = slot;
+        }
+        long oldest = head - counts.length + 1;
+        if (slot >= oldest) {
+            counts[index(slot)]++;
+        }
+        return oldest;
+    }
+
+    synchronized long sum(long from, long to) {
+        if (head == Long.MIN_VALUE) {
+            return 0;
+        }
+        long total = 0;
+        for (long slot = Math.max(from, head - counts.length + 1); slot <= Math.min(to, head); slot++) {
+            total += counts[index(slot)];
+        }
+        return total;
+    }
+
+    synchronized boolean isIdleSince(long slot) {
+        return head < slot;
+    }
+
+    private int index(long slot) {
+        return (int) Math.floorMod(slot, (long) counts.length);
+    }
+}
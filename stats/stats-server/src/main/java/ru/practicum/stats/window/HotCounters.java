@@ -0,0 +1,190 @@
+package ru.practicum.stats.window;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.model.EndpointKey;
+import ru.practicum.stats.shard.ShardRouter;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-endpoint hit counters for the recent window, kept at minute resolution for the whole window and at second
+ * resolution for its most recent part. Counters only know about hits recorded since startup, so every tier keeps
+ * a floor: the first slot from which it has seen all hits. Evicting a slot raises the floor past it.
+ *
+ * <p>Hits stamped more than {@code stats.window.max-skew} ahead of the clock are not counted, since they would
+ * evict the recent slots and raise the floors for good; ranges that reach the seconds of such hits are left
+ * to the database. Windows are indexed by uri, so a query for given uris only reads their windows.
+ */
+@Slf4j
+@Component
+public class HotCounters {
+    private static final int SECONDS_PER_MINUTE = 60;
+
+    private final boolean enabled;
+    private final int minuteSlots;
+    private final int secondSlots;
+    private final long maxSkewSeconds;
+    private final Map<Integer, Map<Integer, EndpointWindow>> windows = new ConcurrentHashMap<>();
+    private final AtomicLong minuteFloor;
+    private final AtomicLong secondFloor;
+    private final AtomicLong firstRejected = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong lastRejected = new AtomicLong(Long.MIN_VALUE);
+    private final ShardRouter shardRouter;
+
+    public HotCounters(ShardRouter shardRouter,
+                       @Value("${stats.window.enabled:true}") boolean enabled,
+                       @Value("${stats.window.size:PT24H}") Duration size,
+                       @Value("${stats.window.fine-size:PT15M}") Duration fineSize,
+                       @Value("${stats.window.max-skew:PT5S}") Duration maxSkew) {
+        if (size.toMinutes() < 1 || fineSize.toSeconds() < SECONDS_PER_MINUTE) {
+            throw new IllegalArgumentException("stats.window.size and stats.window.fine-size must be at least 1 minute");
+        }
+        this.shardRouter = shardRouter;
+        this.enabled = enabled;
+        this.minuteSlots = Math.toIntExact(size.toMinutes());
+        this.secondSlots = Math.toIntExact(fineSize.toSeconds());
+        this.maxSkewSeconds = maxSkew.toSeconds();
+        long now = epochSecond(LocalDateTime.now());
+        this.secondFloor = new AtomicLong(now + 1);
+        this.minuteFloor = new AtomicLong(Math.floorDiv(now, SECONDS_PER_MINUTE) + 1);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void record(List<EndpointHit> hits) {
+        if (!enabled) {
+            return;
+        }
+        long latest = epochSecond(LocalDateTime.now()) + maxSkewSeconds;
+        for (EndpointHit hit : hits) {
+            long second = epochSecond(hit.getTimestamp());
+            if (second > latest) {
+                firstRejected.accumulateAndGet(second, Math::min);
+                lastRejected.accumulateAndGet(second, Math::max);
+                log.debug("[HotCounters] Not counting a hit of {} in memory, it is ahead of the clock",
+                          hit.getTimestamp());
+                continue;
+            }
+            windows.compute(hit.getUriId(), (uriId, apps) -> {
+                Map<Integer, EndpointWindow> target = apps == null ? new ConcurrentHashMap<>() : apps;
+                EndpointWindow window = target.computeIfAbsent(hit.getAppId(), appId ->
+                        new EndpointWindow(new CounterRing(secondSlots), new CounterRing(minuteSlots)));
+                raise(secondFloor, window.seconds().add(second));
+                raise(minuteFloor, window.minutes().add(Math.floorDiv(second, SECONDS_PER_MINUTE)));
+                return target;
+            });
+        }
+    }
+
+    /**
+     * Counts the part of the inclusive range [start, end] that the counters cover completely. The covered part
+     * always runs up to {@code end}; empty means the range cannot be served from memory at all.
+     */
+    public Optional<WindowCounts> count(LocalDateTime start, LocalDateTime end, List<Integer> uriIds) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        long now = epochSecond(LocalDateTime.now());
+        long firstSecond = Math.max(secondFloor.get(), now - secondSlots + 1);
+        long firstMinute = Math.max(minuteFloor.get(), Math.floorDiv(now, SECONDS_PER_MINUTE) - minuteSlots + 1);
+
+        long startSecond = epochSecond(start);
+        long endSecond = epochSecond(end);
+        long from = startSecond >= firstSecond
+                ? startSecond
+                : Math.max(ceilMinute(startSecond), firstMinute) * SECONDS_PER_MINUTE;
+        if (from > endSecond || endSecond >= firstRejected.get() && from <= lastRejected.get()) {
+            return Optional.empty();
+        }
+
+        long minuteFrom = ceilMinute(from);
+        long minuteTo = Math.floorDiv(endSecond + 1, SECONDS_PER_MINUTE);
+        List<long[]> secondRanges;
+        if (minuteFrom >= minuteTo) {
+            secondRanges = List.of(new long[]{from, endSecond});
+            minuteTo = minuteFrom;
+        } else {
+            secondRanges = List.of(new long[]{from, minuteFrom * SECONDS_PER_MINUTE - 1},
+                                   new long[]{minuteTo * SECONDS_PER_MINUTE, endSecond});
+        }
+        for (long[] range : secondRanges) {
+            if (range[0] <= range[1] && range[0] < firstSecond) {
+                return Optional.empty();
+            }
+        }
+        if (minuteFrom < minuteTo && minuteFrom < firstMinute) {
+            return Optional.empty();
+        }
+
+        Map<EndpointKey, Long> hits = new HashMap<>();
+        long lastMinute = minuteTo - 1;
+        Collection<Integer> uris = uriIds == null ? windows.keySet() : new HashSet<>(uriIds);
+        for (Integer uriId : uris) {
+            Map<Integer, EndpointWindow> apps = windows.get(uriId);
+            if (apps == null || uriIds == null && !shardRouter.isLocal(uriId)) {
+                continue;
+            }
+            apps.forEach((appId, window) -> {
+                long total = window.minutes().sum(minuteFrom, lastMinute);
+                for (long[] range : secondRanges) {
+                    total += window.seconds().sum(range[0], range[1]);
+                }
+                if (total > 0) {
+                    hits.put(new EndpointKey(appId, uriId), total);
+                }
+            });
+        }
+        return Optional.of(new WindowCounts(LocalDateTime.ofEpochSecond(from, 0, ZoneOffset.UTC), hits));
+    }
+
+    @Scheduled(fixedDelayString = "${stats.window.cleanup-interval:PT1M}")
+    public void evictIdle() {
+        if (!enabled) {
+            return;
+        }
+        long oldestMinute = Math.floorDiv(epochSecond(LocalDateTime.now()), SECONDS_PER_MINUTE) - minuteSlots + 1;
+        int evicted = 0;
+        for (Integer uriId : windows.keySet()) {
+            int[] removed = new int[1];
+            windows.computeIfPresent(uriId, (k, apps) -> {
+                int before = apps.size();
+                apps.values().removeIf(window -> window.minutes().isIdleSince(oldestMinute));
+                removed[0] = before - apps.size();
+                return apps.isEmpty() ? null : apps;
+            });
+            evicted += removed[0];
+        }
+        log.debug("[HotCounters] Evicted {} idle endpoints, {} uris remain", evicted, windows.size());
+    }
+
+    private static void raise(AtomicLong floor, long slot) {
+        floor.accumulateAndGet(slot, Math::max);
+    }
+
+    private static long ceilMinute(long second) {
+        return -Math.floorDiv(-second, SECONDS_PER_MINUTE);
+    }
+
+    private static long epochSecond(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private record EndpointWindow(CounterRing seconds, CounterRing minutes) {
+    }
+}
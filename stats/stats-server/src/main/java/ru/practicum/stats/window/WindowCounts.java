@@ -0,0 +1,13 @@
+package ru.practicum.stats.window;
+
+import ru.practicum.stats.model.EndpointKey;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Hit counts served from memory for [from, end] of a query; hits before {@code from} still have to be read
+ * from the database.
+ */
+public record WindowCounts(LocalDateTime from, Map<EndpointKey, Long> hits) {
+}
@@ -1,8 +1,133 @@
+CREATE TABLE IF NOT EXISTS apps
+(
+    id   INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name VARCHAR NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS uris
+(
+    id  INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    uri VARCHAR NOT NULL UNIQUE
+);
+
+CREATE SEQUENCE IF NOT EXISTS endpoint_hits_seq;
+
 CREATE TABLE IF NOT EXISTS endpoint_hits
 (
-    ID     INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
-    app    VARCHAR   NOT NULL,
-    uri    VARCHAR   NOT NULL,
-    ip     VARCHAR   NOT NULL,
-    hit_ts TIMESTAMP NOT NULL
-);
\ No newline at end of file
+    id     BIGINT    NOT NULL DEFAULT nextval('endpoint_hits_seq'),
+    app_id INT       NOT NULL,
+    uri_id INT       NOT NULL,
+    ip     BYTEA     NOT NULL,
+    hit_ts TIMESTAMP NOT NULL,
+    PRIMARY KEY (id, hit_ts)
+) PARTITION BY RANGE (hit_ts);
+
+CREATE TABLE IF NOT EXISTS hit_rollups_minute
+(
+    app_id INT       NOT NULL,
+    uri_id INT       NOT NULL,
+    bucket TIMESTAMP NOT NULL,
+    hits   BIGINT    NOT NULL,
+    PRIMARY KEY (uri_id, bucket, app_id)
+);
+
+CREATE INDEX IF NOT EXISTS hit_rollups_minute_bucket_idx ON hit_rollups_minute (bucket);
+
+CREATE TABLE IF NOT EXISTS hit_rollups_hour
+(
+    app_id INT       NOT NULL,
+    uri_id INT       NOT NULL,
+    bucket TIMESTAMP NOT NULL,
+    hits   BIGINT    NOT NULL,
+    PRIMARY KEY (uri_id, bucket, app_id)
+);
+
+CREATE INDEX IF NOT EXISTS hit_rollups_hour_bucket_idx ON hit_rollups_hour (bucket);
+
+CREATE TABLE IF NOT EXISTS hit_rollups_day
+(
+    app_id INT       NOT NULL,
+    uri_id INT       NOT NULL,
+    bucket TIMESTAMP NOT NULL,
+    hits   BIGINT    NOT NULL,
+    PRIMARY KEY (uri_id, bucket, app_id)
+);
+
+CREATE INDEX IF NOT EXISTS hit_rollups_day_bucket_idx ON hit_rollups_day (bucket);
+
+CREATE TABLE IF NOT EXISTS rollup_high_water
+(
+    hit_id BIGINT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS hit_sketches_hour
+(
+    app_id INT       NOT NULL,
+    uri_id INT       NOT NULL,
+    bucket TIMESTAMP NOT NULL,
+    sketch BYTEA     NOT NULL,
+    PRIMARY KEY (uri_id, bucket, app_id)
+);
+
+CREATE INDEX IF NOT EXISTS hit_sketches_hour_bucket_idx ON hit_sketches_hour (bucket);
+
+CREATE TABLE IF NOT EXISTS hit_sketches_day
+(
+    app_id INT       NOT NULL,
+    uri_id INT       NOT NULL,
+    bucket TIMESTAMP NOT NULL,
+    sketch BYTEA     NOT NULL,
+    PRIMARY KEY (uri_id, bucket, app_id)
+);
+
+CREATE INDEX IF NOT EXISTS hit_sketches_day_bucket_idx ON hit_sketches_day (bucket);
+
+CREATE TABLE IF NOT EXISTS hit_sketch_deltas
+(
+    app_id INT       NOT NULL,
+    uri_id INT       NOT NULL,
+    bucket TIMESTAMP NOT NULL,
+    hash   BIGINT    NOT NULL,
+    PRIMARY KEY (uri_id, bucket, app_id, hash)
+);
+
+CREATE TABLE IF NOT EXISTS ingest_checkpoints
+(
+    log_id         VARCHAR PRIMARY KEY,
+    segment_id     BIGINT NOT NULL,
+    segment_offset INT    NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS visitors
+(
+    id INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    ip BYTEA NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS visitor_bitmaps_day
+(
+    app_id INT       NOT NULL,
+    uri_id INT       NOT NULL,
+    bucket TIMESTAMP NOT NULL,
+    bitmap BYTEA     NOT NULL,
+    PRIMARY KEY (uri_id, bucket, app_id)
+);
+
+CREATE INDEX IF NOT EXISTS visitor_bitmaps_day_bucket_idx ON visitor_bitmaps_day (bucket);
+
+CREATE TABLE IF NOT EXISTS visitor_bitmap_deltas
+(
+    app_id     INT       NOT NULL,
+    uri_id     INT       NOT NULL,
+    bucket     TIMESTAMP NOT NULL,
+    visitor_id INT       NOT NULL,
+    PRIMARY KEY (uri_id, bucket, app_id, visitor_id)
+);
+
+CREATE TABLE IF NOT EXISTS hit_archive_segments
+(
+    file        VARCHAR   PRIMARY KEY,
+    day         DATE      NOT NULL,
+    hits        INT       NOT NULL,
+    archived_at TIMESTAMP NOT NULL
+);
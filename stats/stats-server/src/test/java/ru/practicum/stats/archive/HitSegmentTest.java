@@ -0,0 +1,145 @@
+package ru.practicum.stats.archive;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HitSegmentTest {
+    private static final LocalDateTime DAY = LocalDateTime.of(2024, 3, 1, 0, 0);
+    private static final byte[] IP_A = {10, 0, 0, 1};
+    private static final byte[] IP_B = {10, 0, 0, 2};
+    private static final byte[] IP_C = {10, 0, 0, 3};
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void readsBackEveryHitInTimeOrder() throws IOException {
+        HitSegment segment = write(
+                new Hit(1, 10, IP_A, DAY.plusHours(1)),
+                new Hit(1, 20, IP_B, DAY.plusHours(1)),
+                new Hit(2, 10, IP_C, DAY.plusHours(2).plusNanos(1_000)),
+                new Hit(1, 10, IP_A, DAY.plusHours(23)));
+
+        List<Hit> hits = new ArrayList<>();
+        segment.scan(DAY, DAY.plusDays(1), null, (appId, uriId, ip, micros) ->
+                hits.add(new Hit(appId, uriId, ip, HitSegment.timestamp(micros))));
+
+        assertThat(hits).containsExactly(
+                new Hit(1, 10, IP_A, DAY.plusHours(1)),
+                new Hit(1, 20, IP_B, DAY.plusHours(1)),
+                new Hit(2, 10, IP_C, DAY.plusHours(2).plusNanos(1_000)),
+                new Hit(1, 10, IP_A, DAY.plusHours(23)));
+    }
+
+    @Test
+    void scanKeepsOnlyTheRangeAndTheRequestedUris() throws IOException {
+        HitSegment segment = write(
+                new Hit(1, 10, IP_A, DAY.plusHours(1)),
+                new Hit(1, 20, IP_B, DAY.plusHours(2)),
+                new Hit(1, 10, IP_C, DAY.plusHours(3)),
+                new Hit(1, 10, IP_A, DAY.plusHours(4)));
+
+        List<LocalDateTime> timestamps = new ArrayList<>();
+        segment.scan(DAY.plusHours(2), DAY.plusHours(3), Set.of(10), (appId, uriId, ip, micros) ->
+                timestamps.add(HitSegment.timestamp(micros)));
+
+        assertThat(timestamps).containsExactly(DAY.plusHours(3));
+        assertThat(segment.overlaps(DAY.plusDays(1), DAY.plusDays(2))).isFalse();
+    }
+
+    @Test
+    void wholeSegmentVisitorsComeFromTheBitmapsOncePerVisitor() throws IOException {
+        HitSegment segment = write(
+                new Hit(1, 10, IP_A, DAY.plusHours(1)),
+                new Hit(1, 10, IP_A, DAY.plusHours(2)),
+                new Hit(1, 10, IP_B, DAY.plusHours(3)),
+                new Hit(1, 20, IP_A, DAY.plusHours(4)));
+        byte[][] ips = segment.ips();
+
+        List<String> visits = new ArrayList<>();
+        segment.scanVisitors(DAY, DAY.plusDays(1), null, (appId, uriId, ip) ->
+                visits.add(appId + ":" + uriId + ":" + ips[ip][3]));
+
+        assertThat(visits).containsExactlyInAnyOrder("1:10:1", "1:10:2", "1:20:1");
+    }
+
+    @Test
+    void partlyCoveredSegmentVisitorsComeFromTheRows() throws IOException {
+        HitSegment segment = write(
+                new Hit(1, 10, IP_A, DAY.plusHours(1)),
+                new Hit(1, 10, IP_B, DAY.plusHours(2)),
+                new Hit(1, 10, IP_C, DAY.plusHours(3)));
+        byte[][] ips = segment.ips();
+
+        Set<Integer> visitors = new HashSet<>();
+        segment.scanVisitors(DAY.plusHours(2), DAY.plusHours(5), Set.of(10), (appId, uriId, ip) ->
+                visitors.add((int) ips[ip][3]));
+
+        assertThat(visitors).containsExactlyInAnyOrder(2, 3);
+    }
+
+    @Test
+    void resolvesVisitorIdsOncePerSegment() throws IOException {
+        HitSegment segment = write(new Hit(1, 10, IP_A, DAY), new Hit(1, 10, IP_B, DAY));
+        List<Integer> calls = new ArrayList<>();
+
+        int[] first = segment.visitorIds(ips -> {
+            calls.add(ips.length);
+            return new int[]{7, 8};
+        });
+        int[] second = segment.visitorIds(ips -> {
+            throw new AssertionError("resolved twice");
+        });
+
+        assertThat(calls).containsExactly(2);
+        assertThat(second).isSameAs(first).containsExactly(7, 8);
+        assertThat(segment.ipHashes()).hasSize(2).isSameAs(segment.ipHashes());
+    }
+
+    @Test
+    void rejectsHitsOutOfTimeOrderAndEmptySegments() {
+        HitSegment.Writer writer = new HitSegment.Writer();
+        writer.add(1, 10, IP_A, DAY.plusHours(2));
+
+        assertThatThrownBy(() -> writer.add(1, 10, IP_A, DAY.plusHours(1)))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> new HitSegment.Writer().write(directory.resolve("empty.seg")))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private HitSegment write(Hit... hits) throws IOException {
+        HitSegment.Writer writer = new HitSegment.Writer();
+        for (Hit hit : hits) {
+            writer.add(hit.appId(), hit.uriId(), hit.ip(), hit.timestamp());
+        }
+        Path file = directory.resolve("hits.seg");
+        writer.write(file);
+        assertThat(directory.resolve("hits.seg.tmp")).doesNotExist();
+        return HitSegment.open(file);
+    }
+
+    private record Hit(int appId, int uriId, byte[] ip, LocalDateTime timestamp) {
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Hit hit && appId == hit.appId && uriId == hit.uriId
+                    && Arrays.equals(ip, hit.ip) && timestamp.equals(hit.timestamp);
+        }
+
+        @Override
+        public int hashCode() {
+            return timestamp.hashCode();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package ru.practicum.stats.bitmap;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class VisitorBitmapTest {
+
+    @Test
+    void arrayContainerHoldsFourThousandNinetySixValues() {
+        VisitorBitmap bitmap = range(0, 4096);
+
+        assertThat(bitmap.cardinality()).isEqualTo(4096);
+        assertThat(bitmap.toBytes()).hasSize(4 + 4 + 4096 * 2);
+        assertThat(ids(VisitorBitmap.fromBytes(bitmap.toBytes()))).isEqualTo(ids(bitmap));
+    }
+
+    @Test
+    void containerTurnsIntoBitsetPastFourThousandNinetySixValues() {
+        VisitorBitmap bitmap = range(0, 4097);
+        bitmap.add(4096);
+
+        assertThat(bitmap.cardinality()).isEqualTo(4097);
+        assertThat(bitmap.toBytes()).hasSize(4 + 4 + 8192);
+        assertThat(ids(bitmap)).hasSize(4097).first().isEqualTo(0);
+        assertThat(ids(VisitorBitmap.fromBytes(bitmap.toBytes()))).isEqualTo(ids(bitmap));
+    }
+
+    @Test
+    void fullContainerKeepsAllSixtyFiveThousandFiveHundredThirtySixValues() {
+        VisitorBitmap bitmap = range(1 << 16, 2 << 16);
+
+        VisitorBitmap read = VisitorBitmap.fromBytes(bitmap.toBytes());
+
+        assertThat(read.cardinality()).isEqualTo(65536);
+        List<Integer> ids = ids(read);
+        assertThat(ids).hasSize(65536);
+        assertThat(ids.get(0)).isEqualTo(1 << 16);
+        assertThat(ids.get(65535)).isEqualTo((2 << 16) - 1);
+    }
+
+    @Test
+    void forEachVisitsIdsInAscendingOrderAcrossContainers() {
+        VisitorBitmap bitmap = new VisitorBitmap();
+        for (int id : new int[]{Integer.MAX_VALUE, 70_000, 3, 65_536, 3, 0}) {
+            bitmap.add(id);
+        }
+
+        assertThat(ids(bitmap)).containsExactly(0, 3, 65_536, 70_000, Integer.MAX_VALUE);
+        assertThat(ids(VisitorBitmap.fromBytes(bitmap.toBytes())))
+                .containsExactly(0, 3, 65_536, 70_000, Integer.MAX_VALUE);
+    }
+
+    @Test
+    void orMergesArraysAndBitsets() {
+        VisitorBitmap arrays = range(0, 3000).or(range(2000, 5000));
+        VisitorBitmap bitsets = range(0, 5000).or(range(4000, 10_000));
+        VisitorBitmap mixed = range(0, 100).or(range(50, 5000));
+
+        assertThat(arrays.cardinality()).isEqualTo(5000);
+        assertThat(ids(arrays)).isEqualTo(ids(range(0, 5000)));
+        assertThat(bitsets.cardinality()).isEqualTo(10_000);
+        assertThat(mixed.cardinality()).isEqualTo(5000);
+        assertThat(new VisitorBitmap().isEmpty()).isTrue();
+    }
+
+    @Test
+    void rejectsNegativeIds() {
+        assertThatThrownBy(() -> new VisitorBitmap().add(-1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static VisitorBitmap range(int from, int to) {
+        VisitorBitmap bitmap = new VisitorBitmap();
+        for (int id = from; id < to; id++) {
+            bitmap.add(id);
+        }
+        return bitmap;
+    }
+
+    private static List<Integer> ids(VisitorBitmap bitmap) {
+        List<Integer> ids = new ArrayList<>();
+        bitmap.forEach(ids::add);
+        return ids;
+    }
+}
@@ -0,0 +1,242 @@
+package ru.practicum.stats.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.model.EndpointHitCount;
+import ru.practicum.stats.repository.RollupRepository;
+import ru.practicum.stats.repository.SketchRepository;
+import ru.practicum.stats.rollup.BucketRange;
+import ru.practicum.stats.rollup.RollupPlan;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.practicum.stats.rollup.RollupGranularity.HOUR;
+
+/**
+ * Runs the cache over in-memory rollups that count the hits of every plan exactly, so that every answer can be
+ * compared with a plain count and every database read is seen.
+ */
+class StatsResultCacheTest {
+    private static final Duration SETTLE = Duration.ofMinutes(1);
+    private static final List<Integer> URIS = List.of(1, 2);
+
+    private final List<EndpointHit> stored = new CopyOnWriteArrayList<>();
+    private final AtomicInteger reads = new AtomicInteger();
+    private Runnable duringNextRead;
+    private StatsResultCache cache;
+    private LocalDateTime base;
+
+    @BeforeEach
+    void setUp() {
+        cache = new StatsResultCache(new StoredRollups(), new StoredSketches(), true, HOUR, SETTLE,
+                                     DataSize.ofMegabytes(1));
+        ReflectionTestUtils.setField(cache, "rollupEnabled", true);
+        base = HOUR.floor(LocalDateTime.now()).minusDays(2);
+        for (int hour = 0; hour < 40; hour++) {
+            store(hit(1, base.plusHours(hour).plusMinutes(10), 1));
+            store(hit(2, base.plusHours(hour).plusMinutes(20), hour % 3));
+        }
+    }
+
+    @Test
+    void readsOnlyTheEdgesOnceTheBucketsAreCached() {
+        LocalDateTime start = base.plusMinutes(30);
+        LocalDateTime end = base.plusHours(30).plusMinutes(15);
+
+        assertThat(count(start, end, false)).isEqualTo(expected(start, end, false));
+        assertThat(reads.getAndSet(0)).isEqualTo(2);
+
+        assertThat(count(start, end, false)).isEqualTo(expected(start, end, false));
+        assertThat(reads.get()).isEqualTo(1);
+    }
+
+    @Test
+    void dropsTheEntryAWriteInsideItsRangeFallsInto() {
+        LocalDateTime start = base.plusMinutes(30);
+        LocalDateTime end = base.plusHours(30).plusMinutes(15);
+        count(start, end, false);
+
+        write(hit(1, base.plusHours(5), 7));
+        reads.set(0);
+
+        assertThat(count(start, end, false)).isEqualTo(expected(start, end, false));
+        assertThat(reads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void keepsTheEntryForWritesOutsideItsRange() {
+        LocalDateTime start = base.plusMinutes(30);
+        LocalDateTime end = base.plusHours(30).plusMinutes(15);
+        count(start, end, false);
+
+        write(hit(1, base.plusMinutes(40), 7));
+        write(hit(1, base.plusHours(30).plusMinutes(5), 7));
+        write(hit(1, base.plusHours(35), 7));
+        write(hit(3, base.plusHours(5), 7));
+        reads.set(0);
+
+        assertThat(count(start, end, false)).isEqualTo(expected(start, end, false));
+        assertThat(reads.get()).isEqualTo(1);
+    }
+
+    @Test
+    void leavesHitsOfTheSettleWindowToTheRawTail() {
+        LocalDateTime start = base.plusMinutes(30);
+        LocalDateTime end = LocalDateTime.now().plusMinutes(5);
+        count(start, end, false);
+
+        write(hit(1, LocalDateTime.now().minusSeconds(10), 7));
+        reads.set(0);
+
+        assertThat(count(start, end, false)).isEqualTo(expected(start, end, false));
+        assertThat(reads.get()).isEqualTo(1);
+    }
+
+    @Test
+    void answersNothingForARangeWithoutACompletedBucket() {
+        LocalDateTime end = LocalDateTime.now();
+
+        assertThat(cache.count(end.minusMinutes(10), end, URIS, false)).isEmpty();
+        assertThat(cache.count(base.plusMinutes(5), base.plusMinutes(50), URIS, false)).isEmpty();
+    }
+
+    @Test
+    void doesNotCacheARangeLoadedWhileAWriteWasInvalidatingIt() {
+        LocalDateTime start = base.plusMinutes(30);
+        LocalDateTime end = base.plusHours(30).plusMinutes(15);
+        duringNextRead = () -> write(hit(1, base.plusHours(5), 7));
+
+        count(start, end, false);
+        reads.set(0);
+
+        assertThat(count(start, end, false)).isEqualTo(expected(start, end, false));
+        assertThat(reads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void countsAVisitorOfTheCachedRangeAndAnEdgeOnce() {
+        LocalDateTime start = base.plusMinutes(15);
+        LocalDateTime end = base.plusHours(30).plusMinutes(15);
+        store(hit(1, base.plusMinutes(20), 1));
+        store(hit(1, base.plusHours(30).plusMinutes(12), 1));
+        store(hit(1, base.plusHours(30).plusMinutes(13), 9));
+
+        assertThat(count(start, end, true)).isEqualTo(expected(start, end, true));
+        write(hit(2, base.plusHours(6), 8));
+        assertThat(count(start, end, true)).isEqualTo(expected(start, end, true));
+        assertThat(count(start, end, true).get("1:1")).isEqualTo(2L);
+    }
+
+    private Map<String, Long> count(LocalDateTime start, LocalDateTime end, boolean unique) {
+        Map<String, Long> counts = new HashMap<>();
+        for (EndpointHitCount count : cache.count(start, end, URIS, unique).orElseThrow()) {
+            counts.put(count.appId() + ":" + count.uriId(), count.hits());
+        }
+        return counts;
+    }
+
+    private Map<String, Long> expected(LocalDateTime start, LocalDateTime end, boolean unique) {
+        Map<String, Set<Integer>> visitors = new HashMap<>();
+        Map<String, Long> counts = new HashMap<>();
+        for (EndpointHit hit : stored) {
+            if (URIS.contains(hit.getUriId()) && !hit.getTimestamp().isBefore(start)
+                    && !hit.getTimestamp().isAfter(end)) {
+                String key = hit.getAppId() + ":" + hit.getUriId();
+                counts.merge(key, 1L, Long::sum);
+                visitors.computeIfAbsent(key, k -> new HashSet<>()).add((int) hit.getIp()[4]);
+            }
+        }
+        if (unique) {
+            visitors.forEach((key, ips) -> counts.put(key, (long) ips.size()));
+        }
+        return counts;
+    }
+
+    private void write(EndpointHit hit) {
+        store(hit);
+        cache.invalidate(List.of(hit));
+    }
+
+    private void store(EndpointHit hit) {
+        stored.add(hit);
+    }
+
+    private static EndpointHit hit(int uriId, LocalDateTime timestamp, int visitor) {
+        return new EndpointHit(null, 1, uriId, new byte[]{4, 10, 0, 0, (byte) visitor}, timestamp);
+    }
+
+    private void beforeRead() {
+        reads.incrementAndGet();
+        Runnable hook = duringNextRead;
+        duringNextRead = null;
+        if (hook != null) {
+            hook.run();
+        }
+    }
+
+    private static boolean covers(RollupPlan plan, LocalDateTime timestamp) {
+        if (!timestamp.isBefore(plan.start()) && timestamp.isBefore(plan.headEnd())) {
+            return true;
+        }
+        if (!timestamp.isBefore(plan.tailStart()) && !timestamp.isAfter(plan.end())) {
+            return true;
+        }
+        return plan.buckets().values().stream().flatMap(List::stream).anyMatch(range -> inside(range, timestamp));
+    }
+
+    private static boolean inside(BucketRange range, LocalDateTime timestamp) {
+        return !timestamp.isBefore(range.from()) && timestamp.isBefore(range.to());
+    }
+
+    private class StoredRollups extends RollupRepository {
+
+        StoredRollups() {
+            super(new NamedParameterJdbcTemplate(new DriverManagerDataSource()));
+        }
+
+        @Override
+        public List<EndpointHitCount> findStats(RollupPlan plan, List<Integer> uriIds) {
+            beforeRead();
+            Map<List<Integer>, Long> counts = new HashMap<>();
+            for (EndpointHit hit : stored) {
+                if (uriIds.contains(hit.getUriId()) && covers(plan, hit.getTimestamp())) {
+                    counts.merge(List.of(hit.getAppId(), hit.getUriId()), 1L, Long::sum);
+                }
+            }
+            return counts.entrySet().stream()
+                    .map(e -> new EndpointHitCount(e.getKey().get(0), e.getKey().get(1), e.getValue()))
+                    .toList();
+        }
+    }
+
+    private class StoredSketches extends SketchRepository {
+
+        StoredSketches() {
+            super(null);
+        }
+
+        @Override
+        public void findEdgeIps(RollupPlan plan, List<Integer> uriIds, EndpointRowHandler handler) {
+            beforeRead();
+            for (EndpointHit hit : stored) {
+                if (uriIds.contains(hit.getUriId()) && covers(plan, hit.getTimestamp())) {
+                    handler.accept(hit.getAppId(), hit.getUriId(), hit.getIp());
+                }
+            }
+        }
+    }
+}
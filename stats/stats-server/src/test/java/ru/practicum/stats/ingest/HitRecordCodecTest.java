@@ -0,0 +1,52 @@
+package ru.practicum.stats.ingest;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.stats.EndpointHitRequest;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HitRecordCodecTest {
+    private static final EndpointHitRequest HIT = new EndpointHitRequest("ewm-main-service", "/events/ü", "::1",
+                                                                         LocalDateTime.of(2024, 3, 1, 12, 0, 1,
+                                                                                          500_000_000));
+
+    @Test
+    void decodesWhatItEncodes() {
+        ByteBuffer buffer = ByteBuffer.wrap(HitRecordCodec.encode(HIT));
+
+        assertThat(HitRecordCodec.decode(buffer)).usingRecursiveComparison().isEqualTo(HIT);
+        assertThat(buffer.hasRemaining()).isFalse();
+    }
+
+    @Test
+    void rejectsARecordWithAFlippedByte() {
+        byte[] record = HitRecordCodec.encode(HIT);
+        record[record.length - 2] ^= 0x01;
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+
+        assertThat(HitRecordCodec.decode(buffer)).isNull();
+        assertThat(buffer.position()).isZero();
+    }
+
+    @Test
+    void rejectsATruncatedRecord() {
+        byte[] record = HitRecordCodec.encode(HIT);
+        ByteBuffer buffer = ByteBuffer.wrap(record, 0, record.length - 1);
+
+        assertThat(HitRecordCodec.decode(buffer)).isNull();
+        assertThat(buffer.position()).isZero();
+    }
+
+    @Test
+    void stopsAtTheZeroLengthOfTheUnwrittenPart() {
+        byte[] record = HitRecordCodec.encode(HIT);
+        ByteBuffer buffer = ByteBuffer.allocate(record.length + 64).put(record).flip().limit(record.length + 64);
+
+        assertThat(HitRecordCodec.decode(buffer)).isNotNull();
+        assertThat(HitRecordCodec.decode(buffer)).isNull();
+        assertThat(buffer.position()).isEqualTo(record.length);
+    }
+}
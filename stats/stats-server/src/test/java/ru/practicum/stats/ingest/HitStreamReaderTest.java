@@ -0,0 +1,141 @@
+package ru.practicum.stats.ingest;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.junit.jupiter.api.Test;
+import ru.practicum.stats.dictionary.EndpointDictionary;
+import ru.practicum.stats.dictionary.IpCodec;
+import ru.practicum.stats.exception.ValidationException;
+import ru.practicum.stats.model.EndpointHit;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HitStreamReaderTest {
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final CountingDictionary dictionary = new CountingDictionary();
+    private final HitStreamReader reader = new HitStreamReader(dictionary);
+
+    @Test
+    void readsAnArrayIntoOneBatch() throws IOException {
+        List<List<String>> batches = read("[" + hit("/events/1", "10.0.0.1", "2024-03-01 12:00:00") + ", "
+                + "{\"uri\": \"/events/2\", \"app\": \"ewm\", \"extra\": {\"nested\": [1, 2]}, \"ip\": \"::1\", "
+                + "\"timestamp\": \"2024-03-01T12:00:01\"}]", 1);
+
+        assertThat(batches).containsExactly(List.of(
+                "1:1:" + IpCodec.decode(IpCodec.encode("10.0.0.1")) + ":2024-03-01T12:00",
+                "1:2:" + IpCodec.decode(IpCodec.encode("::1")) + ":2024-03-01T12:00:01"));
+    }
+
+    @Test
+    void flushesTopLevelHitsEveryBatchSize() throws IOException {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 5; i++) {
+            body.append(hit("/events/" + i, "10.0.0." + i, "2024-03-01 12:00:0" + i)).append('\n');
+        }
+
+        List<List<String>> batches = read(body.toString(), 2);
+
+        assertThat(batches).extracting(List::size).containsExactly(2, 2, 1);
+    }
+
+    @Test
+    void reusesHitsAndCachedValuesAcrossRequests() throws IOException {
+        String body = "[" + hit("/events/1", "10.0.0.1", "2024-03-01 12:00:00") + ","
+                + hit("/events/1", "10.0.0.1", "2024-03-01 12:00:00") + "]";
+        Set<EndpointHit> instances = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Object> values = new ArrayList<>();
+
+        for (int request = 0; request < 2; request++) {
+            reader.read(parser(body), 1_000, hits -> hits.forEach(hit -> {
+                instances.add(hit);
+                values.add(hit.getIp());
+                values.add(hit.getTimestamp());
+            }));
+        }
+
+        assertThat(instances).hasSize(2);
+        assertThat(values.get(0)).isSameAs(values.get(2)).isSameAs(values.get(4));
+        assertThat(values.get(1)).isSameAs(values.get(3)).isSameAs(values.get(7));
+        assertThat(dictionary.calls).containsEntry("app:ewm", 1).containsEntry("uri:/events/1", 1);
+    }
+
+    @Test
+    void rejectsMalformedHits() {
+        assertThatThrownBy(() -> read("[" + hit("/events/1", "10.0.0.1", "2024-03-01 12:00") + "]", 1))
+                .isInstanceOf(ValidationException.class);
+        assertThatThrownBy(() -> read("[{\"app\": \"ewm\", \"uri\": \"/events/1\", \"ip\": \"10.0.0.1\"}]", 1))
+                .isInstanceOf(ValidationException.class);
+        assertThatThrownBy(() -> read("[" + hit(" ", "10.0.0.1", "2024-03-01 12:00:00") + "]", 1))
+                .isInstanceOf(ValidationException.class);
+        assertThatThrownBy(() -> read("[" + hit("/events/1", "10.0.0.1", "2024-03-01 12:00:00"), 1))
+                .isInstanceOf(JsonProcessingException.class);
+        assertThatThrownBy(() -> read("[1]", 1)).isInstanceOf(ValidationException.class);
+    }
+
+    @Test
+    void startsCleanAfterAFailedRequest() throws IOException {
+        assertThatThrownBy(() -> read("[" + hit("/events/1", "10.0.0.1", "2024-03-01 12:00:00") + ","
+                                              + hit("/events/2", "10.0.0.2", "bad") + "]", 1))
+                .isInstanceOf(ValidationException.class);
+
+        List<List<String>> batches = read("[" + hit("/events/3", "10.0.0.3", "2024-03-01 12:00:00") + "]", 1);
+
+        assertThat(batches).hasSize(1);
+        assertThat(batches.get(0)).singleElement().asString().startsWith("1:3:");
+    }
+
+    private List<List<String>> read(String body, int batchSize) throws IOException {
+        List<List<String>> batches = new ArrayList<>();
+        reader.read(parser(body), batchSize, hits -> batches.add(hits.stream()
+                .map(hit -> hit.getAppId() + ":" + hit.getUriId() + ":" + IpCodec.decode(hit.getIp()) + ":"
+                        + hit.getTimestamp())
+                .toList()));
+        return batches;
+    }
+
+    private static JsonParser parser(String body) throws IOException {
+        return JSON.createParser(body);
+    }
+
+    private static String hit(String uri, String ip, String timestamp) {
+        return "{\"app\": \"ewm\", \"uri\": \"" + uri + "\", \"ip\": \"" + ip + "\", \"timestamp\": \"" + timestamp
+                + "\"}";
+    }
+
+    /**
+     * Hands out ids in order of first sight and counts the lookups that reach it.
+     */
+    private static final class CountingDictionary extends EndpointDictionary {
+        private final Map<String, Integer> apps = new HashMap<>();
+        private final Map<String, Integer> uris = new HashMap<>();
+        private final Map<String, Integer> calls = new HashMap<>();
+
+        private CountingDictionary() {
+            super(null, null, null);
+        }
+
+        @Override
+        public Integer appId(String app) {
+            calls.merge("app:" + app, 1, Integer::sum);
+            return apps.computeIfAbsent(app, key -> apps.size() + 1);
+        }
+
+        @Override
+        public Integer uriId(String uri) {
+            calls.merge("uri:" + uri, 1, Integer::sum);
+            return uris.computeIfAbsent(uri, key -> uris.size() + 1);
+        }
+    }
+}
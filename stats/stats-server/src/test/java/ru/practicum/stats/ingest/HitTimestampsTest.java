@@ -0,0 +1,56 @@
+package ru.practicum.stats.ingest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import ru.practicum.stats.exception.ValidationException;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HitTimestampsTest {
+    private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    @Test
+    void agreesWithLocalDateTimeAcrossTheYears() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            LocalDateTime expected = LocalDateTime.of(1, 1, 1, 0, 0)
+                    .plusSeconds((long) (random.nextDouble() * 9_998 * 365.25 * 86_400));
+
+            assertThat(HitTimestamps.parse(expected.format(FORMAT))).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void acceptsTheIsoSeparatorAndLeapDays() {
+        assertThat(HitTimestamps.parse("2024-02-29T23:59:59")).isEqualTo(LocalDateTime.of(2024, 2, 29, 23, 59, 59));
+        assertThat(HitTimestamps.parse("2000-02-29 00:00:00")).isEqualTo(LocalDateTime.of(2000, 2, 29, 0, 0));
+        assertThat(HitTimestamps.parse("1970-01-01 00:00:00")).isEqualTo(LocalDateTime.of(1970, 1, 1, 0, 0));
+    }
+
+    @Test
+    void readsTheCharactersInPlace() {
+        char[] chars = "{\"timestamp\":\"2024-03-01 12:30:15\"}".toCharArray();
+
+        long epochSecond = HitTimestamps.parseEpochSecond(chars, 14, 19);
+
+        assertThat(HitTimestamps.toLocalDateTime(epochSecond)).isEqualTo(LocalDateTime.of(2024, 3, 1, 12, 30, 15));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "", "2024-03-01", "2024-03-01 12:30", "2024-03-01 12:30:15.000", "2024/03/01 12:30:15",
+            "2024-03-01_12:30:15", "2024-03-01 12-30-15", "2024-0a-01 12:30:15", "2024-03-01 12:30:-1",
+            "2024-13-01 12:30:15", "2024-00-01 12:30:15", "2024-04-31 12:30:15", "2023-02-29 12:30:15",
+            "2100-02-29 12:30:15", "2024-03-00 12:30:15", "2024-03-01 24:00:00", "2024-03-01 12:60:00",
+            "2024-03-01 12:30:60"
+    })
+    void rejectsMalformedTimestamps(String value) {
+        assertThatThrownBy(() -> HitTimestamps.parse(value)).isInstanceOf(ValidationException.class);
+    }
+}
@@ -0,0 +1,222 @@
+package ru.practicum.stats.ingest;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+import ru.practicum.stats.EndpointHitRequest;
+import ru.practicum.stats.dictionary.IpCodec;
+import ru.practicum.stats.mapper.EndpointHitMapper;
+import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.repository.IngestCheckpointRepository;
+import ru.practicum.stats.service.StatsService;
+import ru.practicum.stats.shard.ShardProperties;
+import ru.practicum.stats.shard.ShardRouter;
+import ru.practicum.stats.thread.WorkerThreads;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the log against two shards whose checkpoints and stored hits are kept in memory.
+ */
+class IngestLogTest {
+    private static final LocalDateTime TIMESTAMP = LocalDateTime.of(2024, 3, 1, 12, 0);
+
+    @TempDir
+    private Path directory;
+
+    private final WorkerThreads workerThreads = new WorkerThreads(new StandardEnvironment());
+    private final Map<Integer, LogPosition> checkpoints = new ConcurrentHashMap<>();
+    private final Map<Integer, List<Integer>> stored = new ConcurrentHashMap<>();
+    private final List<IngestLog> opened = new ArrayList<>();
+    private ShardRouter shardRouter;
+
+    @BeforeEach
+    void setUp() {
+        ShardProperties shards = new ShardProperties();
+        shards.getShards().add(new ShardProperties.Shard());
+        shardRouter = new ShardRouter(shards, workerThreads);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (IngestLog log : opened) {
+            log.destroy();
+        }
+        shardRouter.destroy();
+    }
+
+    @Test
+    void replaysOnlyTheWholeRecordsOfATornSegment() throws Exception {
+        IngestLog first = open();
+        for (int uriId = 1; uriId <= 3; uriId++) {
+            first.append(hit(uriId));
+        }
+        first.destroy();
+        opened.remove(first);
+        Path segment = onlySegment();
+        int end = 3 * HitRecordCodec.encode(hit(1)).length;
+        byte[] torn = HitRecordCodec.encode(hit(4));
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(Arrays.copyOf(torn, torn.length - 3)), end);
+        }
+
+        IngestLog second = open();
+        second.startLoader();
+        second.append(hit(5));
+
+        awaitStored(4);
+        assertThat(allStored()).containsExactlyInAnyOrder(1, 2, 3, 5);
+    }
+
+    @Test
+    void skipsOnlyWhatEachShardHasAlreadyLoaded() throws Exception {
+        List<Integer> onShard0 = uriIdsOf(0);
+        List<Integer> onShard1 = uriIdsOf(1);
+        List<Integer> uriIds = List.of(onShard0.get(0), onShard1.get(0), onShard0.get(1), onShard1.get(1),
+                                       onShard0.get(2), onShard1.get(2), onShard0.get(3), onShard1.get(3));
+        IngestLog first = open();
+        uriIds.forEach(uriId -> first.append(hit(uriId)));
+        first.destroy();
+        opened.remove(first);
+        int recordSize = HitRecordCodec.encode(hit(uriIds.get(0))).length;
+        assertThat(uriIds).allSatisfy(uriId -> assertThat(HitRecordCodec.encode(hit(uriId))).hasSize(recordSize));
+        checkpoints.put(0, new LogPosition(0, 3 * recordSize));
+
+        IngestLog second = open();
+        second.startLoader();
+
+        awaitStored(6);
+        assertThat(stored.get(0)).containsExactly(onShard0.get(2), onShard0.get(3));
+        assertThat(stored.get(1)).containsExactlyElementsOf(onShard1);
+        assertThat(checkpoints).containsEntry(0, new LogPosition(0, 8 * recordSize))
+                .containsEntry(1, new LogPosition(0, 8 * recordSize));
+    }
+
+    private IngestLog open() throws IOException {
+        IngestLogProperties properties = new IngestLogProperties();
+        properties.setEnabled(true);
+        properties.setDirectory(directory);
+        properties.setSegmentSize(DataSize.ofKilobytes(4));
+        properties.setFsync(FsyncPolicy.NEVER);
+        properties.setLoadInterval(Duration.ofMillis(10));
+        properties.setRetryDelay(Duration.ofMillis(100));
+        IngestLog log = new IngestLog(properties, statsService(), new MemoryCheckpoints(), new DirectTransactions(),
+                                      new UriIdMapper(), shardRouter, workerThreads);
+        log.afterPropertiesSet();
+        opened.add(log);
+        return log;
+    }
+
+    private StatsService statsService() {
+        return (StatsService) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {StatsService.class},
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("saveAll")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    @SuppressWarnings("unchecked")
+                    List<EndpointHit> hits = (List<EndpointHit>) args[0];
+                    List<Integer> shard = stored.computeIfAbsent(ShardRouter.currentShard(),
+                                                                 key -> new CopyOnWriteArrayList<>());
+                    hits.forEach(hit -> shard.add(hit.getUriId()));
+                    return null;
+                });
+    }
+
+    private List<Integer> uriIdsOf(int shard) {
+        List<Integer> uriIds = new ArrayList<>();
+        for (int uriId = 1; uriIds.size() < 4; uriId++) {
+            if (shardRouter.shardOf(uriId) == shard) {
+                uriIds.add(uriId);
+            }
+        }
+        return uriIds;
+    }
+
+    private void awaitStored(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (allStored().size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        // give a wrongly repeated load the time to show up
+        Thread.sleep(100);
+    }
+
+    private List<Integer> allStored() {
+        return stored.values().stream().flatMap(List::stream).toList();
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = files.filter(LogSegment::isSegment).toList();
+            assertThat(segments).hasSize(1);
+            return segments.get(0);
+        }
+    }
+
+    private static EndpointHitRequest hit(int uriId) {
+        return new EndpointHitRequest("ewm", "/events/" + uriId, "10.0.0.1", TIMESTAMP);
+    }
+
+    private class MemoryCheckpoints extends IngestCheckpointRepository {
+        MemoryCheckpoints() {
+            super(null);
+        }
+
+        @Override
+        public Optional<LogPosition> find(String logId) {
+            return Optional.ofNullable(checkpoints.get(ShardRouter.currentShard()));
+        }
+
+        @Override
+        public void save(String logId, LogPosition position) {
+            checkpoints.put(ShardRouter.currentShard(), position);
+        }
+    }
+
+    private static class DirectTransactions extends TransactionTemplate {
+        @Override
+        public <T> T execute(TransactionCallback<T> action) {
+            return action.doInTransaction((TransactionStatus) null);
+        }
+    }
+
+    /**
+     * Takes the uri id from the number at the end of the uri instead of a dictionary.
+     */
+    private static class UriIdMapper implements EndpointHitMapper {
+        @Override
+        public EndpointHit toEntity(EndpointHitRequest dto) {
+            int uriId = Integer.parseInt(dto.getUri().substring(dto.getUri().lastIndexOf('/') + 1));
+            return new EndpointHit(null, 1, uriId, IpCodec.encode(dto.getIp()), dto.getTimestamp());
+        }
+
+        @Override
+        public List<EndpointHit> toEntities(List<EndpointHitRequest> dtos) {
+            return dtos.stream().map(this::toEntity).toList();
+        }
+    }
+}
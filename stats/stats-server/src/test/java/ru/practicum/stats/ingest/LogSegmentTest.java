@@ -0,0 +1,80 @@
+package ru.practicum.stats.ingest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.stats.EndpointHitRequest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LogSegmentTest {
+    private static final int SIZE = 4096;
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void recoversUpToTheLastWholeRecordOfATornTail() throws IOException {
+        int end;
+        try (LogSegment segment = LogSegment.create(directory, 7, SIZE)) {
+            segment.append(HitRecordCodec.encode(hit(1)));
+            segment.append(HitRecordCodec.encode(hit(2)));
+            end = segment.end();
+            byte[] torn = HitRecordCodec.encode(hit(3));
+            segment.append(Arrays.copyOf(torn, torn.length / 2));
+            segment.force();
+        }
+
+        try (LogSegment segment = LogSegment.recover(directory.resolve("segment-00000000000000000007.log"))) {
+            assertThat(segment.id()).isEqualTo(7);
+            assertThat(segment.end()).isEqualTo(end);
+            assertThat(segment.isSealed()).isTrue();
+            assertThat(readAll(segment)).extracting(EndpointHitRequest::getUri)
+                    .containsExactly("/events/1", "/events/2");
+        }
+    }
+
+    @Test
+    void recoversAnEmptySegment() throws IOException {
+        LogSegment.create(directory, 0, SIZE).close();
+
+        try (LogSegment segment = LogSegment.recover(directory.resolve("segment-00000000000000000000.log"))) {
+            assertThat(segment.end()).isZero();
+            assertThat(readAll(segment)).isEmpty();
+        }
+    }
+
+    @Test
+    void readsOnlyThePublishedRecords() throws IOException {
+        try (LogSegment segment = LogSegment.create(directory, 0, SIZE)) {
+            segment.append(HitRecordCodec.encode(hit(1)));
+            ByteBuffer view = segment.read(0);
+            segment.append(HitRecordCodec.encode(hit(2)));
+
+            assertThat(HitRecordCodec.decode(view)).isNotNull();
+            assertThat(HitRecordCodec.decode(view)).isNull();
+            assertThat(segment.fits(SIZE - segment.end())).isTrue();
+            assertThat(segment.fits(SIZE - segment.end() + 1)).isFalse();
+        }
+    }
+
+    private static List<EndpointHitRequest> readAll(LogSegment segment) {
+        List<EndpointHitRequest> hits = new ArrayList<>();
+        ByteBuffer view = segment.read(0);
+        for (EndpointHitRequest hit = HitRecordCodec.decode(view); hit != null; hit = HitRecordCodec.decode(view)) {
+            hits.add(hit);
+        }
+        return hits;
+    }
+
+    private static EndpointHitRequest hit(int event) {
+        return new EndpointHitRequest("ewm", "/events/" + event, "10.0.0.1", LocalDateTime.of(2024, 3, 1, 12, 0));
+    }
+}
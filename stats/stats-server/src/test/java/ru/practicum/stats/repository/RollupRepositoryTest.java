@@ -0,0 +1,198 @@
+package ru.practicum.stats.repository;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledIfSystemProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.model.EndpointHitCount;
+import ru.practicum.stats.rollup.RollupPlan;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the rollup sums with a plain {@code COUNT(*)} over endpoint_hits in an embedded PostgreSQL, which
+ * {@code initdb} refuses to start as root.
+ */
+@DisabledIfSystemProperty(named = "user.name", matches = "root")
+class RollupRepositoryTest {
+    private static final LocalDateTime DAY_1 = LocalDateTime.of(2024, 3, 1, 0, 0);
+    private static final byte[] IP = {4, 10, 0, 0, 1};
+
+    private static EmbeddedPostgres postgres;
+
+    private final Random random = new Random(11);
+    private JdbcTemplate jdbc;
+    private RollupRepository repository;
+
+    @BeforeAll
+    static void startDatabase() throws IOException {
+        postgres = EmbeddedPostgres.start();
+        DataSource dataSource = postgres.getPostgresDatabase();
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        new JdbcTemplate(dataSource).execute("CREATE TABLE endpoint_hits_default PARTITION OF endpoint_hits DEFAULT");
+    }
+
+    @AfterAll
+    static void stopDatabase() throws IOException {
+        postgres.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        DataSource dataSource = postgres.getPostgresDatabase();
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("TRUNCATE endpoint_hits, hit_rollups_minute, hit_rollups_hour, hit_rollups_day, " +
+                             "rollup_high_water");
+        repository = new RollupRepository(new NamedParameterJdbcTemplate(dataSource));
+    }
+
+    @Test
+    void sumsTheSameHitsAsARawCount() {
+        List<EndpointHit> hits = randomHits(3_000);
+        hits.addAll(edgeHits());
+        store(hits, true);
+
+        List<LocalDateTime[]> ranges = new ArrayList<>(List.of(
+                new LocalDateTime[]{DAY_1.plusHours(10).plusSeconds(10), DAY_1.plusHours(10).plusSeconds(50)},
+                new LocalDateTime[]{DAY_1.plusHours(10).plusSeconds(30), DAY_1.plusHours(10).plusMinutes(45)},
+                new LocalDateTime[]{DAY_1.plusHours(10), DAY_1.plusHours(13)},
+                new LocalDateTime[]{DAY_1, DAY_1.plusDays(2)},
+                new LocalDateTime[]{DAY_1.plusHours(22).plusSeconds(15), DAY_1.plusDays(2).plusHours(1)}));
+        for (int i = 0; i < 200; i++) {
+            LocalDateTime start = DAY_1.plusSeconds(random.nextInt(3 * 24 * 3600));
+            ranges.add(new LocalDateTime[]{start, start.plusSeconds(random.nextInt(i % 2 == 0 ? 7200 : 86400 * 2))});
+        }
+
+        for (LocalDateTime[] range : ranges) {
+            RollupPlan plan = RollupPlan.of(range[0], range[1]);
+            assertThat(counts(repository.findStats(plan, null)))
+                    .as("[%s, %s]", range[0], range[1])
+                    .isEqualTo(rawCounts(range[0], range[1], null));
+            assertThat(counts(repository.findStats(plan, List.of(2, 3))))
+                    .as("[%s, %s] for two uris", range[0], range[1])
+                    .isEqualTo(rawCounts(range[0], range[1], List.of(2, 3)));
+        }
+    }
+
+    @Test
+    void leavesTheEndOfAHalfOpenRangeOut() {
+        store(edgeHits(), true);
+
+        LocalDateTime start = DAY_1.plusHours(10);
+        LocalDateTime end = DAY_1.plusHours(12);
+        assertThat(counts(repository.findStats(RollupPlan.before(start, end), null)))
+                .isEqualTo(rawCounts(start, end.minusNanos(1_000), null));
+    }
+
+    @Test
+    void backfillsEveryHitIntoEmptyRollups() {
+        store(randomHits(500), false);
+
+        repository.backfill();
+
+        assertMatchesRawCounts();
+    }
+
+    @Test
+    void backfillsTheHitsStoredWhileRollupsWereDisabled() {
+        store(randomHits(500), true);
+        repository.recordHighWaterMark();
+        store(randomHits(300), false);
+        repository.recordHighWaterMark();
+        store(randomHits(200), false);
+
+        repository.backfill();
+        assertMatchesRawCounts();
+
+        repository.backfill();
+        assertMatchesRawCounts();
+    }
+
+    private void assertMatchesRawCounts() {
+        LocalDateTime start = DAY_1.minusDays(1);
+        LocalDateTime end = DAY_1.plusDays(5);
+        assertThat(counts(repository.findStats(RollupPlan.of(start, end), null)))
+                .isEqualTo(rawCounts(start, end, null));
+        assertThat(counts(repository.findStats(RollupPlan.of(DAY_1.plusHours(5), DAY_1.plusHours(30)), null)))
+                .isEqualTo(rawCounts(DAY_1.plusHours(5), DAY_1.plusHours(30), null));
+    }
+
+    private List<EndpointHit> randomHits(int count) {
+        List<EndpointHit> hits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            LocalDateTime timestamp = DAY_1.plusSeconds(random.nextInt(3 * 24 * 3600))
+                    .plusNanos(random.nextInt(1_000_000) * 1_000L);
+            hits.add(hit(timestamp));
+        }
+        return hits;
+    }
+
+    /**
+     * Hits on and a microsecond before every hour boundary of the first two days.
+     */
+    private List<EndpointHit> edgeHits() {
+        List<EndpointHit> hits = new ArrayList<>();
+        for (LocalDateTime hour = DAY_1; hour.isBefore(DAY_1.plusDays(2)); hour = hour.plusHours(1)) {
+            hits.add(hit(hour));
+            hits.add(hit(hour.minusNanos(1_000)));
+            hits.add(hit(hour.plusMinutes(45)));
+        }
+        return hits;
+    }
+
+    private EndpointHit hit(LocalDateTime timestamp) {
+        return EndpointHit.builder()
+                .appId(1 + random.nextInt(2))
+                .uriId(1 + random.nextInt(5))
+                .ip(IP)
+                .timestamp(timestamp)
+                .build();
+    }
+
+    private void store(List<EndpointHit> hits, boolean rollUp) {
+        jdbc.batchUpdate("INSERT INTO endpoint_hits (app_id, uri_id, ip, hit_ts) VALUES (?, ?, ?, ?)", hits,
+                         hits.size(), (ps, hit) -> {
+                    ps.setInt(1, hit.getAppId());
+                    ps.setInt(2, hit.getUriId());
+                    ps.setBytes(3, hit.getIp());
+                    ps.setTimestamp(4, Timestamp.valueOf(hit.getTimestamp()));
+                });
+        if (rollUp) {
+            repository.increment(hits);
+        }
+    }
+
+    private Map<String, Long> rawCounts(LocalDateTime start, LocalDateTime end, List<Integer> uriIds) {
+        Map<String, Long> counts = new HashMap<>();
+        jdbc.query("SELECT app_id, uri_id, COUNT(*) FROM endpoint_hits WHERE hit_ts BETWEEN ? AND ? " +
+                           "GROUP BY app_id, uri_id", rs -> {
+                    if (uriIds == null || uriIds.contains(rs.getInt(2))) {
+                        counts.put(rs.getInt(1) + ":" + rs.getInt(2), rs.getLong(3));
+                    }
+                }, Timestamp.valueOf(start), Timestamp.valueOf(end));
+        return counts;
+    }
+
+    private static Map<String, Long> counts(List<EndpointHitCount> counts) {
+        Map<String, Long> byKey = new HashMap<>();
+        counts.forEach(count -> byKey.put(count.appId() + ":" + count.uriId(), count.hits()));
+        return byKey;
+    }
+}
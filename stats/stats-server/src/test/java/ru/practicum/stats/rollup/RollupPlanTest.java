@@ -0,0 +1,120 @@
+package ru.practicum.stats.rollup;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.practicum.stats.rollup.RollupGranularity.DAY;
+import static ru.practicum.stats.rollup.RollupGranularity.HOUR;
+import static ru.practicum.stats.rollup.RollupGranularity.MINUTE;
+
+class RollupPlanTest {
+    private static final LocalDateTime DAY_1 = LocalDateTime.of(2024, 3, 1, 0, 0);
+
+    @Test
+    void readsARangeWithinOneMinuteFromRawHitsOnly() {
+        RollupPlan plan = RollupPlan.of(DAY_1.plusSeconds(10), DAY_1.plusSeconds(50));
+
+        assertThat(plan.buckets()).isEmpty();
+        assertThat(plan.headEnd()).isEqualTo(plan.start());
+        assertThat(plan.tailStart()).isEqualTo(plan.start());
+        assertThat(plan.end()).isEqualTo(DAY_1.plusSeconds(50));
+    }
+
+    @Test
+    void readsARangeWithinOneHourFromMinutes() {
+        LocalDateTime start = DAY_1.plusHours(10).plusSeconds(30);
+        LocalDateTime end = DAY_1.plusHours(10).plusMinutes(45).plusSeconds(10);
+
+        RollupPlan plan = RollupPlan.of(start, end);
+
+        assertThat(plan.buckets()).isEqualTo(Map.of(MINUTE, List.of(range(start.plusSeconds(30),
+                                                                            end.minusSeconds(10)))));
+        assertThat(plan.headEnd()).isEqualTo(DAY_1.plusHours(10).plusMinutes(1));
+        assertThat(plan.tailStart()).isEqualTo(DAY_1.plusHours(10).plusMinutes(45));
+    }
+
+    @Test
+    void keepsTheInclusiveEndOfAnHourAlignedRangeAsARawTail() {
+        RollupPlan plan = RollupPlan.of(DAY_1.plusHours(10), DAY_1.plusHours(13));
+
+        assertThat(plan.buckets()).isEqualTo(Map.of(HOUR, List.of(range(DAY_1.plusHours(10), DAY_1.plusHours(13)))));
+        assertThat(plan.headEnd()).isEqualTo(DAY_1.plusHours(10));
+        assertThat(plan.tailStart()).isEqualTo(DAY_1.plusHours(13));
+        assertThat(plan.end()).isEqualTo(DAY_1.plusHours(13));
+    }
+
+    @Test
+    void readsWholeDaysFromTheDayRollup() {
+        RollupPlan plan = RollupPlan.of(DAY_1, DAY_1.plusDays(2));
+
+        assertThat(plan.buckets()).isEqualTo(Map.of(DAY, List.of(range(DAY_1, DAY_1.plusDays(2)))));
+        assertThat(plan.tailStart()).isEqualTo(DAY_1.plusDays(2));
+        assertThat(plan.end()).isEqualTo(DAY_1.plusDays(2));
+    }
+
+    @Test
+    void stepsDownToHoursAndMinutesAtBothEdges() {
+        LocalDateTime start = DAY_1.plusHours(22).plusMinutes(30).plusSeconds(15);
+        LocalDateTime end = DAY_1.plusDays(2).plusHours(1).plusMinutes(10).plusSeconds(5);
+
+        RollupPlan plan = RollupPlan.of(start, end);
+
+        assertThat(plan.buckets()).isEqualTo(Map.of(
+                MINUTE, List.of(range(DAY_1.plusHours(22).plusMinutes(31), DAY_1.plusHours(23)),
+                                range(DAY_1.plusDays(2).plusHours(1), DAY_1.plusDays(2).plusHours(1).plusMinutes(10))),
+                HOUR, List.of(range(DAY_1.plusHours(23), DAY_1.plusDays(1)),
+                              range(DAY_1.plusDays(2), DAY_1.plusDays(2).plusHours(1))),
+                DAY, List.of(range(DAY_1.plusDays(1), DAY_1.plusDays(2)))));
+        assertThat(plan.headEnd()).isEqualTo(DAY_1.plusHours(22).plusMinutes(31));
+        assertThat(plan.tailStart()).isEqualTo(DAY_1.plusDays(2).plusHours(1).plusMinutes(10));
+    }
+
+    @Test
+    void leavesTheEndOutOfAHalfOpenRange() {
+        RollupPlan plan = RollupPlan.before(DAY_1.plusHours(10), DAY_1.plusHours(12));
+
+        assertThat(plan.buckets()).isEqualTo(Map.of(HOUR, List.of(range(DAY_1.plusHours(10), DAY_1.plusHours(12)))));
+        assertThat(plan.end()).isBefore(plan.tailStart());
+    }
+
+    @Test
+    void coversEveryRangeWithAlignedBucketsAndNoGapsOrOverlaps() {
+        Random random = new Random(7);
+        for (int i = 0; i < 10_000; i++) {
+            LocalDateTime start = DAY_1.plusSeconds(random.nextInt(3 * 24 * 3600));
+            LocalDateTime end = start.plusSeconds(random.nextInt(i % 2 == 0 ? 7200 : 4 * 24 * 3600));
+            RollupPlan plan = RollupPlan.of(start, end);
+
+            List<BucketRange> pieces = new ArrayList<>();
+            plan.buckets().forEach((granularity, ranges) -> ranges.forEach(range -> {
+                assertThat(granularity.floor(range.from())).isEqualTo(range.from());
+                assertThat(granularity.floor(range.to())).isEqualTo(range.to());
+                pieces.add(range);
+            }));
+            if (plan.start().isBefore(plan.headEnd())) {
+                pieces.add(range(plan.start(), plan.headEnd()));
+            }
+            pieces.sort(Comparator.comparing(BucketRange::from));
+
+            LocalDateTime covered = start;
+            for (BucketRange piece : pieces) {
+                assertThat(piece.from()).as("plan of [%s, %s]", start, end).isEqualTo(covered);
+                covered = piece.to();
+            }
+            assertThat(covered).as("plan of [%s, %s]", start, end).isEqualTo(plan.tailStart());
+            assertThat(plan.tailStart()).isBeforeOrEqualTo(plan.end());
+            assertThat(plan.end()).isEqualTo(end);
+        }
+    }
+
+    private static BucketRange range(LocalDateTime from, LocalDateTime to) {
+        return new BucketRange(from, to);
+    }
+}
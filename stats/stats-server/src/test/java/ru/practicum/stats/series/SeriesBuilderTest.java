@@ -0,0 +1,55 @@
+package ru.practicum.stats.series;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.stats.exception.ValidationException;
+import ru.practicum.stats.model.EndpointKey;
+import ru.practicum.stats.rollup.RollupGranularity;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SeriesBuilderTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 3, 1, 10, 30);
+    private static final byte[] IP_A = {4, 10, 0, 0, 1};
+    private static final byte[] IP_B = {4, 10, 0, 0, 2};
+
+    @Test
+    void countsHitsAndBucketsInTheRange() {
+        SeriesBuilder series = new SeriesBuilder(RollupGranularity.HOUR, START, START.plusHours(2), 10);
+        series.addHit(1, 10, IP_A, START);
+        series.addHit(1, 10, IP_A, START.plusHours(2));
+        series.add(START.plusHours(1).withMinute(0), 1, 10, 5);
+
+        assertThat(series.buckets()).containsExactly(LocalDateTime.of(2024, 3, 1, 10, 0),
+                                                     LocalDateTime.of(2024, 3, 1, 11, 0),
+                                                     LocalDateTime.of(2024, 3, 1, 12, 0));
+        assertThat(series.build().get(new EndpointKey(1, 10))).containsExactly(1, 5, 1);
+    }
+
+    @Test
+    void countsAVisitorOncePerBucketItVisits() {
+        SeriesBuilder series = new SeriesBuilder(RollupGranularity.HOUR, START, START.plusHours(1), 10);
+        series.addVisitor(1, 10, IP_A, START);
+        series.addVisitor(1, 10, IP_A, START.plusMinutes(10));
+        series.addVisitor(1, 10, IP_B, START.plusMinutes(20));
+        series.addVisitor(1, 10, IP_A, START.plusHours(1));
+
+        Map<EndpointKey, long[]> built = series.build();
+
+        assertThat(built.get(new EndpointKey(1, 10))).containsExactly(2, 1);
+    }
+
+    @Test
+    void rejectsMoreEndpointsThanTheCap() {
+        SeriesBuilder series = new SeriesBuilder(RollupGranularity.DAY, START, START, 2);
+        series.addHit(1, 10, IP_A, START);
+        series.addVisitor(1, 20, IP_A, START);
+        series.addHit(1, 10, IP_B, START);
+
+        assertThatThrownBy(() -> series.addVisitor(1, 30, IP_A, START)).isInstanceOf(ValidationException.class);
+        assertThatThrownBy(() -> series.add(START, 2, 10, 1)).isInstanceOf(ValidationException.class);
+    }
+}
@@ -0,0 +1,116 @@
+package ru.practicum.stats.shard;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Two shards in one embedded PostgreSQL: shard 0 in the public schema and shard 1 in {@code shard_1}. Hits go
+ * through the web layer one request at a time, as the first hit of a new uri resolves its dictionary id on
+ * shard 0 on the same thread that then stores it. {@code initdb} refuses to run as root, so the test does too.
+ */
+@DisabledIfSystemProperty(named = "user.name", matches = "root")
+@SpringBootTest(properties = {
+        "stats.window.enabled=false",
+        "stats.cache.enabled=false",
+        "stats.top.enabled=false"
+})
+@AutoConfigureMockMvc
+class ShardRoutingTest {
+    private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int URIS = 20;
+    private static final EmbeddedPostgres POSTGRES = start();
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        String url = POSTGRES.getJdbcUrl("postgres", "postgres");
+        registry.add("spring.datasource.url", () -> url);
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "");
+        // a list is bound from one property source, so the whole shard entry is given here
+        registry.add("stats.sharding.shards[0].url", () -> url);
+        registry.add("stats.sharding.shards[0].username", () -> "postgres");
+        registry.add("stats.sharding.shards[0].schema", () -> "shard_1");
+    }
+
+    @AfterAll
+    static void stop() throws IOException {
+        POSTGRES.close();
+    }
+
+    @Test
+    void storesEveryHitAndRollupOnTheShardOfItsUri() throws Exception {
+        String timestamp = LocalDateTime.now().format(FORMAT);
+        for (int i = 0; i < URIS; i++) {
+            mockMvc.perform(post("/hit").contentType(MediaType.APPLICATION_JSON)
+                                    .content("{\"app\": \"ewm\", \"uri\": \"/events/" + i + "\", " +
+                                                     "\"ip\": \"10.0.0.1\", \"timestamp\": \"" + timestamp + "\"}"))
+                    .andExpect(status().isCreated());
+        }
+
+        JdbcTemplate jdbc = new JdbcTemplate(POSTGRES.getPostgresDatabase());
+        List<Integer> shard0 = jdbc.queryForList("SELECT uri_id FROM public.endpoint_hits", Integer.class);
+        List<Integer> shard1 = jdbc.queryForList("SELECT uri_id FROM shard_1.endpoint_hits", Integer.class);
+        assertThat(shard0.size() + shard1.size()).isEqualTo(URIS);
+        assertThat(shard0).isNotEmpty().allSatisfy(uriId -> assertThat(shardRouter.shardOf(uriId)).isZero());
+        assertThat(shard1).isNotEmpty().allSatisfy(uriId -> assertThat(shardRouter.shardOf(uriId)).isOne());
+        assertThat(jdbc.queryForList("SELECT uri_id FROM shard_1.hit_rollups_hour", Integer.class))
+                .containsExactlyInAnyOrderElementsOf(shard1);
+        assertThat(jdbc.queryForList("SELECT uri_id FROM public.hit_rollups_hour", Integer.class))
+                .containsExactlyInAnyOrderElementsOf(shard0);
+
+        String start = LocalDateTime.now().minusDays(1).format(FORMAT);
+        String end = LocalDateTime.now().plusDays(1).format(FORMAT);
+        mockMvc.perform(get("/stats").param("start", start).param("end", end))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(URIS));
+        mockMvc.perform(get("/stats").param("start", start).param("end", end).param("unique", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(URIS));
+        mockMvc.perform(get("/stats").param("start", start).param("end", end).param("unique", "true")
+                                .param("approximate", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(URIS))
+                .andExpect(jsonPath("$[0].hits").value(1));
+
+        String lines = mockMvc.perform(get("/stats").param("start", start).param("end", end)
+                                               .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertThat(lines.lines()).hasSize(URIS);
+    }
+
+    private static EmbeddedPostgres start() {
+        try {
+            return EmbeddedPostgres.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
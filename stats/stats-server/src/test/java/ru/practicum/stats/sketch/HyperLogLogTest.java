@@ -0,0 +1,73 @@
+package ru.practicum.stats.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HyperLogLogTest {
+
+    @Test
+    void smallSketchesStaySparseAndCountAlmostExactly() {
+        HyperLogLog sketch = sketch(0, 100);
+        sketch.add(ip(5));
+
+        assertThat(sketch.isSparse()).isTrue();
+        assertThat(sketch.cardinality()).isBetween(98L, 102L);
+        assertThat(sketch.toBytes().length).isLessThanOrEqualTo(2 + 4 + 100 * 4);
+    }
+
+    @Test
+    void turnsDenseWithTheSameEstimate() {
+        HyperLogLog sparse = sketch(0, 500);
+        HyperLogLog dense = sketch(0, 500);
+        dense.merge(HyperLogLog.fromBytes(denseBytes(sketch(0, 2_000))));
+        HyperLogLog reference = sketch(0, 2_000);
+
+        assertThat(sparse.isSparse()).isTrue();
+        assertThat(dense.isSparse()).isFalse();
+        assertThat(reference.isSparse()).isFalse();
+        assertThat(dense.cardinality()).isEqualTo(reference.cardinality());
+        assertThat(reference.cardinality()).isBetween(1_900L, 2_100L);
+    }
+
+    @Test
+    void mergesSparseAndDenseSketchesInEitherOrder() {
+        HyperLogLog expected = sketch(0, 20_000);
+
+        HyperLogLog sparseIntoDense = sketch(100, 20_000).merge(sketch(0, 100));
+        HyperLogLog denseIntoSparse = sketch(0, 100).merge(sketch(100, 20_000));
+
+        assertThat(sparseIntoDense.cardinality()).isEqualTo(expected.cardinality());
+        assertThat(denseIntoSparse.cardinality()).isEqualTo(expected.cardinality());
+    }
+
+    @Test
+    void roundTripsBothRepresentations() {
+        for (HyperLogLog sketch : new HyperLogLog[]{sketch(0, 10), sketch(0, 50_000)}) {
+            HyperLogLog copy = HyperLogLog.fromBytes(sketch.toBytes());
+
+            assertThat(copy.isSparse()).isEqualTo(sketch.isSparse());
+            assertThat(copy.cardinality()).isEqualTo(sketch.cardinality());
+            assertThat(copy.toBytes()).isEqualTo(sketch.toBytes());
+        }
+    }
+
+    private static HyperLogLog sketch(int from, int to) {
+        HyperLogLog sketch = new HyperLogLog(14);
+        for (int i = from; i < to; i++) {
+            sketch.add(ip(i));
+        }
+        return sketch;
+    }
+
+    private static byte[] denseBytes(HyperLogLog sketch) {
+        assertThat(sketch.isSparse()).isFalse();
+        return sketch.toBytes();
+    }
+
+    private static byte[] ip(int value) {
+        return ByteBuffer.allocate(5).put((byte) 4).putInt(value).array();
+    }
+}
@@ -0,0 +1,78 @@
+package ru.practicum.stats.topk;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.model.EndpointKey;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.practicum.stats.rollup.RollupGranularity.HOUR;
+
+class HeavyHittersTest {
+    private static final EndpointKey A = new EndpointKey(1, 1);
+    private static final EndpointKey B = new EndpointKey(1, 2);
+    private static final EndpointKey C = new EndpointKey(1, 3);
+
+    private HeavyHitters heavyHitters;
+    private LocalDateTime hour;
+
+    @BeforeEach
+    void setUp() {
+        heavyHitters = new HeavyHitters(null, null, null, true, 10, Duration.ofDays(7));
+        hour = HOUR.floor(LocalDateTime.now().minusDays(1));
+    }
+
+    @Test
+    void keepsEndpointsWhoseHitsAreInsideAPartlyCoveredHour() {
+        record(A, hour.plusMinutes(5), 1000);
+        record(B, hour.plusMinutes(59), 5);
+
+        List<EndpointKey> candidates = heavyHitters.candidates(hour.plusMinutes(59), hour.plusMinutes(90), 1, null)
+                .orElseThrow();
+
+        assertThat(candidates).contains(B);
+    }
+
+    @Test
+    void prunesEndpointsThatCannotReachTheTopInsideWholeHours() {
+        record(A, hour.plusMinutes(10), 100);
+        record(B, hour.plusMinutes(20), 50);
+        record(C, hour.plusMinutes(30), 1);
+
+        List<EndpointKey> candidates = heavyHitters.candidates(hour, hour.plusHours(1).minusSeconds(1), 2, null)
+                .orElseThrow();
+
+        assertThat(candidates).containsExactly(A, B);
+    }
+
+    @Test
+    void keepsOnlyEndpointsWhoseHitsMayReachAUniqueCount() {
+        record(A, hour.plusMinutes(10), 100);
+        record(B, hour.plusMinutes(20), 50);
+        record(C, hour.plusMinutes(30), 1);
+
+        List<EndpointKey> candidates = heavyHitters.candidatesReaching(hour, hour.plusHours(1).minusSeconds(1), 2,
+                                                                       null).orElseThrow();
+
+        assertThat(candidates).containsExactly(A, B);
+    }
+
+    @Test
+    void doesNotAnswerBeyondTheRetainedHours() {
+        assertThat(heavyHitters.candidates(hour.minusDays(30), hour, 1, null)).isEmpty();
+        assertThat(heavyHitters.candidatesReaching(hour.minusDays(30), hour, 1, null)).isEmpty();
+    }
+
+    private void record(EndpointKey key, LocalDateTime timestamp, int hits) {
+        List<EndpointHit> batch = new ArrayList<>(hits);
+        for (int i = 0; i < hits; i++) {
+            batch.add(new EndpointHit(null, key.appId(), key.uriId(), new byte[] {4, 10, 0, 0, 1}, timestamp));
+        }
+        heavyHitters.record(batch);
+    }
+}
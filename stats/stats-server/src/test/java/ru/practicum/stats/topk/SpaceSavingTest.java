@@ -0,0 +1,75 @@
+package ru.practicum.stats.topk;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SpaceSavingTest {
+    @Test
+    void countsExactlyBelowCapacity() {
+        SpaceSaving<String> summary = new SpaceSaving<>(3);
+        summary.offer("a", 5);
+        summary.offer("b", 2);
+        summary.offer("a", 1);
+
+        SpaceSaving.Summary<String> result = summary.summary();
+
+        assertThat(result.floor()).isZero();
+        assertThat(result.counters()).containsExactlyInAnyOrder(new SpaceSaving.Counter<>("a", 6, 0),
+                                                                new SpaceSaving.Counter<>("b", 2, 0));
+    }
+
+    @Test
+    void replacesTheSmallestCounterWhenFull() {
+        SpaceSaving<String> summary = new SpaceSaving<>(2);
+        summary.offer("a", 5);
+        summary.offer("b", 3);
+        summary.offer("c", 1);
+
+        SpaceSaving.Summary<String> result = summary.summary();
+
+        assertThat(result.counters()).containsExactlyInAnyOrder(new SpaceSaving.Counter<>("a", 5, 0),
+                                                                new SpaceSaving.Counter<>("c", 4, 3));
+        assertThat(result.floor()).isEqualTo(4);
+    }
+
+    @Test
+    void boundsTheTrueCountOfEveryKey() {
+        SpaceSaving<Integer> summary = new SpaceSaving<>(20);
+        Map<Integer, Long> exact = new HashMap<>();
+        Random random = new Random(42);
+        long total = 0;
+        for (int i = 0; i < 100_000; i++) {
+            int key = (int) Math.floor(Math.pow(random.nextDouble(), 3) * 500);
+            long weight = 1 + random.nextInt(3);
+            summary.offer(key, weight);
+            exact.merge(key, weight, Long::sum);
+            total += weight;
+        }
+
+        SpaceSaving.Summary<Integer> result = summary.summary();
+
+        Map<Integer, SpaceSaving.Counter<Integer>> monitored = new HashMap<>();
+        result.counters().forEach(counter -> monitored.put(counter.key(), counter));
+        assertThat(result.counters().stream().mapToLong(SpaceSaving.Counter::count).sum()).isEqualTo(total);
+        exact.forEach((key, count) -> {
+            SpaceSaving.Counter<Integer> counter = monitored.get(key);
+            if (counter == null) {
+                assertThat(count).isLessThanOrEqualTo(result.floor());
+            } else {
+                assertThat(count).isBetween(counter.count() - counter.error(), counter.count());
+            }
+        });
+        assertThat(monitored).containsKey(0);
+    }
+
+    @Test
+    void rejectsNonPositiveCapacity() {
+        assertThatThrownBy(() -> new SpaceSaving<String>(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,68 @@
+package ru.practicum.stats.window;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CounterRingTest {
+
+    @Test
+    void sumsTheSlotsOfTheRange() {
+        CounterRing ring = new CounterRing(4);
+        ring.add(10);
+        ring.add(10);
+        ring.add(11);
+        ring.add(13);
+
+        assertThat(ring.sum(10, 13)).isEqualTo(4);
+        assertThat(ring.sum(11, 12)).isEqualTo(1);
+        assertThat(ring.sum(14, 20)).isZero();
+        assertThat(new CounterRing(4).sum(0, 100)).isZero();
+    }
+
+    @Test
+    void advancingTheHeadClearsTheSlotsThatFallOut() {
+        CounterRing ring = new CounterRing(4);
+        ring.add(10);
+        ring.add(11);
+
+        assertThat(ring.add(14)).isEqualTo(11);
+        assertThat(ring.sum(0, 20)).isEqualTo(2);
+        assertThat(ring.sum(10, 10)).isZero();
+
+        ring.add(15);
+        assertThat(ring.sum(11, 11)).isZero();
+        assertThat(ring.sum(0, 20)).isEqualTo(2);
+    }
+
+    @Test
+    void jumpingAWholeRingAheadClearsEverySlot() {
+        CounterRing ring = new CounterRing(4);
+        for (long slot = 0; slot < 4; slot++) {
+            ring.add(slot);
+        }
+
+        assertThat(ring.add(100)).isEqualTo(97);
+        assertThat(ring.sum(0, 100)).isEqualTo(1);
+    }
+
+    @Test
+    void ignoresSlotsThatWereAlreadyEvicted() {
+        CounterRing ring = new CounterRing(4);
+        ring.add(10);
+
+        assertThat(ring.add(6)).isEqualTo(7);
+        assertThat(ring.add(7)).isEqualTo(7);
+        assertThat(ring.sum(0, 10)).isEqualTo(2);
+    }
+
+    @Test
+    void isIdleUntilASlotAtOrAfterTheGivenOneIsWritten() {
+        CounterRing ring = new CounterRing(4);
+        assertThat(ring.isIdleSince(Long.MIN_VALUE + 1)).isTrue();
+
+        ring.add(-5);
+        assertThat(ring.isIdleSince(-5)).isFalse();
+        assertThat(ring.isIdleSince(-4)).isTrue();
+    }
+}
@@ -0,0 +1,55 @@
+package ru.practicum.stats.window;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.stats.model.EndpointHit;
+import ru.practicum.stats.model.EndpointKey;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HotCountersTest {
+    private static final EndpointKey A = new EndpointKey(1, 1);
+    private static final EndpointKey B = new EndpointKey(1, 2);
+
+    private HotCounters hotCounters;
+    private LocalDateTime now;
+
+    @BeforeEach
+    void setUp() {
+        hotCounters = new HotCounters(null, true, Duration.ofHours(1), Duration.ofMinutes(5), Duration.ofSeconds(5));
+        now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+    }
+
+    @Test
+    void countsOnlyTheRequestedUris() {
+        hotCounters.record(List.of(hit(A, now.plusSeconds(1)), hit(A, now.plusSeconds(2)),
+                                   hit(B, now.plusSeconds(2))));
+
+        WindowCounts counts = hotCounters.count(now.plusSeconds(1), now.plusSeconds(3), List.of(A.uriId()))
+                .orElseThrow();
+
+        assertThat(counts.hits()).containsOnlyKeys(A).containsEntry(A, 2L);
+    }
+
+    @Test
+    void aHitFarAheadOfTheClockKeepsTheWindowServingTheRecentPast() {
+        hotCounters.record(List.of(hit(A, now.plusSeconds(1))));
+        hotCounters.record(List.of(hit(A, now.plusDays(1))));
+
+        WindowCounts counts = hotCounters.count(now.plusSeconds(1), now.plusSeconds(2), List.of(A.uriId()))
+                .orElseThrow();
+
+        assertThat(counts.hits()).containsEntry(A, 1L);
+        assertThat(hotCounters.count(now.plusSeconds(1), now.plusDays(2), List.of(A.uriId()))).isEmpty();
+    }
+
+    private static EndpointHit hit(EndpointKey key, LocalDateTime timestamp) {
+        return EndpointHit.builder().appId(key.appId()).uriId(key.uriId()).ip(new byte[]{4, 10, 0, 0, 1})
+                .timestamp(timestamp).build();
+    }
+}